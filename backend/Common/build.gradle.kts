@@ -4,6 +4,7 @@ plugins {
 
 dependencies {
 	implementation("org.springframework.boot:spring-boot-starter-aop")
+	implementation("io.micrometer:micrometer-core")
 }
 
 tasks.bootJar {
@@ -13,4 +14,4 @@ tasks.bootJar {
 // Bật jar task để build plain JAR
 tasks.jar {
 	enabled = true
-}
\ No newline at end of file
+}
@@ -0,0 +1,17 @@
+package com.CNTTK18.Common.Aop;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Bật đo thời gian (TimeLogging) cho 1 method, 1 class hoặc cả package (đặt trong package-info.java,
+// áp dụng luôn cho các package con). Method/class có annotation riêng sẽ ghi đè cấu hình của package
+@Target({ElementType.METHOD, ElementType.TYPE, ElementType.PACKAGE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface TimeLogged {
+    // Tỉ lệ lời gọi được đo (0-1). Nhỏ hơn 1 thì count của timer chỉ là số lời gọi được lấy mẫu
+    double sampleRate() default 1.0;
+}
@@ -1,23 +1,135 @@
 package com.CNTTK18.Common.Aop;
 
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.AnnotatedElementUtils;
 import org.springframework.stereotype.Component;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
+// Đo thời gian các method đã opt-in bằng @TimeLogged và ghi vào Timer của Micrometer thay vì in ra console.
+// Metric method.timed, tag class/method/exception, xem qua /actuator/metrics/method.timed.
+// Method trả về Mono/CompletableFuture chỉ được đo phần tạo pipeline, không phải lúc hoàn thành
 @Aspect
 @Component
+@ConditionalOnProperty(name = "timing.enabled", havingValue = "true", matchIfMissing = true)
 public class TimeLogging {
-    @Around("execution(* com.CNTTK18.*.service..*(..))")
+    public static final String METRIC_NAME = "method.timed";
+
+    // Method đi qua pointcut nhưng không opt-in
+    private static final MethodTimer DISABLED = new MethodTimer(null, null, null, 0);
+
+    private MeterRegistry meterRegistry;
+    private double[] percentiles;
+    private boolean histogram;
+    private final Map<Method, MethodTimer> timers = new ConcurrentHashMap<>();
+
+    public TimeLogging(MeterRegistry meterRegistry,
+                       @Value("${timing.percentiles:0.5,0.95,0.99}") double[] percentiles,
+                       @Value("${timing.histogram:false}") boolean histogram) {
+        this.meterRegistry = meterRegistry;
+        this.percentiles = percentiles;
+        this.histogram = histogram;
+    }
+
+    @Around("execution(* com.CNTTK18.*.service..*(..))"
+            + " || @within(com.CNTTK18.Common.Aop.TimeLogged)"
+            + " || @annotation(com.CNTTK18.Common.Aop.TimeLogged)")
     public Object logExecutionTime(ProceedingJoinPoint joinPoint) throws Throwable {
-        long start = System.currentTimeMillis();
+        MethodTimer timer = timerFor(joinPoint);
+        if (timer == DISABLED || !timer.sampled()) {
+            return joinPoint.proceed();
+        }
+
+        long start = System.nanoTime();
+        try {
+            Object result = joinPoint.proceed();
+            timer.success().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        }
+        catch (Throwable ex) {
+            long elapsed = System.nanoTime() - start;
+            // Lỗi hiếm nên tra registry mỗi lần, không cache timer theo từng loại exception
+            timer(timer.className(), timer.methodName(), ex.getClass().getSimpleName())
+                            .record(elapsed, TimeUnit.NANOSECONDS);
+            throw ex;
+        }
+    }
+
+    private MethodTimer timerFor(ProceedingJoinPoint joinPoint) {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        MethodTimer timer = timers.get(method);
+        if (timer == null) {
+            Class<?> targetClass = AopUtils.getTargetClass(joinPoint.getTarget());
+            timer = timers.computeIfAbsent(method, m -> createTimer(m, targetClass));
+        }
+        return timer;
+    }
 
-        Object proceed = joinPoint.proceed();
+    private MethodTimer createTimer(Method method, Class<?> targetClass) {
+        Method specificMethod = AopUtils.getMostSpecificMethod(method, targetClass);
+        TimeLogged config = AnnotatedElementUtils.findMergedAnnotation(specificMethod, TimeLogged.class);
+        if (config == null) {
+            config = AnnotatedElementUtils.findMergedAnnotation(targetClass, TimeLogged.class);
+        }
+        if (config == null) {
+            config = findPackageConfig(targetClass);
+        }
+        if (config == null || config.sampleRate() <= 0) {
+            return DISABLED;
+        }
+        String className = targetClass.getSimpleName();
+        return new MethodTimer(timer(className, method.getName(), "none"), className, method.getName(),
+                                Math.min(config.sampleRate(), 1.0));
+    }
 
-        long executionTime = System.currentTimeMillis() - start;
+    private Timer timer(String className, String methodName, String exception) {
+        return Timer.builder(METRIC_NAME)
+                        .description("Execution time of @TimeLogged methods")
+                        .tag("class", className)
+                        .tag("method", methodName)
+                        .tag("exception", exception)
+                        .publishPercentiles(percentiles)
+                        .publishPercentileHistogram(histogram)
+                        .register(meterRegistry);
+    }
+
+    // Tìm @TimeLogged trên package-info của package chứa class, rồi lần lượt các package cha
+    private static TimeLogged findPackageConfig(Class<?> type) {
+        ClassLoader classLoader = type.getClassLoader();
+        String packageName = type.getPackageName();
+        while (!packageName.isEmpty()) {
+            try {
+                TimeLogged config = Class.forName(packageName + ".package-info", false, classLoader)
+                                        .getAnnotation(TimeLogged.class);
+                if (config != null) {
+                    return config;
+                }
+            }
+            catch (ClassNotFoundException ex) {
+                // Package không có package-info
+            }
+            int dot = packageName.lastIndexOf('.');
+            packageName = dot < 0 ? "" : packageName.substring(0, dot);
+        }
+        return null;
+    }
 
-        System.out.println(joinPoint.getSignature() + " executed in " + executionTime + "ms");
-        return proceed;
+    private record MethodTimer(Timer success, String className, String methodName, double sampleRate) {
+        boolean sampled() {
+            return sampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+        }
     }
 }
@@ -1,17 +1,19 @@
 package com.CNTTK18.Common.Util;
 
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
+// Chuỗi ngẫu nhiên độ dài tùy ý (mã ngắn, hậu tố slug, id của bảng nhỏ như categories/size).
+// Khóa chính của bảng lớn dùng UlidGenerator
 public class RandomIdGenerator {
     private static final String CHARACTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
-    private static final Random random = new Random();
 
     public static String generate(int length) {
-        StringBuilder sb = new StringBuilder(length);
+        // ThreadLocalRandom thay cho 1 Random dùng chung, vốn bị các thread tranh nhau cập nhật seed
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        char[] chars = new char[length];
         for (int i = 0; i < length; i++) {
-            int index = random.nextInt(CHARACTERS.length());
-            sb.append(CHARACTERS.charAt(index));
+            chars[i] = CHARACTERS.charAt(random.nextInt(CHARACTERS.length()));
         }
-        return sb.toString();
+        return new String(chars);
     }
 }
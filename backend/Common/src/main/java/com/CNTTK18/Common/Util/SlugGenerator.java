@@ -1,13 +1,11 @@
 package com.CNTTK18.Common.Util;
 
-import java.text.Normalizer;
 import java.util.regex.Pattern;
 
 public class SlugGenerator {
     private static final Pattern NON_LATIN = Pattern.compile("[^\\w-]");
     private static final Pattern WHITESPACE = Pattern.compile("[\\s]");
     private static final Pattern EDGES_HYPHENS = Pattern.compile("^-|-$");
-    private static final Pattern DIACRITICS = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
 
     public static String generate(String name) {
         if (name == null || name.isEmpty()) {
@@ -16,14 +14,8 @@ public class SlugGenerator {
         // Xóa các dấu cách 2 bên trước
         name = name.trim();
 
-        // 1. Chuẩn hóa (Normalize) để tách dấu và chữ
-        String normalized = Normalizer.normalize(name, Normalizer.Form.NFD);
-        
-        // 2. Loại bỏ tất cả các dấu (diacritics)
-        String withoutDiacritics = DIACRITICS.matcher(normalized).replaceAll("");
-        
-        // 3. Chuyển đổi đặc biệt chữ 'Đ' và 'đ'
-        withoutDiacritics = withoutDiacritics.replaceAll("[đĐ]", "d");
+        // 1-3. Tách dấu và chữ (NFD), loại bỏ dấu, chuyển đổi đặc biệt chữ 'Đ' và 'đ'
+        String withoutDiacritics = TextNormalizer.removeDiacritics(name);
         
         // 4. Thay thế khoảng trắng bằng gạch nối và chuyển sang chữ thường
         String slug = WHITESPACE.matcher(withoutDiacritics).replaceAll("-").toLowerCase();
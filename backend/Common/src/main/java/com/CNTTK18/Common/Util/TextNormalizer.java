@@ -0,0 +1,27 @@
+package com.CNTTK18.Common.Util;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+public class TextNormalizer {
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+    private static final Pattern WHITESPACES = Pattern.compile("\\s+");
+
+    // Bỏ dấu tiếng Việt: NFD tách dấu khỏi chữ, xóa dấu, riêng 'đ'/'Đ' không tách được nên đổi tay
+    public static String removeDiacritics(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD);
+        String withoutDiacritics = DIACRITICS.matcher(normalized).replaceAll("");
+        return withoutDiacritics.replaceAll("[đĐ]", "d");
+    }
+
+    // Dạng dùng để tìm kiếm: không dấu, chữ thường, gộp khoảng trắng.
+    // Phải khớp với hàm vn_fold() trong main_postgres.sql
+    public static String fold(String text) {
+        String withoutDiacritics = removeDiacritics(text);
+        return WHITESPACES.matcher(withoutDiacritics.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,88 @@
+package com.CNTTK18.Common.Util;
+
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+
+// ID dạng ULID: 26 ký tự Crockford base32 = 48 bit thời gian (ms) + 80 bit ngẫu nhiên.
+// So sánh chuỗi cũng là so sánh thời gian tạo nên bản ghi mới được INSERT vào cuối B-tree thay vì rải ngẫu nhiên,
+// và khóa ngắn hơn nhiều so với chuỗi ngẫu nhiên 99-254 ký tự của RandomIdGenerator.
+// Mỗi thread giữ trạng thái riêng (ThreadLocal + ThreadLocalRandom) nên không có tranh chấp giữa các thread
+// Bản ghi cũ giữ nguyên id cũ, chỉ bản ghi mới dùng ULID: các cột id VARCHAR hiện tại chứa được cả hai
+public class UlidGenerator {
+    public static final int LENGTH = 26;
+
+    private static final char[] ENCODING = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int TIME_LENGTH = 10;
+    private static final long RANDOM_HI_MASK = 0xFFFFL;
+
+    // 80 bit ngẫu nhiên = randomHi (16 bit) + randomLo (64 bit)
+    private static final class State {
+        private long lastMillis = -1;
+        private long randomHi;
+        private long randomLo;
+    }
+
+    private static final ThreadLocal<State> STATE = ThreadLocal.withInitial(State::new);
+
+    public static String generate() {
+        State state = STATE.get();
+        long now = System.currentTimeMillis();
+        if (now > state.lastMillis) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            state.lastMillis = now;
+            state.randomHi = random.nextLong() & RANDOM_HI_MASK;
+            state.randomLo = random.nextLong();
+        }
+        else {
+            // Cùng ms (hoặc đồng hồ bị lùi): tăng phần ngẫu nhiên thêm 1 để ID của thread này vẫn tăng dần
+            state.randomLo++;
+            if (state.randomLo == 0) {
+                state.randomHi = (state.randomHi + 1) & RANDOM_HI_MASK;
+                if (state.randomHi == 0) {
+                    state.lastMillis++;
+                }
+            }
+        }
+        return encode(state.lastMillis, state.randomHi, state.randomLo);
+    }
+
+    // Thời điểm tạo của 1 ULID
+    public static Instant timestampOf(String id) {
+        if (id == null || id.length() != LENGTH) {
+            throw new IllegalArgumentException("Not a ULID: " + id);
+        }
+        long millis = 0;
+        for (int i = 0; i < TIME_LENGTH; i++) {
+            int value = decode(id.charAt(i));
+            if (value < 0) {
+                throw new IllegalArgumentException("Not a ULID: " + id);
+            }
+            millis = (millis << 5) | value;
+        }
+        return Instant.ofEpochMilli(millis);
+    }
+
+    private static String encode(long millis, long hi, long lo) {
+        char[] chars = new char[LENGTH];
+        for (int i = TIME_LENGTH - 1; i >= 0; i--) {
+            chars[i] = ENCODING[(int) (millis & 31)];
+            millis >>>= 5;
+        }
+        // Lấy 5 bit thấp nhất mỗi lần, 5 bit thấp của hi được dời lên đầu lo
+        for (int i = LENGTH - 1; i >= TIME_LENGTH; i--) {
+            chars[i] = ENCODING[(int) (lo & 31)];
+            lo = (lo >>> 5) | (hi << 59);
+            hi >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    private static int decode(char c) {
+        for (int i = 0; i < ENCODING.length; i++) {
+            if (ENCODING[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,33 @@
+plugins {
+	id("me.champeau.jmh")
+}
+
+// Microbenchmark JMH, không phải service. Chạy: ./gradlew :benchmarks:jmh
+// Chỉ chạy 1 nhóm: ./gradlew :benchmarks:jmh -PjmhIncludes=MapperBenchmark
+dependencies {
+	jmh(project(":Common"))
+	jmh(project(":restaurant-service"))
+	jmh("com.fasterxml.jackson.core:jackson-databind")
+	jmh("com.fasterxml.jackson.datatype:jackson-datatype-jsr310")
+	jmh("org.springframework:spring-aop")
+	jmh("org.aspectj:aspectjweaver")
+	jmh("io.micrometer:micrometer-core")
+}
+
+// Cùng phiên bản thư viện với các service (Spring Boot BOM)
+dependencyManagement {
+	imports {
+		mavenBom("org.springframework.boot:spring-boot-dependencies:3.5.5")
+	}
+}
+
+jmh {
+	jmhVersion = "1.37"
+	fork = 1
+	warmupIterations = 3
+	iterations = 5
+	// Kết quả JSON để so sánh giữa các commit (xem compare.sh)
+	resultFormat = "JSON"
+	resultsFile = layout.buildDirectory.file("results/jmh/results.json")
+	providers.gradleProperty("jmhIncludes").orNull?.let { includes = listOf(it) }
+}
@@ -0,0 +1,21 @@
+#!/usr/bin/env bash
+# So sánh 2 file kết quả JMH (JSON) của 2 commit, in % thay đổi của từng benchmark.
+# Dùng: ./compare.sh base.json new.json  (cần jq). Với AverageTime: dương = chậm hơn
+set -euo pipefail
+export LC_ALL=C
+
+if [ $# -ne 2 ]; then
+    echo "usage: $0 <base.json> <new.json>" >&2
+    exit 1
+fi
+
+# Khóa: tên benchmark + các @Param, giá trị: score và đơn vị
+extract() {
+    jq -r '.[] | [((.benchmark | sub("^.*\\.benchmarks\\."; "")) + ((.params // {}) | to_entries | map("[" + .key + "=" + .value + "]") | join(""))),
+                  .primaryMetric.score, .primaryMetric.scoreUnit] | @tsv' "$1" | sort
+}
+
+join -t $'\t' <(extract "$1") <(extract "$2") |
+    awk -F '\t' 'BEGIN { printf "%-90s %14s %14s %9s\n", "benchmark", "base", "new", "change" }
+        { change = ($2 == 0) ? 0 : ($4 - $2) / $2 * 100
+          printf "%-90s %14.3f %14.3f %+8.1f%%  %s\n", $1, $2, $4, change, $3 }'
@@ -0,0 +1,34 @@
+package com.CNTTK18.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import com.CNTTK18.Common.Util.SlugGenerator;
+import com.CNTTK18.Common.Util.TextNormalizer;
+
+// Sinh slug cho tên nhà hàng/món: tên có dấu tiếng Việt và tên ASCII thuần.
+// RandomIdGenerator/ULID được đo riêng trong IdGeneratorBenchmark
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class CommonUtilBenchmark {
+    @Param({"Bánh mì thịt nướng Đặc Biệt - Chi nhánh Quận 1", "Grilled Pork Banh Mi Special"})
+    public String name;
+
+    @Benchmark
+    public String slug() {
+        return SlugGenerator.generate(name);
+    }
+
+    @Benchmark
+    public String removeDiacritics() {
+        return TextNormalizer.removeDiacritics(name);
+    }
+}
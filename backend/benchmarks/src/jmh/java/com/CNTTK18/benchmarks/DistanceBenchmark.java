@@ -0,0 +1,69 @@
+package com.CNTTK18.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.CNTTK18.restaurant_service.distance.LocalDistanceProvider;
+import com.CNTTK18.restaurant_service.dto.distance.response.DistanceResponse;
+import com.CNTTK18.restaurant_service.service.DistanceService;
+import com.CNTTK18.restaurant_service.util.DistanceUtil;
+
+// Haversine qua DistanceService (tham số Double, có boxing) và DistanceUtil (double),
+// cùng ma trận 1xN mà trang danh sách dùng khi provider là local
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class DistanceBenchmark {
+    private static final double START_LON = 106.7009;
+    private static final double START_LAT = 10.7769;
+
+    @Param({"20", "200"})
+    public int endPoints;
+
+    private DistanceService distanceService;
+    private LocalDistanceProvider localProvider;
+    private List<Double> start;
+    private List<List<Double>> ends;
+    private Double endLon;
+    private Double endLat;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        localProvider = new LocalDistanceProvider(1.3, 25, 60);
+        // Chỉ dùng hàm tính toán, không cần ORS và cache ma trận
+        distanceService = new DistanceService(List.of(localProvider), localProvider, null, null, LocalDistanceProvider.NAME);
+        start = List.of(START_LON, START_LAT);
+        ends = new ArrayList<>(endPoints);
+        for (int i = 0; i < endPoints; i++) {
+            ends.add(List.of(START_LON + (i % 50) * 0.002, START_LAT + (i / 50) * 0.002));
+        }
+        endLon = 106.6602;
+        endLat = 10.7626;
+    }
+
+    @Benchmark
+    public Double serviceHaversine() {
+        return distanceService.calculateHaversineDistance(START_LON, START_LAT, endLon, endLat);
+    }
+
+    @Benchmark
+    public double utilHaversine() {
+        return DistanceUtil.haversine(START_LON, START_LAT, endLon, endLat);
+    }
+
+    @Benchmark
+    public DistanceResponse localMatrix() {
+        return localProvider.computeMatrix(start, ends);
+    }
+}
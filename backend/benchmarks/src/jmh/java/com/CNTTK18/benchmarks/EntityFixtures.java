@@ -0,0 +1,95 @@
+package com.CNTTK18.benchmarks;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.CNTTK18.Common.Util.UlidGenerator;
+import com.CNTTK18.restaurant_service.data.ImageStatus;
+import com.CNTTK18.restaurant_service.model.Categories;
+import com.CNTTK18.restaurant_service.model.ProductSize;
+import com.CNTTK18.restaurant_service.model.Products;
+import com.CNTTK18.restaurant_service.model.Restaurants;
+import com.CNTTK18.restaurant_service.model.Size;
+
+// Tạo đồ thị entity trong bộ nhớ (nhà hàng -> món -> size) giống dữ liệu trả về từ JPA,
+// kích thước và nội dung cố định để các lần chạy so sánh được với nhau
+public class EntityFixtures {
+    private static final String[] SIZE_NAMES = {"S", "M", "L"};
+
+    public static List<Restaurants> restaurants(int count, int productsPerRestaurant) {
+        List<Categories> categories = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            categories.add(new Categories("CAT" + i, "Danh mục " + i));
+        }
+        List<Size> sizes = new ArrayList<>();
+        for (int i = 0; i < SIZE_NAMES.length; i++) {
+            Size size = new Size();
+            size.setId("SIZE" + i);
+            size.setName(SIZE_NAMES[i]);
+            sizes.add(size);
+        }
+
+        Instant now = Instant.parse("2026-01-01T00:00:00Z");
+        List<Restaurants> result = new ArrayList<>(count);
+        for (int r = 0; r < count; r++) {
+            Restaurants res = Restaurants.builder()
+                            .id(UlidGenerator.generate())
+                            .resName("Nhà hàng Phở Bò số " + r)
+                            .address(r + " Nguyễn Thị Minh Khai, Quận 1, TP. Hồ Chí Minh")
+                            .longitude(106.70 + r * 0.001)
+                            .latitude(10.77 + r * 0.001)
+                            .rating(4.5f)
+                            .openingTime(LocalTime.of(7, 0))
+                            .closingTime(LocalTime.of(22, 0))
+                            .phone("0901234567")
+                            .imageURL("https://res.cloudinary.com/demo/image/upload/res_" + r + ".jpg")
+                            .thumbnailURL("https://res.cloudinary.com/demo/image/upload/t_thumb/res_" + r + ".webp")
+                            .detailURL("https://res.cloudinary.com/demo/image/upload/t_detail/res_" + r + ".webp")
+                            .imageStatus(ImageStatus.READY)
+                            .merchantId("merchant" + r)
+                            .enabled(true)
+                            .totalReview(120)
+                            .slug("nha-hang-pho-bo-so-" + r)
+                            .createdAt(now)
+                            .updatedAt(now)
+                            .categories(new LinkedHashSet<>(categories.subList(0, 3)))
+                            .build();
+
+            Set<Products> products = new LinkedHashSet<>();
+            for (int p = 0; p < productsPerRestaurant; p++) {
+                Products product = Products.builder()
+                                .id(UlidGenerator.generate())
+                                .productName("Phở bò tái nạm gầu " + p)
+                                .description("Nước dùng hầm xương 12 tiếng, bánh phở tươi, thịt bò Úc " + p)
+                                .imageURL("https://res.cloudinary.com/demo/image/upload/p_" + p + ".jpg")
+                                .thumbnailURL("https://res.cloudinary.com/demo/image/upload/t_thumb/p_" + p + ".webp")
+                                .detailURL("https://res.cloudinary.com/demo/image/upload/t_detail/p_" + p + ".webp")
+                                .imageStatus(ImageStatus.READY)
+                                .category(categories.get(p % categories.size()))
+                                .available(true)
+                                .rating(4.0f + (p % 10) / 10f)
+                                .totalReview(p)
+                                .restaurant(res)
+                                .slug("pho-bo-tai-nam-gau-" + p)
+                                .createdAt(now)
+                                .updatedAt(now)
+                                .build();
+                Set<ProductSize> productSizes = new LinkedHashSet<>();
+                for (int s = 0; s < sizes.size(); s++) {
+                    productSizes.add(new ProductSize(UlidGenerator.generate(), product, sizes.get(s),
+                                        BigDecimal.valueOf(35000 + s * 10000L)));
+                }
+                product.setProductSizes(productSizes);
+                products.add(product);
+            }
+            res.setProducts(products);
+            result.add(res);
+        }
+        return result;
+    }
+}
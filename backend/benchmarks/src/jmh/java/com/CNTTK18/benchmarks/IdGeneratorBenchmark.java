@@ -0,0 +1,74 @@
+package com.CNTTK18.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import com.CNTTK18.Common.Util.RandomIdGenerator;
+import com.CNTTK18.Common.Util.UlidGenerator;
+
+// So sánh cách sinh khóa chính cũ (chuỗi ngẫu nhiên 99-254 ký tự từ 1 Random dùng chung) với ULID.
+// Bản *Contended chạy 8 thread cùng lúc để thấy chi phí tranh chấp seed của Random dùng chung
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class IdGeneratorBenchmark {
+    private static final String CHARACTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+    private static final Random SHARED_RANDOM = new Random();
+
+    @State(Scope.Benchmark)
+    public static class Length {
+        // Độ dài đang dùng cho users (99) và products/product_sizes/messages (254)
+        @Param({"99", "254"})
+        public int value;
+    }
+
+    // Bản sao của RandomIdGenerator trước khi đổi sang ThreadLocalRandom, làm mốc so sánh
+    private static String legacyGenerate(int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(CHARACTERS.charAt(SHARED_RANDOM.nextInt(CHARACTERS.length())));
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public String legacyRandomId(Length length) {
+        return legacyGenerate(length.value);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String legacyRandomIdContended(Length length) {
+        return legacyGenerate(length.value);
+    }
+
+    @Benchmark
+    public String randomId(Length length) {
+        return RandomIdGenerator.generate(length.value);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String randomIdContended(Length length) {
+        return RandomIdGenerator.generate(length.value);
+    }
+
+    @Benchmark
+    public String ulid() {
+        return UlidGenerator.generate();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String ulidContended() {
+        return UlidGenerator.generate();
+    }
+}
@@ -0,0 +1,82 @@
+package com.CNTTK18.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.CNTTK18.restaurant_service.dto.product.response.ProductResponse;
+import com.CNTTK18.restaurant_service.dto.restaurant.response.ResResponseWithProduct;
+import com.CNTTK18.restaurant_service.model.Products;
+import com.CNTTK18.restaurant_service.model.Restaurants;
+import com.CNTTK18.restaurant_service.util.ProductUtil;
+import com.CNTTK18.restaurant_service.util.ResUtil;
+
+// Chi phí map entity -> DTO cho 1 trang nhà hàng kèm món (mỗi món 3 size).
+// Thời gian tính cho cả trang, không phải từng nhà hàng
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class MapperBenchmark {
+    @Param({"20"})
+    public int restaurants;
+
+    @Param({"10", "100"})
+    public int productsPerRestaurant;
+
+    private List<Restaurants> page;
+    private List<List<Products>> pageProducts;
+    private List<Products> allProducts;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        page = EntityFixtures.restaurants(restaurants, productsPerRestaurant);
+        pageProducts = new ArrayList<>(page.size());
+        allProducts = new ArrayList<>();
+        for (Restaurants res : page) {
+            List<Products> products = new ArrayList<>(res.getProducts());
+            pageProducts.add(products);
+            allProducts.addAll(products);
+        }
+    }
+
+    // Trang chi tiết: đọc products qua res.getProducts()
+    @Benchmark
+    public List<ResResponseWithProduct> restaurantDetail() {
+        List<ResResponseWithProduct> result = new ArrayList<>(page.size());
+        for (Restaurants res : page) {
+            result.add(ResUtil.mapResToResResponseWithProduct(res));
+        }
+        return result;
+    }
+
+    // Trang danh sách: products đã được nạp sẵn theo lô
+    @Benchmark
+    public List<ResResponseWithProduct> restaurantListing() {
+        List<ResResponseWithProduct> result = new ArrayList<>(page.size());
+        for (int i = 0; i < page.size(); i++) {
+            result.add(ResUtil.mapResToResResponseWithProductandDistanceAndDuration(page.get(i), pageProducts.get(i),
+                            1500.0, 300.0));
+        }
+        return result;
+    }
+
+    // Mỗi món map kèm thông tin nhà hàng của nó
+    @Benchmark
+    public List<ProductResponse> productsWithRestaurant() {
+        List<ProductResponse> result = new ArrayList<>(allProducts.size());
+        for (Products product : allProducts) {
+            result.add(ProductUtil.mapProductToProductResponseWitoutResParam(product));
+        }
+        return result;
+    }
+}
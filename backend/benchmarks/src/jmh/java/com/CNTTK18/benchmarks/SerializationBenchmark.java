@@ -0,0 +1,60 @@
+package com.CNTTK18.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.CNTTK18.restaurant_service.dto.restaurant.response.ResResponseWithProduct;
+import com.CNTTK18.restaurant_service.model.Restaurants;
+import com.CNTTK18.restaurant_service.util.ResUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+// Ghi JSON 1 trang ResResponseWithProduct, ObjectMapper cấu hình giống mặc định của Spring Boot
+// (JavaTimeModule, ngày giờ dạng chuỗi ISO)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+    @Param({"20"})
+    public int restaurants;
+
+    @Param({"10", "100"})
+    public int productsPerRestaurant;
+
+    private ObjectMapper objectMapper;
+    private List<ResResponseWithProduct> page;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        objectMapper = new ObjectMapper()
+                        .registerModule(new JavaTimeModule())
+                        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        page = new ArrayList<>();
+        for (Restaurants res : EntityFixtures.restaurants(restaurants, productsPerRestaurant)) {
+            page.add(ResUtil.mapResToResResponseWithProduct(res));
+        }
+    }
+
+    @Benchmark
+    public byte[] writePage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public String writePageAsString() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(page);
+    }
+}
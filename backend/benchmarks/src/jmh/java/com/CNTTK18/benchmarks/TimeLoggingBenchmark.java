@@ -0,0 +1,101 @@
+package com.CNTTK18.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import com.CNTTK18.Common.Aop.TimeLogged;
+import com.CNTTK18.Common.Aop.TimeLogging;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Overhead của TimeLogging trên 1 method rất ngắn: gọi trực tiếp, qua proxy không có advice,
+// qua proxy đo mọi lời gọi và qua proxy lấy mẫu 1%. Cấu hình percentile giống application.properties
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class TimeLoggingBenchmark {
+    // Mỗi class tự khai báo method vì @within chỉ khớp method được khai báo trong class có annotation
+    public static class Work {
+        public int hash(String value) {
+            return compute(value);
+        }
+    }
+
+    @TimeLogged
+    public static class TimedWork extends Work {
+        @Override
+        public int hash(String value) {
+            return compute(value);
+        }
+    }
+
+    @TimeLogged(sampleRate = 0.01)
+    public static class SampledWork extends Work {
+        @Override
+        public int hash(String value) {
+            return compute(value);
+        }
+    }
+
+    private static int compute(String value) {
+        return value.hashCode() * 31 + value.length();
+    }
+
+    private final String input = "pho-bo-tai-nam-gau";
+    private Work direct;
+    private Work untimed;
+    private Work timed;
+    private Work sampled;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        TimeLogging aspect = new TimeLogging(new SimpleMeterRegistry(), new double[] {0.5, 0.95, 0.99}, false);
+        direct = new Work();
+        untimed = proxy(new Work(), aspect);
+        timed = proxy(new TimedWork(), aspect);
+        sampled = proxy(new SampledWork(), aspect);
+    }
+
+    private static Work proxy(Work target, TimeLogging aspect) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(aspect);
+        return factory.getProxy();
+    }
+
+    @Benchmark
+    public int direct() {
+        return direct.hash(input);
+    }
+
+    @Benchmark
+    public int proxyNotOptedIn() {
+        return untimed.hash(input);
+    }
+
+    @Benchmark
+    public int timed() {
+        return timed.hash(input);
+    }
+
+    @Benchmark
+    public int sampled() {
+        return sampled.hash(input);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public int timedContended() {
+        return timed.hash(input);
+    }
+}
@@ -2,6 +2,7 @@ plugins {
 	java
 	id("org.springframework.boot") version "3.5.5" apply false
 	id("io.spring.dependency-management") version "1.1.7" apply false
+	id("me.champeau.jmh") version "0.7.3" apply false
 }
 
 allprojects {
@@ -33,5 +34,9 @@ subprojects {
 
     tasks.withType<Test> {
         useJUnitPlatform()
+        // Test Testcontainers bị bỏ qua khi không có Docker: in ra để thấy test nào chưa chạy
+        testLogging {
+            events("skipped", "failed")
+        }
     }
 }
@@ -4,9 +4,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.listener.ChannelTopic;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
-import org.springframework.data.redis.listener.adapter.MessageListenerAdapter;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 @Configuration
@@ -28,27 +26,12 @@ public class RedisConfig {
         return template;
     }
 
-    // Channel topic for pub/sub (các subscriber sẽ subscribe topic này và lắng nghe nó)
+    // Message listener container -> Để lắng nghe message. Channel của từng room được RedisMessageSubscriber
+    // subscribe/unsubscribe khi có client vào/rời room ở instance này
     @Bean
-    public ChannelTopic chatTopic() {
-        return new ChannelTopic("messages");
-    }
-
-    // Message listener adapter -> Để gọi đến hàm receiveMessage trong RedisMessageSubscriber và gửi đến WebSocket clients
-    @Bean
-    public MessageListenerAdapter listenerAdapter(RedisMessageSubscriber subscriber) {
-        return new MessageListenerAdapter(subscriber, "receiveMessage");
-    }
-
-    // Message listener container -> Để lắng nghe message
-    @Bean
-    public RedisMessageListenerContainer redisContainer(RedisConnectionFactory connectionFactory,
-                            MessageListenerAdapter listenerAdapter) {
-        
+    public RedisMessageListenerContainer redisContainer(RedisConnectionFactory connectionFactory) {
         RedisMessageListenerContainer container = new RedisMessageListenerContainer();
         container.setConnectionFactory(connectionFactory);
-        container.addMessageListener(listenerAdapter, chatTopic());
-        System.out.println("RedisMessageListenerContainer initialized and listening to topic: messages ====================================");
         return container;
     }
 }
@@ -1,46 +1,214 @@
 package com.CNTTK18.chat_service.config;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
 
 import com.CNTTK18.chat_service.dto.MessageDTO;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Chuyển tin từ Redis tới các websocket client của instance này.
+// Mỗi room có 1 channel riêng chat:room:{roomId}, instance chỉ subscribe channel của các room đang có
+// client subscribe /topic/room/{roomId} ở chính nó (theo dõi qua sự kiện SUBSCRIBE/UNSUBSCRIBE/DISCONNECT
+// của STOMP), nên tải của mỗi instance tỉ lệ với số room của nó thay vì tổng lưu lượng của cả cụm.
+// Payload JSON được chuyển nguyên byte sang STOMP, không deserialize/serialize lại.
+// Chỉ bật chat.routing.legacy-channel trong lúc rolling deploy từ bản dùng channel chung "messages": instance mới
+// nghe thêm channel chung để nhận tin từ instance bản cũ và publish thêm 1 bản sao (không có id, để bản cũ đọc được)
+// lên đó. Bản sao do instance mới publish có timestamp dạng chuỗi ISO (bản cũ luôn ghi dạng mảng) và đã tới qua
+// channel room nên bị bỏ qua, không cần so payload
 @Component
-public class RedisMessageSubscriber {
-    
+public class RedisMessageSubscriber implements MessageListener {
     private static final Logger logger = LoggerFactory.getLogger(RedisMessageSubscriber.class);
+    public static final String LEGACY_CHANNEL = "messages";
+    private static final String CHANNEL_PREFIX = "chat:room:";
+    private static final String TOPIC_PREFIX = "/topic/room/";
+    private static final int CHANNEL_LOCK_STRIPES = 64;
 
     //Sử dụng để kết nối từ redis qua websocket client
     private SimpMessagingTemplate messagingTemplate;
-    
-    private final ObjectMapper objectMapper;
-    
-    public RedisMessageSubscriber(SimpMessagingTemplate messagingTemplate) {
+    private RedisMessageListenerContainer container;
+
+    // roomId -> số subscription của room ở instance này
+    private final Map<String, Integer> localRooms = new ConcurrentHashMap<>();
+    // Room đang có listener trên container, chỉ được đổi trong khóa của room (syncChannel)
+    private final Set<String> subscribedChannels = ConcurrentHashMap.newKeySet();
+    private final Object[] channelLocks = new Object[CHANNEL_LOCK_STRIPES];
+    // sessionId -> (subscriptionId -> roomId), để xử lý UNSUBSCRIBE/DISCONNECT
+    private final Map<String, Map<String, String>> sessions = new ConcurrentHashMap<>();
+
+    private boolean legacyChannel;
+    private ObjectMapper objectMapper;
+
+    private Counter forwarded;
+    private Counter skipped;
+    private Counter duplicates;
+
+    public RedisMessageSubscriber(SimpMessagingTemplate messagingTemplate, RedisMessageListenerContainer container,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${chat.routing.legacy-channel:false}") boolean legacyChannel) {
+        this.messagingTemplate = messagingTemplate;
+        this.container = container;
+        this.legacyChannel = legacyChannel;
         this.objectMapper = new ObjectMapper();
-        //Hướng dẫn objectMapper các chuyển đổi các đối tượng LocalDateTime để dễ đọc hơn
         this.objectMapper.registerModule(new JavaTimeModule());
-        this.messagingTemplate = messagingTemplate;
+        for (int i = 0; i < channelLocks.length; i++) {
+            channelLocks[i] = new Object();
+        }
+        Gauge.builder("chat.routing.rooms", localRooms, Map::size).register(meterRegistry);
+        this.forwarded = Counter.builder("chat.routing.forwarded").register(meterRegistry);
+        this.skipped = Counter.builder("chat.routing.skipped").register(meterRegistry);
+        this.duplicates = Counter.builder("chat.routing.duplicates").register(meterRegistry);
+        if (legacyChannel) {
+            container.addMessageListener(this::onLegacyMessage, new ChannelTopic(LEGACY_CHANNEL));
+        }
+    }
+
+    public static String channel(String roomId) {
+        return CHANNEL_PREFIX + roomId;
     }
-    
-    // Phương thức nhận từ redisConfig và forward cho các websocket clients
-    public void receiveMessage(String message) {
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+        String roomId = channel.substring(CHANNEL_PREFIX.length());
+        // Client vừa rời room, channel chưa kịp unsubscribe
+        if (!localRooms.containsKey(roomId)) {
+            skipped.increment();
+            return;
+        }
+        try {
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+            accessor.setLeaveMutable(true);
+            messagingTemplate.send(TOPIC_PREFIX + roomId, MessageBuilder.createMessage(message.getBody(), accessor.getMessageHeaders()));
+            forwarded.increment();
+        } catch (Exception e) {
+            logger.error("Error forwarding Redis message of room {}", roomId, e);
+        }
+    }
+
+    @EventListener
+    public void handleSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        subscribe(accessor.getSessionId(), accessor.getSubscriptionId(), accessor.getDestination());
+    }
+
+    @EventListener
+    public void handleUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        unsubscribe(accessor.getSessionId(), accessor.getSubscriptionId());
+    }
+
+    @EventListener
+    public void handleDisconnect(SessionDisconnectEvent event) {
+        disconnect(event.getSessionId());
+    }
+
+    void subscribe(String sessionId, String subscriptionId, String destination) {
+        if (sessionId == null || subscriptionId == null || destination == null || !destination.startsWith(TOPIC_PREFIX)) {
+            return;
+        }
+        String roomId = destination.substring(TOPIC_PREFIX.length());
+        if (roomId.isEmpty()) {
+            return;
+        }
+        if (sessions.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>()).putIfAbsent(subscriptionId, roomId) == null) {
+            // Subscribe channel của room khi có subscription đầu tiên
+            if (localRooms.merge(roomId, 1, Integer::sum) == 1) {
+                syncChannel(roomId);
+            }
+        }
+    }
+
+    void unsubscribe(String sessionId, String subscriptionId) {
+        if (sessionId == null || subscriptionId == null) {
+            return;
+        }
+        Map<String, String> subscriptions = sessions.get(sessionId);
+        String roomId = subscriptions == null ? null : subscriptions.remove(subscriptionId);
+        if (roomId != null) {
+            release(roomId);
+        }
+    }
+
+    void disconnect(String sessionId) {
+        Map<String, String> subscriptions = sessionId == null ? null : sessions.remove(sessionId);
+        if (subscriptions != null) {
+            subscriptions.values().forEach(this::release);
+        }
+    }
+
+    boolean hasLocalSubscribers(String roomId) {
+        return localRooms.containsKey(roomId);
+    }
+
+    // Unsubscribe channel của room khi subscription cuối cùng rời đi
+    private void release(String roomId) {
+        if (localRooms.computeIfPresent(roomId, (id, count) -> count > 1 ? count - 1 : null) == null) {
+            syncChannel(roomId);
+        }
+    }
+
+    // compute của map chỉ đổi bộ đếm, SUBSCRIBE/UNSUBSCRIBE tới Redis (có thể chờ mạng) chạy ngoài compute
+    // và tuần tự theo room. Đưa listener về đúng trạng thái hiện tại của localRooms nên thứ tự giữa các
+    // lần gọi không quan trọng, lần gọi sau cùng luôn thấy bộ đếm cuối cùng
+    private void syncChannel(String roomId) {
+        synchronized (channelLocks[Math.floorMod(roomId.hashCode(), channelLocks.length)]) {
+            boolean wanted = localRooms.containsKey(roomId);
+            if (wanted && subscribedChannels.add(roomId)) {
+                container.addMessageListener(this, new ChannelTopic(channel(roomId)));
+            }
+            else if (!wanted && subscribedChannels.remove(roomId)) {
+                container.removeMessageListener(this, new ChannelTopic(channel(roomId)));
+            }
+        }
+    }
+
+    // Tin trên channel chung: từ instance bản cũ (chỉ publish lên "messages", timestamp dạng mảng) hoặc bản sao
+    // của tin trên channel room do instance mới publish (timestamp dạng chuỗi, đã được chuyển qua channel room).
+    // Tin của bản cũ được deserialize rồi gửi qua converter của STOMP như trước
+    private void onLegacyMessage(Message message, byte[] pattern) {
         try {
-            logger.debug("Received from Redis: {}", message);
-            
-            // Chuyển từ Json qua Message
-            MessageDTO chatMessage = objectMapper.readValue(message, MessageDTO.class);
-            
-            // Forward đến các clients qua WebSocket (Gửi đến các client đang subscribe topic của room có giá trị là destination)
-            String destination = "/topic/room/" + chatMessage.getRoomId();
-            messagingTemplate.convertAndSend(destination, chatMessage);
-            
-            logger.debug("Forwarded to WebSocket topic: {}", destination);            
+            JsonNode node = objectMapper.readTree(message.getBody());
+            String roomId = node.path("roomId").asText(null);
+            if (roomId == null || !localRooms.containsKey(roomId)) {
+                skipped.increment();
+                return;
+            }
+            if (node.path("timestamp").isTextual()) {
+                duplicates.increment();
+                return;
+            }
+            MessageDTO chatMessage = objectMapper.treeToValue(node, MessageDTO.class);
+            messagingTemplate.convertAndSend(TOPIC_PREFIX + roomId, chatMessage);
+            forwarded.increment();
         } catch (Exception e) {
-            logger.error("Error processing Redis message", e);
+            logger.error("Error processing Redis message from legacy channel", e);
         }
     }
-}
\ No newline at end of file
+}
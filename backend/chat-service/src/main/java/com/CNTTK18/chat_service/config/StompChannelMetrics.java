@@ -0,0 +1,49 @@
+package com.CNTTK18.chat_service.config;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+import org.springframework.core.task.TaskDecorator;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// Metric cho executor của 1 kênh STOMP (tag channel=inbound/outbound):
+// - chat.stomp.pending: số message đang chờ hoặc đang xử lý, = số task đang chạy + độ dài hàng đợi của executor.
+//   Task chỉ được đếm khi đã bắt đầu chạy nên task bị executor từ chối không làm lệch giá trị
+// - chat.stomp.queue.wait: thời gian chờ từ lúc đưa vào executor đến lúc bắt đầu xử lý
+// - chat.stomp.handle: thời gian xử lý, với outbound là thời gian gửi vào websocket session
+public class StompChannelMetrics implements TaskDecorator {
+    private final AtomicInteger running = new AtomicInteger();
+    private Timer queueWait;
+    private Timer handle;
+
+    // queued: số task đang nằm trong hàng đợi của executor (0 nếu executor không có hàng đợi)
+    public StompChannelMetrics(MeterRegistry meterRegistry, String channel, IntSupplier queued) {
+        Gauge.builder("chat.stomp.pending", () -> running.get() + queued.getAsInt())
+             .tag("channel", channel).register(meterRegistry);
+        this.queueWait = Timer.builder("chat.stomp.queue.wait").tag("channel", channel)
+                            .publishPercentiles(0.5, 0.99).register(meterRegistry);
+        this.handle = Timer.builder("chat.stomp.handle").tag("channel", channel)
+                            .publishPercentiles(0.5, 0.99).register(meterRegistry);
+    }
+
+    @Override
+    public Runnable decorate(Runnable task) {
+        long submitted = System.nanoTime();
+        return () -> {
+            running.incrementAndGet();
+            long started = System.nanoTime();
+            queueWait.record(started - submitted, TimeUnit.NANOSECONDS);
+            try {
+                task.run();
+            }
+            finally {
+                handle.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                running.decrementAndGet();
+            }
+        };
+    }
+}
@@ -1,22 +1,61 @@
 package com.CNTTK18.chat_service.config;
 
+import java.time.Duration;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+
+import io.micrometer.core.instrument.MeterRegistry;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer  {
     private final WebsocketHandshakeInterceptor handshakeInterceptor;
     private TaskScheduler messageBrokerTaskScheduler;
+    private MeterRegistry meterRegistry;
+
+    // Inbound chạy trên virtual thread (ghi DB/Redis chặn luồng không còn giữ platform thread),
+    // giới hạn số message xử lý đồng thời
+    private int inboundConcurrency;
+    // Outbound dùng pool giới hạn, hàng đợi đầy thì báo lỗi thay vì giữ message vô hạn trong heap
+    private int outboundThreads;
+    private int outboundQueueCapacity;
+    // Client chậm: gửi quá sendTimeLimit hoặc buffer vượt sendBufferSizeLimit thì session bị đóng,
+    // không làm nghẽn luồng outbound của các client khác
+    private Duration sendTimeLimit;
+    private int sendBufferSizeLimit;
+    private int messageSizeLimit;
+    // Giữ thứ tự message trong từng session (inbound và outbound)
+    private boolean preserveOrder;
 
-    public WebSocketConfig(WebsocketHandshakeInterceptor handshakeInterceptor) {
+    public WebSocketConfig(WebsocketHandshakeInterceptor handshakeInterceptor, MeterRegistry meterRegistry,
+                           @Value("${chat.stomp.inbound.concurrency:1000}") int inboundConcurrency,
+                           @Value("${chat.stomp.outbound.threads:16}") int outboundThreads,
+                           @Value("${chat.stomp.outbound.queue-capacity:10000}") int outboundQueueCapacity,
+                           @Value("${chat.stomp.send-time-limit:5s}") Duration sendTimeLimit,
+                           @Value("${chat.stomp.send-buffer-size-limit:524288}") int sendBufferSizeLimit,
+                           @Value("${chat.stomp.message-size-limit:65536}") int messageSizeLimit,
+                           @Value("${chat.stomp.preserve-order:true}") boolean preserveOrder) {
         this.handshakeInterceptor = handshakeInterceptor;
+        this.meterRegistry = meterRegistry;
+        this.inboundConcurrency = inboundConcurrency;
+        this.outboundThreads = outboundThreads;
+        this.outboundQueueCapacity = outboundQueueCapacity;
+        this.sendTimeLimit = sendTimeLimit;
+        this.sendBufferSizeLimit = sendBufferSizeLimit;
+        this.messageSizeLimit = messageSizeLimit;
+        this.preserveOrder = preserveOrder;
     }
 
 	@Autowired
@@ -27,14 +66,44 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer  {
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         // Enable simple broker for topics (in-memory broker)
-        // server gửi message đến client có tiền tố /topic
-        config.enableSimpleBroker("/topic")
+        // server gửi message đến client có tiền tố /topic, /queue dùng cho tin gửi riêng 1 session
+        // (vd. /user/queue/errors khi tin bị từ chối)
+        config.enableSimpleBroker("/topic", "/queue")
               .setHeartbeatValue(new long[] {20000, 30000})
               .setTaskScheduler(this.messageBrokerTaskScheduler);
         
         // Set prefix for client messages (server nhận message từ client)
         // Bất kì tin nhắn nào gửi đến server có tiền tố /app sẽ được xử lý bởi các @MessageMapping
         config.setApplicationDestinationPrefixes("/app");
+        config.setPreservePublishOrder(preserveOrder);
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("stomp-inbound-");
+        executor.setVirtualThreads(true);
+        executor.setConcurrencyLimit(inboundConcurrency);
+        // Không có hàng đợi: khi đủ inboundConcurrency task, luồng gửi message bị chặn lại
+        executor.setTaskDecorator(new StompChannelMetrics(meterRegistry, "inbound", () -> 0));
+        registration.executor(executor);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("stomp-outbound-");
+        executor.setCorePoolSize(outboundThreads);
+        executor.setMaxPoolSize(outboundThreads);
+        executor.setQueueCapacity(outboundQueueCapacity);
+        executor.setTaskDecorator(new StompChannelMetrics(meterRegistry, "outbound", executor::getQueueSize));
+        registration.executor(executor);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registry) {
+        registry.setSendTimeLimit((int) sendTimeLimit.toMillis())
+                .setSendBufferSizeLimit(sendBufferSizeLimit)
+                .setMessageSizeLimit(messageSizeLimit);
     }
 
     @Override
@@ -43,5 +112,6 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer  {
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*")
                 .addInterceptors(handshakeInterceptor);
+        registry.setPreserveReceiveOrder(preserveOrder);
     }
 }
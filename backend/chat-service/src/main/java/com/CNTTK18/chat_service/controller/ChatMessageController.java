@@ -7,9 +7,11 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.CNTTK18.chat_service.dto.request.RoomDTO;
+import com.CNTTK18.chat_service.dto.response.CursorResponse;
 import com.CNTTK18.chat_service.dto.response.Data;
 import com.CNTTK18.chat_service.dto.response.MessageResponseDTO;
 import com.CNTTK18.chat_service.dto.response.ResponseMessage;
@@ -57,10 +59,12 @@ public class ChatMessageController {
         return ResponseEntity.ok(new ResponseMessage("Marked as read successfully"));
     }
 
+    // Tin mới nhất trước, phân trang bằng cursor (nextCursor của trang trước)
     @GetMapping("/rooms/{roomId}/messages")
-    public ResponseEntity<Page<MessageResponseDTO>> getAllMessageDescInRoom(@PathVariable String roomId,
-                                                                Pageable pageable) {
-        Page<MessageResponseDTO> messages = chatMessageService.getRecentMessageByPagination(roomId, pageable);
+    public ResponseEntity<CursorResponse<MessageResponseDTO>> getAllMessageDescInRoom(@PathVariable String roomId,
+                                                                @RequestParam(required = false) String cursor,
+                                                                @RequestParam(defaultValue = "20") int size) {
+        CursorResponse<MessageResponseDTO> messages = chatMessageService.getRecentMessages(roomId, cursor, size);
         return ResponseEntity.ok(messages);
     }
 }
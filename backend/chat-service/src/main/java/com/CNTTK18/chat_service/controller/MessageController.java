@@ -1,12 +1,17 @@
 package com.CNTTK18.chat_service.controller;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 
+import org.springframework.messaging.handler.annotation.MessageExceptionHandler;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.annotation.SendToUser;
 import org.springframework.stereotype.Controller;
 
 import com.CNTTK18.chat_service.dto.MessageDTO;
+import com.CNTTK18.chat_service.dto.response.SendErrorResponse;
+import com.CNTTK18.chat_service.exception.ChatBusyException;
 import com.CNTTK18.chat_service.service.MessageService;
 
 import jakarta.validation.Valid;
@@ -21,7 +26,16 @@ public class MessageController {
     // Gửi tin thì vẫn phải là /app/chat.sendMessage
     @MessageMapping("/chat.sendMessage")
     public void sendMessage(@Valid @Payload MessageDTO message) {
-        message.setTimestamp(LocalDateTime.now());
+        // Cột timestamp(3) chỉ lưu đến ms, cắt trước để cursor từ Redis và MySQL so sánh được với nhau
+        message.setTimestamp(LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS));
         messageService.processMessage(message);
     }
+
+    // Hàng đợi ghi tin đầy: tin không được gửi đi, báo lại cho đúng session gửi (client subscribe
+    // /user/queue/errors) kèm tin bị từ chối để gửi lại sau
+    @MessageExceptionHandler(ChatBusyException.class)
+    @SendToUser(destinations = "/queue/errors", broadcast = false)
+    public SendErrorResponse handleChatBusy(ChatBusyException ex, @Payload MessageDTO message) {
+        return new SendErrorResponse("CHAT_BUSY", ex.getMessage(), message);
+    }
 }
@@ -13,6 +13,8 @@ import lombok.Setter;
 @Getter
 @Setter
 public class MessageDTO {
+    // Id (ULID) do server gán khi nhận tin, client dùng để đối chiếu với lịch sử
+    private String id;
     private String roomId;
     @NotBlank
     private String senderId;
@@ -0,0 +1,21 @@
+package com.CNTTK18.chat_service.dto.response;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Trang theo kiểu Slice cho infinite scroll: không có totalElements/totalPages (không chạy count query),
+// client gửi lại nextCursor để lấy trang tiếp theo
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class CursorResponse<T> {
+    private List<T> content;
+    private int size;
+    private boolean hasNext;
+    private String nextCursor;
+}
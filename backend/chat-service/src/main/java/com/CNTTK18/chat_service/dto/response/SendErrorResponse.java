@@ -0,0 +1,19 @@
+package com.CNTTK18.chat_service.dto.response;
+
+import com.CNTTK18.chat_service.dto.MessageDTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Lỗi gửi tin qua websocket, kèm tin bị từ chối để client gửi lại
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class SendErrorResponse {
+    private String errorCode;
+    private String message;
+    private MessageDTO rejected;
+}
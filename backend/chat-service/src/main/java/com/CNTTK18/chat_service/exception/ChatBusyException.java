@@ -0,0 +1,8 @@
+package com.CNTTK18.chat_service.exception;
+
+// Hàng đợi ghi tin nhắn đã đầy, client nên gửi lại sau
+public class ChatBusyException extends RuntimeException {
+    public ChatBusyException(String message) {
+        super(message);
+    }
+}
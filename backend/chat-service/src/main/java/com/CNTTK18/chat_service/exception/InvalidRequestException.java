@@ -0,0 +1,7 @@
+package com.CNTTK18.chat_service.exception;
+
+public class InvalidRequestException extends RuntimeException {
+    public InvalidRequestException(String message) {
+        super(message);
+    } 
+}
@@ -0,0 +1,25 @@
+package com.CNTTK18.chat_service.history;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+
+import com.CNTTK18.chat_service.model.Message;
+
+// 1 tin nhắn trong danh sách tin gần nhất của room (RoomHistoryCache). Trạng thái đã đọc không lưu ở đây
+// mà suy ra từ mốc đánh dấu đã đọc của receiver
+public record HistoryEntry(String id, String senderId, String receiverId, String content, LocalDateTime timestamp) {
+    // Mới nhất trước: (timestamp, id) giảm dần, giống ORDER BY của MessageRepository.findByRoomIdBefore
+    public static final Comparator<HistoryEntry> NEWEST_FIRST = Comparator.comparing(HistoryEntry::timestamp)
+                                                                    .thenComparing(HistoryEntry::id).reversed();
+
+    public static HistoryEntry from(Message message) {
+        return new HistoryEntry(message.getId(), message.getSenderId(), message.getReceiverId(),
+                                message.getContent(), message.getTimestamp());
+    }
+
+    // Cũ hơn tin (otherTimestamp, otherId), dùng để lọc theo cursor
+    public boolean isBefore(LocalDateTime otherTimestamp, String otherId) {
+        int cmp = timestamp.compareTo(otherTimestamp);
+        return cmp < 0 || (cmp == 0 && id.compareTo(otherId) < 0);
+    }
+}
@@ -0,0 +1,200 @@
+package com.CNTTK18.chat_service.history;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import com.CNTTK18.chat_service.model.Message;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+// Tối đa maxEntries tin gần nhất của mỗi room trong Redis list chat:history:{roomId} (mới nhất ở đầu),
+// kèm hash chat:history:read:{roomId} lưu mốc đánh dấu đã đọc (epoch ms) của từng receiver.
+// Mở 1 cuộc trò chuyện chỉ cần 1 lần gọi Redis (pipeline LRANGE + HGETALL).
+// Tin mới luôn được LPUSH (kể cả khi list chưa có) nên list không bao giờ thiếu tin mới, kể cả tin
+// write-behind chưa ghi vào MySQL. List chỉ được coi là đủ (đúng các tin mới nhất) khi:
+// - có đủ maxEntries phần tử, hoặc
+// - phần tử cuối là MARKER: đã được nạp từ MySQL và room không còn tin cũ hơn
+// Chưa đủ thì ChatMessageService nạp từ MySQL, gộp với list rồi ghi lại (fill)
+@Component
+public class RoomHistoryCache {
+    private static final Logger log = LoggerFactory.getLogger(RoomHistoryCache.class);
+    private static final String KEY_PREFIX = "chat:history:";
+    private static final String READ_PREFIX = "chat:history:read:";
+    private static final String MARKER = "~";
+
+    // KEYS: list, read; ARGV: entry, maxEntries, ttl
+    private static final DefaultRedisScript<Long> PUSH = new DefaultRedisScript<>(
+                        "redis.call('LPUSH', KEYS[1], ARGV[1]) "
+                        + "redis.call('LTRIM', KEYS[1], 0, tonumber(ARGV[2]) - 1) "
+                        + "redis.call('EXPIRE', KEYS[1], ARGV[3]) "
+                        + "redis.call('EXPIRE', KEYS[2], ARGV[3]) return 1", Long.class);
+    // KEYS: read; ARGV: receiver, epoch ms, ttl. Mốc chỉ tăng
+    private static final DefaultRedisScript<Long> MARK_READ = new DefaultRedisScript<>(
+                        "local cur = tonumber(redis.call('HGET', KEYS[1], ARGV[1])) or 0 "
+                        + "if tonumber(ARGV[2]) > cur then redis.call('HSET', KEYS[1], ARGV[1], ARGV[2]) end "
+                        + "redis.call('EXPIRE', KEYS[1], ARGV[3]) return 1", Long.class);
+    // KEYS: list; ARGV: độ dài lúc đọc, ttl, entry, ... Có tin mới được push trong lúc nạp thì bỏ qua
+    private static final DefaultRedisScript<Long> FILL = new DefaultRedisScript<>(
+                        "if redis.call('LLEN', KEYS[1]) ~= tonumber(ARGV[1]) then return 0 end "
+                        + "redis.call('DEL', KEYS[1]) "
+                        + "redis.call('RPUSH', KEYS[1], unpack(ARGV, 3)) "
+                        + "redis.call('EXPIRE', KEYS[1], ARGV[2]) return 1", Long.class);
+
+    // entries mới nhất trước; valid: đúng là các tin mới nhất của room; complete: không còn tin cũ hơn;
+    // length: số phần tử của list lúc đọc (dùng cho fill)
+    public record Snapshot(List<HistoryEntry> entries, boolean valid, boolean complete, int length,
+                           Map<String, Long> readMarks) {
+        public boolean isRead(HistoryEntry entry) {
+            Long mark = readMarks.get(entry.receiverId());
+            return mark != null && mark >= toEpochMilli(entry.timestamp());
+        }
+    }
+
+    private StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private int maxEntries;
+    private Duration ttl;
+
+    public RoomHistoryCache(StringRedisTemplate redisTemplate,
+                            @Value("${chat.history.max-entries:200}") int maxEntries,
+                            @Value("${chat.history.ttl:1d}") Duration ttl) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.registerModule(new JavaTimeModule());
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+    }
+
+    public int maxEntries() {
+        return maxEntries;
+    }
+
+    public void push(String roomId, HistoryEntry entry) {
+        try {
+            redisTemplate.execute(PUSH, List.of(KEY_PREFIX + roomId, READ_PREFIX + roomId),
+                                    objectMapper.writeValueAsString(entry), String.valueOf(maxEntries),
+                                    String.valueOf(ttl.toSeconds()));
+        }
+        catch (JsonProcessingException | RuntimeException ex) {
+            // List thiếu tin này thì không còn đúng, xóa để lần đọc sau nạp lại từ MySQL
+            log.warn("Cannot push message {} to history of room {}: {}", entry.id(), roomId, ex.getMessage());
+            evict(roomId);
+        }
+    }
+
+    public void markRead(String roomId, String receiverId, LocalDateTime at) {
+        markRead(roomId, receiverId, toEpochMilli(at));
+    }
+
+    private void markRead(String roomId, String receiverId, long epochMilli) {
+        try {
+            redisTemplate.execute(MARK_READ, List.of(READ_PREFIX + roomId), receiverId,
+                                    String.valueOf(epochMilli), String.valueOf(ttl.toSeconds()));
+        }
+        catch (RuntimeException ex) {
+            log.warn("Cannot mark history of room {} as read: {}", roomId, ex.getMessage());
+            evict(roomId);
+        }
+    }
+
+    // null nếu Redis lỗi
+    @SuppressWarnings("unchecked")
+    public Snapshot read(String roomId) {
+        try {
+            byte[] key = (KEY_PREFIX + roomId).getBytes(StandardCharsets.UTF_8);
+            byte[] readKey = (READ_PREFIX + roomId).getBytes(StandardCharsets.UTF_8);
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.listCommands().lRange(key, 0, -1);
+                connection.hashCommands().hGetAll(readKey);
+                return null;
+            });
+            List<String> raw = (List<String>) results.get(0);
+            Map<String, String> marks = (Map<String, String>) results.get(1);
+
+            boolean complete = !raw.isEmpty() && MARKER.equals(raw.get(raw.size() - 1));
+            List<HistoryEntry> entries = new ArrayList<>(raw.size());
+            for (String json : raw) {
+                if (!MARKER.equals(json)) {
+                    entries.add(objectMapper.readValue(json, HistoryEntry.class));
+                }
+            }
+            // Các instance push theo thứ tự nhận nên có thể lệch nhau 1 chút
+            entries.sort(HistoryEntry.NEWEST_FIRST);
+            Map<String, Long> readMarks = new HashMap<>();
+            marks.forEach((receiver, ms) -> readMarks.put(receiver, Long.parseLong(ms)));
+            return new Snapshot(entries, complete || entries.size() >= maxEntries, complete, raw.size(), readMarks);
+        }
+        catch (JsonProcessingException | RuntimeException ex) {
+            log.warn("Cannot read history of room {}: {}", roomId, ex.getMessage());
+            return null;
+        }
+    }
+
+    // Gộp các tin mới nhất đọc từ MySQL (rows, tối đa maxEntries) với list hiện tại (có thể chứa tin
+    // write-behind chưa ghi vào MySQL) rồi ghi lại. Mốc đã đọc được khôi phục từ các tin đã đọc trong rows
+    public Snapshot fill(String roomId, Snapshot previous, List<Message> rows) {
+        Map<String, HistoryEntry> merged = new HashMap<>();
+        Map<String, Long> readMarks = new HashMap<>(previous.readMarks());
+        for (Message message : rows) {
+            merged.put(message.getId(), HistoryEntry.from(message));
+            if (message.isRead()) {
+                readMarks.merge(message.getReceiverId(), toEpochMilli(message.getTimestamp()), Math::max);
+            }
+        }
+        previous.entries().forEach(entry -> merged.putIfAbsent(entry.id(), entry));
+        List<HistoryEntry> entries = merged.values().stream().sorted(HistoryEntry.NEWEST_FIRST).limit(maxEntries).toList();
+        boolean complete = rows.size() < maxEntries && merged.size() <= maxEntries;
+
+        readMarks.forEach((receiver, mark) -> {
+            if (!mark.equals(previous.readMarks().get(receiver))) {
+                markRead(roomId, receiver, mark);
+            }
+        });
+        try {
+            List<String> args = new ArrayList<>(entries.size() + 3);
+            args.add(String.valueOf(previous.length()));
+            args.add(String.valueOf(ttl.toSeconds()));
+            for (HistoryEntry entry : entries) {
+                args.add(objectMapper.writeValueAsString(entry));
+            }
+            if (complete) {
+                args.add(MARKER);
+            }
+            if (args.size() > 2) {
+                redisTemplate.execute(FILL, List.of(KEY_PREFIX + roomId), args.toArray());
+            }
+        }
+        catch (JsonProcessingException | RuntimeException ex) {
+            log.warn("Cannot fill history of room {}: {}", roomId, ex.getMessage());
+        }
+        return new Snapshot(entries, true, complete, previous.length(), readMarks);
+    }
+
+    private void evict(String roomId) {
+        try {
+            redisTemplate.delete(KEY_PREFIX + roomId);
+        }
+        catch (RuntimeException ex) {
+            log.warn("Cannot evict history of room {}: {}", roomId, ex.getMessage());
+        }
+    }
+
+    private static long toEpochMilli(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}
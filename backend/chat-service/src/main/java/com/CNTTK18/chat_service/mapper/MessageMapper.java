@@ -4,6 +4,7 @@ import java.time.ZoneId;
 import java.time.ZonedDateTime;
 
 import com.CNTTK18.chat_service.dto.response.MessageResponseDTO;
+import com.CNTTK18.chat_service.history.HistoryEntry;
 import com.CNTTK18.chat_service.model.Message;
 
 public class MessageMapper {
@@ -18,4 +19,15 @@ public class MessageMapper {
                 .read(message.isRead())
                 .build();
     }
+
+    public static MessageResponseDTO toMessageResponseDTO(HistoryEntry entry, boolean read) {
+        return MessageResponseDTO.builder()
+                .id(entry.id())
+                .senderId(entry.senderId())
+                .receiverId(entry.receiverId())
+                .content(entry.content())
+                .timestamp(entry.timestamp().atZone(ZoneId.of("Asia/Ho_Chi_Minh")))
+                .read(read)
+                .build();
+    }
 }
@@ -1,11 +1,13 @@
 package com.CNTTK18.chat_service.repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
@@ -22,4 +24,14 @@ public interface ChatRoomRepository extends JpaRepository<ChatRoom, String>, Jpa
     @Query("select m from ChatRoom m where (m.user1Id = :userId or m.user2Id = :userId) " +
         "and m.lastMessage IS NOT NULL order by m.lastMessageTime desc")
     Page<ChatRoom> findAllByUserId(@Param("userId") String userId, Pageable pageable);
+
+    // Lưu mốc đã đọc của receiverId trong room (?1 = roomId, ?2 = receiverId, ?3 = readAt), chỉ tăng
+    @Modifying
+    @Query(value = """
+        UPDATE chat_rooms SET
+            user1_read_at = CASE WHEN user1_id = ?2 THEN GREATEST(COALESCE(user1_read_at, ?3), ?3) ELSE user1_read_at END,
+            user2_read_at = CASE WHEN user2_id = ?2 THEN GREATEST(COALESCE(user2_read_at, ?3), ?3) ELSE user2_read_at END
+        WHERE id = ?1
+        """, nativeQuery = true)
+    int markRead(String roomId, String receiverId, LocalDateTime readAt);
 }
@@ -0,0 +1,64 @@
+package com.CNTTK18.chat_service.repository;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.CNTTK18.chat_service.writebehind.PendingMessage;
+
+// Ghi tin nhắn theo lô bằng JDBC batch cho write-behind (MessageWriteBehind)
+@Repository
+public class MessageBatchRepository {
+    // Trùng id (tin đã được ghi trước khi instance chết, nay được ghi bù từ WAL) thì bỏ qua
+    private static final String INSERT_MESSAGE = "INSERT INTO messages (id, room_id, sender_id, receiver_id, content, `timestamp`, is_read) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, false) ON DUPLICATE KEY UPDATE id = id";
+    // Tin ghi bù muộn không được làm lùi last_message của room
+    private static final String UPDATE_ROOM = "UPDATE chat_rooms SET last_message = ?, last_message_time = ? "
+                        + "WHERE id = ? AND (last_message_time IS NULL OR last_message_time <= ?)";
+
+    // Tin được đánh dấu đã đọc trước khi kịp ghi (còn trong hàng đợi/WAL): áp mốc đã đọc của receiver
+    private static final String APPLY_READ_MARKS = "UPDATE messages m JOIN chat_rooms r ON r.id = m.room_id SET m.is_read = true "
+                        + "WHERE m.is_read = false AND m.id IN (%s) "
+                        + "AND ((m.receiver_id = r.user1_id AND m.`timestamp` <= r.user1_read_at) "
+                        + "OR (m.receiver_id = r.user2_id AND m.`timestamp` <= r.user2_read_at))";
+
+    private JdbcTemplate jdbcTemplate;
+
+    public MessageBatchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // 1 transaction cho cả lô: insert tin nhắn, áp mốc đã đọc, rồi cập nhật mỗi room 1 lần với tin mới nhất của lô
+    @Transactional
+    public void insertBatch(List<PendingMessage> messages) {
+        jdbcTemplate.batchUpdate(INSERT_MESSAGE, messages, messages.size(), (ps, m) -> {
+            ps.setString(1, m.id());
+            ps.setString(2, m.roomId());
+            ps.setString(3, m.senderId());
+            ps.setString(4, m.receiverId());
+            ps.setString(5, m.content());
+            ps.setTimestamp(6, Timestamp.valueOf(m.timestamp()));
+        });
+
+        String placeholders = String.join(",", Collections.nCopies(messages.size(), "?"));
+        jdbcTemplate.update(String.format(APPLY_READ_MARKS, placeholders), messages.stream().map(PendingMessage::id).toArray());
+
+        Map<String, PendingMessage> latestByRoom = new LinkedHashMap<>();
+        for (PendingMessage m : messages) {
+            latestByRoom.merge(m.roomId(), m, (current, next) -> next.isAfter(current) ? next : current);
+        }
+        jdbcTemplate.batchUpdate(UPDATE_ROOM, latestByRoom.values(), latestByRoom.size(), (ps, m) -> {
+            Timestamp time = Timestamp.valueOf(m.timestamp());
+            ps.setString(1, m.content());
+            ps.setTimestamp(2, time);
+            ps.setString(3, m.roomId());
+            ps.setTimestamp(4, time);
+        });
+    }
+}
@@ -1,7 +1,8 @@
 package com.CNTTK18.chat_service.repository;
 
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import java.time.LocalDateTime;
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -13,8 +14,17 @@ import com.CNTTK18.chat_service.model.Message;
 @Repository
 public interface MessageRepository extends JpaRepository<Message, String> {
     
-    @Query("SELECT m FROM Message m WHERE m.room.id = :roomId ORDER BY m.timestamp DESC")
-    Page<Message> findByRoomIdWithPagination(@Param("roomId") String roomId, Pageable pageable);
+    // Keyset pagination: các tin cũ hơn (lastTimestamp, lastId), mới nhất trước. id (ULID) phân định các tin
+    // cùng timestamp. Dùng index (room_id, timestamp), InnoDB tự thêm id (khóa chính) vào cuối index
+    @Query(value = """
+        SELECT * FROM messages m
+        WHERE m.room_id = :roomId
+          AND (m.`timestamp` < :lastTimestamp OR (m.`timestamp` = :lastTimestamp AND m.id < :lastId))
+        ORDER BY m.`timestamp` DESC, m.id DESC
+        LIMIT :limit
+        """, nativeQuery = true)
+    List<Message> findByRoomIdBefore(@Param("roomId") String roomId, @Param("lastTimestamp") LocalDateTime lastTimestamp,
+                                     @Param("lastId") String lastId, @Param("limit") int limit);
     
     // Đếm total messages trong room
     @Query("SELECT COUNT(m) FROM Message m WHERE m.room.id = :roomId")
@@ -27,6 +37,10 @@ public interface MessageRepository extends JpaRepository<Message, String> {
     @Query("SELECT COUNT(m) FROM Message m WHERE m.receiverId = :receiverId AND m.read = false")
     Long countUnreadMessagesByReceiverId(String receiverId);
 
+    // [roomId, số tin chưa đọc] của receiverId, dùng để seed/đối soát bộ đếm trong Redis
+    @Query("SELECT m.room.id, COUNT(m) FROM Message m WHERE m.receiverId = :receiverId AND m.read = false GROUP BY m.room.id")
+    List<Object[]> countUnreadByRoomForReceiver(String receiverId);
+
     // Cập nhật tất cả tin nhắn trong room cho receiverId thành đã đọc
     @Modifying
     @Query("UPDATE Message m SET m.read = true WHERE m.room.id = :roomId " +
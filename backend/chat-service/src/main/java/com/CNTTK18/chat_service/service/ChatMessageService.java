@@ -1,26 +1,45 @@
 package com.CNTTK18.chat_service.service;
 
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import com.CNTTK18.chat_service.dto.request.RoomDTO;
+import com.CNTTK18.chat_service.dto.response.CursorResponse;
 import com.CNTTK18.chat_service.dto.response.MessageResponseDTO;
+import com.CNTTK18.chat_service.history.HistoryEntry;
+import com.CNTTK18.chat_service.history.RoomHistoryCache;
 import com.CNTTK18.chat_service.mapper.MessageMapper;
 import com.CNTTK18.chat_service.model.ChatRoom;
+import com.CNTTK18.chat_service.model.Message;
 import com.CNTTK18.chat_service.repository.ChatRoomRepository;
 import com.CNTTK18.chat_service.repository.MessageRepository;
+import com.CNTTK18.chat_service.unread.UnreadCounters;
+import com.CNTTK18.chat_service.util.CursorUtil;
+import com.CNTTK18.chat_service.util.TransactionUtil;
 
 import jakarta.transaction.Transactional;
 
 @Service
 public class ChatMessageService {
+    // Trang đầu: lớn hơn mọi timestamp trong bảng messages
+    private static final LocalDateTime FIRST_PAGE = LocalDateTime.of(9999, 12, 31, 0, 0);
+
     private MessageRepository messageRepository;
     private ChatRoomRepository chatRoomRepository;
+    private UnreadCounters unreadCounters;
+    private RoomHistoryCache historyCache;
 
-    public ChatMessageService(MessageRepository messageRepository, ChatRoomRepository chatRoomRepository) {
+    public ChatMessageService(MessageRepository messageRepository, ChatRoomRepository chatRoomRepository,
+                              UnreadCounters unreadCounters, RoomHistoryCache historyCache) {
         this.messageRepository = messageRepository;
         this.chatRoomRepository = chatRoomRepository;
+        this.unreadCounters = unreadCounters;
+        this.historyCache = historyCache;
     }
 
     // Tạo room nếu chưa có, trả về roomId
@@ -50,8 +69,42 @@ public class ChatMessageService {
         return roomId;
     }
 
-    public Page<MessageResponseDTO> getRecentMessageByPagination(String roomId, Pageable pageable) {
-        return messageRepository.findByRoomIdWithPagination(roomId, pageable).map(MessageMapper::toMessageResponseDTO);
+    // Tin mới nhất trước. Trang đầu (và các trang sau còn nằm trong list) đọc từ RoomHistoryCache bằng
+    // 1 lần gọi Redis, tin cũ hơn phân trang keyset (timestamp, id) trên MySQL
+    public CursorResponse<MessageResponseDTO> getRecentMessages(String roomId, String cursor, int size) {
+        int pageSize = (size <= 0 || size > 100) ? 20 : size;
+        CursorUtil.TimeCursor after = CursorUtil.decode(cursor);
+
+        RoomHistoryCache.Snapshot snapshot = historyCache.read(roomId);
+        if (snapshot != null && !snapshot.valid() && after == null) {
+            // Room mới hoạt động lại / list hết hạn: nạp các tin mới nhất từ MySQL vào list
+            snapshot = historyCache.fill(roomId, snapshot,
+                            messageRepository.findByRoomIdBefore(roomId, FIRST_PAGE, "", historyCache.maxEntries()));
+        }
+        if (snapshot != null && snapshot.valid()) {
+            List<HistoryEntry> older = after == null
+                    ? snapshot.entries()
+                    : snapshot.entries().stream().filter(e -> e.isBefore(after.timestamp(), after.id())).toList();
+            if (older.size() > pageSize || snapshot.complete()) {
+                boolean hasNext = older.size() > pageSize;
+                List<HistoryEntry> page = hasNext ? older.subList(0, pageSize) : older;
+                RoomHistoryCache.Snapshot cached = snapshot;
+                List<MessageResponseDTO> content = page.stream()
+                        .map(e -> MessageMapper.toMessageResponseDTO(e, cached.isRead(e)))
+                        .toList();
+                return new CursorResponse<>(content, pageSize, hasNext, nextCursor(hasNext, content));
+            }
+        }
+
+        // Lấy dư 1 dòng để biết còn trang sau hay không
+        List<Message> rows = messageRepository.findByRoomIdBefore(roomId,
+                                after != null ? after.timestamp() : FIRST_PAGE,
+                                after != null ? after.id() : "", pageSize + 1);
+        boolean hasNext = rows.size() > pageSize;
+        List<MessageResponseDTO> content = (hasNext ? rows.subList(0, pageSize) : rows).stream()
+                .map(MessageMapper::toMessageResponseDTO)
+                .toList();
+        return new CursorResponse<>(content, pageSize, hasNext, nextCursor(hasNext, content));
     }
 
     // Lấy tất cả room có userId tham gia
@@ -59,19 +112,35 @@ public class ChatMessageService {
         return chatRoomRepository.findAllByUserId(userId, pageable);
     }
 
-    // Đếm số tin nhắn chưa đọc trong box chat của userId
+    // Đếm số tin nhắn chưa đọc trong box chat của userId (bộ đếm trong Redis, xem UnreadCounters)
     public long countUnreadMessagesByReceiverId(String receiverId) {
-        return messageRepository.countUnreadMessagesByReceiverId(receiverId);
+        return unreadCounters.total(receiverId);
     }
 
     // Đếm số tin nhắn chưa đọc trong room cho receiverId
     public long countUnreadMessagesByRoomIdAndReceiverId(String roomId, String receiverId) {
-        return messageRepository.countUnreadMessagesByRoomIdAndReceiverId(roomId, receiverId);
+        return unreadCounters.countInRoom(receiverId, roomId);
     }
 
     // Đánh dấu tất cả tin nhắn trong room là đã đọc
     @Transactional
     public void markMessagesAsRead(String roomId, String receiverId) {
+        LocalDateTime readAt = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        // Mốc đã đọc áp dụng cả cho tin còn trong hàng đợi write-behind (MessageBatchRepository.insertBatch)
+        chatRoomRepository.markRead(roomId, receiverId, readAt);
         messageRepository.updateReadByRoomIdAndReceiverId(roomId, receiverId);
+        // Redis chỉ được cập nhật khi MySQL đã commit, rollback thì bộ đếm và mốc đã đọc vẫn khớp với MySQL
+        TransactionUtil.afterCommit(() -> {
+            unreadCounters.reset(receiverId, roomId);
+            historyCache.markRead(roomId, receiverId, readAt);
+        });
+    }
+
+    private static String nextCursor(boolean hasNext, List<MessageResponseDTO> content) {
+        if (!hasNext) {
+            return null;
+        }
+        MessageResponseDTO last = content.get(content.size() - 1);
+        return CursorUtil.encode(new CursorUtil.TimeCursor(last.getTimestamp().toLocalDateTime(), last.getId()));
     }
 }
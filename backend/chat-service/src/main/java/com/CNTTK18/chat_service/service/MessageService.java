@@ -1,56 +1,110 @@
 package com.CNTTK18.chat_service.service;
 
 import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.CNTTK18.Common.Exception.ResourceNotFoundException;
-import com.CNTTK18.Common.Util.RandomIdGenerator;
+import com.CNTTK18.Common.Util.UlidGenerator;
+import com.CNTTK18.chat_service.config.RedisMessageSubscriber;
 import com.CNTTK18.chat_service.dto.MessageDTO;
+import com.CNTTK18.chat_service.exception.ChatBusyException;
+import com.CNTTK18.chat_service.history.HistoryEntry;
+import com.CNTTK18.chat_service.history.RoomHistoryCache;
 import com.CNTTK18.chat_service.model.ChatRoom;
 import com.CNTTK18.chat_service.model.Message;
 import com.CNTTK18.chat_service.repository.ChatRoomRepository;
 import com.CNTTK18.chat_service.repository.MessageRepository;
+import com.CNTTK18.chat_service.unread.UnreadCounters;
+import com.CNTTK18.chat_service.writebehind.MessageWriteBehind;
+import com.CNTTK18.chat_service.writebehind.PendingMessage;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
 @Service
 public class MessageService {
-    private static final String REDIS_CHANNEL = "messages";
+    private static final int MAX_KNOWN_ROOMS = 100_000;
     
     private MessageRepository messageRepository;
     private ChatRoomRepository chatRoomRepository;
     
     private RedisTemplate<String, Object> redisTemplate;
+    private MessageWriteBehind writeBehind;
+    private UnreadCounters unreadCounters;
+    private RoomHistoryCache historyCache;
+    private TransactionTemplate transactionTemplate;
+    // false: ghi đồng bộ từng tin như trước (dùng để so sánh khi load test)
+    private boolean writeBehindEnabled;
+    // true: publish thêm lên channel chung "messages" cho các instance bản cũ trong lúc rolling deploy
+    private boolean legacyChannel;
+    // Room đã kiểm tra tồn tại, tránh 1 truy vấn DB cho mỗi tin nhắn
+    private final Set<String> knownRooms = ConcurrentHashMap.newKeySet();
     
     private final ObjectMapper objectMapper;
     
     public MessageService(MessageRepository messageRepository, RedisTemplate<String, Object> redisTemplate,
-                             ChatRoomRepository chatRoomRepository) {
+                             ChatRoomRepository chatRoomRepository, MessageWriteBehind writeBehind,
+                             UnreadCounters unreadCounters, RoomHistoryCache historyCache,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${chat.write-behind.enabled:true}") boolean writeBehindEnabled,
+                             @Value("${chat.routing.legacy-channel:false}") boolean legacyChannel) {
         this.objectMapper = new ObjectMapper();
         this.objectMapper.registerModule(new JavaTimeModule());
+        // JSON được chuyển nguyên byte tới client nên timestamp phải ở dạng ISO như converter STOMP của Spring
+        this.objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
         this.messageRepository = messageRepository;
         this.redisTemplate = redisTemplate;
         this.chatRoomRepository = chatRoomRepository;
+        this.writeBehind = writeBehind;
+        this.unreadCounters = unreadCounters;
+        this.historyCache = historyCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.writeBehindEnabled = writeBehindEnabled;
+        this.legacyChannel = legacyChannel;
     }
     
-    @Transactional
     public void processMessage(MessageDTO message) {
-        // Sử dụng async để không block luồng chính
-        saveMessageSync(message);
-        
-        // Step 2: Publish to Redis
-        publishToRedis(message);
+        String id = UlidGenerator.generate();
+        message.setId(id);
+        if (!writeBehindEnabled) {
+            transactionTemplate.executeWithoutResult(status -> saveMessageSync(id, message));
+            afterSend(id, message);
+            publishToRedis(message);
+            return;
+        }
+
+        requireRoom(message.getRoomId());
+        PendingMessage pending = PendingMessage.from(id, message);
+        try {
+            // Tin được gửi đi ngay, ghi vào MySQL theo lô sau (MessageWriteBehind)
+            boolean accepted = writeBehind.submit(pending, () -> {
+                afterSend(id, message);
+                publishToRedis(message);
+            });
+            if (!accepted) {
+                throw new ChatBusyException("Chat server is busy, please resend the message");
+            }
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ChatBusyException("Chat server is shutting down");
+        }
     }
     
-    public void saveMessageSync(MessageDTO message) {
+    public void saveMessageSync(String id, MessageDTO message) {
         ChatRoom chatroom = chatRoomRepository.findById(message.getRoomId()).orElseThrow(() -> 
             new ResourceNotFoundException("Chat room not found: " + message.getRoomId()));
         // Lưu tin nhắn vào database với read = false
         Message msg = Message.builder()
-                .id(RandomIdGenerator.generate(254))
+                .id(id)
                 .room(chatroom)
                 .senderId(message.getSenderId())
                 .receiverId(message.getReceiverId())
@@ -65,12 +119,42 @@ public class MessageService {
         chatRoomRepository.save(chatroom);
         messageRepository.save(msg);
     }
+
+    // Cập nhật số tin chưa đọc và danh sách tin gần nhất của room
+    private void afterSend(String id, MessageDTO message) {
+        unreadCounters.increment(message.getReceiverId(), message.getRoomId());
+        historyCache.push(message.getRoomId(), new HistoryEntry(id, message.getSenderId(), message.getReceiverId(),
+                                                                message.getContent(), message.getTimestamp()));
+    }
+
+    private void requireRoom(String roomId) {
+        if (roomId == null) {
+            throw new ResourceNotFoundException("Chat room not found: null");
+        }
+        if (knownRooms.contains(roomId)) {
+            return;
+        }
+        if (!chatRoomRepository.existsById(roomId)) {
+            throw new ResourceNotFoundException("Chat room not found: " + roomId);
+        }
+        if (knownRooms.size() >= MAX_KNOWN_ROOMS) {
+            knownRooms.clear();
+        }
+        knownRooms.add(roomId);
+    }
     
     // Publish to Redis
     private void publishToRedis(MessageDTO message) {
         try {
             String messageJson = objectMapper.writeValueAsString(message);
-            redisTemplate.convertAndSend(REDIS_CHANNEL, messageJson);   
+            // Channel riêng của room, chỉ các instance có client trong room nhận
+            redisTemplate.convertAndSend(RedisMessageSubscriber.channel(message.getRoomId()), messageJson);
+            if (legacyChannel) {
+                // Bản sao cho instance bản cũ: MessageDTO của bản cũ không có id (ObjectMapper mặc định báo lỗi field lạ)
+                ObjectNode legacy = objectMapper.valueToTree(message);
+                legacy.remove("id");
+                redisTemplate.convertAndSend(RedisMessageSubscriber.LEGACY_CHANNEL, objectMapper.writeValueAsString(legacy));
+            }
         } catch (Exception e) {
             throw new RuntimeException("Error publishing message to Redis", e);
         }
@@ -0,0 +1,186 @@
+package com.CNTTK18.chat_service.unread;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.CNTTK18.chat_service.repository.MessageRepository;
+
+// Số tin chưa đọc lưu trong Redis, mỗi receiver 1 hash chat:unread:{receiverId} gồm field roomId -> số tin
+// và field _total (tổng). Đọc badge là 1 lệnh HMGET thay vì COUNT trên bảng messages.
+// - Gửi tin: HINCRBY room và _total (chỉ khi hash đã có, chưa có thì lần đọc sau seed từ MySQL)
+// - Đánh dấu đã đọc: xóa field room, trừ _total
+// - Hash chưa có (mới, hết TTL, Redis bị xóa): đếm từ MySQL theo room rồi ghi vào Redis
+// - Đối soát: receiver vừa thay đổi được ghi vào zset chat:unread:dirty (score = thời điểm), định kỳ receiver
+//   không đổi trong reconcile-delay (để write-behind ghi xong) được đếm lại từ MySQL và ghi đè,
+//   bỏ qua nếu đã bị thay đổi tiếp trong lúc đếm
+// Redis lỗi thì đọc thẳng MySQL, gửi/đọc tin không bị ảnh hưởng
+@Component
+public class UnreadCounters {
+    private static final Logger log = LoggerFactory.getLogger(UnreadCounters.class);
+    private static final String KEY_PREFIX = "chat:unread:";
+    private static final String DIRTY_KEY = "chat:unread:dirty";
+    private static final String TOTAL = "_total";
+
+    // KEYS: hash, dirty; ARGV: room, receiver, now, ttl
+    private static final DefaultRedisScript<Long> INCREMENT = new DefaultRedisScript<>(
+                        "if redis.call('EXISTS', KEYS[1]) == 1 then "
+                        + "redis.call('HINCRBY', KEYS[1], ARGV[1], 1) "
+                        + "redis.call('HINCRBY', KEYS[1], '" + TOTAL + "', 1) "
+                        + "redis.call('EXPIRE', KEYS[1], ARGV[4]) end "
+                        + "redis.call('ZADD', KEYS[2], ARGV[3], ARGV[2]) return 1", Long.class);
+    // KEYS: hash, dirty; ARGV: room, receiver, now
+    private static final DefaultRedisScript<Long> RESET = new DefaultRedisScript<>(
+                        "if redis.call('EXISTS', KEYS[1]) == 1 then "
+                        + "local v = tonumber(redis.call('HGET', KEYS[1], ARGV[1])) or 0 "
+                        + "if v > 0 then redis.call('HDEL', KEYS[1], ARGV[1]) "
+                        + "redis.call('HINCRBY', KEYS[1], '" + TOTAL + "', -v) end end "
+                        + "redis.call('ZADD', KEYS[2], ARGV[3], ARGV[2]) return 1", Long.class);
+    // KEYS: hash; ARGV: ttl, field, value, ... Không ghi đè hash đã có (có thể đã được tăng sau khi đếm)
+    private static final DefaultRedisScript<Long> SEED = new DefaultRedisScript<>(
+                        "if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end "
+                        + "redis.call('HSET', KEYS[1], unpack(ARGV, 2)) "
+                        + "redis.call('EXPIRE', KEYS[1], ARGV[1]) return 1", Long.class);
+    // KEYS: hash, dirty; ARGV: receiver, score lúc chọn, ttl, field, value, ...
+    private static final DefaultRedisScript<Long> RECONCILE = new DefaultRedisScript<>(
+                        "local s = redis.call('ZSCORE', KEYS[2], ARGV[1]) "
+                        + "if s and tonumber(s) > tonumber(ARGV[2]) then return 0 end "
+                        + "redis.call('DEL', KEYS[1]) "
+                        + "redis.call('HSET', KEYS[1], unpack(ARGV, 4)) "
+                        + "redis.call('EXPIRE', KEYS[1], ARGV[3]) "
+                        + "redis.call('ZREM', KEYS[2], ARGV[1]) return 1", Long.class);
+
+    private StringRedisTemplate redisTemplate;
+    private MessageRepository messageRepository;
+    private Duration ttl;
+    private Duration reconcileDelay;
+    private int reconcileBatchSize;
+
+    public UnreadCounters(StringRedisTemplate redisTemplate, MessageRepository messageRepository,
+                          @Value("${chat.unread.ttl:7d}") Duration ttl,
+                          @Value("${chat.unread.reconcile-delay:2m}") Duration reconcileDelay,
+                          @Value("${chat.unread.reconcile-batch-size:200}") int reconcileBatchSize) {
+        this.redisTemplate = redisTemplate;
+        this.messageRepository = messageRepository;
+        this.ttl = ttl;
+        this.reconcileDelay = reconcileDelay;
+        this.reconcileBatchSize = reconcileBatchSize;
+    }
+
+    public void increment(String receiverId, String roomId) {
+        try {
+            redisTemplate.execute(INCREMENT, List.of(KEY_PREFIX + receiverId, DIRTY_KEY),
+                                    roomId, receiverId, now(), String.valueOf(ttl.toSeconds()));
+        }
+        catch (RuntimeException ex) {
+            // Lệch số sẽ được đối soát khi hash hết TTL
+            log.warn("Cannot increment unread counter of {}: {}", receiverId, ex.getMessage());
+        }
+    }
+
+    public void reset(String receiverId, String roomId) {
+        try {
+            redisTemplate.execute(RESET, List.of(KEY_PREFIX + receiverId, DIRTY_KEY), roomId, receiverId, now());
+        }
+        catch (RuntimeException ex) {
+            log.warn("Cannot reset unread counter of {}: {}", receiverId, ex.getMessage());
+        }
+    }
+
+    public long total(String receiverId) {
+        return read(receiverId, TOTAL);
+    }
+
+    public long countInRoom(String receiverId, String roomId) {
+        return read(receiverId, roomId);
+    }
+
+    @Scheduled(fixedDelayString = "${chat.unread.reconcile-interval:1m}")
+    public void reconcile() {
+        try {
+            double maxScore = System.currentTimeMillis() - reconcileDelay.toMillis();
+            Set<TypedTuple<String>> due = redisTemplate.opsForZSet().rangeByScoreWithScores(DIRTY_KEY, 0, maxScore, 0, reconcileBatchSize);
+            if (due == null) {
+                return;
+            }
+            int fixed = 0;
+            for (TypedTuple<String> receiver : due) {
+                List<String> args = new ArrayList<>();
+                args.add(receiver.getValue());
+                args.add(String.valueOf(receiver.getScore().longValue()));
+                args.add(String.valueOf(ttl.toSeconds()));
+                args.addAll(fields(countFromDb(receiver.getValue())));
+                Long applied = redisTemplate.execute(RECONCILE, List.of(KEY_PREFIX + receiver.getValue(), DIRTY_KEY),
+                                                        args.toArray());
+                if (applied != null && applied == 1) {
+                    fixed++;
+                }
+            }
+            if (fixed > 0) {
+                log.debug("Reconciled unread counters of {} receivers", fixed);
+            }
+        }
+        catch (RuntimeException ex) {
+            log.warn("Unread counter reconciliation failed: {}", ex.getMessage());
+        }
+    }
+
+    private long read(String receiverId, String field) {
+        try {
+            List<Object> values = redisTemplate.opsForHash().multiGet(KEY_PREFIX + receiverId, List.of(field, TOTAL));
+            if (values.get(1) == null) {
+                Map<String, Long> counts = countFromDb(receiverId);
+                List<String> args = new ArrayList<>();
+                args.add(String.valueOf(ttl.toSeconds()));
+                args.addAll(fields(counts));
+                redisTemplate.execute(SEED, List.of(KEY_PREFIX + receiverId), args.toArray());
+                return counts.getOrDefault(field, 0L);
+            }
+            return values.get(0) == null ? 0 : Long.parseLong((String) values.get(0));
+        }
+        catch (RuntimeException ex) {
+            log.warn("Cannot read unread counter of {} from Redis, counting in DB: {}", receiverId, ex.getMessage());
+            return TOTAL.equals(field)
+                    ? messageRepository.countUnreadMessagesByReceiverId(receiverId)
+                    : messageRepository.countUnreadMessagesByRoomIdAndReceiverId(field, receiverId);
+        }
+    }
+
+    // roomId -> số tin chưa đọc, kèm _total
+    private Map<String, Long> countFromDb(String receiverId) {
+        Map<String, Long> counts = new HashMap<>();
+        long total = 0;
+        for (Object[] row : messageRepository.countUnreadByRoomForReceiver(receiverId)) {
+            long count = ((Number) row[1]).longValue();
+            counts.put((String) row[0], count);
+            total += count;
+        }
+        counts.put(TOTAL, total);
+        return counts;
+    }
+
+    private static List<String> fields(Map<String, Long> counts) {
+        List<String> args = new ArrayList<>(counts.size() * 2);
+        counts.forEach((field, count) -> {
+            args.add(field);
+            args.add(String.valueOf(count));
+        });
+        return args;
+    }
+
+    private static String now() {
+        return String.valueOf(System.currentTimeMillis());
+    }
+}
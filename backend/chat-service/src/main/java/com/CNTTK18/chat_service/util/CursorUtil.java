@@ -0,0 +1,40 @@
+package com.CNTTK18.chat_service.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+import com.CNTTK18.chat_service.exception.InvalidRequestException;
+
+// Cursor cho keyset pagination lịch sử tin nhắn, client chỉ thấy chuỗi base64 (opaque)
+// Format trước khi encode: timestamp|id của tin cuối cùng trong trang trước
+public class CursorUtil {
+    public record TimeCursor(LocalDateTime timestamp, String id) {
+    }
+
+    private static final String SEPARATOR = "|";
+
+    public static String encode(TimeCursor cursor) {
+        String raw = cursor.timestamp().toString() + SEPARATOR + cursor.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // cursor null/blank => trang đầu tiên
+    public static TimeCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 2);
+            if (parts.length != 2 || parts[1].isEmpty()) {
+                throw new InvalidRequestException("Invalid cursor");
+            }
+            return new TimeCursor(LocalDateTime.parse(parts[0]), parts[1]);
+        }
+        catch (IllegalArgumentException | DateTimeParseException ex) {
+            throw new InvalidRequestException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.CNTTK18.chat_service.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class TransactionUtil {
+    // Chạy action sau khi transaction hiện tại commit thành công (hoặc chạy ngay nếu không có transaction),
+    // dùng cho các ghi Redis để không giữ lại trạng thái của transaction đã bị rollback
+    public static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+            return;
+        }
+        action.run();
+    }
+}
@@ -0,0 +1,84 @@
+package com.CNTTK18.chat_service.writebehind;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+// Write-ahead log của tin nhắn chưa ghi vào MySQL, là 1 Redis Stream dùng chung cho mọi instance.
+// Tin được append trước khi gửi đi và chỉ bị xóa sau khi đã commit vào MySQL, nên instance chết giữa chừng
+// thì tin vẫn còn ở đây để instance khác (hoặc chính nó sau khi khởi động lại) ghi bù.
+// Độ bền phụ thuộc cấu hình persistence của Redis (appendonly yes)
+@Component
+public class MessageWal {
+    private static final Logger log = LoggerFactory.getLogger(MessageWal.class);
+    private static final String STREAM_KEY = "chat:messages:wal";
+    private static final String FIELD = "m";
+
+    private StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    public MessageWal(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.registerModule(new JavaTimeModule());
+    }
+
+    // Trả về message kèm walId
+    public PendingMessage append(PendingMessage message) {
+        try {
+            String json = objectMapper.writeValueAsString(message);
+            RecordId id = redisTemplate.opsForStream().add(StreamRecords.newRecord().in(STREAM_KEY).ofMap(Map.of(FIELD, json)));
+            if (id == null) {
+                throw new IllegalStateException("Redis did not return a stream id");
+            }
+            return message.withWalId(id.getValue());
+        }
+        catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Cannot serialize message " + message.id(), ex);
+        }
+    }
+
+    public void delete(List<PendingMessage> messages) {
+        String[] ids = messages.stream().map(PendingMessage::walId).filter(id -> id != null).toArray(String[]::new);
+        if (ids.length > 0) {
+            redisTemplate.opsForStream().delete(STREAM_KEY, ids);
+        }
+    }
+
+    // Các bản ghi được append trước thời điểm olderThanMillis (epoch ms), cũ nhất trước
+    public List<PendingMessage> readOlderThan(long olderThanMillis, int limit) {
+        List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream()
+                        .range(STREAM_KEY, Range.closed("0-0", olderThanMillis + "-0"), Limit.limit().count(limit));
+        List<PendingMessage> messages = new ArrayList<>();
+        if (records == null) {
+            return messages;
+        }
+        for (MapRecord<String, Object, Object> record : records) {
+            Object json = record.getValue().get(FIELD);
+            try {
+                messages.add(objectMapper.readValue(String.valueOf(json), PendingMessage.class)
+                                        .withWalId(record.getId().getValue()));
+            }
+            catch (JsonProcessingException ex) {
+                // Bản ghi hỏng không thể ghi lại được, bỏ đi để không chặn các bản ghi sau
+                log.error("Dropping unreadable WAL record {}: {}", record.getId(), ex.getMessage());
+                redisTemplate.opsForStream().delete(STREAM_KEY, record.getId());
+            }
+        }
+        return messages;
+    }
+}
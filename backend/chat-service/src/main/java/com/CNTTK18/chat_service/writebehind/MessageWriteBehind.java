@@ -0,0 +1,223 @@
+package com.CNTTK18.chat_service.writebehind;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import com.CNTTK18.chat_service.repository.MessageBatchRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// Ghi tin nhắn vào MySQL sau khi đã gửi đi (write-behind):
+// 1. submit: giữ 1 chỗ trong hàng đợi (đầy quá enqueue-timeout thì từ chối, tin chưa được gửi cho ai),
+//    append vào WAL (MessageWal), publish lên Redis rồi đưa vào hàng đợi có giới hạn
+// 2. 1 luồng flusher lấy theo lô (tối đa batch-size) và ghi bằng JDBC batch trong 1 transaction,
+//    last_message của mỗi room chỉ được cập nhật 1 lần mỗi lô, xong mới xóa khỏi WAL và trả chỗ
+// 3. DB lỗi thì flusher thử lại với backoff, hàng đợi đầy dần và submit bắt đầu từ chối (backpressure)
+// 4. Định kỳ flusher ghi bù các bản ghi WAL cũ hơn recovery-min-age (instance chết, tắt máy khi còn tin)
+// Thứ tự: tin trong room được sắp theo (timestamp, id) gán lúc nhận, ghi bù muộn không làm đổi thứ tự đó
+@Component
+public class MessageWriteBehind {
+    private static final Logger log = LoggerFactory.getLogger(MessageWriteBehind.class);
+    private static final long MAX_BACKOFF_MS = 5000;
+
+    private MessageWal wal;
+    private MessageBatchRepository batchRepository;
+    private final BlockingQueue<PendingMessage> queue;
+    // Số chỗ còn trống, tính cả tin đang được flusher ghi
+    private final Semaphore capacity;
+    private int batchSize;
+    private Duration flushInterval;
+    private Duration enqueueTimeout;
+    private Duration recoveryMinAge;
+    private Duration recoveryInterval;
+
+    private Counter persisted;
+    private Counter rejected;
+    private Counter recovered;
+    private Timer flushTimer;
+
+    private Thread flusher;
+    private volatile boolean running = true;
+    private long nextRecoveryAt;
+
+    public MessageWriteBehind(MessageWal wal, MessageBatchRepository batchRepository, MeterRegistry meterRegistry,
+                              @Value("${chat.write-behind.capacity:10000}") int capacity,
+                              @Value("${chat.write-behind.batch-size:500}") int batchSize,
+                              @Value("${chat.write-behind.flush-interval:100ms}") Duration flushInterval,
+                              @Value("${chat.write-behind.enqueue-timeout:200ms}") Duration enqueueTimeout,
+                              @Value("${chat.write-behind.recovery-min-age:60s}") Duration recoveryMinAge,
+                              @Value("${chat.write-behind.recovery-interval:60s}") Duration recoveryInterval) {
+        if (capacity <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("chat.write-behind.capacity and batch-size must be positive");
+        }
+        this.wal = wal;
+        this.batchRepository = batchRepository;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.capacity = new Semaphore(capacity);
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.enqueueTimeout = enqueueTimeout;
+        this.recoveryMinAge = recoveryMinAge;
+        this.recoveryInterval = recoveryInterval;
+
+        Gauge.builder("chat.writebehind.queue.size", queue, BlockingQueue::size).register(meterRegistry);
+        this.persisted = Counter.builder("chat.writebehind.persisted").register(meterRegistry);
+        this.rejected = Counter.builder("chat.writebehind.rejected").register(meterRegistry);
+        this.recovered = Counter.builder("chat.writebehind.recovered").register(meterRegistry);
+        this.flushTimer = Timer.builder("chat.writebehind.flush").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher = new Thread(this::run, "chat-write-behind");
+        flusher.start();
+    }
+
+    // Dừng nhận tin, ghi nốt hàng đợi. Phần chưa ghi kịp vẫn nằm trong WAL
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        flusher.join(10_000);
+        if (!queue.isEmpty()) {
+            log.warn("{} messages left in WAL on shutdown, they will be recovered later", queue.size());
+        }
+    }
+
+    // deliver chạy sau khi tin đã vào WAL. false: hàng đợi đầy, tin chưa được ghi hay gửi đi
+    public boolean submit(PendingMessage message, Runnable deliver) throws InterruptedException {
+        if (!running || !capacity.tryAcquire(enqueueTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            rejected.increment();
+            return false;
+        }
+        try {
+            PendingMessage logged = wal.append(message);
+            // deliver lỗi thì tin vẫn còn trong WAL và sẽ được ghi bù, chỉ là không được gửi realtime
+            deliver.run();
+            queue.add(logged);
+            return true;
+        }
+        catch (RuntimeException ex) {
+            capacity.release();
+            throw ex;
+        }
+    }
+
+    private void run() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingMessage first = queue.poll(flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    if (persist(batch)) {
+                        capacity.release(batch.size());
+                    }
+                    batch.clear();
+                }
+                if (running) {
+                    recoverIfDue();
+                }
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            catch (RuntimeException ex) {
+                // Chốt chặn cuối: luồng flusher không được chết khi còn chạy. Lô vẫn nằm trong WAL nên trả chỗ
+                // và để recovery ghi bù
+                log.error("Write-behind flush failed unexpectedly, {} messages left to WAL recovery", batch.size(), ex);
+                capacity.release(batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    // Thử lại đến khi ghi được, false nếu service đang tắt (lô vẫn nằm trong WAL)
+    private boolean persist(List<PendingMessage> batch) throws InterruptedException {
+        long backoff = flushInterval.toMillis();
+        while (true) {
+            try {
+                flushTimer.record(() -> writeBatch(batch));
+                persisted.increment(batch.size());
+                break;
+            }
+            catch (RuntimeException ex) {
+                // Gồm cả lỗi ngoài DataAccessException: CannotCreateTransactionException khi MySQL không kết nối được,
+                // TransactionSystemException khi commit lỗi
+                if (!running) {
+                    log.warn("Cannot persist {} messages during shutdown, leaving them in WAL: {}", batch.size(), ex.getMessage());
+                    return false;
+                }
+                log.warn("Persisting {} messages failed, retrying in {}ms: {}", batch.size(), backoff, ex.getMessage());
+                Thread.sleep(backoff);
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+            }
+        }
+        try {
+            wal.delete(batch);
+        }
+        catch (RuntimeException ex) {
+            // Đã commit vào MySQL, bản ghi WAL còn sót chỉ bị ghi bù lại (trùng id thì bỏ qua)
+            log.warn("Cannot delete {} WAL records: {}", batch.size(), ex.getMessage());
+        }
+        return true;
+    }
+
+    private void writeBatch(List<PendingMessage> batch) {
+        try {
+            batchRepository.insertBatch(batch);
+        }
+        catch (DataIntegrityViolationException ex) {
+            // 1 tin lỗi (vd. room đã bị xóa) không được chặn cả lô: ghi từng tin, bỏ tin lỗi
+            for (PendingMessage message : batch) {
+                try {
+                    batchRepository.insertBatch(List.of(message));
+                }
+                catch (DataIntegrityViolationException rowEx) {
+                    log.error("Dropping message {} of room {}: {}", message.id(), message.roomId(), rowEx.getMessage());
+                }
+            }
+        }
+    }
+
+    private void recoverIfDue() throws InterruptedException {
+        long now = System.currentTimeMillis();
+        if (now < nextRecoveryAt) {
+            return;
+        }
+        nextRecoveryAt = now + recoveryInterval.toMillis();
+        try {
+            List<PendingMessage> stale;
+            do {
+                stale = wal.readOlderThan(now - recoveryMinAge.toMillis(), batchSize);
+                if (!stale.isEmpty()) {
+                    if (!persist(stale)) {
+                        return;
+                    }
+                    recovered.increment(stale.size());
+                    log.info("Recovered {} messages from WAL", stale.size());
+                }
+            } while (stale.size() == batchSize && running);
+        }
+        catch (RuntimeException ex) {
+            log.warn("WAL recovery failed: {}", ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.CNTTK18.chat_service.writebehind;
+
+import java.time.LocalDateTime;
+
+import com.CNTTK18.chat_service.dto.MessageDTO;
+
+// Tin nhắn đã gửi đi nhưng chưa ghi vào MySQL. walId là id của bản ghi trong Redis Stream (WAL),
+// null khi chưa append
+public record PendingMessage(String id, String roomId, String senderId, String receiverId, String content,
+                             LocalDateTime timestamp, String walId) {
+    public static PendingMessage from(String id, MessageDTO message) {
+        return new PendingMessage(id, message.getRoomId(), message.getSenderId(), message.getReceiverId(),
+                                    message.getContent(), message.getTimestamp(), null);
+    }
+
+    public PendingMessage withWalId(String walId) {
+        return new PendingMessage(id, roomId, senderId, receiverId, content, timestamp, walId);
+    }
+
+    // Thứ tự của tin trong room: (timestamp, id)
+    public boolean isAfter(PendingMessage other) {
+        int cmp = timestamp.compareTo(other.timestamp);
+        return cmp > 0 || (cmp == 0 && id.compareTo(other.id) > 0);
+    }
+}
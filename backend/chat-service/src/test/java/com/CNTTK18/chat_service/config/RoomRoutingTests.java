@@ -0,0 +1,235 @@
+package com.CNTTK18.chat_service.config;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import redis.embedded.RedisServer;
+
+// Nhiều instance chat-service (mỗi instance 1 container + RedisMessageSubscriber) dùng chung 1 Redis
+// chạy trong tiến trình, kiểm tra mỗi instance chỉ nhận tin của các room có client ở chính nó
+class RoomRoutingTests {
+    private RedisServer redis;
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate publisher;
+    private final List<Instance> instances = new ArrayList<>();
+
+    // 1 instance: các tin được gửi tới websocket client được giữ trong queue
+    private static class Instance {
+        final BlockingQueue<Message<?>> delivered = new LinkedBlockingQueue<>();
+        final RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        final RedisMessageSubscriber subscriber;
+
+        Instance(LettuceConnectionFactory connectionFactory, boolean legacyChannel) {
+            container.setConnectionFactory(connectionFactory);
+            container.afterPropertiesSet();
+            container.start();
+            SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> delivered.add(message));
+            subscriber = new RedisMessageSubscriber(template, container, new SimpleMeterRegistry(), legacyChannel);
+        }
+
+        String nextPayload() throws InterruptedException {
+            Message<?> message = delivered.poll(2, TimeUnit.SECONDS);
+            return message == null ? null : new String((byte[]) message.getPayload(), StandardCharsets.UTF_8);
+        }
+
+        String nextDestination() throws InterruptedException {
+            Message<?> message = delivered.poll(2, TimeUnit.SECONDS);
+            return message == null ? null : SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redis = new RedisServer(port);
+        redis.start();
+        connectionFactory = new LettuceConnectionFactory("localhost", port);
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        publisher = new StringRedisTemplate(connectionFactory);
+        instances.add(new Instance(connectionFactory, false));
+        instances.add(new Instance(connectionFactory, false));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (Instance instance : instances) {
+            instance.container.destroy();
+        }
+        connectionFactory.destroy();
+        redis.stop();
+    }
+
+    @Test
+    void deliversOnlyToInstancesWithLocalSubscribers() throws InterruptedException {
+        Instance a = instances.get(0);
+        Instance b = instances.get(1);
+        a.subscriber.subscribe("s1", "sub-0", "/topic/room/r1");
+        b.subscriber.subscribe("s2", "sub-0", "/topic/room/r2");
+        awaitSubscribers("r1", 1);
+        awaitSubscribers("r2", 1);
+
+        publisher.convertAndSend(RedisMessageSubscriber.channel("r1"), "{\"roomId\":\"r1\"}");
+        publisher.convertAndSend(RedisMessageSubscriber.channel("r2"), "{\"roomId\":\"r2\"}");
+
+        Assertions.assertEquals("{\"roomId\":\"r1\"}", a.nextPayload());
+        Assertions.assertEquals("{\"roomId\":\"r2\"}", b.nextPayload());
+        Assertions.assertNull(a.delivered.poll(300, TimeUnit.MILLISECONDS));
+        Assertions.assertNull(b.delivered.poll(300, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void sharedRoomReachesEveryInstanceOnTheRoomTopic() throws InterruptedException {
+        Instance a = instances.get(0);
+        Instance b = instances.get(1);
+        a.subscriber.subscribe("s1", "sub-0", "/topic/room/r1");
+        b.subscriber.subscribe("s2", "sub-0", "/topic/room/r1");
+        awaitSubscribers("r1", 2);
+
+        Assertions.assertEquals(2L, publisher.convertAndSend(RedisMessageSubscriber.channel("r1"), "{}"));
+        Assertions.assertEquals("/topic/room/r1", a.nextDestination());
+        Assertions.assertEquals("/topic/room/r1", b.nextDestination());
+    }
+
+    @Test
+    void releasesChannelWhenLastLocalSubscriptionLeaves() throws InterruptedException {
+        Instance a = instances.get(0);
+        a.subscriber.subscribe("s1", "sub-0", "/topic/room/r1");
+        a.subscriber.subscribe("s2", "sub-0", "/topic/room/r1");
+        // Destination khác /topic/room/ không làm instance subscribe channel nào
+        a.subscriber.subscribe("s1", "sub-1", "/topic/other");
+        awaitSubscribers("r1", 1);
+
+        a.subscriber.unsubscribe("s1", "sub-0");
+        Assertions.assertTrue(a.subscriber.hasLocalSubscribers("r1"));
+        a.subscriber.disconnect("s2");
+        Assertions.assertFalse(a.subscriber.hasLocalSubscribers("r1"));
+        awaitSubscribers("r1", 0);
+
+        Assertions.assertEquals(0L, publisher.convertAndSend(RedisMessageSubscriber.channel("r1"), "{}"));
+        Assertions.assertNull(a.delivered.poll(300, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void concurrentSubscribeAndReleaseLeaveChannelMatchingLocalSubscribers() throws Exception {
+        Instance a = instances.get(0);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                String sessionId = "s" + t;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        a.subscriber.subscribe(sessionId, "sub-" + i, "/topic/room/r1");
+                        a.subscriber.unsubscribe(sessionId, "sub-" + i);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        Assertions.assertFalse(a.subscriber.hasLocalSubscribers("r1"));
+        awaitSubscribers("r1", 0);
+
+        a.subscriber.subscribe("s1", "sub-0", "/topic/room/r1");
+        awaitSubscribers("r1", 1);
+    }
+
+    @Test
+    void legacyPublisherReachesInstanceWithLocalSubscriber() throws InterruptedException {
+        Instance legacy = new Instance(connectionFactory, true);
+        instances.add(legacy);
+        awaitChannelSubscribers(RedisMessageSubscriber.LEGACY_CHANNEL, 1);
+        legacy.subscriber.subscribe("s1", "sub-0", "/topic/room/r1");
+        awaitSubscribers("r1", 1);
+
+        // Instance bản cũ chỉ publish lên "messages", timestamp dạng mảng
+        publisher.convertAndSend(RedisMessageSubscriber.LEGACY_CHANNEL,
+                    "{\"roomId\":\"r1\",\"senderId\":\"a\",\"receiverId\":\"b\",\"content\":\"hi\",\"timestamp\":[2026,1,2,3,4,5]}");
+        publisher.convertAndSend(RedisMessageSubscriber.LEGACY_CHANNEL,
+                    "{\"roomId\":\"r2\",\"senderId\":\"a\",\"receiverId\":\"b\",\"content\":\"hi\",\"timestamp\":[2026,1,2,3,4,5]}");
+
+        Assertions.assertEquals("/topic/room/r1", legacy.nextDestination());
+        Assertions.assertNull(legacy.delivered.poll(300, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void legacyCopyFromNewInstanceIsDeliveredOnlyThroughRoomChannel() throws InterruptedException {
+        Instance legacy = new Instance(connectionFactory, true);
+        instances.add(legacy);
+        awaitChannelSubscribers(RedisMessageSubscriber.LEGACY_CHANNEL, 1);
+        legacy.subscriber.subscribe("s1", "sub-0", "/topic/room/r1");
+        awaitSubscribers("r1", 1);
+
+        // Instance bản mới publish tin (có id) lên channel room và bản sao không có id lên channel cũ
+        String copy = "{\"roomId\":\"r1\",\"senderId\":\"a\",\"receiverId\":\"b\",\"content\":\"hi\","
+                        + "\"timestamp\":\"2026-01-02T03:04:05.006\"}";
+        publisher.convertAndSend(RedisMessageSubscriber.channel("r1"), "{\"id\":\"m1\"," + copy.substring(1));
+        publisher.convertAndSend(RedisMessageSubscriber.LEGACY_CHANNEL, copy);
+
+        Assertions.assertTrue(legacy.nextPayload().contains("\"id\":\"m1\""));
+        Assertions.assertNull(legacy.delivered.poll(300, TimeUnit.MILLISECONDS));
+    }
+
+    // 2 tin khác nhau nhưng trùng người gửi, nội dung và thời điểm (ms) đều phải tới
+    @Test
+    void identicalMessagesWithDifferentIdsAreBothDelivered() throws InterruptedException {
+        Instance legacy = new Instance(connectionFactory, true);
+        instances.add(legacy);
+        legacy.subscriber.subscribe("s1", "sub-0", "/topic/room/r1");
+        awaitSubscribers("r1", 1);
+
+        String body = "\"roomId\":\"r1\",\"senderId\":\"a\",\"receiverId\":\"b\",\"content\":\"ok\","
+                        + "\"timestamp\":\"2026-01-02T03:04:05.006\"}";
+        publisher.convertAndSend(RedisMessageSubscriber.channel("r1"), "{\"id\":\"m1\"," + body);
+        publisher.convertAndSend(RedisMessageSubscriber.channel("r1"), "{\"id\":\"m2\"," + body);
+
+        Assertions.assertTrue(legacy.nextPayload().contains("\"id\":\"m1\""));
+        Assertions.assertTrue(legacy.nextPayload().contains("\"id\":\"m2\""));
+    }
+
+    private void awaitSubscribers(String roomId, long expected) throws InterruptedException {
+        awaitChannelSubscribers(RedisMessageSubscriber.channel(roomId), expected);
+    }
+
+    // SUBSCRIBE/UNSUBSCRIBE tới Redis chạy bất đồng bộ, chờ đến khi số subscriber của channel đúng
+    private void awaitChannelSubscribers(String channel, long expected) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            List<?> reply = (List<?>) publisher.execute(connection -> connection.execute("PUBSUB",
+                                    "NUMSUB".getBytes(StandardCharsets.UTF_8), channel.getBytes(StandardCharsets.UTF_8)), true);
+            if (reply != null && reply.size() == 2 && ((Number) reply.get(1)).longValue() == expected) {
+                return;
+            }
+            Thread.sleep(20);
+        }
+        Assertions.fail("Channel " + channel + " never reached " + expected + " subscribers");
+    }
+}
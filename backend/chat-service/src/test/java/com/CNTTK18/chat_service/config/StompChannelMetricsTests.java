@@ -0,0 +1,83 @@
+package com.CNTTK18.chat_service.config;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Gauge pending với executor giống outbound: 1 luồng, hàng đợi 1 chỗ
+class StompChannelMetricsTests {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ThreadPoolTaskExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.setTaskDecorator(new StompChannelMetrics(meterRegistry, "outbound", executor::getQueueSize));
+        executor.initialize();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    private double pending() {
+        return meterRegistry.get("chat.stomp.pending").tag("channel", "outbound").gauge().value();
+    }
+
+    private void awaitPending(double expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (pending() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(expected, pending());
+    }
+
+    @Test
+    void rejectedTaskIsNotCounted() throws InterruptedException {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable blocking = () -> {
+            running.countDown();
+            try {
+                release.await();
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        executor.execute(blocking);
+        Assertions.assertTrue(running.await(5, TimeUnit.SECONDS));
+        executor.execute(() -> {});
+        Assertions.assertEquals(2, pending());
+
+        // Luồng bận, hàng đợi đầy: task bị từ chối
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertThrows(TaskRejectedException.class, () -> executor.execute(() -> {}));
+        }
+        Assertions.assertEquals(2, pending());
+
+        release.countDown();
+        awaitPending(0);
+    }
+
+    @Test
+    void failingTaskIsNotCountedAfterItEnds() throws InterruptedException {
+        executor.execute(() -> {
+            throw new IllegalStateException("boom");
+        });
+        awaitPending(0);
+        Assertions.assertEquals(1, meterRegistry.get("chat.stomp.handle").tag("channel", "outbound").timer().count());
+    }
+}
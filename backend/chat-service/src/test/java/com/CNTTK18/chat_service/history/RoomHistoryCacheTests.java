@@ -0,0 +1,178 @@
+package com.CNTTK18.chat_service.history;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import com.CNTTK18.chat_service.model.Message;
+
+import redis.embedded.RedisServer;
+
+// Các script Lua và pipeline đọc của RoomHistoryCache chạy trên Redis thật (trong tiến trình)
+class RoomHistoryCacheTests {
+    private static final String ROOM = "room-1";
+    private static final LocalDateTime BASE = LocalDateTime.of(2026, 3, 1, 9, 0);
+    private static final int MAX_ENTRIES = 3;
+
+    private RedisServer redis;
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate redisTemplate;
+    private RoomHistoryCache cache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redis = new RedisServer(port);
+        redis.start();
+        // Timeout ngắn để test Redis lỗi không phải chờ timeout mặc định
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port),
+                            LettuceClientConfiguration.builder().commandTimeout(Duration.ofSeconds(1)).build());
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        cache = new RoomHistoryCache(redisTemplate, MAX_ENTRIES, Duration.ofMinutes(5));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        connectionFactory.destroy();
+        if (redis.isActive()) {
+            redis.stop();
+        }
+    }
+
+    private static HistoryEntry entry(int i) {
+        return new HistoryEntry("m" + i, "alice", "bob", "tin " + i, BASE.plusMinutes(i));
+    }
+
+    private static Message row(int i, boolean read) {
+        return Message.builder().id("m" + i).senderId("alice").receiverId("bob").content("tin " + i)
+                        .timestamp(BASE.plusMinutes(i)).read(read).build();
+    }
+
+    private static List<String> ids(RoomHistoryCache.Snapshot snapshot) {
+        return snapshot.entries().stream().map(HistoryEntry::id).toList();
+    }
+
+    @Test
+    void emptyRoomIsNotValid() {
+        RoomHistoryCache.Snapshot snapshot = cache.read(ROOM);
+        Assertions.assertTrue(snapshot.entries().isEmpty());
+        Assertions.assertFalse(snapshot.valid());
+        Assertions.assertFalse(snapshot.complete());
+        Assertions.assertEquals(0, snapshot.length());
+    }
+
+    @Test
+    void pushKeepsNewestEntriesUpToMax() {
+        for (int i = 1; i <= 5; i++) {
+            cache.push(ROOM, entry(i));
+            if (i < MAX_ENTRIES) {
+                // Chưa đủ maxEntries thì chưa biết còn tin cũ hơn trong MySQL hay không
+                Assertions.assertFalse(cache.read(ROOM).valid());
+            }
+        }
+        RoomHistoryCache.Snapshot snapshot = cache.read(ROOM);
+        Assertions.assertEquals(List.of("m5", "m4", "m3"), ids(snapshot));
+        Assertions.assertTrue(snapshot.valid());
+        Assertions.assertFalse(snapshot.complete());
+        Assertions.assertTrue(redisTemplate.getExpire("chat:history:" + ROOM) > 0);
+    }
+
+    // Các instance có thể push lệch thứ tự, read() luôn trả về mới nhất trước
+    @Test
+    void readSortsEntriesNewestFirst() {
+        cache.push(ROOM, entry(2));
+        cache.push(ROOM, entry(3));
+        cache.push(ROOM, entry(1));
+        Assertions.assertEquals(List.of("m3", "m2", "m1"), ids(cache.read(ROOM)));
+    }
+
+    @Test
+    void readMarkOnlyMovesForward() {
+        cache.push(ROOM, entry(1));
+        cache.push(ROOM, entry(2));
+        cache.markRead(ROOM, "bob", BASE.plusMinutes(2));
+        cache.markRead(ROOM, "bob", BASE.plusMinutes(1));
+
+        RoomHistoryCache.Snapshot snapshot = cache.read(ROOM);
+        Assertions.assertTrue(snapshot.isRead(entry(2)));
+        Assertions.assertTrue(snapshot.isRead(entry(1)));
+        // Mốc của receiver khác không ảnh hưởng
+        Assertions.assertFalse(snapshot.isRead(new HistoryEntry("x", "bob", "carol", "tin", BASE)));
+    }
+
+    @Test
+    void fillFromDatabaseMarksShortRoomComplete() {
+        RoomHistoryCache.Snapshot filled = cache.fill(ROOM, cache.read(ROOM), List.of(row(2, false), row(1, true)));
+        Assertions.assertTrue(filled.valid());
+        Assertions.assertTrue(filled.complete());
+
+        RoomHistoryCache.Snapshot snapshot = cache.read(ROOM);
+        Assertions.assertEquals(List.of("m2", "m1"), ids(snapshot));
+        Assertions.assertTrue(snapshot.valid());
+        Assertions.assertTrue(snapshot.complete());
+        // Mốc đã đọc được khôi phục từ tin đã đọc trong MySQL
+        Assertions.assertTrue(snapshot.isRead(entry(1)));
+        Assertions.assertFalse(snapshot.isRead(entry(2)));
+    }
+
+    // Tin write-behind đã push nhưng chưa có trong MySQL vẫn còn sau khi fill
+    @Test
+    void fillKeepsPushedEntriesMissingFromDatabase() {
+        cache.push(ROOM, entry(3));
+        RoomHistoryCache.Snapshot before = cache.read(ROOM);
+        Assertions.assertFalse(before.valid());
+
+        cache.fill(ROOM, before, List.of(row(2, false), row(1, false)));
+        RoomHistoryCache.Snapshot snapshot = cache.read(ROOM);
+        Assertions.assertEquals(List.of("m3", "m2", "m1"), ids(snapshot));
+        Assertions.assertTrue(snapshot.complete());
+    }
+
+    @Test
+    void fullPageFromDatabaseIsNotComplete() {
+        cache.fill(ROOM, cache.read(ROOM), List.of(row(3, false), row(2, false), row(1, false)));
+        RoomHistoryCache.Snapshot snapshot = cache.read(ROOM);
+        Assertions.assertEquals(List.of("m3", "m2", "m1"), ids(snapshot));
+        Assertions.assertTrue(snapshot.valid());
+        Assertions.assertFalse(snapshot.complete());
+    }
+
+    // Có tin mới được push giữa lúc đọc và lúc fill: không ghi đè list (tin mới không bị mất)
+    @Test
+    void fillIsSkippedWhenListChangedSinceRead() {
+        RoomHistoryCache.Snapshot before = cache.read(ROOM);
+        cache.push(ROOM, entry(4));
+
+        cache.fill(ROOM, before, List.of(row(2, false), row(1, false)));
+        RoomHistoryCache.Snapshot snapshot = cache.read(ROOM);
+        Assertions.assertEquals(List.of("m4"), ids(snapshot));
+        Assertions.assertFalse(snapshot.valid());
+    }
+
+    @Test
+    void redisFailureIsReportedAsMiss() throws IOException {
+        cache.push(ROOM, entry(1));
+        redis.stop();
+
+        Assertions.assertNull(cache.read(ROOM));
+        // Ghi lỗi không ném exception ra luồng gửi tin
+        Assertions.assertDoesNotThrow(() -> cache.push(ROOM, entry(2)));
+        Assertions.assertDoesNotThrow(() -> cache.markRead(ROOM, "bob", BASE));
+    }
+}
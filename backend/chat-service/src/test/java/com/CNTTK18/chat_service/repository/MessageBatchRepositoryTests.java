@@ -0,0 +1,109 @@
+package com.CNTTK18.chat_service.repository;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.transaction.TestTransaction;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.MountableFile;
+
+import com.CNTTK18.chat_service.history.RoomHistoryCache;
+import com.CNTTK18.chat_service.service.ChatMessageService;
+import com.CNTTK18.chat_service.unread.UnreadCounters;
+import com.CNTTK18.chat_service.writebehind.PendingMessage;
+
+// Ghi theo lô của write-behind trên MySQL thật, schema lấy từ main.sql giống docker-compose
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ MessageBatchRepository.class, ChatMessageService.class })
+@Testcontainers(disabledWithoutDocker = true)
+class MessageBatchRepositoryTests {
+    @Container
+    @ServiceConnection
+    static MySQLContainer<?> mysql = new MySQLContainer<>("mysql:8.0")
+                    .withDatabaseName("chat-service")
+                    .withCopyFileToContainer(MountableFile.forHostPath("../main.sql"), "/docker-entrypoint-initdb.d/01-main.sql");
+
+    @Autowired
+    private MessageBatchRepository batchRepository;
+    @Autowired
+    private MessageRepository messageRepository;
+    @Autowired
+    private ChatMessageService chatMessageService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private UnreadCounters unreadCounters;
+    @MockitoBean
+    private RoomHistoryCache historyCache;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("INSERT INTO chat_rooms (id, user1_id, user2_id) VALUES ('b_a', 'b', 'a')");
+    }
+
+    private static PendingMessage message(String id, String receiver, LocalDateTime timestamp) {
+        String sender = receiver.equals("a") ? "b" : "a";
+        return new PendingMessage(id, "b_a", sender, receiver, "content " + id, timestamp, null);
+    }
+
+    private boolean isRead(String id) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT is_read FROM messages WHERE id = ?", Boolean.class, id));
+    }
+
+    @Test
+    void markReadBeforeFlushAppliesToQueuedMessages() {
+        LocalDateTime sentBeforeMark = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS).minusSeconds(1);
+        // Tin đã gửi tới "a" nhưng còn trong hàng đợi thì "a" mở room và đánh dấu đã đọc
+        chatMessageService.markMessagesAsRead("b_a", "a");
+        LocalDateTime sentAfterMark = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS).plusSeconds(1);
+
+        batchRepository.insertBatch(List.of(
+                message("m1", "a", sentBeforeMark),
+                message("m2", "a", sentAfterMark),
+                message("m3", "b", sentBeforeMark)));
+
+        Assertions.assertTrue(isRead("m1"));
+        // Gửi sau khi đánh dấu, hoặc gửi tới người chưa đánh dấu: vẫn chưa đọc
+        Assertions.assertFalse(isRead("m2"));
+        Assertions.assertFalse(isRead("m3"));
+        Assertions.assertEquals(1L, messageRepository.countUnreadMessagesByRoomIdAndReceiverId("b_a", "a"));
+    }
+
+    // Redis chỉ được cập nhật sau khi commit: transaction rollback thì bộ đếm và mốc đã đọc không đổi
+    @Test
+    void markReadDoesNotTouchRedisWhenTransactionRollsBack() {
+        chatMessageService.markMessagesAsRead("b_a", "a");
+        Mockito.verifyNoInteractions(unreadCounters, historyCache);
+
+        TestTransaction.end();
+        Mockito.verifyNoInteractions(unreadCounters, historyCache);
+    }
+
+    @Test
+    void replayedBatchIsIdempotentAndRoomKeepsLatestMessage() {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        batchRepository.insertBatch(List.of(message("m1", "a", now), message("m2", "a", now.plusSeconds(1))));
+        // Ghi bù từ WAL: trùng id bị bỏ qua, tin cũ hơn không làm lùi last_message
+        batchRepository.insertBatch(List.of(message("m1", "a", now)));
+
+        Assertions.assertEquals(2L, messageRepository.countByRoomId("b_a"));
+        Assertions.assertEquals("content m2",
+                jdbcTemplate.queryForObject("SELECT last_message FROM chat_rooms WHERE id = 'b_a'", String.class));
+    }
+}
@@ -0,0 +1,120 @@
+package com.CNTTK18.chat_service.unread;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import com.CNTTK18.chat_service.repository.MessageRepository;
+
+import redis.embedded.RedisServer;
+
+// Bộ đếm chưa đọc trên Redis thật (trong tiến trình), MySQL được thay bằng repository giả
+class UnreadCountersTests {
+    private RedisServer redis;
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate redisTemplate;
+    private MessageRepository repository;
+    private UnreadCounters counters;
+    // Số tin chưa đọc theo room trong "MySQL"
+    private final List<Object[]> dbCounts = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redis = new RedisServer(port);
+        redis.start();
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port),
+                            LettuceClientConfiguration.builder().commandTimeout(Duration.ofSeconds(1)).build());
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+
+        repository = Mockito.mock(MessageRepository.class);
+        Mockito.when(repository.countUnreadByRoomForReceiver("bob")).thenAnswer(inv -> List.copyOf(dbCounts));
+        counters = new UnreadCounters(redisTemplate, repository, Duration.ofDays(7), Duration.ZERO, 200);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        connectionFactory.destroy();
+        if (redis.isActive()) {
+            redis.stop();
+        }
+    }
+
+    @Test
+    void firstReadSeedsFromDatabaseThenServesFromRedis() {
+        dbCounts.add(new Object[] {"room-1", 2L});
+        dbCounts.add(new Object[] {"room-2", 3L});
+
+        Assertions.assertEquals(5, counters.total("bob"));
+        Assertions.assertEquals(2, counters.countInRoom("bob", "room-1"));
+        Assertions.assertEquals(0, counters.countInRoom("bob", "room-3"));
+        Mockito.verify(repository, Mockito.times(1)).countUnreadByRoomForReceiver("bob");
+    }
+
+    @Test
+    void incrementAndResetKeepTotalInSync() {
+        dbCounts.add(new Object[] {"room-1", 1L});
+        counters.total("bob");
+
+        counters.increment("bob", "room-1");
+        counters.increment("bob", "room-2");
+        Assertions.assertEquals(3, counters.total("bob"));
+        Assertions.assertEquals(2, counters.countInRoom("bob", "room-1"));
+
+        counters.reset("bob", "room-1");
+        Assertions.assertEquals(1, counters.total("bob"));
+        Assertions.assertEquals(0, counters.countInRoom("bob", "room-1"));
+        // Reset room đã về 0 không làm total âm
+        counters.reset("bob", "room-1");
+        Assertions.assertEquals(1, counters.total("bob"));
+    }
+
+    // Chưa có hash thì không tăng (tin đó đã nằm trong số đếm từ MySQL ở lần đọc sau)
+    @Test
+    void incrementBeforeSeedDoesNotDoubleCount() {
+        counters.increment("bob", "room-1");
+        dbCounts.add(new Object[] {"room-1", 1L});
+        Assertions.assertEquals(1, counters.total("bob"));
+    }
+
+    @Test
+    void reconcileOverwritesDriftedCounters() {
+        dbCounts.add(new Object[] {"room-1", 1L});
+        counters.total("bob");
+        counters.increment("bob", "room-1");
+        // MySQL chỉ có 1 tin chưa đọc (vd. tin thứ 2 đã được đọc ở instance khác)
+        counters.reconcile();
+
+        Assertions.assertEquals(1, counters.total("bob"));
+        Assertions.assertEquals(1, counters.countInRoom("bob", "room-1"));
+        Assertions.assertNull(redisTemplate.opsForZSet().score("chat:unread:dirty", "bob"));
+    }
+
+    @Test
+    void redisFailureFallsBackToDatabase() throws IOException {
+        Mockito.when(repository.countUnreadMessagesByReceiverId("bob")).thenReturn(4L);
+        Mockito.when(repository.countUnreadMessagesByRoomIdAndReceiverId("room-1", "bob")).thenReturn(2L);
+        redis.stop();
+
+        Assertions.assertEquals(4, counters.total("bob"));
+        Assertions.assertEquals(2, counters.countInRoom("bob", "room-1"));
+        Assertions.assertDoesNotThrow(() -> counters.increment("bob", "room-1"));
+    }
+}
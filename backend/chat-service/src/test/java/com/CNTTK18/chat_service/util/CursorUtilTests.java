@@ -0,0 +1,63 @@
+package com.CNTTK18.chat_service.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.CNTTK18.chat_service.exception.InvalidRequestException;
+
+class CursorUtilTests {
+    private static final LocalDateTime TIME = LocalDateTime.of(2026, 3, 1, 9, 30, 15, 123_456_000);
+
+    private static String encodeRaw(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void encodeThenDecodeReturnsSameCursor() {
+        CursorUtil.TimeCursor cursor = new CursorUtil.TimeCursor(TIME, "01J0ABCDEF");
+        Assertions.assertEquals(cursor, CursorUtil.decode(CursorUtil.encode(cursor)));
+    }
+
+    @Test
+    void timestampWithoutFractionRoundTrips() {
+        CursorUtil.TimeCursor cursor = new CursorUtil.TimeCursor(LocalDateTime.of(2026, 3, 1, 9, 30), "m1");
+        Assertions.assertEquals(cursor, CursorUtil.decode(CursorUtil.encode(cursor)));
+    }
+
+    // Chỉ tách ở dấu | đầu tiên, id chứa | vẫn giữ nguyên
+    @Test
+    void idContainingSeparatorRoundTrips() {
+        CursorUtil.TimeCursor cursor = new CursorUtil.TimeCursor(TIME, "a|b|c");
+        Assertions.assertEquals(cursor, CursorUtil.decode(CursorUtil.encode(cursor)));
+    }
+
+    // Cursor nằm trong query string nên chỉ dùng ký tự an toàn cho URL
+    @Test
+    void encodedCursorIsUrlSafe() {
+        String encoded = CursorUtil.encode(new CursorUtil.TimeCursor(TIME, "?>?>?>~~~"));
+        Assertions.assertTrue(encoded.matches("[A-Za-z0-9_-]+"), encoded);
+    }
+
+    @Test
+    void nullOrBlankMeansFirstPage() {
+        Assertions.assertNull(CursorUtil.decode(null));
+        Assertions.assertNull(CursorUtil.decode(""));
+        Assertions.assertNull(CursorUtil.decode("  "));
+    }
+
+    @Test
+    void invalidCursorsAreRejected() {
+        for (String cursor : new String[] {
+                "not base64!",
+                encodeRaw(TIME.toString()),
+                encodeRaw(TIME + "|"),
+                encodeRaw("yesterday|m1"),
+                encodeRaw("|m1") }) {
+            Assertions.assertThrows(InvalidRequestException.class, () -> CursorUtil.decode(cursor), cursor);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.CNTTK18.chat_service.writebehind;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.TransactionSystemException;
+
+import com.CNTTK18.chat_service.repository.MessageBatchRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Đường lỗi/thử lại của flusher với WAL và repository giả
+class MessageWriteBehindTests {
+    private MessageWal wal;
+    private MessageBatchRepository repository;
+    private MessageWriteBehind writeBehind;
+    // Các lô đã ghi thành công
+    private final List<List<PendingMessage>> written = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        wal = Mockito.mock(MessageWal.class);
+        AtomicInteger walIds = new AtomicInteger();
+        Mockito.when(wal.append(ArgumentMatchers.any()))
+                .thenAnswer(inv -> ((PendingMessage) inv.getArgument(0)).withWalId("0-" + walIds.incrementAndGet()));
+        Mockito.when(wal.readOlderThan(ArgumentMatchers.anyLong(), ArgumentMatchers.anyInt())).thenReturn(List.of());
+        repository = Mockito.mock(MessageBatchRepository.class);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (writeBehind != null) {
+            writeBehind.shutdown();
+        }
+    }
+
+    private void start(int capacity) {
+        writeBehind = new MessageWriteBehind(wal, repository, new SimpleMeterRegistry(), capacity, 10,
+                            Duration.ofMillis(10), Duration.ofMillis(50), Duration.ofMinutes(1), Duration.ofMinutes(1));
+        writeBehind.start();
+    }
+
+    private void recordWrites() {
+        Mockito.doAnswer(inv -> {
+            synchronized (written) {
+                written.add(List.copyOf(inv.getArgument(0)));
+            }
+            return null;
+        }).when(repository).insertBatch(ArgumentMatchers.anyList());
+    }
+
+    private static PendingMessage message(String id) {
+        return new PendingMessage(id, "room", "sender", "receiver", "hi " + id, LocalDateTime.now(), null);
+    }
+
+    @Test
+    void retriesTransactionFailuresAndKeepsFlusherAlive() throws Exception {
+        // MySQL không kết nối được rồi commit lỗi: không phải DataAccessException nhưng vẫn phải thử lại
+        Mockito.doThrow(new CannotCreateTransactionException("db down"))
+                .doThrow(new TransactionSystemException("commit failed"))
+                .doAnswer(inv -> {
+                    synchronized (written) {
+                        written.add(List.copyOf(inv.getArgument(0)));
+                    }
+                    return null;
+                })
+                .when(repository).insertBatch(ArgumentMatchers.anyList());
+        start(1);
+
+        Assertions.assertTrue(writeBehind.submit(message("m1"), () -> { }));
+        Mockito.verify(repository, Mockito.timeout(5000).times(3)).insertBatch(ArgumentMatchers.anyList());
+        Mockito.verify(wal, Mockito.timeout(5000)).delete(ArgumentMatchers.anyList());
+
+        // Chỗ trong hàng đợi (capacity = 1) đã được trả, flusher vẫn chạy và ghi tiếp tin sau
+        Assertions.assertTrue(writeBehind.submit(message("m2"), () -> { }));
+        Mockito.verify(repository, Mockito.timeout(5000).times(4)).insertBatch(ArgumentMatchers.anyList());
+        synchronized (written) {
+            Assertions.assertEquals(List.of("m1", "m2"), written.stream().flatMap(List::stream).map(PendingMessage::id).toList());
+        }
+    }
+
+    @Test
+    void walDeleteFailureStillReleasesCapacity() throws Exception {
+        recordWrites();
+        Mockito.doThrow(new IllegalStateException("redis down")).when(wal).delete(ArgumentMatchers.anyList());
+        start(1);
+
+        Assertions.assertTrue(writeBehind.submit(message("m1"), () -> { }));
+        Mockito.verify(wal, Mockito.timeout(5000)).delete(ArgumentMatchers.anyList());
+        Assertions.assertTrue(writeBehind.submit(message("m2"), () -> { }));
+        Mockito.verify(repository, Mockito.timeout(5000).times(2)).insertBatch(ArgumentMatchers.anyList());
+    }
+
+    @Test
+    void constraintViolationDropsOnlyTheOffendingMessage() throws Exception {
+        Mockito.doAnswer(inv -> {
+            List<PendingMessage> batch = inv.getArgument(0);
+            if (batch.stream().anyMatch(m -> m.id().equals("bad"))) {
+                throw new DataIntegrityViolationException("room deleted");
+            }
+            synchronized (written) {
+                written.add(List.copyOf(batch));
+            }
+            return null;
+        }).when(repository).insertBatch(ArgumentMatchers.anyList());
+        start(10);
+
+        for (String id : List.of("ok1", "bad", "ok2")) {
+            Assertions.assertTrue(writeBehind.submit(message(id), () -> { }));
+        }
+        // shutdown ghi nốt hàng đợi. Dù 3 tin nằm chung hay khác lô, chỉ tin lỗi bị bỏ
+        writeBehind.shutdown();
+        writeBehind = null;
+        synchronized (written) {
+            Assertions.assertEquals(List.of("ok1", "ok2"), written.stream().flatMap(List::stream).map(PendingMessage::id).sorted().toList());
+        }
+    }
+
+    @Test
+    void rejectsWhenQueueStaysFull() throws Exception {
+        Mockito.doThrow(new CannotCreateTransactionException("db down")).when(repository).insertBatch(ArgumentMatchers.anyList());
+        start(1);
+
+        Assertions.assertTrue(writeBehind.submit(message("m1"), () -> { }));
+        // DB lỗi nên m1 vẫn giữ chỗ duy nhất, tin sau bị từ chối sau enqueue-timeout và không được gửi đi
+        AtomicInteger delivered = new AtomicInteger();
+        Assertions.assertFalse(writeBehind.submit(message("m2"), delivered::incrementAndGet));
+        Assertions.assertEquals(0, delivered.get());
+    }
+}
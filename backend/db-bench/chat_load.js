@@ -0,0 +1,89 @@
+// Load test gửi tin nhắn của chat-service qua STOMP/WebSocket (k6).
+// Mỗi VU mở 1 kết nối, subscribe room của mình rồi gửi liên tục vào /app/chat.sendMessage.
+// chat_sent / chat_received (msgs/s) và chat_delivery_ms được in ở cuối, chat_busy là số tin bị từ chối
+// vì hàng đợi ghi đầy (server trả về /user/queue/errors).
+// Dùng: k6 run -e BASE_URL=http://localhost:8086 -e ROOMS=50 chat_load.js
+import http from 'k6/http';
+import ws from 'k6/ws';
+import { check } from 'k6';
+import { Counter, Trend } from 'k6/metrics';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8086';
+const WS_URL = BASE_URL.replace(/^http/, 'ws') + '/ws';
+const ROOMS = parseInt(__ENV.ROOMS || '50');
+const DURATION = __ENV.DURATION || '60s';
+const INTERVAL_MS = parseInt(__ENV.INTERVAL_MS || '10');
+
+const sent = new Counter('chat_sent');
+const received = new Counter('chat_received');
+const errors = new Counter('chat_errors');
+const busy = new Counter('chat_busy');
+const delivery = new Trend('chat_delivery_ms', true);
+
+export const options = {
+    scenarios: {
+        chat: { executor: 'constant-vus', vus: ROOMS * 2, duration: DURATION },
+    },
+};
+
+// Tạo trước các room bench_a_<i>/bench_b_<i> (getRoomId tạo room nếu chưa có)
+export function setup() {
+    const rooms = [];
+    for (let i = 0; i < ROOMS; i++) {
+        const res = http.get(`${BASE_URL}/api/chat/roomId/bench_a_${i}/bench_b_${i}`);
+        check(res, { 'room created': r => r.status === 200 });
+        rooms.push(res.json('roomId'));
+    }
+    return { rooms };
+}
+
+function frame(command, headers, body) {
+    let out = command + '\n';
+    for (const [k, v] of Object.entries(headers)) {
+        out += `${k}:${v}\n`;
+    }
+    return out + '\n' + (body || '') + '\0';
+}
+
+export default function (data) {
+    const room = Math.floor((__VU - 1) / 2) % ROOMS;
+    const roomId = data.rooms[room];
+    const me = (__VU % 2 === 0 ? 'bench_a_' : 'bench_b_') + room;
+    const peer = (__VU % 2 === 0 ? 'bench_b_' : 'bench_a_') + room;
+    // Handshake từ chối token đã dùng nên mỗi kết nối cần 1 token mới
+    const token = `bench-${__VU}-${__ITER}-${Date.now()}-${Math.random().toString(36).slice(2)}`;
+
+    ws.connect(`${WS_URL}?token=${token}`, null, socket => {
+        socket.on('open', () => socket.send(frame('CONNECT', { 'accept-version': '1.2', 'heart-beat': '0,0' })));
+
+        socket.on('message', raw => {
+            for (const msg of raw.split('\0')) {
+                if (msg.startsWith('CONNECTED')) {
+                    socket.send(frame('SUBSCRIBE', { id: 'sub-0', destination: `/topic/room/${roomId}` }));
+                    socket.send(frame('SUBSCRIBE', { id: 'sub-1', destination: '/user/queue/errors' }));
+                    socket.setInterval(() => {
+                        const body = JSON.stringify({ roomId, senderId: me, receiverId: peer, content: `${me}|${Date.now()}` });
+                        socket.send(frame('SEND', { destination: '/app/chat.sendMessage', 'content-type': 'application/json' }, body));
+                        sent.add(1);
+                    }, INTERVAL_MS);
+                }
+                else if (msg.startsWith('MESSAGE') && msg.includes('\ndestination:/user/queue/errors')) {
+                    busy.add(1);
+                }
+                else if (msg.startsWith('MESSAGE')) {
+                    received.add(1);
+                    const content = JSON.parse(msg.substring(msg.indexOf('\n\n') + 2)).content;
+                    const [sender, at] = content.split('|');
+                    if (sender === me) {
+                        delivery.add(Date.now() - parseInt(at));
+                    }
+                }
+                else if (msg.startsWith('ERROR')) {
+                    errors.add(1);
+                }
+            }
+        });
+
+        socket.setTimeout(() => socket.close(), 1000 * parseInt(DURATION));
+    });
+}
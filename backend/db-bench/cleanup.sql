@@ -0,0 +1,6 @@
+-- Xóa dữ liệu benchmark (product_sizes bị xóa theo ON DELETE CASCADE)
+DELETE FROM reviews WHERE user_id = 'bench-user';
+DELETE FROM restaurants WHERE id LIKE 'bench-res-%';
+VACUUM ANALYZE restaurants;
+VACUUM ANALYZE products;
+VACUUM ANALYZE product_sizes;
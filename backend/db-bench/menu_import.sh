@@ -0,0 +1,46 @@
+#!/usr/bin/env bash
+# Đo thời gian import 1 menu N món (mặc định 5 000) qua POST /api/products/import/{resId}.
+# Cần restaurant-service đang chạy. --baseline: tạo cùng số món bằng POST /api/products từng món để so sánh.
+# Dùng: RES_ID=RES001 MERCHANT_ID=testmerchantid ./menu_import.sh [--baseline]
+set -euo pipefail
+
+cd "$(dirname "$0")"
+
+BASE_URL="${BASE_URL:-http://localhost:8085}"
+RES_ID="${RES_ID:-RES001}"
+MERCHANT_ID="${MERCHANT_ID:-testmerchantid}"
+ITEMS="${ITEMS:-5000}"
+CATEGORY="${CATEGORY:-CAT002}"
+
+mkdir -p results
+menu="results/menu_$ITEMS.csv"
+
+# Tên món có dấu, 3 size với giá khác nhau; vài dòng có dấu phẩy/ngoặc kép để parser CSV phải xử lý trường quoted
+awk -v n="$ITEMS" -v cate="$CATEGORY" 'BEGIN {
+    print "productName,description,categoryId,available,sizes"
+    for (i = 1; i <= n; i++) {
+        price = 30000 + (i % 50) * 1000
+        desc = (i % 10 == 0) ? "\"Món đặc biệt, \"\"bench\"\" " i "\"" : "Món ăn benchmark " i
+        printf "Bench món %d,%s,%s,true,S:%d;M:%d;L:%d\n", i, desc, cate, price, price + 10000, price + 20000
+    }
+}' > "$menu"
+
+echo "import $ITEMS items ($(du -h "$menu" | cut -f1))"
+curl -sS -o results/menu_import.json -w "  status: %{http_code}\n  time: %{time_total} s\n" \
+    -H "Content-Type: text/csv" -H "user-id: $MERCHANT_ID" \
+    --data-binary @"$menu" "$BASE_URL/api/products/import/$RES_ID"
+head -c 300 results/menu_import.json && echo
+
+if [[ "${1:-}" == "--baseline" ]]; then
+    echo "baseline: $ITEMS x POST /api/products"
+    start=$(date +%s.%N)
+    for i in $(seq 1 "$ITEMS"); do
+        price=$((30000 + (i % 50) * 1000))
+        product="{\"productName\":\"Bench baseline $i\",\"description\":\"Món ăn benchmark $i\",\"categoryId\":\"$CATEGORY\",\"available\":true,\"restaurantId\":\"$RES_ID\",\"sizeIds\":[{\"sizeId\":\"S\",\"price\":$price},{\"sizeId\":\"M\",\"price\":$((price + 10000))},{\"sizeId\":\"L\",\"price\":$((price + 20000))}]}"
+        curl -sS -o /dev/null -F "product=$product;type=application/json" "$BASE_URL/api/products"
+    done
+    end=$(date +%s.%N)
+    awk -v s="$start" -v e="$end" 'BEGIN { printf "  time: %.2f s\n", e - s }'
+fi
+
+echo "dọn dữ liệu: psql -c \"DELETE FROM products WHERE restaurant_id = '$RES_ID' AND product_name LIKE 'Bench %'\""
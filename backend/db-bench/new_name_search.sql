@@ -0,0 +1,12 @@
+-- Search mode mới: cột *_search đã bỏ dấu + index GIN pg_trgm, xếp theo độ liên quan
+\set t random(1, 6)
+SELECT p.id, p.rating
+FROM products p
+JOIN restaurants r ON p.restaurant_id = r.id
+WHERE r.enabled = true
+AND ST_DWithin(r.geom::geography, ST_SetSRID(ST_MakePoint(106.70, 10.78), 4326)::geography, 5000)
+AND (p.product_name_search LIKE CONCAT('%', (ARRAY['pho', 'com tam', 'bun cha', 'tra sua', 'banh xeo', 'dac biet'])[:t], '%')
+    OR (ARRAY['pho', 'com tam', 'bun cha', 'tra sua', 'banh xeo', 'dac biet'])[:t] <% p.product_name_search)
+ORDER BY word_similarity((ARRAY['pho', 'com tam', 'bun cha', 'tra sua', 'banh xeo', 'dac biet'])[:t], p.product_name_search) DESC,
+    COALESCE(p.rating, 0) DESC, p.id
+LIMIT 20;
@@ -0,0 +1,18 @@
+-- Truy vấn mới: lọc giá bằng min_price/max_price + EXISTS, ORDER BY COALESCE(rating, 0) DESC, id trong DB
+\set page random(0, 20)
+SELECT p.id, p.rating
+FROM products p
+JOIN restaurants r ON p.restaurant_id = r.id
+JOIN categories c ON c.id = p.category_id
+WHERE r.enabled = true
+AND ST_DWithin(r.geom::geography, ST_SetSRID(ST_MakePoint(106.70, 10.78), 4326)::geography, 5000)
+AND p.max_price >= 50000
+AND p.min_price <= 120000
+AND EXISTS (
+    SELECT 1 FROM product_sizes ps
+    WHERE ps.product_id = p.id
+    AND ps.price >= 50000
+    AND ps.price <= 120000
+)
+ORDER BY COALESCE(p.rating, 0) DESC, p.id ASC
+LIMIT 20 OFFSET :page * 20;
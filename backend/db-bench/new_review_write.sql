@@ -0,0 +1,16 @@
+-- Cách mới (ResRepository.addRating): insert review trước, cộng dồn rating_sum/total_review/rating_histogram bằng 1 câu UPDATE
+-- ở cuối transaction nên khóa dòng chỉ giữ trong 1 round trip
+\set rating random(1, 5)
+BEGIN;
+INSERT INTO reviews (id, title, content, rating, review_id, review_type, user_id)
+VALUES ('bench-rv-' || md5(random()::text || clock_timestamp()::text), 'bench', 'bench', :rating,
+        'bench-res-1', 'RESTAURANT', 'bench-user');
+UPDATE restaurants
+SET rating_sum = CASE WHEN COALESCE(total_review, 0) + 1 > 0 THEN rating_sum + :rating ELSE 0 END,
+    total_review = COALESCE(total_review, 0) + 1,
+    rating = CASE WHEN COALESCE(total_review, 0) + 1 > 0
+                  THEN (rating_sum + :rating) / (COALESCE(total_review, 0) + 1)
+                  ELSE 0 END,
+    rating_histogram[:rating] = GREATEST(rating_histogram[:rating] + 1, 0)
+WHERE id = 'bench-res-1';
+END;
@@ -0,0 +1,10 @@
+-- Tìm kiếm cũ: LOWER(name) LIKE '%term%' (không dùng được index, phân biệt có dấu/không dấu)
+\set t random(1, 6)
+SELECT p.id, p.rating
+FROM products p
+JOIN restaurants r ON p.restaurant_id = r.id
+WHERE r.enabled = true
+AND ST_DWithin(r.geom::geography, ST_SetSRID(ST_MakePoint(106.70, 10.78), 4326)::geography, 5000)
+AND LOWER(p.product_name) LIKE LOWER(CONCAT('%', (ARRAY['phở', 'cơm tấm', 'bún chả', 'trà sữa', 'bánh xèo', 'đặc biệt'])[:t], '%'))
+ORDER BY p.id
+LIMIT 20;
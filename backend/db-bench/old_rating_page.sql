@@ -0,0 +1,13 @@
+-- Truy vấn cũ: DISTINCT ON (p.id) + JOIN product_sizes, rating chỉ được sắp xếp lại trong bộ nhớ sau khi đã phân trang
+\set page random(0, 20)
+SELECT DISTINCT ON (p.id) p.id, p.rating
+FROM products p
+JOIN restaurants r ON p.restaurant_id = r.id
+JOIN categories c ON c.id = p.category_id
+JOIN product_sizes ps ON ps.product_id = p.id
+WHERE r.enabled = true
+AND ST_DWithin(r.geom::geography, ST_SetSRID(ST_MakePoint(106.70, 10.78), 4326)::geography, 5000)
+AND (ps.price >= 50000)
+AND (ps.price <= 120000)
+ORDER BY p.id, CASE WHEN 'rating_id_desc' = 'rating_id_desc' THEN p.rating END DESC
+LIMIT 20 OFFSET :page * 20;
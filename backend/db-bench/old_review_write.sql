@@ -0,0 +1,13 @@
+-- Cách cũ: khóa dòng nhà hàng (PESSIMISTIC_WRITE), tính lại trung bình ở app rồi ghi lại.
+-- Khóa được giữ qua 3 round trip (SELECT FOR UPDATE, UPDATE, INSERT) cho tới khi commit
+\set rating random(1, 5)
+BEGIN;
+SELECT rating, total_review FROM restaurants WHERE id = 'bench-res-1' FOR UPDATE;
+UPDATE restaurants
+SET rating = (COALESCE(total_review, 0) * COALESCE(rating, 0) + :rating) / (COALESCE(total_review, 0) + 1),
+    total_review = COALESCE(total_review, 0) + 1
+WHERE id = 'bench-res-1';
+INSERT INTO reviews (id, title, content, rating, review_id, review_type, user_id)
+VALUES ('bench-rv-' || md5(random()::text || clock_timestamp()::text), 'bench', 'bench', :rating,
+        'bench-res-1', 'RESTAURANT', 'bench-user');
+END;
@@ -0,0 +1,13 @@
+-- So sánh tổng điểm/số review/phân bố sao đã cộng dồn với dữ liệu thật trong bảng reviews, exact phải là true
+SELECT r.total_review, t.cnt, r.rating_sum, t.total, r.rating, t.avg, r.rating_histogram, t.histogram,
+       r.total_review = t.cnt AND r.rating_sum = t.total AND abs(r.rating - t.avg) < 0.0001
+           AND r.rating_histogram = t.histogram AS exact
+FROM restaurants r,
+     (SELECT count(*) AS cnt, COALESCE(sum(rating), 0) AS total, COALESCE(avg(rating), 0) AS avg,
+             ARRAY(SELECT count(rv.id)::INTEGER
+                   FROM generate_series(1, 5) s
+                   LEFT JOIN reviews rv ON rv.review_id = 'bench-res-1' AND rv.review_type = 'RESTAURANT'
+                                        AND rv.rating = s
+                   GROUP BY s ORDER BY s) AS histogram
+      FROM reviews WHERE review_id = 'bench-res-1' AND review_type = 'RESTAURANT') t
+WHERE r.id = 'bench-res-1';
@@ -0,0 +1,3 @@
+-- Đưa nhà hàng dùng để benchmark review về trạng thái chưa có review
+DELETE FROM reviews WHERE user_id = 'bench-user';
+UPDATE restaurants SET rating = 0, total_review = 0, rating_sum = 0, rating_histogram = '{0,0,0,0,0}' WHERE id = 'bench-res-1';
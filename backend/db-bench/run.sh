@@ -0,0 +1,45 @@
+#!/usr/bin/env bash
+# So sánh p50/p99 của các truy vấn cũ và mới bằng pgbench.
+# Dùng: PGPASSWORD=... ./run.sh [--seed] (mặc định kết nối tới postgres của docker-compose.dev.yml)
+set -euo pipefail
+
+cd "$(dirname "$0")"
+
+export PGHOST="${PGHOST:-localhost}"
+export PGPORT="${PGPORT:-5433}"
+export PGUSER="${PGUSER:-postgres}"
+export PGDATABASE="${PGDATABASE:-restaurant-service}"
+
+CLIENTS="${CLIENTS:-8}"
+SCRIPTS="${SCRIPTS:-old_rating_page new_rating_page old_name_search new_name_search old_review_write new_review_write}"
+DURATION="${DURATION:-60}"
+
+if [[ "${1:-}" == "--seed" ]]; then
+    psql -f seed_products.sql
+fi
+
+percentiles() {
+    # Cột thứ 3 của log pgbench là latency (micro giây)
+    cat "$1"/pgbench_log.* | awk '{print $3}' | sort -n | awk '
+        { v[NR] = $1 }
+        END {
+            printf "  transactions: %d\n", NR
+            printf "  p50: %.2f ms\n", v[int(NR * 0.50) > 0 ? int(NR * 0.50) : 1] / 1000
+            printf "  p99: %.2f ms\n", v[int(NR * 0.99) > 0 ? int(NR * 0.99) : 1] / 1000
+        }'
+}
+
+for name in $SCRIPTS; do
+    # Benchmark ghi review: mọi client cùng review 1 nhà hàng, bắt đầu từ 0 review
+    if [[ "$name" == *_review_write ]]; then
+        psql -q -f review_reset.sql
+    fi
+    out="results/$name"
+    rm -rf "$out" && mkdir -p "$out"
+    (cd "$out" && pgbench -n -c "$CLIENTS" -j "$CLIENTS" -T "$DURATION" --log -f "../../$name.sql" > pgbench.txt)
+    echo "$name"
+    percentiles "$out"
+    if [[ "$name" == new_review_write ]]; then
+        psql -f review_check.sql
+    fi
+done
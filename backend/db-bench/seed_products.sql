@@ -0,0 +1,62 @@
+-- Seed 2 000 nhà hàng quanh TP.HCM và 1 000 000 sản phẩm (3 size/sản phẩm) để benchmark.
+-- Tên có dấu tiếng Việt để benchmark cả phần tìm kiếm theo tên.
+-- Chạy sau main_postgres.sql. Dữ liệu benchmark dùng tiền tố 'bench-' để dễ dọn dẹp.
+
+\set ON_ERROR_STOP on
+
+ALTER TABLE product_sizes DISABLE TRIGGER product_sizes_price_range_trigger;
+
+INSERT INTO restaurants (id, res_name, address, longitude, latitude, rating, opening_time, closing_time,
+                         merchant_id, slug, enabled)
+SELECT 'bench-res-' || g,
+       (ARRAY['Quán', 'Nhà hàng', 'Tiệm', 'Bếp'])[1 + g % 4] || ' '
+           || (ARRAY['Bà Tư', 'Đà Lạt', 'Hà Nội', 'Sài Gòn', 'Phố Cổ', 'Miền Tây'])[1 + (g / 4) % 6] || ' ' || g,
+       g || ' Bench Street',
+       106.60 + random() * 0.20,
+       10.70 + random() * 0.15,
+       CASE WHEN random() < 0.1 THEN NULL ELSE round((1 + random() * 4)::numeric, 1) END,
+       '08:00', '22:00',
+       'bench-merchant',
+       'bench-res-' || g,
+       true
+FROM generate_series(1, 2000) g;
+
+INSERT INTO products (id, product_name, description, restaurant_id, category_id, rating, slug, available, total_review)
+WITH cats AS (SELECT array_agg(id ORDER BY id) AS ids FROM categories)
+SELECT 'bench-prod-' || lpad(g::text, 7, '0'),
+       (ARRAY['Cơm tấm', 'Phở bò', 'Bún chả', 'Trà sữa', 'Bánh mì', 'Gỏi cuốn', 'Hủ tiếu', 'Bánh xèo', 'Chè đậu', 'Cà phê đá'])[1 + g % 10]
+           || ' ' || (ARRAY['đặc biệt', 'sườn', 'gà', 'chay', 'thập cẩm', 'trân châu', 'truyền thống'])[1 + (g / 10) % 7]
+           || ' ' || g,
+       'Benchmark product',
+       'bench-res-' || (1 + g % 2000),
+       cats.ids[1 + g % array_length(cats.ids, 1)],
+       CASE WHEN random() < 0.2 THEN NULL ELSE round((1 + random() * 4)::numeric, 1) END,
+       'bench-prod-' || g,
+       true,
+       0
+FROM generate_series(1, 1000000) g, cats;
+
+INSERT INTO product_sizes (id, product_id, size_id, price)
+SELECT 'bench-ps-' || p.n || '-' || s.id,
+       'bench-prod-' || lpad(p.n::text, 7, '0'),
+       s.id,
+       round((20000 + random() * 180000)::numeric, -3)
+FROM generate_series(1, 1000000) p(n)
+CROSS JOIN (SELECT id FROM size ORDER BY id LIMIT 3) s;
+
+-- Tính min/max một lần thay vì chạy trigger cho từng dòng
+UPDATE products p
+SET min_price = agg.min_price, max_price = agg.max_price
+FROM (
+    SELECT product_id, MIN(price) AS min_price, MAX(price) AS max_price
+    FROM product_sizes
+    WHERE product_id LIKE 'bench-prod-%'
+    GROUP BY product_id
+) agg
+WHERE p.id = agg.product_id;
+
+ALTER TABLE product_sizes ENABLE TRIGGER product_sizes_price_range_trigger;
+
+VACUUM ANALYZE restaurants;
+VACUUM ANALYZE products;
+VACUUM ANALYZE product_sizes;
@@ -166,8 +166,12 @@ create table chat_rooms (
     id varchar(255) primary key,
     user1_id varchar(100) not null,
     user2_id varchar(100) not null,
-    last_message_time timestamp default current_timestamp,
-    last_message text
+    last_message_time timestamp(3) default current_timestamp(3),
+    last_message text,
+    -- Thời điểm mỗi người đánh dấu đã đọc gần nhất: tin write-behind được ghi sau đó mà có timestamp
+    -- không muộn hơn mốc này thì là đã đọc
+    user1_read_at timestamp(3) null,
+    user2_read_at timestamp(3) null
 );
 
 create index idx_chat_rooms_user1 on chat_rooms(user1_id);
@@ -179,7 +183,7 @@ create table messages (
     receiver_id varchar(100) not null,
     content text not null,
     room_id varchar(255) not null references chat_rooms(id),
-    `timestamp` timestamp default current_timestamp,
+    `timestamp` timestamp(3) default current_timestamp(3),
     `is_read` boolean default false
 );
 
@@ -189,6 +193,8 @@ create index idx_receiverid on messages(receiver_id);
 
 -- Hiệu quả khi truy vấn tin nhắn trong một phòng theo thời gian gần nhất
 CREATE INDEX idx_messages_room_timestamp ON messages(room_id, `timestamp` DESC);
+-- Đếm tin chưa đọc theo receiver/room khi bộ đếm trong Redis chưa có (chỉ quét index, không đọc bảng)
+CREATE INDEX idx_messages_receiver_unread ON messages(receiver_id, is_read, room_id);
 
 drop database if exists `payment-service`;
 CREATE DATABASE IF NOT EXISTS `payment-service`;
@@ -4,6 +4,16 @@
 -- Enable PostGIS for this database
 CREATE EXTENSION IF NOT EXISTS postgis;
 
+-- Search: trigram index + bỏ dấu tiếng Việt
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE EXTENSION IF NOT EXISTS unaccent;
+
+-- Không dấu, chữ thường, gộp khoảng trắng. Phải khớp với TextNormalizer.fold() trong Common
+CREATE OR REPLACE FUNCTION vn_fold(text)
+RETURNS text AS $$
+    SELECT lower(regexp_replace(btrim(translate(public.unaccent('public.unaccent'::regdictionary, $1), 'đĐ', 'dd')), '\s+', ' ', 'g'));
+$$ LANGUAGE sql IMMUTABLE STRICT PARALLEL SAFE;
+
 -- Categories table
 CREATE TABLE categories (
     id VARCHAR(10) PRIMARY KEY,
@@ -13,6 +23,7 @@ CREATE TABLE categories (
 CREATE TABLE restaurants (
     id VARCHAR(255) PRIMARY KEY,
     res_name VARCHAR(255) NOT NULL,
+    res_name_search TEXT GENERATED ALWAYS AS (vn_fold(res_name)) STORED,
     address VARCHAR(255) NOT NULL,
     longitude DOUBLE PRECISION NOT NULL,
     latitude DOUBLE PRECISION NOT NULL,
@@ -21,9 +32,16 @@ CREATE TABLE restaurants (
     opening_time TIME NOT NULL,
     closing_time TIME NOT NULL,
     image_url VARCHAR(255),
+    thumbnail_url VARCHAR(255), -- variant cho trang danh sách
+    detail_url VARCHAR(255), -- variant cho trang chi tiết
     public_id VARCHAR(255),
+    image_status VARCHAR(20), -- PENDING | READY | FAILED, NULL khi không có ảnh
     phone VARCHAR(15),
     total_review INTEGER DEFAULT 0,
+    -- Tổng điểm review, rating = rating_sum / total_review (được cập nhật cùng nhau bằng 1 câu UPDATE)
+    rating_sum DOUBLE PRECISION NOT NULL DEFAULT 0,
+    -- Số review theo số sao: rating_histogram[1] = số review 1 sao, ..., rating_histogram[5] = 5 sao
+    rating_histogram INTEGER[] NOT NULL DEFAULT '{0,0,0,0,0}',
     merchant_id VARCHAR(100) NOT NULL,
     slug VARCHAR(255) NOT NULL UNIQUE,
     enabled BOOLEAN NOT NULL,
@@ -41,6 +59,7 @@ CREATE INDEX idx_restaurants_rating ON restaurants(rating);
 CREATE INDEX idx_restaurants_merchant ON restaurants(merchant_id);
 CREATE INDEX idx_restaurants_enabled ON restaurants(enabled);
 CREATE INDEX idx_restaurants_slug ON restaurants(slug);
+CREATE INDEX idx_restaurants_name_trgm ON restaurants USING GIN (res_name_search gin_trgm_ops);
 
 -- Trigger to auto-update geom from lat/lon
 CREATE OR REPLACE FUNCTION update_restaurant_geom()
@@ -75,25 +94,38 @@ CREATE TABLE size (
 CREATE TABLE products (
     id VARCHAR(255) PRIMARY KEY,
     product_name VARCHAR(255) NOT NULL,
+    product_name_search TEXT GENERATED ALWAYS AS (vn_fold(product_name)) STORED,
     description TEXT NOT NULL,
     restaurant_id VARCHAR(255) NOT NULL REFERENCES restaurants(id) ON DELETE CASCADE,
     image_url VARCHAR(255),
+    thumbnail_url VARCHAR(255), -- variant cho trang danh sách
+    detail_url VARCHAR(255), -- variant cho trang chi tiết
     public_id VARCHAR(255),
+    image_status VARCHAR(20), -- PENDING | READY | FAILED, NULL khi không có ảnh
     category_id VARCHAR(10) NOT NULL REFERENCES categories(id),
     total_review INTEGER DEFAULT 0,
     rating REAL,
+    rating_sum DOUBLE PRECISION NOT NULL DEFAULT 0,
+    rating_histogram INTEGER[] NOT NULL DEFAULT '{0,0,0,0,0}',
     slug VARCHAR(255) NOT NULL UNIQUE,
     available BOOLEAN NOT NULL,
+    min_price DECIMAL(10,2),
+    max_price DECIMAL(10,2),
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
 -- Indexes for products
-CREATE INDEX idx_products_restaurant ON products(restaurant_id);
+-- Cột đầu restaurant_id vẫn phục vụ lookup theo nhà hàng; thêm rating để lấy top N món mỗi nhà hàng
+-- (trang danh sách withTopProducts) mà không phải sort toàn bộ món
+CREATE INDEX idx_products_restaurant_rating ON products(restaurant_id, (COALESCE(rating, 0)) DESC, id);
 CREATE INDEX idx_products_category ON products(category_id);
-CREATE INDEX idx_products_rating ON products(rating);
+-- Khớp ORDER BY COALESCE(rating, 0) DESC, id của trang sản phẩm sắp xếp theo rating
+CREATE INDEX idx_products_rating_id ON products ((COALESCE(rating, 0)) DESC, id)
+    INCLUDE (restaurant_id, category_id, min_price, max_price);
 CREATE INDEX idx_products_available ON products(available);
 CREATE INDEX idx_products_slug ON products(slug);
+CREATE INDEX idx_products_name_trgm ON products USING GIN (product_name_search gin_trgm_ops);
 
 
 CREATE TABLE product_sizes (
@@ -105,9 +137,49 @@ CREATE TABLE product_sizes (
     FOREIGN KEY (size_id) REFERENCES size(id) ON DELETE CASCADE
 );
 
-CREATE INDEX idx_product_sizes_product ON product_sizes(product_id);
+CREATE INDEX idx_product_sizes_product_price ON product_sizes(product_id, price);
 CREATE INDEX idx_product_sizes_size ON product_sizes(size_id);
 
+-- Trigger to keep products.min_price/max_price in sync with product_sizes
+CREATE OR REPLACE FUNCTION update_product_price_range()
+RETURNS TRIGGER AS $$
+DECLARE
+    target_id VARCHAR(255);
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        target_id := OLD.product_id;
+    ELSE
+        target_id := NEW.product_id;
+    END IF;
+
+    UPDATE products p
+    SET min_price = agg.min_price, max_price = agg.max_price
+    FROM (
+        SELECT MIN(price) AS min_price, MAX(price) AS max_price
+        FROM product_sizes
+        WHERE product_id = target_id
+    ) agg
+    WHERE p.id = target_id;
+
+    IF TG_OP = 'UPDATE' AND OLD.product_id <> NEW.product_id THEN
+        UPDATE products p
+        SET min_price = agg.min_price, max_price = agg.max_price
+        FROM (
+            SELECT MIN(price) AS min_price, MAX(price) AS max_price
+            FROM product_sizes
+            WHERE product_id = OLD.product_id
+        ) agg
+        WHERE p.id = OLD.product_id;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER product_sizes_price_range_trigger
+AFTER INSERT OR UPDATE OR DELETE ON product_sizes
+FOR EACH ROW
+EXECUTE FUNCTION update_product_price_range();
+
 CREATE TABLE reviews (
     id VARCHAR(200) PRIMARY KEY,
     title VARCHAR(255) NOT NULL,
@@ -115,7 +187,7 @@ CREATE TABLE reviews (
     rating REAL,
     review_id VARCHAR(255) NOT NULL,
     review_type VARCHAR(20) NOT NULL,
-    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     total_review INTEGER,
     user_id VARCHAR(100) NOT NULL
 );
@@ -123,6 +195,9 @@ CREATE TABLE reviews (
 CREATE INDEX idx_reviews_user ON reviews(user_id);
 CREATE INDEX idx_reviews_review ON reviews(review_id);
 CREATE INDEX idx_reviews_type ON reviews(review_type);
+-- Danh sách review của 1 nhà hàng/món, mới nhất trước (keyset theo created_at, id)
+CREATE INDEX idx_reviews_target_created ON reviews(review_type, review_id, created_at DESC, id DESC);
+CREATE INDEX idx_reviews_created ON reviews(created_at DESC, id DESC);
 CREATE INDEX idx_reviews_rating ON reviews(rating);
 
 -- Helper function: Get nearby restaurants
@@ -595,4 +670,24 @@ INSERT INTO reviews (id, title, content, rating, review_id, review_type, user_id
 ('REV007', 'Authentic Mexican taste', 'Tacos taste just like in Mexico!', 4.8, 'RES010', 'RESTAURANT', 'user_gen_06'),
 ('REV008', 'Crispy and delicious', 'Fried chicken is perfectly crispy', 4.9, 'RES011', 'RESTAURANT', 'user_gen_07'),
 ('REV009', 'Healthy and tasty', 'Finally healthy food that tastes good!', 5.0, 'RES012', 'RESTAURANT', 'user_gen_08'),
-('REV010', 'Perfect for diet', 'Quinoa Buddha Bowl is my favorite!', 4.8, 'RES012', 'RESTAURANT', 'testuserid');
\ No newline at end of file
+('REV010', 'Perfect for diet', 'Quinoa Buddha Bowl is my favorite!', 4.8, 'RES012', 'RESTAURANT', 'testuserid');
+
+-- Dữ liệu mẫu chỉ có rating/total_review, tính rating_sum tương ứng
+UPDATE restaurants SET rating_sum = COALESCE(rating, 0) * COALESCE(total_review, 0);
+UPDATE products SET rating_sum = COALESCE(rating, 0) * COALESCE(total_review, 0);
+
+-- Phân bố số sao của dữ liệu mẫu lấy từ bảng reviews (rating làm tròn về 1-5)
+UPDATE restaurants r SET rating_histogram = ARRAY(
+    SELECT COUNT(rv.id)::INTEGER
+    FROM generate_series(1, 5) s
+    LEFT JOIN reviews rv ON rv.review_id = r.id AND rv.review_type = 'RESTAURANT'
+                         AND LEAST(GREATEST(ROUND(rv.rating), 1), 5) = s
+    GROUP BY s ORDER BY s
+);
+UPDATE products p SET rating_histogram = ARRAY(
+    SELECT COUNT(rv.id)::INTEGER
+    FROM generate_series(1, 5) s
+    LEFT JOIN reviews rv ON rv.review_id = p.id AND rv.review_type = 'PRODUCT'
+                         AND LEAST(GREATEST(ROUND(rv.rating), 1), 5) = s
+    GROUP BY s ORDER BY s
+);
@@ -28,7 +28,11 @@ dependencies {
 	implementation("com.cloudinary:cloudinary-http5:2.3.2")
 	implementation("org.springframework.boot:spring-boot-starter-webflux")
     testImplementation("io.projectreactor:reactor-test")
+	testImplementation("org.springframework.boot:spring-boot-testcontainers")
+	testImplementation("org.testcontainers:junit-jupiter")
+	testImplementation("org.testcontainers:postgresql")
   	implementation("org.springframework.cloud:spring-cloud-starter-circuitbreaker-resilience4j")
+	implementation("com.github.ben-manes.caffeine:caffeine")
 }
 
 dependencyManagement {
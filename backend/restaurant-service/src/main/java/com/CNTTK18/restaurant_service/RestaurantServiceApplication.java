@@ -2,8 +2,10 @@ package com.CNTTK18.restaurant_service;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication(scanBasePackages = "com.CNTTK18.restaurant_service, com.CNTTK18.Common")
+@EnableScheduling
 public class RestaurantServiceApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,92 @@
+package com.CNTTK18.restaurant_service.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import com.CNTTK18.restaurant_service.util.TransactionUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+
+// Cache response của trang chi tiết theo slug, kèm ETag tính sẵn.
+// ETag = updatedAt (epoch millis) + hash nội dung, nên khi rating/size thay đổi mà updatedAt
+// không đổi thì ETag vẫn khác. ETag chỉ tính lại khi miss cache, request trùng ETag trả 304
+public class DetailCache<T> {
+    public record Entry<T>(String id, String etag, T body) {
+    }
+
+    private final Cache<String, Entry<T>> cache;
+    private final Function<T, String> idOf;
+    private final Function<T, Instant> versionOf;
+    private final ObjectMapper objectMapper;
+    // Tăng trước mỗi lần invalidate: get() thấy generation đổi sau khi load thì không giữ entry vừa load.
+    // Tăng trước khi xóa nên entry lọt qua lần kiểm tra của get() chắc chắn đã nằm trong map lúc xóa
+    private final AtomicLong generation = new AtomicLong();
+
+    public DetailCache(Cache<String, Entry<T>> cache, Function<T, String> idOf,
+                       Function<T, Instant> versionOf, ObjectMapper objectMapper) {
+        this.cache = cache;
+        this.idOf = idOf;
+        this.versionOf = versionOf;
+        this.objectMapper = objectMapper;
+    }
+
+    // Nhiều request cùng miss một slug chỉ load 1 lần (Caffeine gom lại).
+    // Nếu có invalidate chạy trong lúc load thì entry có thể được build từ dữ liệu trước khi ghi,
+    // lúc đó entry vẫn được trả về cho request này nhưng bị bỏ khỏi cache
+    public Entry<T> get(String slug, Supplier<T> loader) {
+        long seen = generation.get();
+        Entry<T> entry = cache.get(slug, key -> {
+            T body = loader.get();
+            return new Entry<>(idOf.apply(body), etagOf(body), body);
+        });
+        if (generation.get() != seen) {
+            cache.asMap().remove(slug, entry);
+        }
+        return entry;
+    }
+
+    // Slug có thể đổi khi cập nhật tên nên xóa theo id, chạy sau khi commit
+    public void invalidate(String id) {
+        if (id == null) {
+            return;
+        }
+        TransactionUtil.afterCommit(() -> {
+            generation.incrementAndGet();
+            cache.asMap().values().removeIf(e -> id.equals(e.id()));
+        });
+    }
+
+    public void invalidateIf(Predicate<T> predicate) {
+        TransactionUtil.afterCommit(() -> {
+            generation.incrementAndGet();
+            cache.asMap().values().removeIf(e -> predicate.test(e.body()));
+        });
+    }
+
+    public void invalidateAll() {
+        TransactionUtil.afterCommit(() -> {
+            generation.incrementAndGet();
+            cache.invalidateAll();
+        });
+    }
+
+    private String etagOf(T body) {
+        Instant version = versionOf.apply(body);
+        long millis = version == null ? 0 : version.toEpochMilli();
+        try {
+            byte[] json = objectMapper.writeValueAsString(body).getBytes(StandardCharsets.UTF_8);
+            byte[] digest = MessageDigest.getInstance("MD5").digest(json);
+            return millis + "-" + HexFormat.of().formatHex(digest, 0, 8);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Cannot compute ETag", e);
+        }
+    }
+}
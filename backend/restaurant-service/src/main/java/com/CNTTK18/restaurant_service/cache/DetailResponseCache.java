@@ -0,0 +1,105 @@
+package com.CNTTK18.restaurant_service.cache;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.CNTTK18.restaurant_service.dto.product.response.ProductResponse;
+import com.CNTTK18.restaurant_service.dto.product.response.ProductResponseWithoutRes;
+import com.CNTTK18.restaurant_service.dto.restaurant.response.ResResponseWithProduct;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+// Cache trang chi tiết nhà hàng/sản phẩm theo slug. Trang nhà hàng chứa danh sách món,
+// trang món chứa thông tin nhà hàng nên thay đổi ở bên nào cũng phải xóa cả 2 phía.
+// Metric cache.* với tag cache=restaurantDetail / productDetail
+@Component
+public class DetailResponseCache {
+    private final DetailCache<ResResponseWithProduct> restaurants;
+    private final DetailCache<ProductResponse> products;
+
+    public DetailResponseCache(MeterRegistry meterRegistry, ObjectMapper objectMapper,
+                               @Value("${detail.cache.max-entries:10000}") long maxEntries,
+                               @Value("${detail.cache.ttl:10m}") Duration ttl) {
+        Cache<String, DetailCache.Entry<ResResponseWithProduct>> resCache = Caffeine.newBuilder()
+                        .maximumSize(maxEntries)
+                        .expireAfterWrite(ttl)
+                        .recordStats()
+                        .build();
+        Cache<String, DetailCache.Entry<ProductResponse>> productCache = Caffeine.newBuilder()
+                        .maximumSize(maxEntries)
+                        .expireAfterWrite(ttl)
+                        .recordStats()
+                        .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, resCache, "restaurantDetail");
+        CaffeineCacheMetrics.monitor(meterRegistry, productCache, "productDetail");
+
+        this.restaurants = new DetailCache<>(resCache, ResResponseWithProduct::getId,
+                                DetailResponseCache::versionOf, objectMapper);
+        this.products = new DetailCache<>(productCache, ProductResponse::getId,
+                                DetailResponseCache::versionOf, objectMapper);
+    }
+
+    public DetailCache<ResResponseWithProduct> restaurants() {
+        return restaurants;
+    }
+
+    public DetailCache<ProductResponse> products() {
+        return products;
+    }
+
+    // Nhà hàng đổi thông tin/bị xóa: xóa trang nhà hàng và trang các món của nó
+    public void evictRestaurant(String resId) {
+        restaurants.invalidate(resId);
+        products.invalidateIf(p -> p.getRestaurant() != null && resId.equals(p.getRestaurant().getId()));
+    }
+
+    // Món đổi thông tin/bị xóa: xóa trang món và trang nhà hàng chứa nó
+    public void evictProduct(String productId, String resId) {
+        products.invalidate(productId);
+        restaurants.invalidate(resId);
+    }
+
+    // Dùng khi không có sẵn id nhà hàng (vd. review chỉ biết id món): tìm trang nhà hàng có chứa món
+    public void evictProduct(String productId) {
+        products.invalidate(productId);
+        restaurants.invalidateIf(r -> r.getProducts() != null
+                                    && r.getProducts().stream().anyMatch(p -> productId.equals(p.getId())));
+    }
+
+    // Danh mục/size được nhúng trong mọi response nên xóa hết
+    public void evictAll() {
+        restaurants.invalidateAll();
+        products.invalidateAll();
+    }
+
+    private static Instant versionOf(ResResponseWithProduct res) {
+        Instant version = res.getUpdatedAt();
+        List<ProductResponseWithoutRes> items = res.getProducts();
+        if (items != null) {
+            for (ProductResponseWithoutRes p : items) {
+                version = max(version, p.getUpdatedAt());
+            }
+        }
+        return version;
+    }
+
+    private static Instant versionOf(ProductResponse product) {
+        Instant resVersion = product.getRestaurant() == null ? null : product.getRestaurant().getUpdatedAt();
+        return max(product.getUpdatedAt(), resVersion);
+    }
+
+    private static Instant max(Instant a, Instant b) {
+        if (a == null) {
+            return b;
+        }
+        return (b == null || a.isAfter(b)) ? a : b;
+    }
+}
@@ -0,0 +1,111 @@
+package com.CNTTK18.restaurant_service.cache;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import com.CNTTK18.restaurant_service.util.TransactionUtil;
+
+// Cache toàn bộ một bảng nhỏ, ít thay đổi (id -> entity). Load lần đầu khi được đọc,
+// ghi được áp dụng thẳng vào cache (write-through) sau khi transaction commit.
+// Snapshot là map bất biến, mỗi lần ghi tạo map mới nên đọc không cần khóa.
+// Snapshot hết hạn sau ttl để nhận các thay đổi không đi qua put/remove (instance khác, sửa tay trong DB),
+// get() bị miss thì đọc dòng đó từ DB thay vì trả về rỗng cho tới lần load sau
+public class ReferenceCache<T> {
+    // find() bị miss chỉ load lại cả bảng nếu snapshot cũ hơn khoảng này, tránh mỗi lần miss là một lần findAll
+    private static final long MISS_RELOAD_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final Supplier<List<T>> loader;
+    private final Function<String, Optional<T>> byId;
+    private final Function<T, String> idOf;
+    private final long ttlNanos;
+    private volatile Snapshot<T> snapshot;
+
+    public ReferenceCache(Supplier<List<T>> loader, Function<String, Optional<T>> byId, Function<T, String> idOf,
+                          Duration ttl) {
+        this.loader = loader;
+        this.byId = byId;
+        this.idOf = idOf;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    public List<T> getAll() {
+        return List.copyOf(load().values().values());
+    }
+
+    public Optional<T> get(String id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        T cached = load().values().get(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<T> loaded = byId.apply(id);
+        // Dòng có thể vừa được insert trong transaction hiện tại, chỉ đưa vào cache khi đã commit
+        loaded.ifPresent(value -> TransactionUtil.afterCommit(() -> update(map -> map.putIfAbsent(id, value))));
+        return loaded;
+    }
+
+    public Optional<T> find(Predicate<T> predicate) {
+        Snapshot<T> current = load();
+        Optional<T> found = current.values().values().stream().filter(predicate).findFirst();
+        if (found.isPresent() || System.nanoTime() - current.loadedAt() < MISS_RELOAD_NANOS) {
+            return found;
+        }
+        return reload(current).values().values().stream().filter(predicate).findFirst();
+    }
+
+    public void put(T value) {
+        TransactionUtil.afterCommit(() -> update(map -> map.put(idOf.apply(value), value)));
+    }
+
+    public void remove(String id) {
+        TransactionUtil.afterCommit(() -> update(map -> map.remove(id)));
+    }
+
+    // Lần đọc tiếp theo sẽ load lại từ DB
+    public void invalidate() {
+        snapshot = null;
+    }
+
+    private Snapshot<T> load() {
+        Snapshot<T> current = snapshot;
+        if (current != null && System.nanoTime() - current.loadedAt() < ttlNanos) {
+            return current;
+        }
+        return reload(current);
+    }
+
+    // Chỉ một luồng load lại, các luồng khác đợi rồi dùng snapshot vừa load
+    private synchronized Snapshot<T> reload(Snapshot<T> seen) {
+        if (snapshot != seen) {
+            return snapshot;
+        }
+        Map<String, T> loaded = new LinkedHashMap<>();
+        loader.get().forEach(value -> loaded.put(idOf.apply(value), value));
+        snapshot = new Snapshot<>(Collections.unmodifiableMap(loaded), System.nanoTime());
+        return snapshot;
+    }
+
+    private synchronized void update(Consumer<Map<String, T>> change) {
+        if (snapshot == null) {
+            return;
+        }
+        Map<String, T> copy = new LinkedHashMap<>(snapshot.values());
+        change.accept(copy);
+        // Giữ thời điểm load cũ, ghi lẻ không làm snapshot sống lâu hơn ttl
+        snapshot = new Snapshot<>(Collections.unmodifiableMap(copy), snapshot.loadedAt());
+    }
+
+    private record Snapshot<T>(Map<String, T> values, long loadedAt) {
+    }
+}
@@ -0,0 +1,33 @@
+package com.CNTTK18.restaurant_service.cache;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.CNTTK18.restaurant_service.model.Categories;
+import com.CNTTK18.restaurant_service.model.Size;
+import com.CNTTK18.restaurant_service.repository.CateRepository;
+import com.CNTTK18.restaurant_service.repository.SizeRepository;
+
+// Danh mục và size: vài chục dòng, đọc ở mọi trang và mọi lần ghi sản phẩm.
+// CateService/SizeService đồng bộ cache qua put/remove, ghi từ instance khác được nhận sau ttl hoặc khi get bị miss
+@Component
+public class ReferenceDataCache {
+    private final ReferenceCache<Categories> categories;
+    private final ReferenceCache<Size> sizes;
+
+    public ReferenceDataCache(CateRepository cateRepository, SizeRepository sizeRepository,
+                              @Value("${reference.cache.ttl:5m}") Duration ttl) {
+        this.categories = new ReferenceCache<>(cateRepository::findAll, cateRepository::findById, Categories::getId, ttl);
+        this.sizes = new ReferenceCache<>(sizeRepository::findAll, sizeRepository::findById, Size::getId, ttl);
+    }
+
+    public ReferenceCache<Categories> categories() {
+        return categories;
+    }
+
+    public ReferenceCache<Size> sizes() {
+        return sizes;
+    }
+}
@@ -0,0 +1,16 @@
+package com.CNTTK18.restaurant_service.client;
+
+import com.CNTTK18.restaurant_service.dto.api.UserResponse;
+
+// Phần thông tin user mà restaurant-service cần để kiểm tra quyền, được cache trong UserDirectoryClient
+public record DirectoryUser(String id, String role, boolean enabled) {
+    public static final String MERCHANT = "MERCHANT";
+
+    public static DirectoryUser from(UserResponse user) {
+        return new DirectoryUser(user.getId(), user.getRole(), user.isEnabled());
+    }
+
+    public boolean isMerchant() {
+        return MERCHANT.equals(role);
+    }
+}
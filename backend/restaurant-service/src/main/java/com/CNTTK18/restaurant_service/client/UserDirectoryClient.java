@@ -0,0 +1,63 @@
+package com.CNTTK18.restaurant_service.client;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import com.CNTTK18.restaurant_service.dto.api.UserResponse;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Mono;
+
+// Tra cứu user (role/enabled) từ user-service, không block luồng gọi.
+// - Cache ngắn hạn (user.directory.ttl) vì role chỉ đổi khi admin duyệt merchant
+// - Các lời gọi đồng thời cùng 1 id dùng chung 1 request: AsyncCache giữ future đang chạy làm giá trị
+// User không tồn tại không được cache để user vừa đăng ký dùng được ngay.
+// Metric cache.* với tag cache=userDirectory
+@Component
+public class UserDirectoryClient {
+    private static final String USER_URI = "lb://user-service/api/users/admin/{id}";
+
+    private WebClient webClient;
+    private Duration timeout;
+    private AsyncLoadingCache<String, DirectoryUser> cache;
+
+    public UserDirectoryClient(WebClient.Builder webClientBuilder, MeterRegistry meterRegistry,
+                               @Value("${user.directory.ttl:30s}") Duration ttl,
+                               @Value("${user.directory.max-entries:10000}") long maxEntries,
+                               @Value("${user.directory.timeout:3s}") Duration timeout) {
+        this.webClient = webClientBuilder.build();
+        this.timeout = timeout;
+        this.cache = Caffeine.newBuilder()
+                        .maximumSize(maxEntries)
+                        .expireAfterWrite(ttl)
+                        .recordStats()
+                        .buildAsync((id, executor) -> fetchOne(id).toFuture());
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "userDirectory");
+    }
+
+    // Rỗng nếu user không tồn tại
+    public Mono<DirectoryUser> getUser(String id) {
+        if (id == null || id.isBlank()) {
+            return Mono.empty();
+        }
+        // suppressCancel: 1 subscriber hủy không được hủy future mà các request khác đang chờ chung
+        return Mono.fromFuture(() -> cache.get(id), true);
+    }
+
+    private Mono<DirectoryUser> fetchOne(String id) {
+        return webClient.get()
+                        .uri(USER_URI, id)
+                        .retrieve()
+                        .bodyToMono(UserResponse.class)
+                        .map(DirectoryUser::from)
+                        .onErrorResume(WebClientResponseException.NotFound.class, ex -> Mono.empty())
+                        .timeout(timeout);
+    }
+}
@@ -12,6 +12,7 @@ import com.CNTTK18.restaurant_service.service.DashboardService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import reactor.core.publisher.Mono;
 
 @RestController
 @RequestMapping("/api/dashboard")
@@ -26,10 +27,9 @@ public class DashboardController {
     @Tag(name = "Get")
     @Operation(summary = "Get merchant restaurant information and statistics")
     @GetMapping("/merchant/{merchantId}/restaurant")
-    public ResponseEntity<MerchantOverviewResponse> getMerchantOverview(
+    public Mono<ResponseEntity<MerchantOverviewResponse>> getMerchantOverview(
             @PathVariable String merchantId,
             @AuthenticationPrincipal String userId) {
-        MerchantOverviewResponse overview = dashboardService.getMerchantOverview(merchantId, userId);
-        return ResponseEntity.ok(overview);
+        return dashboardService.getMerchantOverview(merchantId, userId).map(ResponseEntity::ok);
     }
 }
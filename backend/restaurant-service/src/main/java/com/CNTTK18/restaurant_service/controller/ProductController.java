@@ -1,12 +1,18 @@
 package com.CNTTK18.restaurant_service.controller;
 
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Set;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -15,16 +21,23 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.CNTTK18.restaurant_service.cache.DetailCache;
 import com.CNTTK18.restaurant_service.dto.product.request.ProductRequest;
 import com.CNTTK18.restaurant_service.dto.product.request.UpdateProduct;
+import com.CNTTK18.restaurant_service.dto.product.response.MenuImportResponse;
 import com.CNTTK18.restaurant_service.dto.product.response.ProductResponse;
+import com.CNTTK18.restaurant_service.dto.response.CursorResponse;
 import com.CNTTK18.restaurant_service.dto.response.MessageResponse;
 import com.CNTTK18.restaurant_service.dto.restaurant.request.Coordinates;
+import com.CNTTK18.restaurant_service.menu.MenuFormat;
 import com.CNTTK18.restaurant_service.model.ProductSize;
 import com.CNTTK18.restaurant_service.model.Restaurants;
 import com.CNTTK18.restaurant_service.service.ProductService;
@@ -55,6 +68,7 @@ public class ProductController {
                                                                @RequestParam(required = false) Double lat,
                                                                @RequestParam(required = false) Double lon,
                                                                @RequestParam(required = false) String locationsorted,
+                                                               @RequestParam(required = false) String mode,
                                                                Pageable pageable) {
                                                             
         Coordinates location = null;
@@ -62,7 +76,30 @@ public class ProductController {
             location = new Coordinates(lon, lat);
         }
         return productService.getAllProducts(rating, category, minPrice, maxPrice, search, nearby, location, 
-                                            locationsorted, pageable)
+                                            locationsorted, mode, pageable)
+                            .map(productList -> ResponseEntity.ok(productList));
+    }
+
+    @Tag(name = "Get")
+    @Operation(summary = "Get products by cursor (infinite scroll)")
+    @GetMapping("/scroll")
+    public Mono<ResponseEntity<CursorResponse<ProductResponse>>> getProductsByCursor(@RequestParam(required = false) String rating,
+                                                               @RequestParam(required = false) String category,
+                                                               @RequestParam(required = false) BigDecimal minPrice,
+                                                               @RequestParam(required = false) BigDecimal maxPrice,
+                                                               @RequestParam(required = false) String search,
+                                                               @RequestParam(required = false) Integer nearby,
+                                                               @RequestParam(required = false) Double lat,
+                                                               @RequestParam(required = false) Double lon,
+                                                               @RequestParam(required = false) String sort,
+                                                               @RequestParam(required = false) String cursor,
+                                                               @RequestParam(defaultValue = "20") int size) {
+                                                            
+        Coordinates location = null;
+        if (lon != null && lat != null) {
+            location = new Coordinates(lon, lat);
+        }
+        return productService.getProductsByCursor(rating, category, minPrice, maxPrice, search, nearby, location, sort, cursor, size)
                             .map(productList -> ResponseEntity.ok(productList));
     }
 
@@ -76,8 +113,16 @@ public class ProductController {
     @Tag(name = "Get")
     @Operation(summary = "Get product by Slug")
     @GetMapping("/{slug}")
-    public ResponseEntity<ProductResponse> getProductBySlug(@PathVariable String slug) {
-        return ResponseEntity.ok(productService.getProductBySlug(slug));
+    public ResponseEntity<ProductResponse> getProductBySlug(@PathVariable String slug, WebRequest request) {
+        DetailCache.Entry<ProductResponse> entry = productService.getProductDetailBySlug(slug);
+        // Client gửi If-None-Match trùng ETag thì trả 304 không kèm body
+        if (request.checkNotModified(entry.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(entry.etag()).build();
+        }
+        return ResponseEntity.ok()
+                    .eTag(entry.etag())
+                    .cacheControl(CacheControl.noCache())
+                    .body(entry.body());
     }
 
     @Tag(name = "Post")
@@ -88,6 +133,34 @@ public class ProductController {
         return new ResponseEntity<>(productService.createProduct(productRequest, imageFile), HttpStatusCode.valueOf(201));
     }
 
+    @Tag(name = "Post")
+    @Operation(summary = "Import a restaurant menu",
+               description = "Body is a CSV file (columns productName,description,categoryId,available,sizes with sizes like S:35000;M:45000) "
+                            + "or a JSON array of the same items. Invalid rows are reported and skipped")
+    @PostMapping(value = "/import/{resId}", consumes = {"text/csv", MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<MenuImportResponse> importMenu(@PathVariable String resId,
+                                        @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                        InputStream body, @AuthenticationPrincipal String userId) {
+        // Body được đọc thẳng từ request stream, không bind vào object để không phải giữ cả file trong bộ nhớ
+        return ResponseEntity.ok(productService.importMenu(resId, MenuFormat.fromContentType(contentType), body, userId));
+    }
+
+    @Tag(name = "Get")
+    @Operation(summary = "Export a restaurant menu as CSV or JSON")
+    @GetMapping("/export/{resId}")
+    public ResponseEntity<StreamingResponseBody> exportMenu(@PathVariable String resId,
+                                        @RequestParam(defaultValue = "csv") String format,
+                                        @AuthenticationPrincipal String userId) {
+        MenuFormat menuFormat = MenuFormat.fromName(format);
+        ContentDisposition disposition = ContentDisposition.attachment()
+                                        .filename("menu-" + resId + "." + menuFormat.getExtension())
+                                        .build();
+        return ResponseEntity.ok()
+                    .contentType(menuFormat.getMediaType())
+                    .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
+                    .body(productService.exportMenu(resId, menuFormat, userId));
+    }
+
     @Tag(name = "Put")
     @Operation(summary = "Update a product")
     @PutMapping("/{id}")
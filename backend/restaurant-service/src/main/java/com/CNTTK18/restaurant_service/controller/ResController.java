@@ -6,6 +6,8 @@ import java.util.concurrent.CompletableFuture;
 import org.slf4j.Logger;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -17,9 +19,13 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.CNTTK18.restaurant_service.cache.DetailCache;
+import com.CNTTK18.restaurant_service.dto.response.CursorResponse;
 import com.CNTTK18.restaurant_service.dto.response.MessageResponse;
+import com.CNTTK18.restaurant_service.dto.restaurant.ResListView;
 import com.CNTTK18.restaurant_service.dto.restaurant.request.Coordinates;
 import com.CNTTK18.restaurant_service.dto.restaurant.request.ResRequest;
 import com.CNTTK18.restaurant_service.dto.restaurant.request.UpdateRes;
@@ -46,7 +52,8 @@ public class ResController {
     }
 
     @Tag(name = "Get")
-    @Operation(summary = "Get all restaurants")
+    @Operation(summary = "Get all restaurants",
+               description = "view=summary omits products, withTopProducts=N returns only the N best-rated products of each restaurant")
     @GetMapping()
     public Mono<ResponseEntity<Page<ResResponseWithProduct>>> getAllRestaurants(@RequestParam(required = false) Double lat,
                                                                @RequestParam(required = false) Double lon,
@@ -54,13 +61,42 @@ public class ResController {
                                                                @RequestParam(required = false) Integer nearby,
                                                                @RequestParam(required = false) String rating,
                                                                @RequestParam(required = false) String category,
+                                                               @RequestParam(required = false) String mode,
+                                                               @RequestParam(required = false) String view,
+                                                               @RequestParam(required = false) Integer withTopProducts,
                                                                Pageable pageable) {
 
         Coordinates location = null;
         if (lon != null && lat != null) {
             location = new Coordinates(lon, lat);
         }
-        return resService.getAllRestaurants(location, search, nearby, rating, category, pageable).map(
+        return resService.getAllRestaurants(location, search, nearby, rating, category, mode,
+                                            ResListView.of(view, withTopProducts), pageable).map(
+            resList -> ResponseEntity.ok(resList)
+        );
+    }
+
+    @Tag(name = "Get")
+    @Operation(summary = "Get restaurants by cursor (infinite scroll)")
+    @GetMapping("/scroll")
+    public Mono<ResponseEntity<CursorResponse<ResResponseWithProduct>>> getRestaurantsByCursor(@RequestParam(required = false) Double lat,
+                                                               @RequestParam(required = false) Double lon,
+                                                               @RequestParam(required = false) String search, 
+                                                               @RequestParam(required = false) Integer nearby,
+                                                               @RequestParam(required = false) String rating,
+                                                               @RequestParam(required = false) String category,
+                                                               @RequestParam(required = false) String sort,
+                                                               @RequestParam(required = false) String cursor,
+                                                               @RequestParam(defaultValue = "20") int size,
+                                                               @RequestParam(required = false) String view,
+                                                               @RequestParam(required = false) Integer withTopProducts) {
+
+        Coordinates location = null;
+        if (lon != null && lat != null) {
+            location = new Coordinates(lon, lat);
+        }
+        return resService.getRestaurantsByCursor(location, search, nearby, rating, category, sort, cursor, size,
+                                            ResListView.of(view, withTopProducts)).map(
             resList -> ResponseEntity.ok(resList)
         );
     }
@@ -83,15 +119,23 @@ public class ResController {
     @Tag(name = "Get")
     @Operation(summary = "Get restaurant by Slug")
     @GetMapping("/{slug}")
-    public ResponseEntity<ResResponseWithProduct> getRestaurantBySlug(@PathVariable String slug) {
-        return ResponseEntity.ok(resService.getRestaurantBySlug(slug));
+    public ResponseEntity<ResResponseWithProduct> getRestaurantBySlug(@PathVariable String slug, WebRequest request) {
+        DetailCache.Entry<ResResponseWithProduct> entry = resService.getRestaurantDetailBySlug(slug);
+        // Client gửi If-None-Match trùng ETag thì trả 304 không kèm body
+        if (request.checkNotModified(entry.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(entry.etag()).build();
+        }
+        return ResponseEntity.ok()
+                    .eTag(entry.etag())
+                    .cacheControl(CacheControl.noCache())
+                    .body(entry.body());
     }
 
     @Tag(name = "Get")
     @Operation(summary = "Get restaurants by merchant id")
     @GetMapping("/merchant/{id}")
-    public ResponseEntity<List<ResResponseWithProduct>> getRestaurantByMerchantId(@PathVariable String id) {
-        return ResponseEntity.ok(resService.getRestaurantsByMerchantId(id));
+    public Mono<ResponseEntity<List<ResResponseWithProduct>>> getRestaurantByMerchantId(@PathVariable String id) {
+        return resService.getRestaurantsByMerchantId(id).map(ResponseEntity::ok);
     }
 
     @Tag(name = "Put")
@@ -1,6 +1,5 @@
 package com.CNTTK18.restaurant_service.controller;
 
-import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 import org.springframework.http.HttpStatusCode;
@@ -15,8 +14,10 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.CNTTK18.restaurant_service.dto.response.CursorResponse;
 import com.CNTTK18.restaurant_service.dto.response.MessageResponse;
 import com.CNTTK18.restaurant_service.dto.review.request.ReviewRequest;
+import com.CNTTK18.restaurant_service.dto.review.response.RatingHistogramResponse;
 import com.CNTTK18.restaurant_service.model.Reviews;
 import com.CNTTK18.restaurant_service.service.ReviewService;
 
@@ -36,11 +37,21 @@ public class ReviewController {
     }
 
     @Tag(name = "Get")
-    @Operation(summary = "Get all reviews")
+    @Operation(summary = "Get reviews (newest first, cursor pagination)")
     @GetMapping("")
-    public ResponseEntity<List<Reviews>> getAllReviews(@RequestParam(required = false) String resId,
+    public ResponseEntity<CursorResponse<Reviews>> getAllReviews(@RequestParam(required = false) String resId,
+                                                        @RequestParam(required = false) String productId,
+                                                        @RequestParam(required = false) String cursor,
+                                                        @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(reviewService.getReviews(resId, productId, cursor, size));
+    }
+
+    @Tag(name = "Get")
+    @Operation(summary = "Get rating histogram (1-5 stars) of a restaurant or product")
+    @GetMapping("/histogram")
+    public ResponseEntity<RatingHistogramResponse> getRatingHistogram(@RequestParam(required = false) String resId,
                                                         @RequestParam(required = false) String productId) {
-        return ResponseEntity.ok(reviewService.getAllReviews(resId, productId));
+        return ResponseEntity.ok(reviewService.getRatingHistogram(resId, productId));
     }
 
     @Tag(name = "Get")
@@ -57,8 +68,8 @@ public class ReviewController {
     @TimeLimiter(name = "create")
     @Retry(name = "create")
     public CompletableFuture<ResponseEntity<Reviews>> createReview(@RequestBody @Valid ReviewRequest reviewRequest) {
-        return CompletableFuture.supplyAsync(() -> 
-                    new ResponseEntity<>(reviewService.createReview(reviewRequest), HttpStatusCode.valueOf(201)));
+        return reviewService.createReview(reviewRequest)
+                        .map(rv -> new ResponseEntity<>(rv, HttpStatusCode.valueOf(201))).toFuture();
     }
 
     public CompletableFuture<ResponseEntity<MessageResponse>> fallbackMethod(ReviewRequest reviewRequest, Throwable ex)
@@ -0,0 +1,5 @@
+package com.CNTTK18.restaurant_service.data;
+
+public enum ImageStatus {
+    PENDING, READY, FAILED
+}
@@ -0,0 +1,61 @@
+package com.CNTTK18.restaurant_service.distance;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.CNTTK18.restaurant_service.util.DistanceUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+// Cache kết quả distance/duration theo (ô geohash của điểm xuất phát, id nhà hàng).
+// Người dùng ở cùng một khu vực (cùng ô) sẽ dùng lại kết quả của nhau.
+// Caffeine dùng W-TinyLFU để evict khi vượt quá maxEntries, hit/miss/eviction được
+// đẩy lên actuator qua metric cache.* với tag cache=distanceMatrix
+@Component
+public class DistanceMatrixCache {
+    public record Entry(double distance, double duration) {
+    }
+
+    private final Cache<String, Entry> cache;
+    private final int precision;
+
+    public DistanceMatrixCache(MeterRegistry meterRegistry,
+                               @Value("${distance.cache.max-entries:100000}") long maxEntries,
+                               @Value("${distance.cache.ttl:30m}") Duration ttl,
+                               @Value("${distance.cache.geohash-precision:7}") int precision) {
+        this.cache = Caffeine.newBuilder()
+                        .maximumSize(maxEntries)
+                        .expireAfterWrite(ttl)
+                        .recordStats()
+                        .build();
+        this.precision = precision;
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "distanceMatrix");
+    }
+
+    public String cellOf(double longitude, double latitude) {
+        return DistanceUtil.geohash(longitude, latitude, precision);
+    }
+
+    public Entry get(String cell, String restaurantId) {
+        return cache.getIfPresent(key(cell, restaurantId));
+    }
+
+    public void put(String cell, String restaurantId, double distance, double duration) {
+        cache.put(key(cell, restaurantId), new Entry(distance, duration));
+    }
+
+    // Gọi khi nhà hàng đổi toạ độ hoặc bị xoá
+    public void evictRestaurant(String restaurantId) {
+        String suffix = ":" + restaurantId;
+        cache.asMap().keySet().removeIf(k -> k.endsWith(suffix));
+    }
+
+    private String key(String cell, String restaurantId) {
+        return cell + ":" + restaurantId;
+    }
+}
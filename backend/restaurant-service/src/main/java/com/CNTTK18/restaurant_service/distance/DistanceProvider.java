@@ -0,0 +1,15 @@
+package com.CNTTK18.restaurant_service.distance;
+
+import java.util.List;
+
+import com.CNTTK18.restaurant_service.dto.distance.response.DistanceResponse;
+
+import reactor.core.publisher.Mono;
+
+// Tính ma trận 1xN (distance: mét, duration: giây) từ 1 điểm xuất phát đến N điểm đích.
+// Kết quả giữ đúng format của ORS matrix: distances.get(0), durations.get(0)
+public interface DistanceProvider {
+    String getName();
+
+    Mono<DistanceResponse> getDistanceAndDurationInList(List<Double> startingPoints, List<List<Double>> endPoints);
+}
@@ -0,0 +1,60 @@
+package com.CNTTK18.restaurant_service.distance;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.CNTTK18.restaurant_service.dto.distance.response.DistanceResponse;
+import com.CNTTK18.restaurant_service.util.DistanceUtil;
+
+import reactor.core.publisher.Mono;
+
+// Tính toán ngay trong process, không gọi ra ngoài:
+// distance = haversine * detourFactor (đường đi thực tế luôn dài hơn đường chim bay)
+// duration = distance / speed + overhead
+@Component
+public class LocalDistanceProvider implements DistanceProvider {
+    public static final String NAME = "local";
+
+    private final double detourFactor;
+    private final double speedMetersPerSecond;
+    private final double overheadSeconds;
+
+    public LocalDistanceProvider(@Value("${distance.local.detour-factor:1.3}") double detourFactor,
+                                 @Value("${distance.local.speed-kmh:25}") double speedKmh,
+                                 @Value("${distance.local.overhead-seconds:60}") double overheadSeconds) {
+        if (detourFactor < 1 || speedKmh <= 0 || overheadSeconds < 0) {
+            throw new IllegalArgumentException("Invalid local distance profile");
+        }
+        this.detourFactor = detourFactor;
+        this.speedMetersPerSecond = speedKmh * 1000 / 3600;
+        this.overheadSeconds = overheadSeconds;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Mono<DistanceResponse> getDistanceAndDurationInList(List<Double> startingPoints, List<List<Double>> endPoints) {
+        return Mono.just(computeMatrix(startingPoints, endPoints));
+    }
+
+    public DistanceResponse computeMatrix(List<Double> startingPoints, List<List<Double>> endPoints) {
+        double lon1 = startingPoints.get(0);
+        double lat1 = startingPoints.get(1);
+        int n = endPoints.size();
+        Double[] distances = new Double[n];
+        Double[] durations = new Double[n];
+
+        for (int i = 0; i < n; i++) {
+            List<Double> end = endPoints.get(i);
+            double distance = DistanceUtil.haversine(lon1, lat1, end.get(0), end.get(1)) * detourFactor;
+            distances[i] = distance;
+            durations[i] = distance / speedMetersPerSecond + overheadSeconds;
+        }
+        return new DistanceResponse(List.of(List.of(distances)), List.of(List.of(durations)));
+    }
+}
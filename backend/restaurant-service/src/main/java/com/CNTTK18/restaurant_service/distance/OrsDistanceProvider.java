@@ -0,0 +1,76 @@
+package com.CNTTK18.restaurant_service.distance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.CNTTK18.restaurant_service.dto.distance.request.DistanceRequest;
+import com.CNTTK18.restaurant_service.dto.distance.response.DistanceResponse;
+import com.CNTTK18.restaurant_service.dto.distance.response.OrsDirectionResponse;
+
+import reactor.core.publisher.Mono;
+
+@Component
+public class OrsDistanceProvider implements DistanceProvider {
+    public static final String NAME = "ors";
+
+    @Value("${OPENROUTESERVICE_API_KEY}")
+    private String apiKey;
+
+    @Value("${OPENROUTESERVICE_LIST_URL}")
+    private String apiListUrl;
+
+    @Value("${OPENROUTESERVICE_URL}")
+    private String apiUrl;
+
+    private WebClient webClient;
+
+    public OrsDistanceProvider(WebClient webClient) {
+        this.webClient = webClient;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Mono<DistanceResponse> getDistanceAndDurationInList(List<Double> startingPoints, List<List<Double>> endPoints) {
+        List<List<Double>> allPoints = new ArrayList<>();
+
+        allPoints.add(startingPoints);
+        allPoints.addAll(endPoints);
+
+        DistanceRequest distanceRequest = new DistanceRequest(allPoints);
+
+        return webClient
+                .post()
+                .uri(apiListUrl) // Endpoint của ORS Matrix API
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .header("Authorization", apiKey) // ORS yêu cầu API Key trong header
+                .bodyValue(distanceRequest)
+                .retrieve()
+                .bodyToMono(DistanceResponse.class);
+    }
+
+    public Mono<OrsDirectionResponse> getDistanceAndDuration(List<Double> start, List<Double> end) {
+        Map<String, List<List<Double>>> requestBody = Map.of(
+            "coordinates", List.of(start,end)
+        );
+
+        return webClient
+                .post()
+                .uri(apiUrl) 
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .header("Authorization", apiKey) // ORS yêu cầu API Key trong header
+                .bodyValue(requestBody)
+                .retrieve()
+                .bodyToMono(OrsDirectionResponse.class);
+    }
+}
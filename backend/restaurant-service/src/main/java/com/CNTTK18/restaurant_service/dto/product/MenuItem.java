@@ -0,0 +1,24 @@
+package com.CNTTK18.restaurant_service.dto.product;
+
+import java.util.List;
+
+import com.CNTTK18.restaurant_service.dto.product.request.SizePrice;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// 1 dòng của file menu import/export (CSV hoặc JSON), export ra file nào thì import lại được file đó
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class MenuItem {
+    private String productName;
+    private String description;
+    private String categoryId;
+    // Bỏ trống khi import => đang bán
+    private Boolean available;
+    private List<SizePrice> sizes;
+}
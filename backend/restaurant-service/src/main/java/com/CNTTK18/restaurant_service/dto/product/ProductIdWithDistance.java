@@ -0,0 +1,6 @@
+package com.CNTTK18.restaurant_service.dto.product;
+
+// distance: khoảng cách đường chim bay (mét) từ người dùng tới nhà hàng của sản phẩm
+public interface ProductIdWithDistance extends ProductIdWithRating {
+    public Double getDistance();
+}
@@ -0,0 +1,16 @@
+package com.CNTTK18.restaurant_service.dto.product.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class MenuImportError {
+    // Số thứ tự của dòng dữ liệu trong file (bắt đầu từ 1, không tính header CSV)
+    private int row;
+    private String message;
+}
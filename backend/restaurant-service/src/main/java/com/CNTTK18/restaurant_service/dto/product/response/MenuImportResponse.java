@@ -0,0 +1,22 @@
+package com.CNTTK18.restaurant_service.dto.product.response;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MenuImportResponse {
+    private int total;
+    private int imported;
+    private int failed;
+    // Chỉ giữ tối đa một số lỗi đầu tiên, failed vẫn là tổng số dòng lỗi
+    private List<MenuImportError> errors;
+}
@@ -3,6 +3,7 @@ package com.CNTTK18.restaurant_service.dto.product.response;
 import java.time.Instant;
 import java.util.List;
 
+import com.CNTTK18.restaurant_service.data.ImageStatus;
 import com.CNTTK18.restaurant_service.dto.productSize.response.ProductSizeResponse;
 import com.CNTTK18.restaurant_service.dto.restaurant.response.ResResponse;
 
@@ -22,6 +23,7 @@ public class ProductResponse {
     private String productName;
     private String description;
     private String imageURL;
+    private ImageStatus imageStatus;
     private String categoryName;
     private String categoryId;
     private boolean available;
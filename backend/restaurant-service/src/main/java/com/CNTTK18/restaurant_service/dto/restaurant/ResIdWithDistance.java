@@ -0,0 +1,6 @@
+package com.CNTTK18.restaurant_service.dto.restaurant;
+
+// distance: khoảng cách đường chim bay (mét) do PostGIS tính
+public interface ResIdWithDistance extends ResIdWithRating {
+    public Double getDistance();
+}
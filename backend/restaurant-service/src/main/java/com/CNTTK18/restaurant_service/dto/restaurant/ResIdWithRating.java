@@ -0,0 +1,6 @@
+package com.CNTTK18.restaurant_service.dto.restaurant;
+
+public interface ResIdWithRating {
+    public String getId();
+    public Float getRating();
+}
@@ -0,0 +1,33 @@
+package com.CNTTK18.restaurant_service.dto.restaurant;
+
+import com.CNTTK18.restaurant_service.exception.InvalidRequestException;
+
+// Mức chi tiết của trang danh sách nhà hàng, quyết định ngay từ tầng query có đụng tới bảng products hay không
+// SUMMARY: chỉ thông tin nhà hàng + danh mục, TOP_PRODUCTS: N món rating cao nhất mỗi nhà hàng, FULL: toàn bộ món
+public record ResListView(Kind kind, int topProducts) {
+    public enum Kind {
+        SUMMARY, TOP_PRODUCTS, FULL
+    }
+
+    public static final int MAX_TOP_PRODUCTS = 20;
+
+    public static final ResListView FULL = new ResListView(Kind.FULL, 0);
+
+    // view = summary | full (mặc định full để giữ tương thích), withTopProducts = N chọn N món mỗi nhà hàng
+    public static ResListView of(String view, Integer withTopProducts) {
+        boolean summary = "summary".equalsIgnoreCase(view);
+        if (view != null && !view.isBlank() && !summary && !"full".equalsIgnoreCase(view)) {
+            throw new InvalidRequestException("view must be summary or full");
+        }
+        if (withTopProducts == null) {
+            return summary ? new ResListView(Kind.SUMMARY, 0) : FULL;
+        }
+        if (summary) {
+            throw new InvalidRequestException("withTopProducts cannot be combined with view=summary");
+        }
+        if (withTopProducts <= 0 || withTopProducts > MAX_TOP_PRODUCTS) {
+            throw new InvalidRequestException("withTopProducts must be between 1 and " + MAX_TOP_PRODUCTS);
+        }
+        return new ResListView(Kind.TOP_PRODUCTS, withTopProducts);
+    }
+}
@@ -4,6 +4,7 @@ import java.time.Instant;
 import java.time.LocalTime;
 import java.util.List;
 
+import com.CNTTK18.restaurant_service.data.ImageStatus;
 import com.CNTTK18.restaurant_service.dto.cate.response.CateResponse;
 
 import lombok.AllArgsConstructor;
@@ -28,6 +29,7 @@ public class ResResponse {
     private LocalTime closingTime;
     private String phone;
     private String imageURL;
+    private ImageStatus imageStatus;
     private String merchantId;
     private boolean enabled;
     private int totalReview;
@@ -4,8 +4,10 @@ import java.time.Instant;
 import java.time.LocalTime;
 import java.util.List;
 
+import com.CNTTK18.restaurant_service.data.ImageStatus;
 import com.CNTTK18.restaurant_service.dto.cate.response.CateResponse;
 import com.CNTTK18.restaurant_service.dto.product.response.ProductResponseWithoutRes;
+import com.fasterxml.jackson.annotation.JsonInclude;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -29,6 +31,7 @@ public class ResResponseWithProduct {
     private LocalTime closingTime;
     private String phone;
     private String imageURL;
+    private ImageStatus imageStatus;
     private String merchantId;
     private boolean enabled;
     private int totalReview;
@@ -37,6 +40,8 @@ public class ResResponseWithProduct {
     private String slug;
     private Instant createdAt;
     private Instant updatedAt;
+    // null (không serialize) ở trang danh sách view=summary
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private List<ProductResponseWithoutRes> products;
     private List<CateResponse> cate;
 }
@@ -0,0 +1,12 @@
+package com.CNTTK18.restaurant_service.dto.review;
+
+// Đọc thẳng từ cột rating_histogram (INTEGER[5]) của products/restaurants
+public interface RatingHistogram {
+    public Integer getTotalReview();
+    public Float getRating();
+    public Integer getStar1();
+    public Integer getStar2();
+    public Integer getStar3();
+    public Integer getStar4();
+    public Integer getStar5();
+}
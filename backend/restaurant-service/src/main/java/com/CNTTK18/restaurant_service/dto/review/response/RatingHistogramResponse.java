@@ -0,0 +1,22 @@
+package com.CNTTK18.restaurant_service.dto.review.response;
+
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RatingHistogramResponse {
+    private String targetId;
+    private String reviewType;
+    private int totalReview;
+    private float rating;
+    private Map<Integer, Integer> stars; // số sao (1-5) -> số review
+}
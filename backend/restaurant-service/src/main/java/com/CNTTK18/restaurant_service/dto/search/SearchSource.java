@@ -0,0 +1,9 @@
+package com.CNTTK18.restaurant_service.dto.search;
+
+public interface SearchSource {
+    public String getId();
+    public String getName();
+    public String getSlug();
+    public Boolean getVisible();
+    public String getRestaurantId();
+}
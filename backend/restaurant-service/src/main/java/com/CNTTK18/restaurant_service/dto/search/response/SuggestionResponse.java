@@ -0,0 +1,21 @@
+package com.CNTTK18.restaurant_service.dto.search.response;
+
+import com.CNTTK18.restaurant_service.data.SearchType;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SuggestionResponse {
+    private SearchType type;
+    private String id;
+    private String name;
+    private String slug;
+}
@@ -0,0 +1,70 @@
+package com.CNTTK18.restaurant_service.image;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.cloudinary.Cloudinary;
+import com.cloudinary.Transformation;
+import com.cloudinary.utils.ObjectUtils;
+
+@Component
+@ConditionalOnProperty(name = "image.store", havingValue = "cloudinary", matchIfMissing = true)
+public class CloudinaryImageStore implements ImageStore {
+    private Cloudinary cloudinary;
+
+    public CloudinaryImageStore(Cloudinary cloudinary) {
+        this.cloudinary = cloudinary;
+    }
+
+    @Override
+    public StoredImage upload(Path file) throws IOException {
+        // Yêu cầu Cloudinary sinh sẵn các variant (eager) để request đầu tiên không phải chờ transform.
+        // eager_async: upload trả về ngay, variant được sinh nền phía Cloudinary
+        Map<?, ?> options = ObjectUtils.asMap(
+                        "eager", eagerTransformations(),
+                        "eager_async", true);
+        // Truyền File để SDK stream từ đĩa thay vì byte[]
+        Map<?, ?> result = cloudinary.uploader().upload(file.toFile(), options);
+        String publicId = (String) result.get("public_id");
+        return new StoredImage(publicId, (String) result.get("secure_url"),
+                                variantUrl(publicId, ImageVariant.THUMBNAIL),
+                                variantUrl(publicId, ImageVariant.DETAIL));
+    }
+
+    // Admin API xóa tối đa 100 public_id mỗi lần gọi. Xóa ảnh gốc thì các variant đã sinh cũng bị xóa
+    @Override
+    public void delete(List<String> publicIds) throws IOException {
+        try {
+            cloudinary.api().deleteResources(publicIds, ObjectUtils.emptyMap());
+        }
+        catch (Exception ex) {
+            throw new IOException("Không thể xóa file.", ex);
+        }
+    }
+
+    // Cú pháp eager: "<transformation>/<format>|<transformation>/<format>"
+    private String eagerTransformations() {
+        StringBuilder eager = new StringBuilder();
+        for (ImageVariant variant : ImageVariant.values()) {
+            if (eager.length() > 0) {
+                eager.append('|');
+            }
+            eager.append(variant.toTransformation()).append('/').append(ImageVariant.FORMAT);
+        }
+        return eager.toString();
+    }
+
+    // URL phải khớp đúng transformation + format đã eager thì Cloudinary mới trả bản đã sinh sẵn
+    private String variantUrl(String publicId, ImageVariant variant) {
+        return cloudinary.url()
+                        .secure(true)
+                        .transformation(new Transformation().rawTransformation(variant.toTransformation()))
+                        .format(ImageVariant.FORMAT)
+                        .generate(publicId);
+    }
+}
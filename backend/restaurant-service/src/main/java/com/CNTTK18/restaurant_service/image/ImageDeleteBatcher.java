@@ -0,0 +1,67 @@
+package com.CNTTK18.restaurant_service.image;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+// Gom các public_id cần xóa lại, định kỳ xóa theo lô (mỗi lô tối đa batchSize)
+// thay vì gọi Cloudinary 1 lần cho mỗi ảnh ngay trong request
+@Component
+public class ImageDeleteBatcher {
+    private static final Logger log = LoggerFactory.getLogger(ImageDeleteBatcher.class);
+
+    private final ConcurrentLinkedQueue<String> pending = new ConcurrentLinkedQueue<>();
+    private ImageStore store;
+    private int batchSize;
+
+    public ImageDeleteBatcher(ImageStore store, @Value("${image.delete.batch-size:100}") int batchSize) {
+        this.store = store;
+        this.batchSize = batchSize;
+    }
+
+    public void add(String publicId) {
+        if (publicId != null && !publicId.isBlank()) {
+            pending.add(publicId);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${image.delete.flush-interval:10s}")
+    public void flush() {
+        List<String> batch = new ArrayList<>(batchSize);
+        String publicId;
+        while ((publicId = pending.poll()) != null) {
+            batch.add(publicId);
+            if (batch.size() == batchSize) {
+                deleteBatch(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            deleteBatch(batch);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void deleteBatch(List<String> batch) {
+        try {
+            store.delete(batch);
+        }
+        catch (IOException | RuntimeException ex) {
+            // Ảnh không xóa được chỉ tốn dung lượng, không ảnh hưởng dữ liệu nên không retry
+            log.warn("Failed to delete {} images: {}", batch.size(), ex.getMessage());
+        }
+    }
+}
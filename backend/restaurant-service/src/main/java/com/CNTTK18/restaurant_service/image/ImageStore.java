@@ -0,0 +1,13 @@
+package com.CNTTK18.restaurant_service.image;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+// Nơi lưu ảnh thật sự (Cloudinary hoặc thư mục local), chọn bằng image.store
+public interface ImageStore {
+    // Upload từ file trên đĩa để không phải đọc cả file vào heap
+    StoredImage upload(Path file) throws IOException;
+
+    void delete(List<String> publicIds) throws IOException;
+}
@@ -0,0 +1,40 @@
+package com.CNTTK18.restaurant_service.image;
+
+// Các kích thước ảnh được sinh sẵn khi upload. Trang danh sách chỉ cần thumbnail nhỏ,
+// trang chi tiết dùng ảnh giới hạn cạnh dài thay vì ảnh gốc (có thể vài MB)
+public enum ImageVariant {
+    // Cắt đúng khung 4:3 cho card trong danh sách
+    THUMBNAIL(320, 240, true),
+    // Giữ tỉ lệ, chỉ thu nhỏ khi ảnh lớn hơn khung
+    DETAIL(1280, 1280, false);
+
+    // WebP nhỏ hơn JPEG/PNG cùng chất lượng và mọi trình duyệt hiện tại đều hỗ trợ
+    public static final String FORMAT = "webp";
+
+    private final int width;
+    private final int height;
+    private final boolean crop;
+
+    ImageVariant(int width, int height, boolean crop) {
+        this.width = width;
+        this.height = height;
+        this.crop = crop;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public boolean isCrop() {
+        return crop;
+    }
+
+    // Transformation của Cloudinary, q_auto để Cloudinary tự chọn mức nén
+    public String toTransformation() {
+        return (crop ? "c_fill,g_auto" : "c_limit") + ",w_" + width + ",h_" + height + ",q_auto";
+    }
+}
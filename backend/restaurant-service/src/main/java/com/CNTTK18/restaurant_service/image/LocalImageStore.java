@@ -0,0 +1,103 @@
+package com.CNTTK18.restaurant_service.image;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.imageio.ImageIO;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// Lưu ảnh vào thư mục local, dùng cho dev/test khi không có tài khoản Cloudinary (image.store=local)
+// Variant được resize bằng ImageIO. JDK không có writer WebP nên variant local ghi ra JPEG
+@Component
+@ConditionalOnProperty(name = "image.store", havingValue = "local")
+public class LocalImageStore implements ImageStore {
+    private static final String VARIANT_FORMAT = "jpg";
+
+    private Path dir;
+    private String baseUrl;
+
+    public LocalImageStore(@Value("${image.local.dir:${java.io.tmpdir}/restaurant-images/store}") String dir,
+                           @Value("${image.local.base-url:}") String baseUrl) throws IOException {
+        this.dir = Files.createDirectories(Paths.get(dir));
+        this.baseUrl = baseUrl;
+    }
+
+    @Override
+    public StoredImage upload(Path file) throws IOException {
+        String publicId = UUID.randomUUID().toString();
+        Path target = dir.resolve(publicId);
+        Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+        String url = urlOf(publicId);
+
+        Map<ImageVariant, String> variants = new EnumMap<>(ImageVariant.class);
+        BufferedImage source = ImageIO.read(target.toFile());
+        // Định dạng ImageIO không đọc được thì các variant dùng lại ảnh gốc
+        if (source != null) {
+            for (ImageVariant variant : ImageVariant.values()) {
+                String name = variantName(publicId, variant);
+                ImageIO.write(resize(source, variant), VARIANT_FORMAT, dir.resolve(name).toFile());
+                variants.put(variant, urlOf(name));
+            }
+        }
+        return new StoredImage(publicId, url,
+                                variants.getOrDefault(ImageVariant.THUMBNAIL, url),
+                                variants.getOrDefault(ImageVariant.DETAIL, url));
+    }
+
+    @Override
+    public void delete(List<String> publicIds) throws IOException {
+        for (String publicId : publicIds) {
+            Files.deleteIfExists(dir.resolve(publicId));
+            for (ImageVariant variant : ImageVariant.values()) {
+                Files.deleteIfExists(dir.resolve(variantName(publicId, variant)));
+            }
+        }
+    }
+
+    private String urlOf(String name) {
+        return baseUrl.isBlank() ? dir.resolve(name).toUri().toString() : baseUrl + name;
+    }
+
+    private static String variantName(String publicId, ImageVariant variant) {
+        return publicId + "_" + variant.name().toLowerCase() + "." + VARIANT_FORMAT;
+    }
+
+    // crop: phóng để phủ kín khung rồi cắt giữa (giống c_fill), ngược lại thu nhỏ vừa khung (giống c_limit)
+    private static BufferedImage resize(BufferedImage source, ImageVariant variant) {
+        int srcWidth = source.getWidth();
+        int srcHeight = source.getHeight();
+        double scale = variant.isCrop()
+                        ? Math.max((double) variant.getWidth() / srcWidth, (double) variant.getHeight() / srcHeight)
+                        : Math.min(1.0, Math.min((double) variant.getWidth() / srcWidth, (double) variant.getHeight() / srcHeight));
+        int scaledWidth = Math.max(1, (int) Math.round(srcWidth * scale));
+        int scaledHeight = Math.max(1, (int) Math.round(srcHeight * scale));
+        int width = variant.isCrop() ? variant.getWidth() : scaledWidth;
+        int height = variant.isCrop() ? variant.getHeight() : scaledHeight;
+
+        // JPEG không có kênh alpha nên vẽ lên nền RGB
+        BufferedImage output = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = output.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, (width - scaledWidth) / 2, (height - scaledHeight) / 2, scaledWidth, scaledHeight, null);
+        }
+        finally {
+            g.dispose();
+        }
+        return output;
+    }
+}
@@ -0,0 +1,5 @@
+package com.CNTTK18.restaurant_service.image;
+
+// thumbnailUrl/detailUrl là các variant đã được sinh (xem ImageVariant), đi cùng publicId của ảnh gốc
+public record StoredImage(String publicId, String url, String thumbnailUrl, String detailUrl) {
+}
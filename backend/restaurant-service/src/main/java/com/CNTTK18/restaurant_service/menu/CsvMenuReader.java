@@ -0,0 +1,186 @@
+package com.CNTTK18.restaurant_service.menu;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.CNTTK18.restaurant_service.dto.product.MenuItem;
+import com.CNTTK18.restaurant_service.dto.product.request.SizePrice;
+import com.CNTTK18.restaurant_service.exception.InvalidRequestException;
+
+// CSV theo RFC 4180: trường trong ngoặc kép được chứa dấu phẩy, xuống dòng và "" (dấu " thoát).
+// Dòng đầu là header, thứ tự cột tùy ý. Cột sizes có dạng "S:35000;M:45000"
+class CsvMenuReader implements MenuReader {
+    static final String PRODUCT_NAME = "productName";
+    static final String DESCRIPTION = "description";
+    static final String CATEGORY_ID = "categoryId";
+    static final String AVAILABLE = "available";
+    static final String SIZES = "sizes";
+    static final List<String> COLUMNS = List.of(PRODUCT_NAME, DESCRIPTION, CATEGORY_ID, AVAILABLE, SIZES);
+
+    static final String SIZE_SEPARATOR = ";";
+    static final String PRICE_SEPARATOR = ":";
+
+    // 1 record dài bất thường gần như chắc chắn là do thiếu dấu " đóng, dừng lại thay vì đọc hết file vào 1 trường
+    private static final int MAX_RECORD_LENGTH = 64 * 1024;
+
+    private final BufferedReader in;
+    private final Map<String, Integer> columnIndex = new HashMap<>();
+    private int rowNumber;
+
+    CsvMenuReader(InputStream in) throws IOException {
+        this.in = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        List<String> header = readRecord();
+        if (header == null) {
+            throw new InvalidRequestException("Menu file is empty");
+        }
+        for (int i = 0; i < header.size(); i++) {
+            String name = header.get(i).trim();
+            // Excel ghi BOM ở đầu file UTF-8
+            if (i == 0 && name.startsWith("\uFEFF")) {
+                name = name.substring(1);
+            }
+            for (String column : COLUMNS) {
+                if (column.equalsIgnoreCase(name)) {
+                    columnIndex.put(column, i);
+                }
+            }
+        }
+        for (String column : List.of(PRODUCT_NAME, DESCRIPTION, CATEGORY_ID, SIZES)) {
+            if (!columnIndex.containsKey(column)) {
+                throw new InvalidRequestException("Missing column " + column + " in CSV header");
+            }
+        }
+    }
+
+    @Override
+    public MenuRow next() throws IOException {
+        List<String> record;
+        do {
+            record = readRecord();
+            if (record == null) {
+                return null;
+            }
+        }
+        // Bỏ qua dòng trống
+        while (record.size() == 1 && record.get(0).isBlank());
+
+        rowNumber++;
+        try {
+            String available = value(record, AVAILABLE);
+            return MenuRow.of(rowNumber, new MenuItem(value(record, PRODUCT_NAME), value(record, DESCRIPTION),
+                                    value(record, CATEGORY_ID), available == null ? null : parseBoolean(available),
+                                    parseSizes(value(record, SIZES))));
+        }
+        catch (IllegalArgumentException ex) {
+            return MenuRow.invalid(rowNumber, ex.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private String value(List<String> record, String column) {
+        Integer index = columnIndex.get(column);
+        if (index == null || index >= record.size()) {
+            return null;
+        }
+        String value = record.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static Boolean parseBoolean(String value) {
+        switch (value.toLowerCase()) {
+            case "true", "1", "yes":
+                return true;
+            case "false", "0", "no":
+                return false;
+            default:
+                throw new IllegalArgumentException("Invalid available value: " + value);
+        }
+    }
+
+    private static List<SizePrice> parseSizes(String value) {
+        List<SizePrice> sizes = new ArrayList<>();
+        if (value == null) {
+            return sizes;
+        }
+        for (String entry : value.split(SIZE_SEPARATOR)) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.split(PRICE_SEPARATOR, 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid size entry: " + entry.trim() + " (expected sizeId:price)");
+            }
+            try {
+                sizes.add(new SizePrice(new BigDecimal(parts[1].trim()), parts[0].trim()));
+            }
+            catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid price for size " + parts[0].trim() + ": " + parts[1].trim());
+            }
+        }
+        return sizes;
+    }
+
+    // null khi hết input
+    private List<String> readRecord() throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean read = false;
+        int length = 0;
+        int c;
+        while ((c = in.read()) != -1) {
+            read = true;
+            if (++length > MAX_RECORD_LENGTH) {
+                throw new InvalidRequestException("CSV record at row " + (rowNumber + 1) + " is too long (unbalanced quotes?)");
+            }
+            if (quoted) {
+                if (c != '"') {
+                    field.append((char) c);
+                    continue;
+                }
+                in.mark(1);
+                if (in.read() == '"') {
+                    field.append('"');
+                }
+                else {
+                    quoted = false;
+                    in.reset();
+                }
+            }
+            else if (c == '"') {
+                quoted = true;
+            }
+            else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            }
+            else if (c == '\n') {
+                fields.add(field.toString());
+                return fields;
+            }
+            else if (c != '\r') {
+                field.append((char) c);
+            }
+        }
+        if (!read) {
+            return null;
+        }
+        if (quoted) {
+            throw new InvalidRequestException("Unterminated quoted field at row " + (rowNumber + 1));
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
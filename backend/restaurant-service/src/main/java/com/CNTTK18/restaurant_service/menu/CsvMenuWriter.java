@@ -0,0 +1,62 @@
+package com.CNTTK18.restaurant_service.menu;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.CNTTK18.restaurant_service.dto.product.MenuItem;
+import com.CNTTK18.restaurant_service.dto.product.request.SizePrice;
+
+// Cùng định dạng với CsvMenuReader
+class CsvMenuWriter implements MenuWriter {
+    private final Writer out;
+
+    CsvMenuWriter(OutputStream out) throws IOException {
+        this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writeRecord(CsvMenuReader.COLUMNS);
+    }
+
+    @Override
+    public void write(MenuItem item) throws IOException {
+        List<SizePrice> sizes = item.getSizes() == null ? List.of() : item.getSizes();
+        writeRecord(List.of(
+                        nullToEmpty(item.getProductName()),
+                        nullToEmpty(item.getDescription()),
+                        nullToEmpty(item.getCategoryId()),
+                        item.getAvailable() == null ? "" : item.getAvailable().toString(),
+                        sizes.stream()
+                            .map(s -> s.getSizeId() + CsvMenuReader.PRICE_SEPARATOR + s.getPrice().toPlainString())
+                            .collect(Collectors.joining(CsvMenuReader.SIZE_SEPARATOR))));
+    }
+
+    @Override
+    public void finish() throws IOException {
+        out.flush();
+    }
+
+    private void writeRecord(List<String> fields) throws IOException {
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write(escape(fields.get(i)));
+        }
+        out.write("\r\n");
+    }
+
+    private static String escape(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
@@ -0,0 +1,54 @@
+package com.CNTTK18.restaurant_service.menu;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.CNTTK18.restaurant_service.dto.product.MenuItem;
+import com.CNTTK18.restaurant_service.exception.InvalidRequestException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Mảng JSON các MenuItem, đọc bằng streaming parser từng phần tử một.
+// Mỗi phần tử được đọc thành cây trước rồi mới map sang MenuItem để lỗi kiểu dữ liệu của 1 dòng
+// không làm lệch vị trí của parser
+class JsonMenuReader implements MenuReader {
+    private final JsonParser parser;
+    private final ObjectMapper objectMapper;
+    private int rowNumber;
+
+    JsonMenuReader(InputStream in, ObjectMapper objectMapper) throws IOException {
+        this.objectMapper = objectMapper;
+        this.parser = objectMapper.getFactory().createParser(in);
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new InvalidRequestException("Menu must be a JSON array");
+        }
+    }
+
+    @Override
+    public MenuRow next() throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == null || token == JsonToken.END_ARRAY) {
+            return null;
+        }
+        rowNumber++;
+        if (token != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return MenuRow.invalid(rowNumber, "Each menu item must be a JSON object");
+        }
+        JsonNode node = parser.readValueAsTree();
+        try {
+            return MenuRow.of(rowNumber, objectMapper.treeToValue(node, MenuItem.class));
+        }
+        catch (JsonProcessingException ex) {
+            return MenuRow.invalid(rowNumber, ex.getOriginalMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+}
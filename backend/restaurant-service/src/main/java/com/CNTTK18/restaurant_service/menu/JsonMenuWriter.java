@@ -0,0 +1,34 @@
+package com.CNTTK18.restaurant_service.menu;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.CNTTK18.restaurant_service.dto.product.MenuItem;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+class JsonMenuWriter implements MenuWriter {
+    private final JsonGenerator generator;
+    // Không flush sau mỗi phần tử, để buffer của generator gom lại
+    private final ObjectWriter itemWriter;
+
+    JsonMenuWriter(OutputStream out, ObjectMapper objectMapper) throws IOException {
+        this.generator = objectMapper.getFactory().createGenerator(out);
+        this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.itemWriter = objectMapper.writerFor(MenuItem.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        generator.writeStartArray();
+    }
+
+    @Override
+    public void write(MenuItem item) throws IOException {
+        itemWriter.writeValue(generator, item);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        generator.writeEndArray();
+        generator.close();
+    }
+}
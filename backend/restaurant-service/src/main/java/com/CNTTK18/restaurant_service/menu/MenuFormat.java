@@ -0,0 +1,54 @@
+package com.CNTTK18.restaurant_service.menu;
+
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import com.CNTTK18.restaurant_service.exception.InvalidRequestException;
+
+// File menu luôn là UTF-8
+public enum MenuFormat {
+    CSV(new MediaType("text", "csv", StandardCharsets.UTF_8), "csv"),
+    JSON(MediaType.APPLICATION_JSON, "json");
+
+    private final MediaType mediaType;
+    private final String extension;
+
+    MenuFormat(MediaType mediaType, String extension) {
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public static MenuFormat fromContentType(String contentType) {
+        try {
+            MediaType type = MediaType.parseMediaType(contentType);
+            for (MenuFormat format : values()) {
+                if (format.mediaType.isCompatibleWith(type)) {
+                    return format;
+                }
+            }
+        }
+        catch (InvalidMediaTypeException ex) {
+            // Rơi xuống lỗi bên dưới
+        }
+        throw new InvalidRequestException("Menu must be sent as text/csv or application/json");
+    }
+
+    public static MenuFormat fromName(String name) {
+        for (MenuFormat format : values()) {
+            if (format.extension.equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new InvalidRequestException("format must be csv or json");
+    }
+}
@@ -0,0 +1,17 @@
+package com.CNTTK18.restaurant_service.menu;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Đọc menu từng dòng từ stream, không đọc cả file vào bộ nhớ
+public interface MenuReader extends Closeable {
+    // null khi hết dữ liệu. IOException khi stream hỏng (không đọc tiếp được)
+    MenuRow next() throws IOException;
+
+    static MenuReader open(MenuFormat format, InputStream in, ObjectMapper objectMapper) throws IOException {
+        return format == MenuFormat.CSV ? new CsvMenuReader(in) : new JsonMenuReader(in, objectMapper);
+    }
+}
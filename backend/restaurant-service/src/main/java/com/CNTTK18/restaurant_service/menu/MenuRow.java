@@ -0,0 +1,14 @@
+package com.CNTTK18.restaurant_service.menu;
+
+import com.CNTTK18.restaurant_service.dto.product.MenuItem;
+
+// Kết quả đọc 1 dòng: item khi đọc được, error khi dòng sai định dạng (các dòng sau vẫn đọc tiếp được)
+public record MenuRow(int number, MenuItem item, String error) {
+    public static MenuRow of(int number, MenuItem item) {
+        return new MenuRow(number, item, null);
+    }
+
+    public static MenuRow invalid(int number, String error) {
+        return new MenuRow(number, null, error);
+    }
+}
@@ -0,0 +1,18 @@
+package com.CNTTK18.restaurant_service.menu;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.CNTTK18.restaurant_service.dto.product.MenuItem;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public interface MenuWriter {
+    void write(MenuItem item) throws IOException;
+
+    // Ghi phần kết thúc và flush, không đóng stream của response
+    void finish() throws IOException;
+
+    static MenuWriter open(MenuFormat format, OutputStream out, ObjectMapper objectMapper) throws IOException {
+        return format == MenuFormat.CSV ? new CsvMenuWriter(out) : new JsonMenuWriter(out, objectMapper);
+    }
+}
@@ -8,12 +8,15 @@ import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
+import com.CNTTK18.restaurant_service.data.ImageStatus;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EntityListeners;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
@@ -40,19 +43,36 @@ public class Products {
     @Column(name = "product_name", nullable = false)
     private String productName;
     private String description;
-    @Column(name = "image_url")
+    // Các cột ảnh chỉ được ghi bằng query riêng (ProductRepository.updateImage/markImagePending/clearImage), upload nền
+    // ghi xong ảnh thì save() của entity cũ trong request khác không được ghi đè lại
+    @Column(name = "image_url", updatable = false)
     private String imageURL;
-    @Column(name = "public_id")
+    // Variant sinh khi upload: thumbnail cho trang danh sách, detail cho trang chi tiết
+    @Column(name = "thumbnail_url", updatable = false)
+    private String thumbnailURL;
+    @Column(name = "detail_url", updatable = false)
+    private String detailURL;
+    @Column(name = "public_id", updatable = false)
     private String publicID; // Cho việc xóa ảnh trong cloud
+
+    // PENDING khi ảnh đang được upload nền, imageURL/publicID được cập nhật sau khi upload xong
+    @Enumerated(EnumType.STRING)
+    @Column(name = "image_status", updatable = false)
+    private ImageStatus imageStatus;
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "category_id", nullable = false)
     private Categories category;
     private boolean available;
+    // rating, total_review, rating_sum chỉ được ghi bằng UPDATE cộng dồn của review (ProductRepository.addRating)
+    @Column(updatable = false)
     private float rating;
 
-    @Column(name = "total_review")
+    @Column(name = "total_review", updatable = false)
     private int totalReview;
 
+    @Column(name = "rating_sum", updatable = false)
+    private double ratingSum;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "restaurant_id", nullable = false)
     @JsonIgnore
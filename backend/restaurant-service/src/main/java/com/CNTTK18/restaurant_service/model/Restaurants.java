@@ -10,10 +10,14 @@ import org.hibernate.annotations.BatchSize;
 import org.locationtech.jts.geom.Point;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
+import com.CNTTK18.restaurant_service.data.ImageStatus;
+
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EntityListeners;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinTable;
 import jakarta.persistence.ManyToMany;
@@ -41,6 +45,9 @@ public class Restaurants {
     private String address;
     private double longitude; //kinh độ
     private double latitude; //vĩ độ
+    // rating, total_review, rating_sum chỉ được ghi bằng UPDATE cộng dồn của review (ResRepository.addRating),
+    // không để save() của entity ghi đè lại giá trị cũ
+    @Column(updatable = false)
     private float rating;
     @Column(name = "opening_time", nullable = false)
     private LocalTime openingTime;
@@ -48,17 +55,32 @@ public class Restaurants {
     private LocalTime closingTime;
     private String phone;
 
-    @Column(name = "image_url")
+    // Các cột ảnh chỉ được ghi bằng query riêng (ResRepository.updateImage/markImagePending/clearImage), upload nền
+    // ghi xong ảnh thì save() của entity cũ trong request khác không được ghi đè lại
+    @Column(name = "image_url", updatable = false)
     private String imageURL;
+    // Variant sinh khi upload: thumbnail cho trang danh sách, detail cho trang chi tiết
+    @Column(name = "thumbnail_url", updatable = false)
+    private String thumbnailURL;
+    @Column(name = "detail_url", updatable = false)
+    private String detailURL;
 
-    @Column(name = "public_id")
+    @Column(name = "public_id", updatable = false)
     private String publicID; // Cho việc xóa ảnh trong cloud
+
+    // PENDING khi ảnh đang được upload nền, imageURL/publicID được cập nhật sau khi upload xong
+    @Enumerated(EnumType.STRING)
+    @Column(name = "image_status", updatable = false)
+    private ImageStatus imageStatus;
     @Column(name = "merchant_id", nullable = false)
     private String merchantId;
     private boolean enabled;
 
-    @Column(name = "total_review")
+    @Column(name = "total_review", updatable = false)
     private int totalReview;
+
+    @Column(name = "rating_sum", updatable = false)
+    private double ratingSum;
     private String slug;
 
     @Column(name = "created_at")
@@ -0,0 +1,128 @@
+package com.CNTTK18.restaurant_service.repository;
+
+import java.sql.PreparedStatement;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.CNTTK18.restaurant_service.dto.product.MenuItem;
+import com.CNTTK18.restaurant_service.dto.product.request.SizePrice;
+import com.CNTTK18.restaurant_service.model.ProductSize;
+import com.CNTTK18.restaurant_service.model.Products;
+
+// Import/export menu bằng JDBC thay vì JPA: save() từng entity id tự gán sẽ merge (SELECT trước mỗi INSERT)
+// và giữ hàng nghìn entity trong persistence context. Ở đây mỗi bảng chỉ là 1 batch INSERT cho cả lô
+// (thành INSERT nhiều dòng khi bật reWriteBatchedInserts)
+@Repository
+public class MenuBulkRepository {
+    private static final String INSERT_RESTAURANT_CATEGORY = """
+        INSERT INTO restaurant_categories (restaurant_id, category_id) VALUES (?, ?)
+        ON CONFLICT DO NOTHING
+        """;
+    private static final String INSERT_PRODUCT = """
+        INSERT INTO products (id, product_name, description, restaurant_id, category_id, total_review, rating,
+                              slug, available, created_at, updated_at)
+        VALUES (?, ?, ?, ?, ?, 0, 0, ?, ?, ?, ?)
+        """;
+    private static final String INSERT_PRODUCT_SIZE = """
+        INSERT INTO product_sizes (id, product_id, size_id, price) VALUES (?, ?, ?, ?)
+        """;
+    private static final String SELECT_MENU = """
+        SELECT p.id, p.product_name, p.description, p.category_id, p.available, ps.size_id, ps.price
+        FROM products p
+        LEFT JOIN product_sizes ps ON ps.product_id = p.id
+        WHERE p.restaurant_id = ?
+        ORDER BY p.category_id, p.product_name, p.id, ps.price
+        """;
+    private static final int EXPORT_FETCH_SIZE = 500;
+
+    private JdbcTemplate jdbcTemplate;
+
+    public MenuBulkRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Mỗi lô là 1 transaction ngắn, connection không bị giữ trong lúc đọc phần tiếp theo của file upload
+    @Transactional
+    public void insertProducts(String resId, List<Products> products) {
+        if (products.isEmpty()) {
+            return;
+        }
+        Set<String> cateIds = new LinkedHashSet<>();
+        products.forEach(p -> cateIds.add(p.getCategory().getId()));
+        jdbcTemplate.batchUpdate(INSERT_RESTAURANT_CATEGORY, cateIds, cateIds.size(), (ps, cateId) -> {
+            ps.setString(1, resId);
+            ps.setString(2, cateId);
+        });
+
+        // Instant được Hibernate ghi dưới dạng OffsetDateTime UTC, ghi giống vậy để created_at đồng nhất
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        jdbcTemplate.batchUpdate(INSERT_PRODUCT, products, products.size(), (ps, p) -> {
+            ps.setString(1, p.getId());
+            ps.setString(2, p.getProductName());
+            ps.setString(3, p.getDescription());
+            ps.setString(4, resId);
+            ps.setString(5, p.getCategory().getId());
+            ps.setString(6, p.getSlug());
+            ps.setBoolean(7, p.isAvailable());
+            ps.setObject(8, now);
+            ps.setObject(9, now);
+        });
+
+        List<ProductSize> sizes = new ArrayList<>();
+        products.forEach(p -> {
+            if (p.getProductSizes() != null) {
+                sizes.addAll(p.getProductSizes());
+            }
+        });
+        if (sizes.isEmpty()) {
+            return;
+        }
+        // min_price/max_price của products được trigger trên product_sizes cập nhật
+        jdbcTemplate.batchUpdate(INSERT_PRODUCT_SIZE, sizes, sizes.size(), (ps, s) -> {
+            ps.setString(1, s.getId());
+            ps.setString(2, s.getProduct().getId());
+            ps.setString(3, s.getSize().getId());
+            ps.setBigDecimal(4, s.getPrice());
+        });
+    }
+
+    // Đọc menu bằng cursor (fetch size chỉ có tác dụng trong transaction với PostgreSQL),
+    // các dòng join của cùng 1 món liền nhau nên gom lại được mà không giữ cả menu trong bộ nhớ
+    @Transactional(readOnly = true)
+    public void streamMenu(String resId, Consumer<MenuItem> consumer) {
+        String[] currentId = new String[1];
+        MenuItem[] current = new MenuItem[1];
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(SELECT_MENU);
+            ps.setFetchSize(EXPORT_FETCH_SIZE);
+            ps.setString(1, resId);
+            return ps;
+        }, rs -> {
+            String id = rs.getString("id");
+            if (!id.equals(currentId[0])) {
+                if (current[0] != null) {
+                    consumer.accept(current[0]);
+                }
+                currentId[0] = id;
+                current[0] = new MenuItem(rs.getString("product_name"), rs.getString("description"),
+                                    rs.getString("category_id"), rs.getBoolean("available"), new ArrayList<>());
+            }
+            String sizeId = rs.getString("size_id");
+            if (sizeId != null) {
+                current[0].getSizes().add(new SizePrice(rs.getBigDecimal("price"), sizeId));
+            }
+        });
+        if (current[0] != null) {
+            consumer.accept(current[0]);
+        }
+    }
+}
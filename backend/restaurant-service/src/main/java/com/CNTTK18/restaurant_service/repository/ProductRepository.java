@@ -6,13 +6,20 @@ import java.util.Optional;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
- import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.CNTTK18.restaurant_service.data.ImageStatus;
+import com.CNTTK18.restaurant_service.dto.product.ProductIdWithDistance;
 import com.CNTTK18.restaurant_service.dto.product.ProductIdWithRating;
+import com.CNTTK18.restaurant_service.dto.review.RatingHistogram;
+import com.CNTTK18.restaurant_service.dto.search.SearchSource;
 import com.CNTTK18.restaurant_service.model.Products;
 import com.CNTTK18.restaurant_service.model.Restaurants;
 
@@ -22,54 +29,203 @@ public interface ProductRepository extends JpaRepository<Products, String>, JpaS
     @Query("SELECT COUNT(p) FROM Products p JOIN p.category c JOIN p.restaurant r WHERE c.id = :cateId AND r.id = :resId")
     Long countProductWithCateIdWithInRes(@Param("cateId") String cateId, @Param("resId") String resId);
 
-    Optional<Products> findProductById(String id);
+    // Cộng dồn tổng điểm, số review và phân bố sao (rating_histogram[star]) bằng 1 câu UPDATE thay vì khóa dòng
+    // rồi tính lại trung bình. Vế phải của SET dùng giá trị cũ của dòng nên rating = tổng mới / số review mới
+    // Khi trừ (count < 0) chỉ cập nhật nếu total_review > 0, bộ đếm không bao giờ bị âm
+    @Modifying
+    @Query(value = """
+        UPDATE products
+        SET rating_sum = CASE WHEN COALESCE(total_review, 0) + :count > 0 THEN rating_sum + :delta ELSE 0 END,
+            total_review = COALESCE(total_review, 0) + :count,
+            rating = CASE WHEN COALESCE(total_review, 0) + :count > 0
+                          THEN (rating_sum + :delta) / (COALESCE(total_review, 0) + :count)
+                          ELSE 0 END,
+            rating_histogram[:star] = GREATEST(rating_histogram[:star] + :count, 0)
+        WHERE id = :id AND (:count > 0 OR total_review > 0)
+        """, nativeQuery = true)
+    int addRating(@Param("id") String id, @Param("delta") double delta, @Param("count") int count, @Param("star") int star);
+
+    @Query(value = """
+        SELECT COALESCE(t.total_review, 0) AS totalReview, COALESCE(t.rating, 0) AS rating,
+               t.rating_histogram[1] AS star1, t.rating_histogram[2] AS star2, t.rating_histogram[3] AS star3,
+               t.rating_histogram[4] AS star4, t.rating_histogram[5] AS star5
+        FROM products t
+        WHERE t.id = :id
+        """, nativeQuery = true)
+    Optional<RatingHistogram> findRatingHistogram(@Param("id") String id);
 
     Optional<List<Products>> findProductsByRestaurant(Restaurants res);
 
     Optional<Products> findBySlug(String slug);
 
-    // Nhận projection để tránh N+1 problem
+    @Query("SELECT p.publicID FROM Products p WHERE p.id = :id")
+    Optional<String> findPublicIdById(@Param("id") String id);
+
+    // Ghi kết quả upload ảnh chạy nền (ImageHandleService), không load entity. REQUIRES_NEW: có thể được gọi
+    // trong callback afterCommit, lúc transaction của request đã kết thúc nhưng vẫn còn gắn với luồng.
+    // Chỉ ghi khi ảnh còn PENDING: ảnh đã bị xóa (clearImage) trong lúc upload thì không được ghi lại
+    @Modifying
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Query("UPDATE Products p SET p.imageURL = :url, p.thumbnailURL = :thumbnailUrl, p.detailURL = :detailUrl, "
+            + "p.publicID = :publicId, p.imageStatus = :status "
+            + "WHERE p.id = :id AND p.imageStatus = com.CNTTK18.restaurant_service.data.ImageStatus.PENDING")
+    int updateImage(@Param("id") String id, @Param("url") String url, @Param("thumbnailUrl") String thumbnailUrl,
+                    @Param("detailUrl") String detailUrl, @Param("publicId") String publicId,
+                    @Param("status") ImageStatus status);
+
+    @Modifying
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Query("UPDATE Products p SET p.imageStatus = :status "
+            + "WHERE p.id = :id AND p.imageStatus = com.CNTTK18.restaurant_service.data.ImageStatus.PENDING")
+    int updateImageStatus(@Param("id") String id, @Param("status") ImageStatus status);
+
+    // Các cột ảnh là updatable = false nên request chỉ đổi chúng qua 2 query dưới (chạy trong transaction của request)
+    @Modifying
+    @Transactional
+    @Query("UPDATE Products p SET p.imageStatus = com.CNTTK18.restaurant_service.data.ImageStatus.PENDING WHERE p.id = :id")
+    int markImagePending(@Param("id") String id);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Products p SET p.imageURL = null, p.thumbnailURL = null, p.detailURL = null, "
+            + "p.publicID = null, p.imageStatus = null WHERE p.id = :id")
+    int clearImage(@Param("id") String id);
+
+    // Dữ liệu để build SearchIndex lúc khởi động, không load entity
+    @Query("SELECT p.id AS id, p.productName AS name, p.slug AS slug, p.available AS visible, p.restaurant.id AS restaurantId FROM Products p")
+    List<SearchSource> findAllSearchSources();
+
+    default Page<ProductIdWithRating> findProductsWithinDistance(Double longitude, Double latitude, Integer maxDistance,
+                                    String search, List<String> categories, BigDecimal maxPrice, BigDecimal minPrice,
+                                    String sort, Pageable pageable) {
+        if ("rating_id_desc".equals(sort)) {
+            return findProductsWithinDistanceOrderByRating(longitude, latitude, maxDistance, search, categories, 
+                                                            maxPrice, minPrice, pageable);
+        }
+        return findProductsWithinDistanceOrderById(longitude, latitude, maxDistance, search, categories, 
+                                                    maxPrice, minPrice, pageable);
+    }
+
+    // Nhận projection để tránh N+1 problem.
+    // Lọc giá: min_price/max_price (trigger giữ đồng bộ với product_sizes) loại nhanh, EXISTS kiểm tra chính xác,
+    // không JOIN product_sizes nên không bị nhân dòng và không cần DISTINCT.
+    // ORDER BY khớp với index idx_products_rating_id
+    @Query(value = """
+        SELECT p.id, p.rating
+        FROM products p
+        JOIN restaurants r ON p.restaurant_id = r.id
+        JOIN categories c ON c.id = p.category_id
+        WHERE r.enabled = true
+        AND ST_DWithin(
+            r.geom::geography,
+            ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326)::geography,
+            :maxDistance
+        )
+        AND (:search IS NULL OR p.product_name_search LIKE CONCAT('%', :search, '%'))
+        AND (:#{#categories.size()} = 0 OR LOWER(c.cate_name) IN :categories)
+        AND (:minPrice IS NULL OR p.max_price >= :minPrice)
+        AND (:maxPrice IS NULL OR p.min_price <= :maxPrice)
+        AND (
+            (:minPrice IS NULL AND :maxPrice IS NULL)
+            OR EXISTS (
+                SELECT 1 FROM product_sizes ps
+                WHERE ps.product_id = p.id
+                AND (:minPrice IS NULL OR ps.price >= :minPrice)
+                AND (:maxPrice IS NULL OR ps.price <= :maxPrice)
+            )
+        )
+        ORDER BY COALESCE(p.rating, 0) DESC, p.id ASC
+        """, 
+        countQuery = """
+        SELECT COUNT(*)
+        FROM products p
+        JOIN restaurants r ON p.restaurant_id = r.id
+        JOIN categories c ON c.id = p.category_id
+        WHERE r.enabled = true
+        AND ST_DWithin(
+            r.geom::geography,
+            ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326)::geography,
+            :maxDistance
+        )
+        AND (:search IS NULL OR p.product_name_search LIKE CONCAT('%', :search, '%'))
+        AND (:#{#categories.size()} = 0 OR LOWER(c.cate_name) IN :categories)
+        AND (:minPrice IS NULL OR p.max_price >= :minPrice)
+        AND (:maxPrice IS NULL OR p.min_price <= :maxPrice)
+        AND (
+            (:minPrice IS NULL AND :maxPrice IS NULL)
+            OR EXISTS (
+                SELECT 1 FROM product_sizes ps
+                WHERE ps.product_id = p.id
+                AND (:minPrice IS NULL OR ps.price >= :minPrice)
+                AND (:maxPrice IS NULL OR ps.price <= :maxPrice)
+            )
+        )
+        """,
+        nativeQuery = true)
+    Page<ProductIdWithRating> findProductsWithinDistanceOrderByRating(
+        @Param("longitude") Double longitude,
+        @Param("latitude") Double latitude,
+        @Param("maxDistance") Integer maxDistance,
+        @Param("search") String search,
+        @Param("categories") List<String> categories,
+        @Param("maxPrice") BigDecimal maxPrice,
+        @Param("minPrice") BigDecimal minPrice,
+        Pageable pageable
+    );
+
     @Query(value = """
-        SELECT DISTINCT ON (p.id)
-            p.id,
-            p.rating
+        SELECT p.id, p.rating
         FROM products p
         JOIN restaurants r ON p.restaurant_id = r.id
         JOIN categories c ON c.id = p.category_id
-        JOIN product_sizes ps ON ps.product_id = p.id
         WHERE r.enabled = true
         AND ST_DWithin(
             r.geom::geography,
             ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326)::geography,
             :maxDistance
         )
-        AND (:search IS NULL OR LOWER(p.product_name) LIKE LOWER(CONCAT('%', :search, '%')))
+        AND (:search IS NULL OR p.product_name_search LIKE CONCAT('%', :search, '%'))
         AND (:#{#categories.size()} = 0 OR LOWER(c.cate_name) IN :categories)
-        AND (:minPrice IS NULL OR ps.price >= :minPrice)
-        AND (:maxPrice IS NULL OR ps.price <= :maxPrice)
-        ORDER BY 
-            p.id,
-            CASE WHEN :sort = 'rating_id_desc' THEN p.rating END DESC
-            """, 
+        AND (:minPrice IS NULL OR p.max_price >= :minPrice)
+        AND (:maxPrice IS NULL OR p.min_price <= :maxPrice)
+        AND (
+            (:minPrice IS NULL AND :maxPrice IS NULL)
+            OR EXISTS (
+                SELECT 1 FROM product_sizes ps
+                WHERE ps.product_id = p.id
+                AND (:minPrice IS NULL OR ps.price >= :minPrice)
+                AND (:maxPrice IS NULL OR ps.price <= :maxPrice)
+            )
+        )
+        ORDER BY p.id ASC
+        """, 
         countQuery = """
-        SELECT COUNT(DISTINCT p.id)
+        SELECT COUNT(*)
         FROM products p
         JOIN restaurants r ON p.restaurant_id = r.id
         JOIN categories c ON c.id = p.category_id
-        JOIN product_sizes ps ON ps.product_id = p.id
         WHERE r.enabled = true
         AND ST_DWithin(
             r.geom::geography,
             ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326)::geography,
             :maxDistance
         )
-        AND (:search IS NULL OR LOWER(p.product_name) LIKE LOWER(CONCAT('%', :search, '%')))
+        AND (:search IS NULL OR p.product_name_search LIKE CONCAT('%', :search, '%'))
         AND (:#{#categories.size()} = 0 OR LOWER(c.cate_name) IN :categories)
-        AND (:minPrice IS NULL OR ps.price >= :minPrice)
-        AND (:maxPrice IS NULL OR ps.price <= :maxPrice)
+        AND (:minPrice IS NULL OR p.max_price >= :minPrice)
+        AND (:maxPrice IS NULL OR p.min_price <= :maxPrice)
+        AND (
+            (:minPrice IS NULL AND :maxPrice IS NULL)
+            OR EXISTS (
+                SELECT 1 FROM product_sizes ps
+                WHERE ps.product_id = p.id
+                AND (:minPrice IS NULL OR ps.price >= :minPrice)
+                AND (:maxPrice IS NULL OR ps.price <= :maxPrice)
+            )
+        )
         """,
         nativeQuery = true)
-    Page<ProductIdWithRating> findProductsWithinDistance(
+    Page<ProductIdWithRating> findProductsWithinDistanceOrderById(
         @Param("longitude") Double longitude,
         @Param("latitude") Double latitude,
         @Param("maxDistance") Integer maxDistance,
@@ -77,7 +233,6 @@ public interface ProductRepository extends JpaRepository<Products, String>, JpaS
         @Param("categories") List<String> categories,
         @Param("maxPrice") BigDecimal maxPrice,
         @Param("minPrice") BigDecimal minPrice,
-        @Param("sort") String sort,
         Pageable pageable
     );
 
@@ -88,4 +243,295 @@ public interface ProductRepository extends JpaRepository<Products, String>, JpaS
            "LEFT JOIN FETCH ps.size " +              // Lấy luôn chi tiết tên Size (S, M, L)
            "WHERE p.id IN :ids")
     List<Products> findByIdIn(List<String> ids);
-}
\ No newline at end of file
+
+    // Lấy toàn bộ món của nhiều nhà hàng trong 1 query (dùng cho trang danh sách nhà hàng)
+    @Query("SELECT DISTINCT p FROM Products p " +
+           "LEFT JOIN FETCH p.category " +
+           "LEFT JOIN FETCH p.productSizes ps " +
+           "LEFT JOIN FETCH ps.size " +
+           "WHERE p.restaurant.id IN :resIds")
+    List<Products> findWithSizesByRestaurantIdIn(@Param("resIds") List<String> resIds);
+
+    // N món rating cao nhất (đang bán) của mỗi nhà hàng trong trang, chạy trên idx_products_restaurant_rating
+    @Query(value = """
+        SELECT t.id
+        FROM (
+            SELECT p.id,
+                   ROW_NUMBER() OVER (PARTITION BY p.restaurant_id ORDER BY COALESCE(p.rating, 0) DESC, p.id) AS rn
+            FROM products p
+            WHERE p.restaurant_id IN (:resIds) AND p.available = true
+        ) t
+        WHERE t.rn <= :limit
+        """, nativeQuery = true)
+    List<String> findTopProductIdsByRestaurantIdIn(@Param("resIds") List<String> resIds, @Param("limit") int limit);
+
+    @Query("SELECT DISTINCT p FROM Products p " +
+           "LEFT JOIN FETCH p.category " +
+           "LEFT JOIN FETCH p.productSizes ps " +
+           "LEFT JOIN FETCH ps.size " +
+           "WHERE p.id IN :ids")
+    List<Products> findWithSizesByIdIn(@Param("ids") List<String> ids);
+
+    // Keyset pagination cho sản phẩm, lọc giá giống findProductsWithinDistanceOrderByRating.
+    // Trang đầu tiên truyền lastRating = Float.MAX_VALUE, lastId = ''
+    @Query(value = """
+        SELECT p.id, p.rating
+        FROM products p
+        JOIN restaurants r ON p.restaurant_id = r.id
+        JOIN categories c ON c.id = p.category_id
+        WHERE r.enabled = true
+        AND ST_DWithin(
+            r.geom::geography,
+            ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326)::geography,
+            :maxDistance
+        )
+        AND (:search IS NULL OR p.product_name_search LIKE CONCAT('%', :search, '%'))
+        AND (:#{#categories.size()} = 0 OR LOWER(c.cate_name) IN :categories)
+        AND (:minPrice IS NULL OR p.max_price >= :minPrice)
+        AND (:maxPrice IS NULL OR p.min_price <= :maxPrice)
+        AND (
+            (:minPrice IS NULL AND :maxPrice IS NULL)
+            OR EXISTS (
+                SELECT 1 FROM product_sizes ps
+                WHERE ps.product_id = p.id
+                AND (:minPrice IS NULL OR ps.price >= :minPrice)
+                AND (:maxPrice IS NULL OR ps.price <= :maxPrice)
+            )
+        )
+        AND (COALESCE(p.rating, 0) < :lastRating OR (COALESCE(p.rating, 0) = :lastRating AND p.id > :lastId))
+        ORDER BY COALESCE(p.rating, 0) DESC, p.id ASC
+        LIMIT :limit
+        """,
+        nativeQuery = true)
+    List<ProductIdWithRating> findProductIdsWithinDistanceAfterRating(
+        @Param("longitude") Double longitude,
+        @Param("latitude") Double latitude,
+        @Param("maxDistance") Integer maxDistance,
+        @Param("search") String search,
+        @Param("categories") List<String> categories,
+        @Param("maxPrice") BigDecimal maxPrice,
+        @Param("minPrice") BigDecimal minPrice,
+        @Param("lastRating") Float lastRating,
+        @Param("lastId") String lastId,
+        @Param("limit") int limit
+    );
+
+    @Query(value = """
+        SELECT p.id, p.rating
+        FROM products p
+        JOIN restaurants r ON p.restaurant_id = r.id
+        JOIN categories c ON c.id = p.category_id
+        WHERE r.enabled = true
+        AND ST_DWithin(
+            r.geom::geography,
+            ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326)::geography,
+            :maxDistance
+        )
+        AND (:search IS NULL OR p.product_name_search LIKE CONCAT('%', :search, '%'))
+        AND (:#{#categories.size()} = 0 OR LOWER(c.cate_name) IN :categories)
+        AND (:minPrice IS NULL OR p.max_price >= :minPrice)
+        AND (:maxPrice IS NULL OR p.min_price <= :maxPrice)
+        AND (
+            (:minPrice IS NULL AND :maxPrice IS NULL)
+            OR EXISTS (
+                SELECT 1 FROM product_sizes ps
+                WHERE ps.product_id = p.id
+                AND (:minPrice IS NULL OR ps.price >= :minPrice)
+                AND (:maxPrice IS NULL OR ps.price <= :maxPrice)
+            )
+        )
+        AND p.id > :lastId
+        ORDER BY p.id ASC
+        LIMIT :limit
+        """,
+        nativeQuery = true)
+    List<ProductIdWithRating> findProductIdsWithinDistanceAfterId(
+        @Param("longitude") Double longitude,
+        @Param("latitude") Double latitude,
+        @Param("maxDistance") Integer maxDistance,
+        @Param("search") String search,
+        @Param("categories") List<String> categories,
+        @Param("maxPrice") BigDecimal maxPrice,
+        @Param("minPrice") BigDecimal minPrice,
+        @Param("lastId") String lastId,
+        @Param("limit") int limit
+    );
+
+    // Gần nhất trước theo toán tử KNN <-> trên index idx_restaurants_geom_geog, keyset theo (distance, id).
+    // Trang đầu tiên truyền lastDistance = -1, lastId = ''
+    @Query(value = """
+        SELECT p.id, p.rating,
+            r.geom::geography <-> ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326)::geography AS distance
+        FROM products p
+        JOIN restaurants r ON p.restaurant_id = r.id
+        JOIN categories c ON c.id = p.category_id
+        WHERE r.enabled = true
+        AND ST_DWithin(
+            r.geom::geography,
+            ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326)::geography,
+            :maxDistance
+        )
+        AND (:search IS NULL OR p.product_name_search LIKE CONCAT('%', :search, '%'))
+        AND (:#{#categories.size()} = 0 OR LOWER(c.cate_name) IN :categories)
+        AND (:minPrice IS NULL OR p.max_price >= :minPrice)
+        AND (:maxPrice IS NULL OR p.min_price <= :maxPrice)
+        AND (
+            (:minPrice IS NULL AND :maxPrice IS NULL)
+            OR EXISTS (
+                SELECT 1 FROM product_sizes ps
+                WHERE ps.product_id = p.id
+                AND (:minPrice IS NULL OR ps.price >= :minPrice)
+                AND (:maxPrice IS NULL OR ps.price <= :maxPrice)
+            )
+        )
+        AND (
+            r.geom::geography <-> ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326)::geography > :lastDistance
+            OR (r.geom::geography <-> ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326)::geography = :lastDistance
+                AND p.id > :lastId)
+        )
+        ORDER BY r.geom::geography <-> ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326)::geography, p.id
+        LIMIT :limit
+        """,
+        nativeQuery = true)
+    List<ProductIdWithDistance> findNearestProductIdsAfterDistance(
+        @Param("longitude") Double longitude,
+        @Param("latitude") Double latitude,
+        @Param("maxDistance") Integer maxDistance,
+        @Param("search") String search,
+        @Param("categories") List<String> categories,
+        @Param("maxPrice") BigDecimal maxPrice,
+        @Param("minPrice") BigDecimal minPrice,
+        @Param("lastDistance") Double lastDistance,
+        @Param("lastId") String lastId,
+        @Param("limit") int limit
+    );
+
+    // Bản Page (OFFSET) của truy vấn trên, dùng cho getAllProducts khi locationsorted=asc
+    @Query(value = """
+        SELECT p.id, p.rating,
+            r.geom::geography <-> ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326)::geography AS distance
+        FROM products p
+        JOIN restaurants r ON p.restaurant_id = r.id
+        JOIN categories c ON c.id = p.category_id
+        WHERE r.enabled = true
+        AND ST_DWithin(
+            r.geom::geography,
+            ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326)::geography,
+            :maxDistance
+        )
+        AND (:search IS NULL OR p.product_name_search LIKE CONCAT('%', :search, '%'))
+        AND (:#{#categories.size()} = 0 OR LOWER(c.cate_name) IN :categories)
+        AND (:minPrice IS NULL OR p.max_price >= :minPrice)
+        AND (:maxPrice IS NULL OR p.min_price <= :maxPrice)
+        AND (
+            (:minPrice IS NULL AND :maxPrice IS NULL)
+            OR EXISTS (
+                SELECT 1 FROM product_sizes ps
+                WHERE ps.product_id = p.id
+                AND (:minPrice IS NULL OR ps.price >= :minPrice)
+                AND (:maxPrice IS NULL OR ps.price <= :maxPrice)
+            )
+        )
+        ORDER BY r.geom::geography <-> ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326)::geography, p.id
+        """,
+        countQuery = """
+        SELECT COUNT(p.id)
+        FROM products p
+        JOIN restaurants r ON p.restaurant_id = r.id
+        JOIN categories c ON c.id = p.category_id
+        WHERE r.enabled = true
+        AND ST_DWithin(
+            r.geom::geography,
+            ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326)::geography,
+            :maxDistance
+        )
+        AND (:search IS NULL OR p.product_name_search LIKE CONCAT('%', :search, '%'))
+        AND (:#{#categories.size()} = 0 OR LOWER(c.cate_name) IN :categories)
+        AND (:minPrice IS NULL OR p.max_price >= :minPrice)
+        AND (:maxPrice IS NULL OR p.min_price <= :maxPrice)
+        AND (
+            (:minPrice IS NULL AND :maxPrice IS NULL)
+            OR EXISTS (
+                SELECT 1 FROM product_sizes ps
+                WHERE ps.product_id = p.id
+                AND (:minPrice IS NULL OR ps.price >= :minPrice)
+                AND (:maxPrice IS NULL OR ps.price <= :maxPrice)
+            )
+        )
+        """,
+        nativeQuery = true)
+    Page<ProductIdWithDistance> findNearestProductsWithinDistance(
+        @Param("longitude") Double longitude,
+        @Param("latitude") Double latitude,
+        @Param("maxDistance") Integer maxDistance,
+        @Param("search") String search,
+        @Param("categories") List<String> categories,
+        @Param("maxPrice") BigDecimal maxPrice,
+        @Param("minPrice") BigDecimal minPrice,
+        Pageable pageable
+    );
+
+    // Search mode: giống searchRestaurantIdsWithinDistance, xếp theo độ liên quan rồi tới rating, id
+    @Query(value = """
+        SELECT p.id, p.rating
+        FROM products p
+        JOIN restaurants r ON p.restaurant_id = r.id
+        JOIN categories c ON c.id = p.category_id
+        WHERE r.enabled = true
+        AND ST_DWithin(
+            r.geom::geography,
+            ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326)::geography,
+            :maxDistance
+        )
+        AND (p.product_name_search LIKE CONCAT('%', :search, '%') OR :search <% p.product_name_search)
+        AND (:#{#categories.size()} = 0 OR LOWER(c.cate_name) IN :categories)
+        AND (:minPrice IS NULL OR p.max_price >= :minPrice)
+        AND (:maxPrice IS NULL OR p.min_price <= :maxPrice)
+        AND (
+            (:minPrice IS NULL AND :maxPrice IS NULL)
+            OR EXISTS (
+                SELECT 1 FROM product_sizes ps
+                WHERE ps.product_id = p.id
+                AND (:minPrice IS NULL OR ps.price >= :minPrice)
+                AND (:maxPrice IS NULL OR ps.price <= :maxPrice)
+            )
+        )
+        ORDER BY word_similarity(:search, p.product_name_search) DESC, COALESCE(p.rating, 0) DESC, p.id ASC
+        """,
+        countQuery = """
+        SELECT COUNT(*)
+        FROM products p
+        JOIN restaurants r ON p.restaurant_id = r.id
+        JOIN categories c ON c.id = p.category_id
+        WHERE r.enabled = true
+        AND ST_DWithin(
+            r.geom::geography,
+            ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326)::geography,
+            :maxDistance
+        )
+        AND (p.product_name_search LIKE CONCAT('%', :search, '%') OR :search <% p.product_name_search)
+        AND (:#{#categories.size()} = 0 OR LOWER(c.cate_name) IN :categories)
+        AND (:minPrice IS NULL OR p.max_price >= :minPrice)
+        AND (:maxPrice IS NULL OR p.min_price <= :maxPrice)
+        AND (
+            (:minPrice IS NULL AND :maxPrice IS NULL)
+            OR EXISTS (
+                SELECT 1 FROM product_sizes ps
+                WHERE ps.product_id = p.id
+                AND (:minPrice IS NULL OR ps.price >= :minPrice)
+                AND (:maxPrice IS NULL OR ps.price <= :maxPrice)
+            )
+        )
+        """,
+        nativeQuery = true)
+    Page<ProductIdWithRating> searchProductIdsWithinDistance(
+        @Param("longitude") Double longitude,
+        @Param("latitude") Double latitude,
+        @Param("maxDistance") Integer maxDistance,
+        @Param("search") String search,
+        @Param("categories") List<String> categories,
+        @Param("maxPrice") BigDecimal maxPrice,
+        @Param("minPrice") BigDecimal minPrice,
+        Pageable pageable
+    );
+}
@@ -7,24 +7,88 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
-import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.CNTTK18.restaurant_service.data.ImageStatus;
+import com.CNTTK18.restaurant_service.dto.restaurant.ResIdWithDistance;
+import com.CNTTK18.restaurant_service.dto.restaurant.ResIdWithRating;
+import com.CNTTK18.restaurant_service.dto.review.RatingHistogram;
+import com.CNTTK18.restaurant_service.dto.search.SearchSource;
 import com.CNTTK18.restaurant_service.model.Restaurants;
 
-import jakarta.persistence.LockModeType;
-
 @Repository
 public interface ResRepository extends JpaRepository<Restaurants, String>, JpaSpecificationExecutor<Restaurants> {
-    @Lock(LockModeType.PESSIMISTIC_WRITE)
-    Optional<Restaurants> findRestaurantById(String id);
+    // Cộng dồn tổng điểm, số review và phân bố sao (rating_histogram[star]) bằng 1 câu UPDATE thay vì khóa dòng
+    // rồi tính lại trung bình. Vế phải của SET dùng giá trị cũ của dòng nên rating = tổng mới / số review mới
+    // Khi trừ (count < 0) chỉ cập nhật nếu total_review > 0, bộ đếm không bao giờ bị âm
+    @Modifying
+    @Query(value = """
+        UPDATE restaurants
+        SET rating_sum = CASE WHEN COALESCE(total_review, 0) + :count > 0 THEN rating_sum + :delta ELSE 0 END,
+            total_review = COALESCE(total_review, 0) + :count,
+            rating = CASE WHEN COALESCE(total_review, 0) + :count > 0
+                          THEN (rating_sum + :delta) / (COALESCE(total_review, 0) + :count)
+                          ELSE 0 END,
+            rating_histogram[:star] = GREATEST(rating_histogram[:star] + :count, 0)
+        WHERE id = :id AND (:count > 0 OR total_review > 0)
+        """, nativeQuery = true)
+    int addRating(@Param("id") String id, @Param("delta") double delta, @Param("count") int count, @Param("star") int star);
+
+    @Query(value = """
+        SELECT COALESCE(t.total_review, 0) AS totalReview, COALESCE(t.rating, 0) AS rating,
+               t.rating_histogram[1] AS star1, t.rating_histogram[2] AS star2, t.rating_histogram[3] AS star3,
+               t.rating_histogram[4] AS star4, t.rating_histogram[5] AS star5
+        FROM restaurants t
+        WHERE t.id = :id
+        """, nativeQuery = true)
+    Optional<RatingHistogram> findRatingHistogram(@Param("id") String id);
 
     Optional<List<Restaurants>>  findRestaurantsByMerchantId(String id);
 
     Optional<Restaurants> findBySlug(String slug);
 
+    @Query("SELECT r.publicID FROM Restaurants r WHERE r.id = :id")
+    Optional<String> findPublicIdById(@Param("id") String id);
+
+    // Ghi kết quả upload ảnh chạy nền (ImageHandleService), không load entity. REQUIRES_NEW: có thể được gọi
+    // trong callback afterCommit, lúc transaction của request đã kết thúc nhưng vẫn còn gắn với luồng.
+    // Chỉ ghi khi ảnh còn PENDING: ảnh đã bị xóa (clearImage) trong lúc upload thì không được ghi lại
+    @Modifying
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Query("UPDATE Restaurants r SET r.imageURL = :url, r.thumbnailURL = :thumbnailUrl, r.detailURL = :detailUrl, "
+            + "r.publicID = :publicId, r.imageStatus = :status "
+            + "WHERE r.id = :id AND r.imageStatus = com.CNTTK18.restaurant_service.data.ImageStatus.PENDING")
+    int updateImage(@Param("id") String id, @Param("url") String url, @Param("thumbnailUrl") String thumbnailUrl,
+                    @Param("detailUrl") String detailUrl, @Param("publicId") String publicId,
+                    @Param("status") ImageStatus status);
+
+    @Modifying
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Query("UPDATE Restaurants r SET r.imageStatus = :status "
+            + "WHERE r.id = :id AND r.imageStatus = com.CNTTK18.restaurant_service.data.ImageStatus.PENDING")
+    int updateImageStatus(@Param("id") String id, @Param("status") ImageStatus status);
+
+    // Các cột ảnh là updatable = false nên request chỉ đổi chúng qua 2 query dưới (chạy trong transaction của request)
+    @Modifying
+    @Transactional
+    @Query("UPDATE Restaurants r SET r.imageStatus = com.CNTTK18.restaurant_service.data.ImageStatus.PENDING WHERE r.id = :id")
+    int markImagePending(@Param("id") String id);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Restaurants r SET r.imageURL = null, r.thumbnailURL = null, r.detailURL = null, "
+            + "r.publicID = null, r.imageStatus = null WHERE r.id = :id")
+    int clearImage(@Param("id") String id);
+
+    // Dữ liệu để build SearchIndex lúc khởi động, không load entity
+    @Query("SELECT r.id AS id, r.resName AS name, r.slug AS slug, r.enabled AS visible, r.id AS restaurantId FROM Restaurants r")
+    List<SearchSource> findAllSearchSources();
+
     //FE chưa dùng nên chưa cần xử lý N+1
     @Query(value = """
         SELECT DISTINCT r.*
@@ -32,7 +96,7 @@ public interface ResRepository extends JpaRepository<Restaurants, String>, JpaSp
         JOIN restaurant_categories rc ON r.id = rc.restaurant_id
         JOIN categories c ON c.id = rc.category_id
         WHERE r.enabled = true
-        AND (:search IS NULL OR LOWER(r.res_name) LIKE LOWER(CONCAT('%', :search, '%')))
+        AND (:search IS NULL OR r.res_name_search LIKE CONCAT('%', :search, '%'))
         AND (:#{#categories.size()} = 0 OR LOWER(c.cate_name) IN :categories)
         AND ST_DWithin(
             r.geom::geography,
@@ -46,7 +110,7 @@ public interface ResRepository extends JpaRepository<Restaurants, String>, JpaSp
         JOIN restaurant_categories rc ON r.id = rc.restaurant_id
         JOIN categories c ON c.id = rc.category_id
         WHERE r.enabled = true
-        AND (:search IS NULL OR LOWER(r.res_name) LIKE LOWER(CONCAT('%', :search, '%')))
+        AND (:search IS NULL OR r.res_name_search LIKE CONCAT('%', :search, '%'))
         AND (:#{#categories.size()} = 0 OR LOWER(c.cate_name) IN :categories)
         AND ST_DWithin(
             r.geom::geography,
@@ -63,4 +127,203 @@ public interface ResRepository extends JpaRepository<Restaurants, String>, JpaSp
         @Param("categories") List<String> categories,
         Pageable pageable
     );
+
+    // Chỉ lấy id của 1 trang, phần còn lại được hydrate theo lô bằng findWithCategoriesByIdIn
+    // và ProductRepository.findWithSizesByRestaurantIdIn => số câu query mỗi trang là hằng số
+    @Query(value = """
+        SELECT DISTINCT r.id, r.rating
+        FROM restaurants r
+        JOIN restaurant_categories rc ON r.id = rc.restaurant_id
+        JOIN categories c ON c.id = rc.category_id
+        WHERE r.enabled = true
+        AND (:search IS NULL OR r.res_name_search LIKE CONCAT('%', :search, '%'))
+        AND (:#{#categories.size()} = 0 OR LOWER(c.cate_name) IN :categories)
+        AND ST_DWithin(
+            r.geom::geography,
+            ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326)::geography,
+            :maxDistance
+        )
+        """, 
+        countQuery = """
+        SELECT COUNT(DISTINCT r.id)
+        FROM restaurants r
+        JOIN restaurant_categories rc ON r.id = rc.restaurant_id
+        JOIN categories c ON c.id = rc.category_id
+        WHERE r.enabled = true
+        AND (:search IS NULL OR r.res_name_search LIKE CONCAT('%', :search, '%'))
+        AND (:#{#categories.size()} = 0 OR LOWER(c.cate_name) IN :categories)
+        AND ST_DWithin(
+            r.geom::geography,
+            ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326)::geography,
+            :maxDistance
+        )
+        """,
+        nativeQuery = true)
+    Page<ResIdWithRating> findRestaurantIdsWithinDistance(
+        @Param("longitude") Double longitude,
+        @Param("latitude") Double latitude,
+        @Param("maxDistance") Integer maxDistance,
+        @Param("search") String search,
+        @Param("categories") List<String> categories,
+        Pageable pageable
+    );
+
+    @Query("SELECT DISTINCT r FROM Restaurants r LEFT JOIN FETCH r.categories WHERE r.id IN :ids")
+    List<Restaurants> findWithCategoriesByIdIn(@Param("ids") List<String> ids);
+
+    // Keyset pagination (infinite scroll): không OFFSET, không count query.
+    // Trang đầu tiên truyền lastRating = Float.MAX_VALUE, lastId = ''
+    @Query(value = """
+        SELECT r.id, r.rating
+        FROM restaurants r
+        WHERE r.enabled = true
+        AND (:search IS NULL OR r.res_name_search LIKE CONCAT('%', :search, '%'))
+        AND EXISTS (
+            SELECT 1
+            FROM restaurant_categories rc
+            JOIN categories c ON c.id = rc.category_id
+            WHERE rc.restaurant_id = r.id
+            AND (:#{#categories.size()} = 0 OR LOWER(c.cate_name) IN :categories)
+        )
+        AND ST_DWithin(
+            r.geom::geography,
+            ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326)::geography,
+            :maxDistance
+        )
+        AND (COALESCE(r.rating, 0) < :lastRating OR (COALESCE(r.rating, 0) = :lastRating AND r.id > :lastId))
+        ORDER BY COALESCE(r.rating, 0) DESC, r.id ASC
+        LIMIT :limit
+        """,
+        nativeQuery = true)
+    List<ResIdWithRating> findRestaurantIdsWithinDistanceAfterRating(
+        @Param("longitude") Double longitude,
+        @Param("latitude") Double latitude,
+        @Param("maxDistance") Integer maxDistance,
+        @Param("search") String search,
+        @Param("categories") List<String> categories,
+        @Param("lastRating") Float lastRating,
+        @Param("lastId") String lastId,
+        @Param("limit") int limit
+    );
+
+    @Query(value = """
+        SELECT r.id, r.rating
+        FROM restaurants r
+        WHERE r.enabled = true
+        AND (:search IS NULL OR r.res_name_search LIKE CONCAT('%', :search, '%'))
+        AND EXISTS (
+            SELECT 1
+            FROM restaurant_categories rc
+            JOIN categories c ON c.id = rc.category_id
+            WHERE rc.restaurant_id = r.id
+            AND (:#{#categories.size()} = 0 OR LOWER(c.cate_name) IN :categories)
+        )
+        AND ST_DWithin(
+            r.geom::geography,
+            ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326)::geography,
+            :maxDistance
+        )
+        AND r.id > :lastId
+        ORDER BY r.id ASC
+        LIMIT :limit
+        """,
+        nativeQuery = true)
+    List<ResIdWithRating> findRestaurantIdsWithinDistanceAfterId(
+        @Param("longitude") Double longitude,
+        @Param("latitude") Double latitude,
+        @Param("maxDistance") Integer maxDistance,
+        @Param("search") String search,
+        @Param("categories") List<String> categories,
+        @Param("lastId") String lastId,
+        @Param("limit") int limit
+    );
+
+    // Gần nhất trước: ORDER BY toán tử KNN <-> để dùng index idx_restaurants_geom_geog,
+    // keyset theo (distance, id). Trang đầu tiên truyền lastDistance = -1, lastId = ''
+    @Query(value = """
+        SELECT r.id, r.rating,
+            r.geom::geography <-> ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326)::geography AS distance
+        FROM restaurants r
+        WHERE r.enabled = true
+        AND (:search IS NULL OR r.res_name_search LIKE CONCAT('%', :search, '%'))
+        AND EXISTS (
+            SELECT 1
+            FROM restaurant_categories rc
+            JOIN categories c ON c.id = rc.category_id
+            WHERE rc.restaurant_id = r.id
+            AND (:#{#categories.size()} = 0 OR LOWER(c.cate_name) IN :categories)
+        )
+        AND ST_DWithin(
+            r.geom::geography,
+            ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326)::geography,
+            :maxDistance
+        )
+        AND (
+            r.geom::geography <-> ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326)::geography > :lastDistance
+            OR (r.geom::geography <-> ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326)::geography = :lastDistance
+                AND r.id > :lastId)
+        )
+        ORDER BY r.geom::geography <-> ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326)::geography, r.id
+        LIMIT :limit
+        """,
+        nativeQuery = true)
+    List<ResIdWithDistance> findNearestRestaurantIdsAfterDistance(
+        @Param("longitude") Double longitude,
+        @Param("latitude") Double latitude,
+        @Param("maxDistance") Integer maxDistance,
+        @Param("search") String search,
+        @Param("categories") List<String> categories,
+        @Param("lastDistance") Double lastDistance,
+        @Param("lastId") String lastId,
+        @Param("limit") int limit
+    );
+
+    // Search mode: khớp chuỗi con (LIKE) hoặc gần đúng (<% word similarity của pg_trgm), cả hai đều dùng
+    // index idx_restaurants_name_trgm. :search phải là chuỗi đã qua TextNormalizer.fold
+    @Query(value = """
+        SELECT r.id, r.rating
+        FROM restaurants r
+        WHERE r.enabled = true
+        AND (r.res_name_search LIKE CONCAT('%', :search, '%') OR :search <% r.res_name_search)
+        AND EXISTS (
+            SELECT 1
+            FROM restaurant_categories rc
+            JOIN categories c ON c.id = rc.category_id
+            WHERE rc.restaurant_id = r.id
+            AND (:#{#categories.size()} = 0 OR LOWER(c.cate_name) IN :categories)
+        )
+        AND ST_DWithin(
+            r.geom::geography,
+            ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326)::geography,
+            :maxDistance
+        )
+        ORDER BY word_similarity(:search, r.res_name_search) DESC, COALESCE(r.rating, 0) DESC, r.id ASC
+        """,
+        countQuery = """
+        SELECT COUNT(*)
+        FROM restaurants r
+        WHERE r.enabled = true
+        AND (r.res_name_search LIKE CONCAT('%', :search, '%') OR :search <% r.res_name_search)
+        AND EXISTS (
+            SELECT 1
+            FROM restaurant_categories rc
+            JOIN categories c ON c.id = rc.category_id
+            WHERE rc.restaurant_id = r.id
+            AND (:#{#categories.size()} = 0 OR LOWER(c.cate_name) IN :categories)
+        )
+        AND ST_DWithin(
+            r.geom::geography,
+            ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326)::geography,
+            :maxDistance
+        )
+        """,
+        nativeQuery = true)
+    Page<ResIdWithRating> searchRestaurantIdsWithinDistance(
+        @Param("longitude") Double longitude,
+        @Param("latitude") Double latitude,
+        @Param("maxDistance") Integer maxDistance,
+        @Param("search") String search,
+        @Param("categories") List<String> categories,
+        Pageable pageable
+    );
 }
@@ -1,8 +1,11 @@
 package com.CNTTK18.restaurant_service.repository;
 
+import java.sql.Timestamp;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.CNTTK18.restaurant_service.model.Reviews;
@@ -10,4 +13,29 @@ import com.CNTTK18.restaurant_service.model.Reviews;
 @Repository
 public interface ReviewRepository extends JpaRepository<Reviews, String> {
     List<Reviews> findByReviewId(String id);
+
+    // Keyset pagination theo (created_at DESC, id DESC), đi theo index idx_reviews_target_created.
+    // Trang đầu tiên truyền lastCreatedAt = thời điểm rất xa trong tương lai, lastId = ''
+    @Query(value = """
+        SELECT *
+        FROM reviews r
+        WHERE r.review_type = :reviewType
+        AND r.review_id = :targetId
+        AND (r.created_at, r.id) < (:lastCreatedAt, :lastId)
+        ORDER BY r.created_at DESC, r.id DESC
+        LIMIT :limit
+        """, nativeQuery = true)
+    List<Reviews> findByTargetAfter(@Param("reviewType") String reviewType, @Param("targetId") String targetId,
+                                    @Param("lastCreatedAt") Timestamp lastCreatedAt, @Param("lastId") String lastId,
+                                    @Param("limit") int limit);
+
+    @Query(value = """
+        SELECT *
+        FROM reviews r
+        WHERE (r.created_at, r.id) < (:lastCreatedAt, :lastId)
+        ORDER BY r.created_at DESC, r.id DESC
+        LIMIT :limit
+        """, nativeQuery = true)
+    List<Reviews> findAllAfter(@Param("lastCreatedAt") Timestamp lastCreatedAt, @Param("lastId") String lastId,
+                               @Param("limit") int limit);
 }
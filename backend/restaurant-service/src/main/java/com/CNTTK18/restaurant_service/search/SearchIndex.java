@@ -0,0 +1,435 @@
+package com.CNTTK18.restaurant_service.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.CNTTK18.Common.Util.TextNormalizer;
+import com.CNTTK18.restaurant_service.data.SearchType;
+import com.CNTTK18.restaurant_service.dto.search.SearchSource;
+import com.CNTTK18.restaurant_service.dto.search.response.SuggestionResponse;
+import com.CNTTK18.restaurant_service.model.Categories;
+import com.CNTTK18.restaurant_service.model.Products;
+import com.CNTTK18.restaurant_service.model.Restaurants;
+import com.CNTTK18.restaurant_service.repository.CateRepository;
+import com.CNTTK18.restaurant_service.repository.ProductRepository;
+import com.CNTTK18.restaurant_service.repository.ResRepository;
+import com.CNTTK18.restaurant_service.util.TransactionUtil;
+
+// Inverted index trong bộ nhớ cho search-as-you-type: tên nhà hàng, món ăn, danh mục (đã bỏ dấu).
+// Build lại khi khởi động, sau đó được cập nhật trực tiếp từ các hàm create/update/delete của service.
+// Ghi tuần tự qua writeLock, đọc không khóa trên các cấu trúc concurrent
+@Component
+public class SearchIndex {
+    private static final Logger log = LoggerFactory.getLogger(SearchIndex.class);
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^a-z0-9]+");
+
+    private static final int MAX_LIMIT = 20;
+    // Số kết quả hợp lệ tối đa thu thập mỗi loại trước khi xếp hạng, đủ để không phải duyệt hết
+    // posting list của các từ phổ biến ("pho", "com") mà vẫn giữ được thứ hạng hợp lý
+    private static final int CANDIDATES_PER_RESULT = 20;
+    // Số token tối đa được mở rộng từ 1 prefix khi chọn tập document để duyệt
+    private static final int MAX_PREFIX_TOKENS = 64;
+    // Chỉ sửa lỗi chính tả cho từ đủ dài, từ ngắn sửa 1 ký tự sẽ ra quá nhiều kết quả nhiễu
+    private static final int MIN_FUZZY_LENGTH = 3;
+
+    private static final double EXACT_SCORE = 3;
+    private static final double PREFIX_SCORE = 2;
+    private static final double FUZZY_SCORE = 1;
+    private static final double STARTS_WITH_BONUS = 1;
+
+    // Danh mục và nhà hàng ít nhưng quan trọng hơn món ăn nên được xét trước, mỗi loại có index riêng
+    // để hàng trăm nghìn món ăn không lấn át vài nhà hàng trùng tên
+    private static final List<SearchType> TYPE_PRIORITY = List.of(SearchType.CATEGORY, SearchType.RESTAURANT, SearchType.PRODUCT);
+
+    private record DocKey(SearchType type, String id) {}
+
+    private record Doc(DocKey key, String name, String slug, boolean visible, String restaurantId,
+                       String folded, List<String> tokens) {}
+
+    private record Candidate(Doc doc, double score) {}
+
+    private static class TypeIndex {
+        // token -> document chứa token. Map có thứ tự nên tra prefix bằng subMap (thay cho trie)
+        private final ConcurrentSkipListMap<String, Set<DocKey>> postings = new ConcurrentSkipListMap<>();
+        // Biến thể bỏ 1 ký tự -> token gốc (symmetric delete), tìm token cách 1 lỗi chính tả mà không duyệt hết từ điển
+        private final ConcurrentHashMap<String, Set<String>> deletes = new ConcurrentHashMap<>();
+    }
+
+    private final Map<SearchType, TypeIndex> indexes = new EnumMap<>(SearchType.class);
+    private final ConcurrentHashMap<DocKey, Doc> docs = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    // Khác null khi rebuild đang đọc snapshot: các lần ghi (put/remove với giá trị đã chụp sẵn) chờ chạy lại
+    private List<Runnable> duringRebuild;
+
+    private ResRepository resRepository;
+    private ProductRepository productRepository;
+    private CateRepository cateRepository;
+
+    public SearchIndex(ResRepository resRepository, ProductRepository productRepository, CateRepository cateRepository) {
+        this.resRepository = resRepository;
+        this.productRepository = productRepository;
+        this.cateRepository = cateRepository;
+        for (SearchType type : SearchType.values()) {
+            indexes.put(type, new TypeIndex());
+        }
+    }
+
+    // Snapshot được đọc ngoài writeLock nên các lần ghi trong lúc đọc được ghi lại vào duringRebuild
+    // và chạy lại sau khi nạp snapshot, không bị snapshot cũ ghi đè
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        long start = System.nanoTime();
+        synchronized (writeLock) {
+            duringRebuild = new ArrayList<>();
+        }
+        List<SearchSource> restaurants;
+        List<SearchSource> products;
+        List<Categories> categories;
+        try {
+            restaurants = resRepository.findAllSearchSources();
+            products = productRepository.findAllSearchSources();
+            categories = cateRepository.findAll();
+        }
+        catch (RuntimeException ex) {
+            synchronized (writeLock) {
+                duringRebuild = null;
+            }
+            throw ex;
+        }
+
+        int replayed;
+        synchronized (writeLock) {
+            docs.clear();
+            indexes.values().forEach(index -> {
+                index.postings.clear();
+                index.deletes.clear();
+            });
+            restaurants.forEach(r -> put(SearchType.RESTAURANT, r.getId(), r.getName(), r.getSlug(),
+                                        Boolean.TRUE.equals(r.getVisible()), r.getRestaurantId()));
+            products.forEach(p -> put(SearchType.PRODUCT, p.getId(), p.getName(), p.getSlug(),
+                                        Boolean.TRUE.equals(p.getVisible()), p.getRestaurantId()));
+            categories.forEach(c -> put(SearchType.CATEGORY, c.getId(), c.getCateName(), null, true, null));
+            duringRebuild.forEach(Runnable::run);
+            replayed = duringRebuild.size();
+            duringRebuild = null;
+        }
+        log.info("Search index rebuilt with {} documents ({} replayed updates) in {} ms", docs.size(), replayed,
+                    (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public void indexRestaurant(Restaurants res) {
+        String id = res.getId();
+        String name = res.getResName();
+        String slug = res.getSlug();
+        boolean enabled = res.isEnabled();
+        TransactionUtil.afterCommit(() -> write(() -> put(SearchType.RESTAURANT, id, name, slug, enabled, id)));
+    }
+
+    // Xóa nhà hàng thì các món ăn của nó cũng bị xóa (ON DELETE CASCADE)
+    public void removeRestaurant(String id) {
+        TransactionUtil.afterCommit(() -> write(() -> {
+            remove(new DocKey(SearchType.RESTAURANT, id));
+            docs.values().stream()
+                .filter(doc -> doc.key().type() == SearchType.PRODUCT && id.equals(doc.restaurantId()))
+                .map(Doc::key)
+                .toList()
+                .forEach(this::remove);
+        }));
+    }
+
+    public void indexProduct(Products product) {
+        String id = product.getId();
+        String name = product.getProductName();
+        String slug = product.getSlug();
+        boolean available = product.isAvailable();
+        String restaurantId = product.getRestaurant().getId();
+        TransactionUtil.afterCommit(() -> write(() -> put(SearchType.PRODUCT, id, name, slug, available, restaurantId)));
+    }
+
+    public void removeProduct(String id) {
+        TransactionUtil.afterCommit(() -> write(() -> remove(new DocKey(SearchType.PRODUCT, id))));
+    }
+
+    public void indexCategory(Categories cate) {
+        String id = cate.getId();
+        String name = cate.getCateName();
+        TransactionUtil.afterCommit(() -> write(() -> put(SearchType.CATEGORY, id, name, null, true, null)));
+    }
+
+    public void removeCategory(String id) {
+        TransactionUtil.afterCommit(() -> write(() -> remove(new DocKey(SearchType.CATEGORY, id))));
+    }
+
+    // Các từ trước phải khớp nguyên từ (hoặc sai 1 ký tự), từ cuối cùng đang gõ dở nên khớp theo prefix
+    public List<SuggestionResponse> suggest(String query, int limit) {
+        List<String> terms = tokenize(TextNormalizer.fold(query));
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+        int max = Math.max(1, Math.min(limit, MAX_LIMIT));
+        String folded = String.join(" ", terms);
+
+        List<Candidate> candidates = new ArrayList<>();
+        for (SearchType type : TYPE_PRIORITY) {
+            candidates.addAll(collectCandidates(indexes.get(type), terms, folded, max * CANDIDATES_PER_RESULT));
+        }
+
+        return candidates.stream()
+                .sorted(Comparator.comparingDouble(Candidate::score).reversed()
+                            .thenComparingInt(c -> TYPE_PRIORITY.indexOf(c.doc().key().type()))
+                            .thenComparingInt(c -> c.doc().folded().length())
+                            .thenComparing(c -> c.doc().folded()))
+                .limit(max)
+                .map(c -> {
+                    Doc doc = c.doc();
+                    return new SuggestionResponse(doc.key().type(), doc.key().id(), doc.name(), doc.slug());
+                })
+                .toList();
+    }
+
+    // Duyệt posting list của từ hiếm nhất, các từ còn lại được kiểm tra trên token của từng document
+    private List<Candidate> collectCandidates(TypeIndex index, List<String> terms, String folded, int maxCandidates) {
+        List<Set<DocKey>> driver = null;
+        int driverSize = Integer.MAX_VALUE;
+        for (int i = 0; i < terms.size(); i++) {
+            List<Set<DocKey>> postingLists = postingListsOf(index, terms.get(i), i == terms.size() - 1);
+            int size = postingLists.stream().mapToInt(Set::size).sum();
+            if (size < driverSize) {
+                driver = postingLists;
+                driverSize = size;
+            }
+        }
+        if (driver == null || driverSize == 0) {
+            return List.of();
+        }
+
+        List<Candidate> candidates = new ArrayList<>();
+        Set<DocKey> seen = new HashSet<>();
+        for (Set<DocKey> posting : driver) {
+            for (DocKey key : posting) {
+                if (!seen.add(key)) {
+                    continue;
+                }
+                Doc doc = docs.get(key);
+                if (doc == null || !isVisible(doc)) {
+                    continue;
+                }
+                double score = score(doc, terms, folded);
+                if (score > 0) {
+                    candidates.add(new Candidate(doc, score));
+                    if (candidates.size() >= maxCandidates) {
+                        return candidates;
+                    }
+                }
+            }
+        }
+        return candidates;
+    }
+
+    // Khớp nguyên từ trước, sau đó prefix (từ cuối), chỉ khi không có gì mới dùng tới token sai 1 ký tự
+    private List<Set<DocKey>> postingListsOf(TypeIndex index, String term, boolean prefix) {
+        List<Set<DocKey>> postingLists = new ArrayList<>();
+        Set<DocKey> exact = index.postings.get(term);
+        if (exact != null) {
+            postingLists.add(exact);
+        }
+        if (prefix) {
+            index.postings.subMap(term, false, term + Character.MAX_VALUE, false).values().stream()
+                    .limit(MAX_PREFIX_TOKENS)
+                    .forEach(postingLists::add);
+        }
+        if (postingLists.isEmpty() && term.length() >= MIN_FUZZY_LENGTH) {
+            for (String candidate : fuzzyCandidates(index, term)) {
+                Set<DocKey> posting = index.postings.get(candidate);
+                if (posting != null) {
+                    postingLists.add(posting);
+                }
+            }
+        }
+        return postingLists;
+    }
+
+    // Tổng điểm của các từ, 0 nếu có từ không khớp
+    private double score(Doc doc, List<String> terms, String folded) {
+        double total = 0;
+        for (int i = 0; i < terms.size(); i++) {
+            double termScore = termScore(doc.tokens(), terms.get(i), i == terms.size() - 1);
+            if (termScore == 0) {
+                return 0;
+            }
+            total += termScore;
+        }
+        return doc.folded().startsWith(folded) ? total + STARTS_WITH_BONUS : total;
+    }
+
+    private double termScore(List<String> tokens, String term, boolean prefix) {
+        if (tokens.contains(term)) {
+            return EXACT_SCORE;
+        }
+        if (prefix && tokens.stream().anyMatch(token -> token.startsWith(term))) {
+            return PREFIX_SCORE;
+        }
+        if (term.length() >= MIN_FUZZY_LENGTH && tokens.stream().anyMatch(token -> editDistance(term, token) <= 1)) {
+            return FUZZY_SCORE;
+        }
+        return 0;
+    }
+
+    // Token cách term đúng 1 lỗi (thêm, thiếu, sai hoặc đảo 2 ký tự liền nhau)
+    private Set<String> fuzzyCandidates(TypeIndex index, String term) {
+        Set<String> candidates = new HashSet<>();
+        Set<String> longer = index.deletes.get(term);
+        if (longer != null) {
+            candidates.addAll(longer);
+        }
+        for (String variant : deletesOf(term)) {
+            if (index.postings.containsKey(variant)) {
+                candidates.add(variant);
+            }
+            Set<String> sameLength = index.deletes.get(variant);
+            if (sameLength != null) {
+                candidates.addAll(sameLength);
+            }
+        }
+        candidates.removeIf(candidate -> editDistance(term, candidate) > 1);
+        return candidates;
+    }
+
+    private boolean isVisible(Doc doc) {
+        if (!doc.visible()) {
+            return false;
+        }
+        if (doc.key().type() == SearchType.PRODUCT) {
+            Doc res = docs.get(new DocKey(SearchType.RESTAURANT, doc.restaurantId()));
+            return res != null && res.visible();
+        }
+        return true;
+    }
+
+    private void put(SearchType type, String id, String name, String slug, boolean visible, String restaurantId) {
+        DocKey key = new DocKey(type, id);
+        remove(key);
+        String folded = TextNormalizer.fold(name);
+        List<String> tokens = tokenize(folded);
+        docs.put(key, new Doc(key, name, slug, visible, restaurantId, folded, tokens));
+        TypeIndex index = indexes.get(type);
+        for (String token : tokens) {
+            Set<DocKey> posting = index.postings.get(token);
+            if (posting == null) {
+                posting = ConcurrentHashMap.newKeySet();
+                index.postings.put(token, posting);
+                addDeletes(index, token);
+            }
+            posting.add(key);
+        }
+    }
+
+    private void remove(DocKey key) {
+        Doc old = docs.remove(key);
+        if (old == null) {
+            return;
+        }
+        TypeIndex index = indexes.get(key.type());
+        for (String token : old.tokens()) {
+            Set<DocKey> posting = index.postings.get(token);
+            if (posting == null) {
+                continue;
+            }
+            posting.remove(key);
+            if (posting.isEmpty()) {
+                index.postings.remove(token);
+                removeDeletes(index, token);
+            }
+        }
+    }
+
+    private void addDeletes(TypeIndex index, String token) {
+        if (token.length() < MIN_FUZZY_LENGTH) {
+            return;
+        }
+        for (String variant : deletesOf(token)) {
+            index.deletes.computeIfAbsent(variant, v -> ConcurrentHashMap.newKeySet()).add(token);
+        }
+    }
+
+    private void removeDeletes(TypeIndex index, String token) {
+        if (token.length() < MIN_FUZZY_LENGTH) {
+            return;
+        }
+        for (String variant : deletesOf(token)) {
+            Set<String> tokens = index.deletes.get(variant);
+            if (tokens == null) {
+                continue;
+            }
+            tokens.remove(token);
+            if (tokens.isEmpty()) {
+                index.deletes.remove(variant);
+            }
+        }
+    }
+
+    private void write(Runnable action) {
+        synchronized (writeLock) {
+            action.run();
+            if (duringRebuild != null) {
+                duringRebuild.add(action);
+            }
+        }
+    }
+
+    private static List<String> tokenize(String folded) {
+        if (folded == null || folded.isEmpty()) {
+            return List.of();
+        }
+        return TOKEN_SEPARATOR.splitAsStream(folded)
+                    .filter(token -> !token.isEmpty())
+                    .distinct()
+                    .toList();
+    }
+
+    private static Set<String> deletesOf(String token) {
+        Set<String> variants = new HashSet<>();
+        for (int i = 0; i < token.length(); i++) {
+            variants.add(token.substring(0, i) + token.substring(i + 1));
+        }
+        return variants;
+    }
+
+    // Optimal string alignment distance (Levenshtein + đảo 2 ký tự liền nhau)
+    private static int editDistance(String a, String b) {
+        if (Math.abs(a.length() - b.length()) > 1) {
+            return 2;
+        }
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= b.length(); j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+                }
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+}
@@ -7,33 +7,44 @@ import org.springframework.stereotype.Service;
 
 import com.CNTTK18.Common.Exception.ResourceNotFoundException;
 import com.CNTTK18.Common.Util.RandomIdGenerator;
+import com.CNTTK18.restaurant_service.cache.DetailResponseCache;
+import com.CNTTK18.restaurant_service.cache.ReferenceCache;
+import com.CNTTK18.restaurant_service.cache.ReferenceDataCache;
 import com.CNTTK18.restaurant_service.dto.cate.request.CateRequest;
 import com.CNTTK18.restaurant_service.model.Categories;
 import com.CNTTK18.restaurant_service.repository.CateRepository;
+import com.CNTTK18.restaurant_service.search.SearchIndex;
 
 import jakarta.transaction.Transactional;
 
 @Service
 public class CateService {
     private CateRepository cateRepository;
+    private SearchIndex searchIndex;
+    private ReferenceCache<Categories> cateCache;
+    private DetailResponseCache detailCache;
 
-    public CateService(CateRepository cateRepository) {
+    public CateService(CateRepository cateRepository, SearchIndex searchIndex, ReferenceDataCache referenceDataCache,
+                       DetailResponseCache detailCache) {
         this.cateRepository = cateRepository;
+        this.searchIndex = searchIndex;
+        this.cateCache = referenceDataCache.categories();
+        this.detailCache = detailCache;
     }
 
     public List<Categories> getAllCategories() {
-        return cateRepository.findAll();
+        return cateCache.getAll();
     }
 
     public Categories getCateById(String id) {
-        Categories cate = cateRepository.findById(id)
+        Categories cate = cateCache.get(id)
                             .orElseThrow(() -> new ResourceNotFoundException("Category not found"));
 
         return cate;
     }
 
     public Categories getCateByName(String name) {
-        Categories cate = cateRepository.findByCateName(name)
+        Categories cate = cateCache.find(c -> c.getCateName().equals(name))
                             .orElseThrow(() -> new ResourceNotFoundException("Category not found"));
 
         return cate;
@@ -42,7 +53,10 @@ public class CateService {
     @Transactional
     public Categories createCate(CateRequest cateRequest) {
         Categories cate = new Categories(RandomIdGenerator.generate(10), cateRequest.getCateName(), new HashSet<>());
-        return cateRepository.save(cate);
+        Categories saved = cateRepository.save(cate);
+        cateCache.put(saved);
+        searchIndex.indexCategory(saved);
+        return saved;
     }
 
     @Transactional
@@ -51,7 +65,11 @@ public class CateService {
                             .orElseThrow(() -> new ResourceNotFoundException("Category not found"));
 
         cate.setCateName(cateRequest.getCateName());
-        return cateRepository.save(cate);
+        Categories saved = cateRepository.save(cate);
+        cateCache.put(saved);
+        searchIndex.indexCategory(saved);
+        detailCache.evictAll();
+        return saved;
     }
 
     @Transactional
@@ -60,5 +78,8 @@ public class CateService {
                             .orElseThrow(() -> new ResourceNotFoundException("Category not found"));
         
         cateRepository.delete(cate);
+        cateCache.remove(id);
+        searchIndex.removeCategory(id);
+        detailCache.evictAll();
     }
 }
@@ -4,10 +4,12 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.CNTTK18.Common.Exception.ResourceNotFoundException;
-import com.CNTTK18.restaurant_service.dto.api.UserResponse;
+import com.CNTTK18.restaurant_service.client.DirectoryUser;
+import com.CNTTK18.restaurant_service.client.UserDirectoryClient;
 import com.CNTTK18.restaurant_service.dto.dashboard.response.MerchantOverviewResponse;
 import com.CNTTK18.restaurant_service.dto.dashboard.response.RestaurantStatsResponse;
 import com.CNTTK18.restaurant_service.exception.ForbiddenException;
@@ -15,20 +17,37 @@ import com.CNTTK18.restaurant_service.exception.InvalidRequestException;
 import com.CNTTK18.restaurant_service.model.Restaurants;
 import com.CNTTK18.restaurant_service.repository.ResRepository;
 
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
 @Service
 public class DashboardService {
     private ResRepository resRepository;
-    private WebClient.Builder webClientBuilder;
+    private UserDirectoryClient userDirectory;
+    private TransactionTemplate readOnlyTx;
 
-    public DashboardService(ResRepository resRepository, WebClient.Builder webClientBuilder) {
+    public DashboardService(ResRepository resRepository, UserDirectoryClient userDirectory,
+                            PlatformTransactionManager transactionManager) {
         this.resRepository = resRepository;
-        this.webClientBuilder = webClientBuilder;
+        this.userDirectory = userDirectory;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    // Kiểm tra merchant qua user-service (có cache) rồi mới đọc DB, phần đọc DB chạy ngoài event loop của WebClient
+    public Mono<MerchantOverviewResponse> getMerchantOverview(String merchantId, String requestUserId) {
+        return validateMerchantAccess(merchantId, requestUserId)
+                    .publishOn(Schedulers.boundedElastic())
+                    .map(user -> readOnlyTx.execute(status -> buildMerchantOverview(merchantId)));
     }
 
-    public MerchantOverviewResponse getMerchantOverview(String merchantId, String requestUserId) {
-        // Verify merchant exists and user has permission
-        validateMerchantAccess(merchantId, requestUserId);
+    public Mono<List<RestaurantStatsResponse>> getRestaurantStats(String merchantId, String requestUserId) {
+        return validateMerchantAccess(merchantId, requestUserId)
+                    .publishOn(Schedulers.boundedElastic())
+                    .map(user -> readOnlyTx.execute(status -> buildRestaurantStats(merchantId)));
+    }
 
+    private MerchantOverviewResponse buildMerchantOverview(String merchantId) {
         // Get the merchant's restaurant (should be only one)
         List<Restaurants> restaurants = resRepository.findRestaurantsByMerchantId(merchantId)
                                             .orElseThrow(() -> new ResourceNotFoundException("No restaurant found for this merchant"));
@@ -55,10 +74,7 @@ public class DashboardService {
                 .build();
     }
 
-    public List<RestaurantStatsResponse> getRestaurantStats(String merchantId, String requestUserId) {
-        // Verify merchant exists and user has permission
-        validateMerchantAccess(merchantId, requestUserId);
-
+    private List<RestaurantStatsResponse> buildRestaurantStats(String merchantId) {
         List<Restaurants> restaurants = resRepository.findRestaurantsByMerchantId(merchantId)
                                             .orElseThrow(() -> new ResourceNotFoundException("No restaurant found for this merchant"));
 
@@ -83,25 +99,19 @@ public class DashboardService {
                 .build();
     }
 
-    private void validateMerchantAccess(String merchantId, String requestUserId) {
-        // Verify user exists and is a merchant
-        UserResponse user = webClientBuilder.build()
-                                .get()
-                                .uri("lb://user-service/api/users/admin/{id}", merchantId)
-                                .retrieve()
-                                .bodyToMono(UserResponse.class)
-                                .block();
-        
-        if (user == null) {
-            throw new ResourceNotFoundException("Merchant not found");
-        }
-        if (!"MERCHANT".equals(user.getRole())) {
-            throw new InvalidRequestException("User is not a merchant");
-        }
-
-        // Verify requesting user has permission (must be the merchant themselves)
+    private Mono<DirectoryUser> validateMerchantAccess(String merchantId, String requestUserId) {
+        // Verify requesting user has permission (must be the merchant themselves), no need to call user-service otherwise
         if (requestUserId != null && !requestUserId.equals(merchantId)) {
-            throw new ForbiddenException("You do not have permission to access this merchant's dashboard");
+            return Mono.error(new ForbiddenException("You do not have permission to access this merchant's dashboard"));
         }
+
+        // Verify user exists and is a merchant
+        return userDirectory.getUser(merchantId)
+                    .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("Merchant not found")))
+                    .doOnNext(user -> {
+                        if (!user.isMerchant()) {
+                            throw new InvalidRequestException("User is not a merchant");
+                        }
+                    });
     }
 }
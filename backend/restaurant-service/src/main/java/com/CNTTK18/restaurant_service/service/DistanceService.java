@@ -1,84 +1,127 @@
 package com.CNTTK18.restaurant_service.service;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
 
-import com.CNTTK18.restaurant_service.dto.distance.request.DistanceRequest;
+import com.CNTTK18.restaurant_service.distance.DistanceMatrixCache;
+import com.CNTTK18.restaurant_service.distance.DistanceProvider;
+import com.CNTTK18.restaurant_service.distance.LocalDistanceProvider;
+import com.CNTTK18.restaurant_service.distance.OrsDistanceProvider;
 import com.CNTTK18.restaurant_service.dto.distance.response.OrsDirectionResponse;
 import com.CNTTK18.restaurant_service.dto.distance.response.DistanceResponse;
+import com.CNTTK18.restaurant_service.util.DistanceUtil;
 
 import reactor.core.publisher.Mono;
 
 @Service
 public class DistanceService {
-    @Value("${OPENROUTESERVICE_API_KEY}")
-    private String apiKey;
-
-    @Value("${OPENROUTESERVICE_LIST_URL}")
-    private String apiListUrl;
-
-    @Value("${OPENROUTESERVICE_URL}")
-    private String apiUrl;
-
-    final int R = 6371000;
-
-    private WebClient webClientBuilder;
-
-    public DistanceService(WebClient webClientBuilder) {
-        this.webClientBuilder = webClientBuilder;
+    private static final Logger log = LoggerFactory.getLogger(DistanceService.class);
+
+    private DistanceProvider provider;
+    private LocalDistanceProvider localProvider;
+    private OrsDistanceProvider orsProvider;
+    private DistanceMatrixCache matrixCache;
+
+    public DistanceService(List<DistanceProvider> providers, LocalDistanceProvider localProvider,
+                           OrsDistanceProvider orsProvider, DistanceMatrixCache matrixCache,
+                           @Value("${distance.provider:local}") String providerName) {
+        Map<String, DistanceProvider> byName = providers.stream()
+                            .collect(Collectors.toMap(DistanceProvider::getName, Function.identity()));
+        this.provider = (providerName == null || providerName.isBlank()) ? localProvider : byName.get(providerName);
+        if (this.provider == null) {
+            throw new IllegalArgumentException("Unknown distance provider: " + providerName);
+        }
+        this.localProvider = localProvider;
+        this.orsProvider = orsProvider;
+        this.matrixCache = matrixCache;
     }
 
+    // Ma trận 1xN cho các trang danh sách, mặc định tính local để không phụ thuộc vào rate limit của ORS
     public Mono<DistanceResponse> getDistanceAndDurationInList(List<Double> startingPoints, List<List<Double>> endPoints) {
-        List<List<Double>> allPoints = new ArrayList<>();
-
-        allPoints.add(startingPoints);
-        allPoints.addAll(endPoints);
+        if (provider == localProvider) {
+            return localProvider.getDistanceAndDurationInList(startingPoints, endPoints);
+        }
+        return provider.getDistanceAndDurationInList(startingPoints, endPoints)
+                    .onErrorResume(ex -> {
+                        log.warn("Distance provider {} failed, falling back to local: {}", provider.getName(), ex.getMessage());
+                        return localProvider.getDistanceAndDurationInList(startingPoints, endPoints);
+                    });
+    }
 
-        DistanceRequest distanceRequest = new DistanceRequest(allPoints);
+    // Giống hàm trên nhưng có id nhà hàng để dùng cache theo ô geohash của điểm xuất phát,
+    // chỉ những nhà hàng chưa có trong cache mới phải gọi provider
+    public Mono<DistanceResponse> getDistanceAndDurationInList(List<Double> startingPoints, List<String> restaurantIds,
+                                                               List<List<Double>> endPoints) {
+        if (provider == localProvider) {
+            return localProvider.getDistanceAndDurationInList(startingPoints, endPoints);
+        }
+        String cell = matrixCache.cellOf(startingPoints.get(0), startingPoints.get(1));
+        int n = restaurantIds.size();
+        Double[] distances = new Double[n];
+        Double[] durations = new Double[n];
+        List<Integer> missing = new ArrayList<>();
+
+        for (int i = 0; i < n; i++) {
+            DistanceMatrixCache.Entry entry = matrixCache.get(cell, restaurantIds.get(i));
+            if (entry == null) {
+                missing.add(i);
+                continue;
+            }
+            distances[i] = entry.distance();
+            durations[i] = entry.duration();
+        }
+        if (missing.isEmpty()) {
+            return Mono.just(new DistanceResponse(List.of(Arrays.asList(distances)), List.of(Arrays.asList(durations))));
+        }
+
+        List<List<Double>> missingPoints = missing.stream().map(endPoints::get).toList();
+        return provider.getDistanceAndDurationInList(startingPoints, missingPoints)
+                    .doOnNext(response -> {
+                        List<Double> missingDistances = response.getDistances().get(0);
+                        List<Double> missingDurations = response.getDurations().get(0);
+                        for (int j = 0; j < missing.size(); j++) {
+                            Double distance = missingDistances.get(j);
+                            Double duration = missingDurations.get(j);
+                            // ORS trả null khi không tìm được đường, không cache trường hợp này
+                            if (distance != null && duration != null) {
+                                matrixCache.put(cell, restaurantIds.get(missing.get(j)), distance, duration);
+                            }
+                        }
+                    })
+                    .onErrorResume(ex -> {
+                        log.warn("Distance provider {} failed, falling back to local: {}", provider.getName(), ex.getMessage());
+                        return localProvider.getDistanceAndDurationInList(startingPoints, missingPoints);
+                    })
+                    .map(response -> {
+                        List<Double> missingDistances = response.getDistances().get(0);
+                        List<Double> missingDurations = response.getDurations().get(0);
+                        for (int j = 0; j < missing.size(); j++) {
+                            distances[missing.get(j)] = missingDistances.get(j);
+                            durations[missing.get(j)] = missingDurations.get(j);
+                        }
+                        return new DistanceResponse(List.of(Arrays.asList(distances)), List.of(Arrays.asList(durations)));
+                    });
+    }
 
-        return webClientBuilder
-                .post()
-                .uri(apiListUrl) // Endpoint của ORS Matrix API
-                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                .header("Authorization", apiKey) // ORS yêu cầu API Key trong header
-                .bodyValue(distanceRequest)
-                .retrieve()
-                .bodyToMono(DistanceResponse.class);
+    public void evictRestaurant(String restaurantId) {
+        matrixCache.evictRestaurant(restaurantId);
     }
 
+    // Đường đi chi tiết cho 1 nhà hàng vẫn dùng ORS (refinement path)
     public Mono<OrsDirectionResponse> getDistanceAndDuration(List<Double> start, List<Double> end) {
-        Map<String, List<List<Double>>> requestBody = Map.of(
-            "coordinates", List.of(start,end)
-        );
-
-        return webClientBuilder
-                .post()
-                .uri(apiUrl) 
-                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                .header("Authorization", apiKey) // ORS yêu cầu API Key trong header
-                .bodyValue(requestBody)
-                .retrieve()
-                .bodyToMono(OrsDirectionResponse.class);
+        return orsProvider.getDistanceAndDuration(start, end);
     }
 
     public Double calculateHaversineDistance(Double lon1, Double lat1, Double lon2, Double lat2) {
-        Double latDistance = toRad(lat2-lat1);
-        Double lonDistance = toRad(lon2-lon1);
-        Double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2) + 
-        Math.cos(toRad(lat1)) * Math.cos(toRad(lat2)) * 
-        Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-        Double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1-a));
-        return R * c;
-    }
-
-    public Double toRad(Double value) {
-        return value * Math.PI / 180;
+        return DistanceUtil.haversine(lon1, lat1, lon2, lat2);
     }
 }
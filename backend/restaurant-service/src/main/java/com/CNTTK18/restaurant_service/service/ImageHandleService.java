@@ -1,43 +1,216 @@
 package com.CNTTK18.restaurant_service.service;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import com.cloudinary.Cloudinary;
-import com.cloudinary.utils.ObjectUtils;
+import com.CNTTK18.restaurant_service.cache.DetailResponseCache;
+import com.CNTTK18.restaurant_service.data.ImageStatus;
+import com.CNTTK18.restaurant_service.image.ImageDeleteBatcher;
+import com.CNTTK18.restaurant_service.image.ImageStore;
+import com.CNTTK18.restaurant_service.image.StoredImage;
+import com.CNTTK18.restaurant_service.repository.ProductRepository;
+import com.CNTTK18.restaurant_service.repository.ResRepository;
+import com.CNTTK18.restaurant_service.util.TransactionUtil;
 
+import jakarta.annotation.PreDestroy;
+
+// Upload ảnh không chặn request: multipart được ghi xuống file tạm (spool), entity được lưu với
+// imageStatus = PENDING, sau khi transaction commit thì worker pool (giới hạn luồng + hàng đợi) mới upload
+// có retry rồi cập nhật imageURL/publicID. Ảnh cũ được xóa theo lô qua ImageDeleteBatcher
 @Service
 public class ImageHandleService {
-    private Cloudinary cloudinary;
+    private static final Logger log = LoggerFactory.getLogger(ImageHandleService.class);
+
+    private ImageStore store;
+    private ImageDeleteBatcher deleteBatcher;
+    private ResRepository resRepository;
+    private ProductRepository productRepository;
+    private DetailResponseCache detailCache;
+    private ThreadPoolExecutor executor;
+    private Path spoolDir;
+    private int maxAttempts;
+    private Duration retryBackoff;
+    // Lần upload mới nhất của mỗi nhà hàng/món, upload cũ hơn xong sau sẽ bị bỏ
+    private final Map<String, String> latestUploads = new ConcurrentHashMap<>();
 
-    public ImageHandleService(Cloudinary cloudinary) {
-        this.cloudinary = cloudinary;
+    public ImageHandleService(ImageStore store, ImageDeleteBatcher deleteBatcher, ResRepository resRepository,
+                              ProductRepository productRepository, DetailResponseCache detailCache,
+                              @Value("${image.upload.threads:4}") int threads,
+                              @Value("${image.upload.queue-capacity:200}") int queueCapacity,
+                              @Value("${image.upload.max-attempts:3}") int maxAttempts,
+                              @Value("${image.upload.retry-backoff:1s}") Duration retryBackoff,
+                              @Value("${image.upload.spool-dir:${java.io.tmpdir}/restaurant-images/spool}") String spoolDir) throws IOException {
+        this.store = store;
+        this.deleteBatcher = deleteBatcher;
+        this.resRepository = resRepository;
+        this.productRepository = productRepository;
+        this.detailCache = detailCache;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = retryBackoff;
+        this.spoolDir = Files.createDirectories(Paths.get(spoolDir));
+        AtomicInteger threadCount = new AtomicInteger();
+        // Hàng đợi đầy thì từ chối (submit đánh dấu FAILED), không bao giờ upload trên luồng request
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                            new ArrayBlockingQueue<>(queueCapacity),
+                            r -> new Thread(r, "image-upload-" + threadCount.incrementAndGet()),
+                            new ThreadPoolExecutor.AbortPolicy());
     }
 
-    public Map<String, String> saveImageFile(MultipartFile file) {
+    // Ghi multipart xuống file tạm trên đĩa (transferTo không đọc cả file vào heap)
+    public Path spool(MultipartFile file) {
+        String name = file.getOriginalFilename();
+        String ext = (name != null && name.lastIndexOf('.') >= 0) ? name.substring(name.lastIndexOf('.')) : "";
+        Path target = spoolDir.resolve(UUID.randomUUID() + ext);
         try {
-            // Tải file lên Cloudinary và nhận kết quả
-            Map<?, ?> result = cloudinary.uploader().upload(file.getBytes(), ObjectUtils.emptyMap());
-            
-            Map<String, String> res = new HashMap<>();
-            res.put("public_id", (String) result.get("public_id"));
-            res.put("url", (String) result.get("secure_url"));
-            return res;
+            file.transferTo(target);
+            return target;
         }
         catch (IOException ex) {
             throw new RuntimeException("Không thể tải file lên", ex);
         }
     }
 
+    public void uploadRestaurantImage(String resId, Path spooled) {
+        submit(restaurantKey(resId), spooled, image -> {
+            String oldPublicId = resRepository.findPublicIdById(resId).orElse(null);
+            if (resRepository.updateImage(resId, image.url(), image.thumbnailUrl(), image.detailUrl(),
+                                            image.publicId(), ImageStatus.READY) == 0) {
+                // Nhà hàng hoặc ảnh đã bị xóa trong lúc upload
+                return image.publicId();
+            }
+            detailCache.evictRestaurant(resId);
+            return oldPublicId;
+        }, () -> resRepository.updateImageStatus(resId, ImageStatus.FAILED));
+    }
+
+    public void uploadProductImage(String productId, Path spooled) {
+        submit(productKey(productId), spooled, image -> {
+            String oldPublicId = productRepository.findPublicIdById(productId).orElse(null);
+            if (productRepository.updateImage(productId, image.url(), image.thumbnailUrl(), image.detailUrl(),
+                                                image.publicId(), ImageStatus.READY) == 0) {
+                return image.publicId();
+            }
+            detailCache.evictProduct(productId);
+            return oldPublicId;
+        }, () -> productRepository.updateImageStatus(productId, ImageStatus.FAILED));
+    }
+
+    // Bỏ upload đang chờ/đang chạy (vd. merchant xóa ảnh): kết quả upload đó được xóa đi thay vì ghi vào DB.
+    // Gọi trước khi xóa ảnh trong DB
+    public void cancelRestaurantUpload(String resId) {
+        latestUploads.remove(restaurantKey(resId));
+    }
+
+    public void cancelProductUpload(String productId) {
+        latestUploads.remove(productKey(productId));
+    }
+
+    // Xóa sau khi commit và theo lô, request không phải chờ Cloudinary
     public void deleteImage(String publicId) {
+        if (publicId == null || publicId.isEmpty()) {
+            return;
+        }
+        TransactionUtil.afterCommit(() -> deleteBatcher.add(publicId));
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    private static String restaurantKey(String resId) {
+        return "res:" + resId;
+    }
+
+    private static String productKey(String productId) {
+        return "product:" + productId;
+    }
+
+    // patch ghi ảnh mới vào DB và trả về public_id cần xóa (ảnh cũ)
+    private void submit(String key, Path spooled, Function<StoredImage, String> patch, Runnable onFailure) {
+        String token = UUID.randomUUID().toString();
+        TransactionUtil.afterCommit(() -> {
+            latestUploads.put(key, token);
+            try {
+                executor.execute(() -> process(key, token, spooled, patch, onFailure));
+            }
+            catch (RejectedExecutionException ex) {
+                log.warn("Image upload queue is full, marking {} as failed", key);
+                deleteSpool(spooled);
+                if (latestUploads.remove(key, token)) {
+                    onFailure.run();
+                }
+            }
+        }, () -> deleteSpool(spooled));
+    }
+
+    private void process(String key, String token, Path spooled, Function<StoredImage, String> patch, Runnable onFailure) {
+        try {
+            StoredImage image = uploadWithRetry(spooled);
+            if (!token.equals(latestUploads.get(key))) {
+                // Đã có ảnh mới hơn được gửi lên trong lúc upload
+                deleteBatcher.add(image.publicId());
+                return;
+            }
+            deleteBatcher.add(patch.apply(image));
+            latestUploads.remove(key, token);
+        }
+        catch (Exception ex) {
+            if (ex instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            log.error("Image upload {} failed: {}", key, ex.getMessage());
+            if (latestUploads.remove(key, token)) {
+                onFailure.run();
+            }
+        }
+        finally {
+            deleteSpool(spooled);
+        }
+    }
+
+    private StoredImage uploadWithRetry(Path spooled) throws IOException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return store.upload(spooled);
+            }
+            catch (IOException | RuntimeException ex) {
+                if (attempt >= maxAttempts) {
+                    throw ex;
+                }
+                log.warn("Image upload attempt {} failed, retrying: {}", attempt, ex.getMessage());
+                // Backoff tăng gấp đôi sau mỗi lần lỗi
+                Thread.sleep(retryBackoff.toMillis() << (attempt - 1));
+            }
+        }
+    }
+
+    // Xóa file tạm của ảnh không được submit (vd. lưu entity lỗi ngoài transaction)
+    public void deleteSpool(Path spooled) {
         try {
-            cloudinary.uploader().destroy(publicId, ObjectUtils.emptyMap());
-        } catch (IOException e) {
-            throw new RuntimeException("Không thể xóa file.", e);
+            Files.deleteIfExists(spooled);
+        }
+        catch (IOException ex) {
+            log.warn("Cannot delete spool file {}: {}", spooled, ex.getMessage());
         }
     }
 }
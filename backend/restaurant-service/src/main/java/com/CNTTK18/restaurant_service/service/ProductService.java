@@ -1,30 +1,54 @@
 package com.CNTTK18.restaurant_service.service;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.CNTTK18.Common.Exception.ResourceNotFoundException;
-import com.CNTTK18.Common.Util.RandomIdGenerator;
 import com.CNTTK18.Common.Util.SlugGenerator;
+import com.CNTTK18.Common.Util.TextNormalizer;
+import com.CNTTK18.Common.Util.UlidGenerator;
+import com.CNTTK18.restaurant_service.cache.DetailCache;
+import com.CNTTK18.restaurant_service.cache.DetailResponseCache;
+import com.CNTTK18.restaurant_service.cache.ReferenceCache;
+import com.CNTTK18.restaurant_service.cache.ReferenceDataCache;
+import com.CNTTK18.restaurant_service.data.ImageStatus;
 import com.CNTTK18.restaurant_service.data.ReviewType;
+import com.CNTTK18.restaurant_service.dto.product.MenuItem;
+import com.CNTTK18.restaurant_service.dto.product.ProductIdWithDistance;
 import com.CNTTK18.restaurant_service.dto.product.ProductIdWithRating;
 import com.CNTTK18.restaurant_service.dto.product.request.ProductRequest;
 import com.CNTTK18.restaurant_service.dto.product.request.SizePrice;
+import com.CNTTK18.restaurant_service.dto.product.response.MenuImportError;
+import com.CNTTK18.restaurant_service.dto.product.response.MenuImportResponse;
+import com.CNTTK18.restaurant_service.menu.MenuFormat;
+import com.CNTTK18.restaurant_service.menu.MenuReader;
+import com.CNTTK18.restaurant_service.menu.MenuRow;
+import com.CNTTK18.restaurant_service.menu.MenuWriter;
 import com.CNTTK18.restaurant_service.model.ProductSize;
 import com.CNTTK18.restaurant_service.model.Categories;
 import com.CNTTK18.restaurant_service.model.Products;
@@ -32,18 +56,23 @@ import com.CNTTK18.restaurant_service.model.Restaurants;
 import com.CNTTK18.restaurant_service.model.Reviews;
 import com.CNTTK18.restaurant_service.model.Size;
 import com.CNTTK18.restaurant_service.repository.CateRepository;
+import com.CNTTK18.restaurant_service.repository.MenuBulkRepository;
 import com.CNTTK18.restaurant_service.repository.ProductRepository;
 import com.CNTTK18.restaurant_service.repository.ResRepository;
 import com.CNTTK18.restaurant_service.repository.ReviewRepository;
 import com.CNTTK18.restaurant_service.repository.SizeRepository;
+import com.CNTTK18.restaurant_service.search.SearchIndex;
+import com.CNTTK18.restaurant_service.util.CursorUtil;
 import com.CNTTK18.restaurant_service.util.ProductUtil;
 import com.CNTTK18.restaurant_service.util.ResUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import jakarta.transaction.Transactional;
 import reactor.core.publisher.Mono;
 
 import com.CNTTK18.restaurant_service.dto.product.request.UpdateProduct;
 import com.CNTTK18.restaurant_service.dto.product.response.ProductResponse;
+import com.CNTTK18.restaurant_service.dto.response.CursorResponse;
 import com.CNTTK18.restaurant_service.dto.restaurant.request.Coordinates;
 import com.CNTTK18.restaurant_service.dto.restaurant.response.ResResponse;
 import com.CNTTK18.restaurant_service.exception.ForbiddenException;
@@ -51,6 +80,11 @@ import com.CNTTK18.restaurant_service.exception.InvalidRequestException;
 
 @Service
 public class ProductService {
+    private static final Logger log = LoggerFactory.getLogger(ProductService.class);
+    // Số lỗi tối đa trả về trong response import, tránh response khổng lồ khi cả file sai định dạng
+    private static final int MAX_MENU_ERRORS = 500;
+    private static final BigDecimal MAX_MENU_PRICE = new BigDecimal("100000000");
+
     private ProductRepository productRepo;
     private CateRepository cateRepository;
     private ResRepository resRepository;
@@ -58,10 +92,22 @@ public class ProductService {
     private ImageHandleService imageFileService;
     private ReviewRepository reviewRepository;
     private DistanceService distanceService;
+    private SearchIndex searchIndex;
+    private ReferenceCache<Categories> cateCache;
+    private ReferenceCache<Size> sizeCache;
+    private DetailResponseCache detailCache;
+    private MenuBulkRepository menuBulkRepository;
+    private ObjectMapper objectMapper;
+    private int menuBatchSize;
+    private int menuMaxRows;
 
     public ProductService(ProductRepository productRepo, CateRepository cateRepository, 
                             ResRepository resRepository, SizeRepository sizeRepository, ImageHandleService imageFileService,
-                            ReviewRepository reviewRepository, DistanceService distanceService) {
+                            ReviewRepository reviewRepository, DistanceService distanceService, SearchIndex searchIndex,
+                            ReferenceDataCache referenceDataCache, DetailResponseCache detailCache,
+                            MenuBulkRepository menuBulkRepository, ObjectMapper objectMapper,
+                            @Value("${menu.import.batch-size:500}") int menuBatchSize,
+                            @Value("${menu.import.max-rows:10000}") int menuMaxRows) {
         this.productRepo = productRepo;
         this.cateRepository = cateRepository;
         this.resRepository = resRepository;
@@ -69,11 +115,19 @@ public class ProductService {
         this.imageFileService = imageFileService;
         this.reviewRepository = reviewRepository;
         this.distanceService = distanceService;
+        this.searchIndex = searchIndex;
+        this.cateCache = referenceDataCache.categories();
+        this.sizeCache = referenceDataCache.sizes();
+        this.detailCache = detailCache;
+        this.menuBulkRepository = menuBulkRepository;
+        this.objectMapper = objectMapper;
+        this.menuBatchSize = menuBatchSize;
+        this.menuMaxRows = menuMaxRows;
     }
 
     public Mono<Page<ProductResponse>> getAllProducts(String rating, String category, BigDecimal minPrice, 
                                 BigDecimal maxPrice, String search, Integer nearby, Coordinates location,
-                                String locationsorted, Pageable pageable) {
+                                String locationsorted, String mode, Pageable pageable) {
 
         if (location == null) {
             throw new InvalidRequestException("longitude and latitude is mandatory");
@@ -81,59 +135,130 @@ public class ProductService {
         List<String> categoryNames = (category == null || category.isBlank()) ? List.of()
             : Arrays.stream(category.split(",")).map(String::trim).map(String::toLowerCase).toList();
         
-        search = (search != null && !search.isBlank()) ? search : null;
+        search = (search != null && !search.isBlank()) ? TextNormalizer.fold(search) : null;
         nearby = (nearby == null || nearby > 20000) ? 20000 : nearby;
 
-        String sort = rating != null && "desc".equalsIgnoreCase(rating) ? "rating_id_desc" : "id_asc";
+        boolean byRating = rating != null && "desc".equalsIgnoreCase(rating);
+        String sort = byRating ? "rating_id_desc" : "id_asc";
 
-        Page<ProductIdWithRating> productResult = productRepo.findProductsWithinDistance(location.getLongitude(), location.getLatitude(), nearby, search, 
-                                                categoryNames, maxPrice, minPrice, sort, pageable);
+        // Thứ tự (độ liên quan với mode=search, rating, id hoặc gần nhất trước với locationsorted=asc) đều được tính trong DB,
+        // nên bỏ Sort của client để Spring không nối thêm ORDER BY vào native query
+        Pageable unsorted = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+        boolean searchMode = "search".equalsIgnoreCase(mode);
+        if (searchMode && search == null) {
+            throw new InvalidRequestException("search is mandatory in search mode");
+        }
+        Page<? extends ProductIdWithRating> productResult = searchMode
+            ? productRepo.searchProductIdsWithinDistance(location.getLongitude(), location.getLatitude(), nearby, search,
+                                                categoryNames, maxPrice, minPrice, unsorted)
+            : !byRating && "asc".equals(locationsorted)
+            ? productRepo.findNearestProductsWithinDistance(location.getLongitude(), location.getLatitude(), nearby, search,
+                                                categoryNames, maxPrice, minPrice, unsorted)
+            : productRepo.findProductsWithinDistance(location.getLongitude(), location.getLatitude(), nearby, search, 
+                                                categoryNames, maxPrice, minPrice, sort, unsorted);
                             
         List<String> productIds = productResult.getContent().stream().map(ProductIdWithRating::getId).toList();
-        List<Products> products = productRepo.findByIdIn(productIds);
+        if (productIds.isEmpty()) {
+            return Mono.just(Page.empty(pageable));
+        }
+
+        return mapProductIdsToResponseWithDistance(location, productIds)
+                    .map(productResponses -> new PageImpl<>(productResponses, pageable, productResult.getTotalElements()));
+    }
+
+    // Keyset pagination cho infinite scroll, không chạy count query
+    // sort = nearest: gần nhất trước (KNN trên index không gian), ngược lại theo rating/id
+    public Mono<CursorResponse<ProductResponse>> getProductsByCursor(String rating, String category, BigDecimal minPrice, 
+                                BigDecimal maxPrice, String search, Integer nearby, Coordinates location,
+                                String sortBy, String cursor, int size) {
+
+        if (location == null) {
+            throw new InvalidRequestException("longitude and latitude is mandatory");
+        }
+        List<String> categoryNames = (category == null || category.isBlank()) ? List.of()
+            : Arrays.stream(category.split(",")).map(String::trim).map(String::toLowerCase).toList();
+        
+        search = (search != null && !search.isBlank()) ? TextNormalizer.fold(search) : null;
+        nearby = (nearby == null || nearby > 20000) ? 20000 : nearby;
+        size = (size <= 0 || size > 100) ? 20 : size;
+
+        boolean nearest = "nearest".equalsIgnoreCase(sortBy);
+        boolean byRating = !nearest && rating != null && "desc".equalsIgnoreCase(rating);
+        String sort = nearest ? "distance_id_asc" : byRating ? "rating_id_desc" : "id_asc";
+        CursorUtil.Cursor after = CursorUtil.decode(cursor, sort);
+        String lastId = after != null ? after.id() : "";
+
+        // Lấy dư 1 dòng để biết còn trang sau hay không
+        List<? extends ProductIdWithRating> rows;
+        if (nearest) {
+            rows = productRepo.findNearestProductIdsAfterDistance(location.getLongitude(), location.getLatitude(), nearby, search,
+                        categoryNames, maxPrice, minPrice, after != null && after.distance() != null ? after.distance() : -1d,
+                        lastId, size + 1);
+        }
+        else if (byRating) {
+            rows = productRepo.findProductIdsWithinDistanceAfterRating(location.getLongitude(), location.getLatitude(), nearby, search,
+                        categoryNames, maxPrice, minPrice, after != null && after.rating() != null ? after.rating() : Float.MAX_VALUE,
+                        lastId, size + 1);
+        }
+        else {
+            rows = productRepo.findProductIdsWithinDistanceAfterId(location.getLongitude(), location.getLatitude(), nearby, search,
+                        categoryNames, maxPrice, minPrice, lastId, size + 1);
+        }
+
+        boolean hasNext = rows.size() > size;
+        List<? extends ProductIdWithRating> pageRows = hasNext ? rows.subList(0, size) : rows;
+        final int pageSize = size;
+        if (pageRows.isEmpty()) {
+            return Mono.just(new CursorResponse<>(List.of(), pageSize, false, null));
+        }
+
+        ProductIdWithRating last = pageRows.get(pageRows.size() - 1);
+        Double lastDistance = last instanceof ProductIdWithDistance withDistance ? withDistance.getDistance() : null;
+        String nextCursor = hasNext
+            ? CursorUtil.encode(new CursorUtil.Cursor(sort, last.getRating() != null ? last.getRating() : 0f, lastDistance, last.getId()))
+            : null;
+
+        List<String> productIds = pageRows.stream().map(ProductIdWithRating::getId).toList();
+        return mapProductIdsToResponseWithDistance(location, productIds)
+                    .map(productResponses -> new CursorResponse<>(productResponses, pageSize, hasNext, nextCursor));
+    }
+
+    // Lấy products (kèm restaurant, category, sizes) theo lô rồi gắn distance/duration của nhà hàng,
+    // thứ tự kết quả giữ đúng thứ tự của productIds
+    private Mono<List<ProductResponse>> mapProductIdsToResponseWithDistance(Coordinates location, List<String> productIds) {
+        Map<String, Products> productById = productRepo.findByIdIn(productIds).stream()
+                                        .collect(Collectors.toMap(Products::getId, Function.identity()));
+        List<Products> products = productIds.stream().map(productById::get).filter(Objects::nonNull).toList();
 
         List<Restaurants> res = products.stream().map(r -> r.getRestaurant()).distinct().toList();
 
         if (res.isEmpty()) {
-            return Mono.just(Page.empty(pageable));
+            return Mono.just(new ArrayList<>());
         }
-        final List<Restaurants> filteredRes = res;
 
         List<Double> startingPoints = List.of(location.getLongitude(), location.getLatitude());
+        List<String> resIds = res.stream().map(Restaurants::getId).toList();
         List<List<Double>> endPoints = res.stream().map(r -> List.of(r.getLongitude(), r.getLatitude())).toList();
-        final List<Products> filteredProducts = products;
 
-        return distanceService.getDistanceAndDurationInList(startingPoints, endPoints)
+        return distanceService.getDistanceAndDurationInList(startingPoints, resIds, endPoints)
                     .map(response -> {
                         List<Double> durations = response.getDurations().get(0);
                         List<Double> distances = response.getDistances().get(0);
 
-                        Map<String,ResResponse> listResResponse =  IntStream.range(0, filteredRes.size()).mapToObj(i -> {
-                            Restaurants resIndex = filteredRes.get(i);
+                        Map<String,ResResponse> listResResponse =  IntStream.range(0, res.size()).mapToObj(i -> {
+                            Restaurants resIndex = res.get(i);
 
                             ResResponse resResponseIndex = ResUtil.mapResToResResponse(resIndex);
                             resResponseIndex.setDuration(durations.get(i));
                             resResponseIndex.setDistance(distances.get(i));
                             return resResponseIndex;
                         }).collect(Collectors.toMap(ResResponse::getId, Function.identity()));
-                        List<ProductResponse> productResponses = filteredProducts.stream()
-                                                        .map(p -> ProductUtil.mapProductToProductResponse(p, listResResponse.get(p.getRestaurant().getId()))).collect(Collectors.toList());;
-
-                        productResponses = sortProductResponse(productResponses, rating, locationsorted);
-                        return new PageImpl<>(productResponses, pageable, productResult.getTotalElements());
+                        return products.stream()
+                                    .map(p -> ProductUtil.mapProductToProductResponse(p, listResResponse.get(p.getRestaurant().getId())))
+                                    .collect(Collectors.toList());
                     });
     }
 
-    private List<ProductResponse> sortProductResponse(List<ProductResponse> products, String rating, String locationsorted) {
-        if (rating != null && "desc".equalsIgnoreCase(rating)) {
-            products.sort(Comparator.comparing(ProductResponse::getRating).reversed());
-        }
-        else if (locationsorted != null && "asc".equals(locationsorted)) {
-            products.sort(Comparator.comparing(p -> p.getRestaurant().getDistance()));
-        }
-        return products;
-    }
-
     public ProductResponse getProductById(String id) {
         Products product = productRepo.findById(id).orElseThrow(() -> new ResourceNotFoundException("Product not found"));
         return ProductUtil.mapProductToProductResponseWitoutResParam(product);
@@ -144,16 +269,24 @@ public class ProductService {
         return ProductUtil.mapProductToProductResponseWitoutResParam(product);
     }
 
+    // Trang chi tiết theo slug đi qua cache, kèm ETag để controller trả 304
+    @Transactional
+    public DetailCache.Entry<ProductResponse> getProductDetailBySlug(String slug) {
+        return detailCache.products().get(slug, () -> getProductBySlug(slug));
+    }
+
     @Transactional
     public ProductResponse createProduct(ProductRequest productRequest, MultipartFile imageFile) {
-        Categories cate = cateRepository.findById(productRequest.getCategoryId())
+        // Product mới được lưu bằng merge nên có thể gắn thẳng category/size lấy từ cache,
+        // Hibernate chỉ dùng id của chúng để tạo reference
+        Categories cate = cateCache.get(productRequest.getCategoryId())
                                     .orElseThrow(() -> new ResourceNotFoundException("category not found"));
 
         Restaurants res = resRepository.findById(productRequest.getRestaurantId())
                                     .orElseThrow(() -> new ResourceNotFoundException("restaurant not found"));
 
         Products product = Products.builder()
-                                .id(RandomIdGenerator.generate(254))
+                                .id(UlidGenerator.generate())
                                 .productName(productRequest.getProductName())
                                 .description(productRequest.getDescription())
                                 .category(cate)
@@ -164,19 +297,19 @@ public class ProductService {
                                 .slug(SlugGenerator.generate(productRequest.getProductName()))
                                 .build();
         //Check cate
-        if (!res.getCategories().contains(cate)) {
-            res.addCate(cate);
+        if (!hasCategory(res, cate.getId())) {
+            res.addCate(cateRepository.getReferenceById(cate.getId()));
             resRepository.save(res);
         }
             
         if (productRequest.getSizeIds() != null) {
             for (SizePrice psDto : productRequest.getSizeIds()) {
 
-                Size size = sizeRepository.findById(psDto.getSizeId())
+                Size size = sizeCache.get(psDto.getSizeId())
                     .orElseThrow(() -> new ResourceNotFoundException("Size not found: " + psDto.getSizeId()));
                 
                 ProductSize productSize = ProductSize.builder()
-                    .id(RandomIdGenerator.generate(254))
+                    .id(UlidGenerator.generate())
                     .size(size)
                     .price(psDto.getPrice())
                     .build();
@@ -185,13 +318,15 @@ public class ProductService {
             }
         }
 
+        // Ảnh được upload nền sau khi commit, response trả về với imageStatus = PENDING
         if (imageFile != null && !imageFile.isEmpty()) {
-            Map<String, String> image = imageFileService.saveImageFile(imageFile);
-            product.setImageURL(image.get("url"));
-            product.setPublicID(image.get("public_id"));
+            imageFileService.uploadProductImage(product.getId(), imageFileService.spool(imageFile));
+            product.setImageStatus(ImageStatus.PENDING);
         }
 
         productRepo.save(product);
+        searchIndex.indexProduct(product);
+        detailCache.evictProduct(product.getId(), res.getId());
         return ProductUtil.mapProductToProductResponseWitoutResParam(product);
     }
 
@@ -199,7 +334,10 @@ public class ProductService {
     public ProductResponse updateProduct(UpdateProduct updateProduct, String id, MultipartFile imageFile, String userId) {
         Products product = productRepo.findById(id).orElseThrow(() -> new ResourceNotFoundException("Product not found"));
 
-        Categories cate = cateRepository.findById(updateProduct.getCategoryId())
+        // Product đang được persistence context quản lý nên gắn reference (proxy, không query) thay vì entity trong cache,
+        // tránh việc Hibernate phải query để kiểm tra entity detached khi flush
+        Categories cate = cateCache.get(updateProduct.getCategoryId())
+                                    .map(c -> cateRepository.getReferenceById(c.getId()))
                                     .orElseThrow(() -> new ResourceNotFoundException("category not found"));
 
         Restaurants res = resRepository.findById(product.getRestaurant().getId())
@@ -226,7 +364,7 @@ public class ProductService {
         product.setCategory(cate);
         product.setDescription(updateProduct.getDescription());
 
-        if (!res.getCategories().contains(cate)) {
+        if (!hasCategory(res, cate.getId())) {
             res.addCate(cate);
         }
 
@@ -237,12 +375,13 @@ public class ProductService {
             product.clearAllProductSizes();            
             for (SizePrice psDto : updateProduct.getSizeIds()) {
 
-                Size size = sizeRepository.findById(psDto.getSizeId())
+                Size size = sizeCache.get(psDto.getSizeId())
+                    .map(sz -> sizeRepository.getReferenceById(sz.getId()))
                     .orElseThrow(() -> new ResourceNotFoundException("Size not found: " + psDto.getSizeId()));
                 
                 // Tạo ProductSize entity
                 ProductSize productSize = ProductSize.builder()
-                    .id(RandomIdGenerator.generate(254))
+                    .id(UlidGenerator.generate())
                     .size(size)
                     .price(psDto.getPrice())
                     .build();
@@ -251,17 +390,15 @@ public class ProductService {
             }
         }
 
+        // Ảnh cũ bị xóa khi ảnh mới đã upload xong
         if (imageFile != null && !imageFile.isEmpty()) {
-            String oldPublicId = product.getPublicID();
-            Map<String, String> image = imageFileService.saveImageFile(imageFile);
-            product.setImageURL(image.get("url"));
-            product.setPublicID(image.get("public_id"));
-
-            if (oldPublicId != null && !oldPublicId.isEmpty()) {
-                imageFileService.deleteImage(oldPublicId);
-            }
+            imageFileService.uploadProductImage(id, imageFileService.spool(imageFile));
+            productRepo.markImagePending(id);
+            product.setImageStatus(ImageStatus.PENDING);
         }
         productRepo.save(product);
+        searchIndex.indexProduct(product);
+        detailCache.evictProduct(id, res.getId());
         return ProductUtil.mapProductToProductResponseWitoutResParam(product);
     }
 
@@ -286,6 +423,8 @@ public class ProductService {
         }
         reviewRepository.deleteAll(rv);
         productRepo.delete(product);
+        searchIndex.removeProduct(id);
+        detailCache.evictProduct(id, product.getRestaurant().getId());
     }
 
     @Transactional
@@ -296,6 +435,8 @@ public class ProductService {
         }
         product.setAvailable(!product.isAvailable());
         productRepo.save(product);
+        searchIndex.indexProduct(product);
+        detailCache.evictProduct(id, product.getRestaurant().getId());
     }
 
     public void deleteImage(String productId, String userId) {
@@ -304,9 +445,183 @@ public class ProductService {
         if (userId == null || !userId.equals(product.getRestaurant().getMerchantId())) {
             throw new ForbiddenException("You do not have permission to update this product.");
         }
+        imageFileService.cancelProductUpload(productId);
+        productRepo.clearImage(productId);
         imageFileService.deleteImage(product.getPublicID());
-        product.setImageURL(null);
-        product.setPublicID(null);
+        detailCache.evictProduct(productId, product.getRestaurant().getId());
+    }
+
+    // Import cả menu từ CSV/JSON: đọc từng dòng từ stream, validate bằng cache danh mục/size rồi ghi theo lô
+    // menuBatchSize món bằng JDBC batch. Dòng lỗi được báo lại theo số thứ tự, không làm hỏng các dòng khác.
+    // Các lô đã ghi được giữ lại nếu stream bị lỗi giữa chừng
+    public MenuImportResponse importMenu(String resId, MenuFormat format, InputStream body, String userId) {
+        Restaurants res = findOwnedRestaurant(resId, userId);
+        List<MenuImportError> errors = new ArrayList<>();
+        List<Products> batch = new ArrayList<>(menuBatchSize);
+        List<Integer> batchRows = new ArrayList<>(menuBatchSize);
+        int total = 0;
+        int imported = 0;
+        int failed = 0;
+
+        try (MenuReader reader = MenuReader.open(format, body, objectMapper)) {
+            MenuRow row;
+            while ((row = reader.next()) != null) {
+                if (row.number() > menuMaxRows) {
+                    addMenuError(errors, row.number(), "Menu is limited to " + menuMaxRows + " items, remaining rows were not imported");
+                    failed++;
+                    break;
+                }
+                total++;
+                String error = row.error() != null ? row.error() : validateMenuItem(row.item());
+                if (error != null) {
+                    addMenuError(errors, row.number(), error);
+                    failed++;
+                    continue;
+                }
+                batch.add(toNewProduct(row.item(), res));
+                batchRows.add(row.number());
+                if (batch.size() >= menuBatchSize) {
+                    int saved = saveMenuBatch(res, batch, batchRows, errors);
+                    imported += saved;
+                    failed += batch.size() - saved;
+                    batch.clear();
+                    batchRows.clear();
+                }
+            }
+            int saved = saveMenuBatch(res, batch, batchRows, errors);
+            imported += saved;
+            failed += batch.size() - saved;
+        }
+        catch (IOException ex) {
+            throw new InvalidRequestException("Cannot read menu: " + ex.getMessage());
+        }
+        finally {
+            if (imported > 0) {
+                detailCache.evictRestaurant(resId);
+            }
+        }
+
+        return MenuImportResponse.builder()
+                    .total(total)
+                    .imported(imported)
+                    .failed(failed)
+                    .errors(errors)
+                    .build();
+    }
+
+    // Kiểm tra quyền trước, dữ liệu được ghi ra response theo từng món trên luồng async của MVC
+    public StreamingResponseBody exportMenu(String resId, MenuFormat format, String userId) {
+        findOwnedRestaurant(resId, userId);
+        return out -> {
+            MenuWriter writer = MenuWriter.open(format, out, objectMapper);
+            try {
+                menuBulkRepository.streamMenu(resId, item -> {
+                    try {
+                        writer.write(item);
+                    }
+                    catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            }
+            catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+            writer.finish();
+        };
+    }
+
+    private Restaurants findOwnedRestaurant(String resId, String userId) {
+        Restaurants res = resRepository.findById(resId)
+                                    .orElseThrow(() -> new ResourceNotFoundException("restaurant not found"));
+        if (userId == null || !userId.equals(res.getMerchantId())) {
+            throw new ForbiddenException("You do not have permission to update this restaurant.");
+        }
+        return res;
+    }
+
+    // Cùng các ràng buộc với ProductRequest/createProduct, trả về thông báo lỗi hoặc null nếu hợp lệ
+    private String validateMenuItem(MenuItem item) {
+        if (item.getProductName() == null || item.getProductName().isBlank()) {
+            return "Product name is required";
+        }
+        if (item.getProductName().length() > 100) {
+            return "Product name must be at most 100 characters";
+        }
+        if (item.getDescription() == null || item.getDescription().isBlank()) {
+            return "Description is required";
+        }
+        if (cateCache.get(item.getCategoryId()).isEmpty()) {
+            return "category not found: " + item.getCategoryId();
+        }
+        if (item.getSizes() == null) {
+            return "List of sizes is required";
+        }
+        Set<String> sizeIds = new HashSet<>();
+        for (SizePrice sizePrice : item.getSizes()) {
+            if (sizePrice == null || sizeCache.get(sizePrice.getSizeId()).isEmpty()) {
+                return "Size not found: " + (sizePrice == null ? null : sizePrice.getSizeId());
+            }
+            if (!sizeIds.add(sizePrice.getSizeId())) {
+                return "Duplicate size: " + sizePrice.getSizeId();
+            }
+            // price là DECIMAL(10,2)
+            if (sizePrice.getPrice() == null || sizePrice.getPrice().signum() < 0
+                    || sizePrice.getPrice().compareTo(MAX_MENU_PRICE) >= 0) {
+                return "Invalid price for size " + sizePrice.getSizeId();
+            }
+        }
+        return null;
+    }
+
+    private Products toNewProduct(MenuItem item, Restaurants res) {
+        Products product = Products.builder()
+                                .id(UlidGenerator.generate())
+                                .productName(item.getProductName())
+                                .description(item.getDescription())
+                                .category(cateCache.get(item.getCategoryId()).get())
+                                .restaurant(res)
+                                .available(item.getAvailable() == null || item.getAvailable())
+                                .totalReview(0)
+                                .rating(0)
+                                .slug(SlugGenerator.generate(item.getProductName()))
+                                .build();
+        for (SizePrice sizePrice : item.getSizes()) {
+            product.addProductSize(ProductSize.builder()
+                                .id(UlidGenerator.generate())
+                                .size(sizeCache.get(sizePrice.getSizeId()).get())
+                                .price(sizePrice.getPrice())
+                                .build());
+        }
+        return product;
+    }
+
+    // Trả về số món đã ghi. Lô lỗi ở DB (vd. danh mục vừa bị xóa) thì cả lô được báo lỗi, các lô khác vẫn tiếp tục
+    private int saveMenuBatch(Restaurants res, List<Products> batch, List<Integer> batchRows, List<MenuImportError> errors) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        try {
+            menuBulkRepository.insertProducts(res.getId(), batch);
+        }
+        catch (DataAccessException ex) {
+            log.error("Menu import batch for restaurant {} failed: {}", res.getId(), ex.getMessage());
+            batchRows.forEach(row -> addMenuError(errors, row, "Could not be saved"));
+            return 0;
+        }
+        batch.forEach(searchIndex::indexProduct);
+        return batch.size();
+    }
+
+    private static void addMenuError(List<MenuImportError> errors, int row, String message) {
+        if (errors.size() < MAX_MENU_ERRORS) {
+            errors.add(new MenuImportError(row, message));
+        }
+    }
+
+    // So sánh theo id: Categories không override equals, còn category có thể là entity trong cache hoặc proxy
+    private boolean hasCategory(Restaurants res, String cateId) {
+        return res.getCategories() != null && res.getCategories().stream().anyMatch(c -> c.getId().equals(cateId));
     }
 
     public Set<ProductSize> getAllProductSizeOfProduct(String id) {
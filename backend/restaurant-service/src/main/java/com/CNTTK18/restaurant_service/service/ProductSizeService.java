@@ -3,7 +3,10 @@ package com.CNTTK18.restaurant_service.service;
 import org.springframework.stereotype.Service;
 
 import com.CNTTK18.Common.Exception.ResourceNotFoundException;
-import com.CNTTK18.Common.Util.RandomIdGenerator;
+import com.CNTTK18.Common.Util.UlidGenerator;
+import com.CNTTK18.restaurant_service.cache.DetailResponseCache;
+import com.CNTTK18.restaurant_service.cache.ReferenceCache;
+import com.CNTTK18.restaurant_service.cache.ReferenceDataCache;
 import com.CNTTK18.restaurant_service.dto.productSize.request.ProductSizeCreate;
 import com.CNTTK18.restaurant_service.dto.productSize.request.ProductSizeRequest;
 import com.CNTTK18.restaurant_service.dto.productSize.response.ProductSizeResponse;
@@ -12,20 +15,21 @@ import com.CNTTK18.restaurant_service.model.Products;
 import com.CNTTK18.restaurant_service.model.Size;
 import com.CNTTK18.restaurant_service.repository.ProductSizeRepository;
 import com.CNTTK18.restaurant_service.repository.ProductRepository;
-import com.CNTTK18.restaurant_service.repository.SizeRepository;
 import com.CNTTK18.restaurant_service.util.ProductSizeUtil;
 
 @Service
 public class ProductSizeService {
     private final ProductSizeRepository productSizeRepository;
     private final ProductRepository productRepository;
-    private final SizeRepository sizeRepository;
+    private final ReferenceCache<Size> sizeCache;
+    private final DetailResponseCache detailCache;
 
     public ProductSizeService(ProductSizeRepository productSizeRepository, ProductRepository productRepository, 
-                                SizeRepository sizeRepository) {
+                                ReferenceDataCache referenceDataCache, DetailResponseCache detailCache) {
         this.productSizeRepository = productSizeRepository;
         this.productRepository = productRepository;
-        this.sizeRepository = sizeRepository;
+        this.sizeCache = referenceDataCache.sizes();
+        this.detailCache = detailCache;
     }
 
     public ProductSizeResponse getProductSizeById(String id) {
@@ -40,18 +44,20 @@ public class ProductSizeService {
 
         ps.setPrice(request.getPrice());
         productSizeRepository.save(ps); 
+        evictProduct(ps.getProduct());
         return ProductSizeUtil.mapProductSizeToProductSizeResponse(ps);
     }
 
     public ProductSizeResponse createProductSize(ProductSizeCreate productSize) {
-        Size size = sizeRepository.findById(productSize.getSizeId())
+        Size size = sizeCache.get(productSize.getSizeId())
                                     .orElseThrow(() -> new ResourceNotFoundException("Cannot find size"));
 
         Products product = productRepository.findById(productSize.getProductId())
                                                 .orElseThrow(() -> new ResourceNotFoundException("Cannot find product"));
 
-        ProductSize ps = new ProductSize(RandomIdGenerator.generate(254), product, size, productSize.getPrice());
+        ProductSize ps = new ProductSize(UlidGenerator.generate(), product, size, productSize.getPrice());
         productSizeRepository.save(ps);
+        evictProduct(product);
         return ProductSizeUtil.mapProductSizeToProductSizeResponse(ps);
     }
 
@@ -60,5 +66,11 @@ public class ProductSizeService {
                                     .orElseThrow(() -> new ResourceNotFoundException("Cannot find product details"));
 
         productSizeRepository.delete(ps);
+        evictProduct(ps.getProduct());
+    }
+
+    // Giá theo size nằm trong trang chi tiết của món và của nhà hàng
+    private void evictProduct(Products product) {
+        detailCache.evictProduct(product.getId(), product.getRestaurant().getId());
     }
 }
@@ -1,11 +1,14 @@
 package com.CNTTK18.restaurant_service.service;
 
-import java.util.ArrayList;
+import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import org.springframework.data.domain.Page;
@@ -14,87 +17,217 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.web.reactive.function.client.WebClient;
 
 import com.CNTTK18.Common.Exception.ResourceNotFoundException;
-import com.CNTTK18.Common.Util.RandomIdGenerator;
 import com.CNTTK18.Common.Util.SlugGenerator;
+import com.CNTTK18.Common.Util.TextNormalizer;
+import com.CNTTK18.Common.Util.UlidGenerator;
+import com.CNTTK18.restaurant_service.cache.DetailCache;
+import com.CNTTK18.restaurant_service.cache.DetailResponseCache;
+import com.CNTTK18.restaurant_service.client.DirectoryUser;
+import com.CNTTK18.restaurant_service.client.UserDirectoryClient;
+import com.CNTTK18.restaurant_service.data.ImageStatus;
 import com.CNTTK18.restaurant_service.data.ReviewType;
-import com.CNTTK18.restaurant_service.dto.api.UserResponse;
 import com.CNTTK18.restaurant_service.dto.distance.response.Summary;
+import com.CNTTK18.restaurant_service.dto.restaurant.ResIdWithDistance;
+import com.CNTTK18.restaurant_service.dto.restaurant.ResIdWithRating;
+import com.CNTTK18.restaurant_service.dto.restaurant.ResListView;
 import com.CNTTK18.restaurant_service.dto.restaurant.request.Coordinates;
 import com.CNTTK18.restaurant_service.dto.restaurant.request.ResRequest;
 import com.CNTTK18.restaurant_service.dto.restaurant.request.UpdateRes;
+import com.CNTTK18.restaurant_service.dto.response.CursorResponse;
 import com.CNTTK18.restaurant_service.dto.restaurant.response.ResResponseWithProduct;
 import com.CNTTK18.restaurant_service.exception.DistanceDurationException;
 import com.CNTTK18.restaurant_service.exception.ForbiddenException;
 import com.CNTTK18.restaurant_service.exception.InvalidRequestException;
+import com.CNTTK18.restaurant_service.model.Products;
 import com.CNTTK18.restaurant_service.model.Restaurants;
 import com.CNTTK18.restaurant_service.model.Reviews;
+import com.CNTTK18.restaurant_service.repository.ProductRepository;
 import com.CNTTK18.restaurant_service.repository.ResRepository;
 import com.CNTTK18.restaurant_service.repository.ReviewRepository;
+import com.CNTTK18.restaurant_service.search.SearchIndex;
+import com.CNTTK18.restaurant_service.util.CursorUtil;
 import com.CNTTK18.restaurant_service.util.ResUtil;
 
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 @Service
 public class ResService {
     private ResRepository resRepository;
-    private WebClient.Builder webClientBuilder;
+    private UserDirectoryClient userDirectory;
     private ImageHandleService imageService;
     private ReviewRepository reviewRepository;
     private DistanceService distanceService;
+    private ProductRepository productRepository;
+    private SearchIndex searchIndex;
+    private DetailResponseCache detailCache;
+    // Cho các phần đọc DB chạy sau lời gọi user-service, ngoài luồng request
+    private TransactionTemplate readOnlyTx;
 
-    public ResService(ResRepository resRepository, WebClient.Builder webClientBuilder, 
-                ImageHandleService imageHandleService, ReviewRepository reviewRepository, DistanceService distanceService) {
+    public ResService(ResRepository resRepository, UserDirectoryClient userDirectory, 
+                ImageHandleService imageHandleService, ReviewRepository reviewRepository, DistanceService distanceService,
+                ProductRepository productRepository, SearchIndex searchIndex, DetailResponseCache detailCache,
+                PlatformTransactionManager transactionManager) {
         this.resRepository = resRepository;
-        this.webClientBuilder = webClientBuilder;
+        this.userDirectory = userDirectory;
         this.imageService = imageHandleService;
         this.reviewRepository = reviewRepository;
         this.distanceService = distanceService;
+        this.productRepository = productRepository;
+        this.searchIndex = searchIndex;
+        this.detailCache = detailCache;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
     }
 
     public Mono<Page<ResResponseWithProduct>> getAllRestaurants(Coordinates location, String search, Integer nearby,
-                                                                String rating, String category, Pageable pageable) {
+                                                                String rating, String category, String mode, ResListView view,
+                                                                Pageable pageable) {
                                     
-        Page<Restaurants> res = getRestaurantsAfterValidation(location, search, nearby, rating, category, pageable);    
-        if (res.isEmpty()) {
+        Page<ResIdWithRating> resIdPage = getRestaurantsAfterValidation(location, search, nearby, rating, category, mode, pageable);    
+        if (resIdPage.isEmpty()) {
             return Mono.just(Page.empty(pageable));
         }
+
+        List<String> resIds = resIdPage.getContent().stream().map(ResIdWithRating::getId).toList();
+        return mapResIdsToResponseWithDistance(location, resIds, view)
+                    .map(responseList -> new PageImpl<>(
+                            responseList,
+                            pageable,
+                            resIdPage.getTotalElements()
+                        ));
+    }
+
+    // Keyset pagination cho infinite scroll, chi phí mỗi trang không phụ thuộc vào độ sâu của trang
+    // sort = nearest: gần nhất trước (KNN trên index không gian), ngược lại theo rating/id như getAllRestaurants
+    public Mono<CursorResponse<ResResponseWithProduct>> getRestaurantsByCursor(Coordinates location, String search, Integer nearby,
+                                                                String rating, String category, String sortBy, String cursor, int size,
+                                                                ResListView view) {
+        if (location == null) {
+            throw new InvalidRequestException("longitude and latitude is mandatory");
+        }
+        List<String> categoryNames = (category == null || category.isBlank()) ? List.of()
+            : Arrays.stream(category.split(",")).map(String::toLowerCase).toList();
+        search = (search != null && !search.isBlank()) ? TextNormalizer.fold(search) : null;
+        nearby = (nearby == null || nearby > 20000) ? 20000 : nearby;
+        size = (size <= 0 || size > 100) ? 20 : size;
+
+        boolean nearest = "nearest".equalsIgnoreCase(sortBy);
+        boolean byRating = !nearest && rating != null && "desc".equalsIgnoreCase(rating);
+        String sort = nearest ? "distance_id_asc" : byRating ? "rating_id_desc" : "id_asc";
+        CursorUtil.Cursor after = CursorUtil.decode(cursor, sort);
+        String lastId = after != null ? after.id() : "";
+
+        // Lấy dư 1 dòng để biết còn trang sau hay không
+        List<? extends ResIdWithRating> rows;
+        if (nearest) {
+            rows = resRepository.findNearestRestaurantIdsAfterDistance(location.getLongitude(), location.getLatitude(), nearby,
+                        search, categoryNames, after != null && after.distance() != null ? after.distance() : -1d, lastId, size + 1);
+        }
+        else if (byRating) {
+            rows = resRepository.findRestaurantIdsWithinDistanceAfterRating(location.getLongitude(), location.getLatitude(), nearby,
+                        search, categoryNames, after != null && after.rating() != null ? after.rating() : Float.MAX_VALUE, lastId, size + 1);
+        }
+        else {
+            rows = resRepository.findRestaurantIdsWithinDistanceAfterId(location.getLongitude(), location.getLatitude(), nearby,
+                        search, categoryNames, lastId, size + 1);
+        }
+
+        boolean hasNext = rows.size() > size;
+        List<? extends ResIdWithRating> pageRows = hasNext ? rows.subList(0, size) : rows;
+        final int pageSize = size;
+        if (pageRows.isEmpty()) {
+            return Mono.just(new CursorResponse<>(List.of(), pageSize, false, null));
+        }
+
+        ResIdWithRating last = pageRows.get(pageRows.size() - 1);
+        Double lastDistance = last instanceof ResIdWithDistance withDistance ? withDistance.getDistance() : null;
+        String nextCursor = hasNext
+            ? CursorUtil.encode(new CursorUtil.Cursor(sort, last.getRating() != null ? last.getRating() : 0f, lastDistance, last.getId()))
+            : null;
+
+        // Chỉ trang cuối cùng được trả về mới cần tính travel time
+        List<String> resIds = pageRows.stream().map(ResIdWithRating::getId).toList();
+        return mapResIdsToResponseWithDistance(location, resIds, view)
+                    .map(responseList -> new CursorResponse<>(responseList, pageSize, hasNext, nextCursor));
+    }
+
+    // Hydrate cả trang bằng query theo lô thay vì lazy load categories/products cho từng nhà hàng,
+    // thứ tự kết quả giữ đúng thứ tự của resIds
+    private Mono<List<ResResponseWithProduct>> mapResIdsToResponseWithDistance(Coordinates location, List<String> resIds,
+                                                                               ResListView view) {
+        Map<String, Restaurants> resById = resRepository.findWithCategoriesByIdIn(resIds).stream()
+                            .collect(Collectors.toMap(Restaurants::getId, Function.identity()));
+        List<Restaurants> res = resIds.stream().map(resById::get).filter(Objects::nonNull).toList();
+        Map<String, List<Products>> productsByRes = loadProductsForView(resIds, view);
                 
         List<Double> startingPoints = List.of(location.getLongitude(), location.getLatitude());
+        List<String> pageResIds = res.stream().map(Restaurants::getId).toList();
         List<List<Double>> endPoints = res.stream().map(r -> List.of(r.getLongitude(), r.getLatitude())).toList();
         
-        return distanceService.getDistanceAndDurationInList(startingPoints, endPoints)
+        return distanceService.getDistanceAndDurationInList(startingPoints, pageResIds, endPoints)
                     .map(response -> {
                         List<Double> durations = response.getDurations().get(0);
                         List<Double> distances = response.getDistances().get(0);
 
-                        List<ResResponseWithProduct> responseList = IntStream.range(0, res.getContent().size())
+                        return IntStream.range(0, res.size())
                             .mapToObj(i -> {
-                                return ResUtil.mapResToResResponseWithProductandDistanceAndDuration(res.getContent().get(i), durations.get(i), distances.get(i));
+                                Restaurants r = res.get(i);
+                                // summary: productsByRes null => response không có products
+                                return ResUtil.mapResToResResponseWithProductandDistanceAndDuration(r,
+                                            productsByRes == null ? null : productsByRes.getOrDefault(r.getId(), List.of()),
+                                            distances.get(i), durations.get(i));
                             })
                             .toList();
-                        
-                        return new PageImpl<>(
-                            responseList,
-                            pageable,
-                            res.getTotalElements()
-                        );
                     });
     }
 
-    private Page<Restaurants> getRestaurantsAfterValidation(Coordinates location, String search, Integer nearby,
-                                                            String rating, String category, Pageable pageable) {
+    // summary không query bảng products, top N chỉ fetch N món mỗi nhà hàng (sắp theo rating giảm dần)
+    private Map<String, List<Products>> loadProductsForView(List<String> resIds, ResListView view) {
+        switch (view.kind()) {
+            case SUMMARY:
+                return null;
+            case TOP_PRODUCTS:
+                List<String> productIds = productRepository.findTopProductIdsByRestaurantIdIn(resIds, view.topProducts());
+                if (productIds.isEmpty()) {
+                    return Map.of();
+                }
+                Comparator<Products> byRating = Comparator.comparing(Products::getRating, Comparator.reverseOrder())
+                                    .thenComparing(Products::getId);
+                return productRepository.findWithSizesByIdIn(productIds).stream()
+                            .sorted(byRating)
+                            .collect(Collectors.groupingBy(p -> p.getRestaurant().getId()));
+            default:
+                return productRepository.findWithSizesByRestaurantIdIn(resIds).stream()
+                            .collect(Collectors.groupingBy(p -> p.getRestaurant().getId()));
+        }
+    }
+
+    private Page<ResIdWithRating> getRestaurantsAfterValidation(Coordinates location, String search, Integer nearby,
+                                                            String rating, String category, String mode, Pageable pageable) {
         if (location == null) {
             throw new InvalidRequestException("longitude and latitude is mandatory");
         }
         List<String> categoryNames = (category == null || category.isBlank()) ? List.of()
             : Arrays.stream(category.split(",")).map(String::toLowerCase).toList();
 
-        search = (search != null && !search.isBlank()) ? search : null;
+        search = (search != null && !search.isBlank()) ? TextNormalizer.fold(search) : null;
+        nearby = (nearby == null || nearby > 20000) ? 20000 : nearby;
+
+        // mode=search: xếp theo độ liên quan với từ khóa (pg_trgm), thứ tự đã nằm trong query
+        if ("search".equalsIgnoreCase(mode)) {
+            if (search == null) {
+                throw new InvalidRequestException("search is mandatory in search mode");
+            }
+            return resRepository.searchRestaurantIdsWithinDistance(location.getLongitude(), location.getLatitude(), 
+                                        nearby, search, categoryNames, PageRequest.of(pageable.getPageNumber(), pageable.getPageSize()));
+        }
 
         Sort sort = null;
         if (rating != null && "desc".equalsIgnoreCase(rating)) {
@@ -113,10 +246,8 @@ public class ResService {
             sort
         );
 
-        nearby = (nearby == null || nearby > 20000) ? 20000 : nearby;
-        Page<Restaurants> res = resRepository.findRestaurantsWithinDistance(location.getLongitude(), location.getLatitude(), 
-                                                                            nearby, search, categoryNames, newPageable); 
-        return res;
+        return resRepository.findRestaurantIdsWithinDistance(location.getLongitude(), location.getLatitude(), 
+                                                                            nearby, search, categoryNames, newPageable);
     }
 
     public Mono<ResResponseWithProduct> getRestaurantById(String id, Coordinates location) {
@@ -146,26 +277,25 @@ public class ResService {
         return ResUtil.mapResToResResponseWithProduct(res);
     }
 
-    @Transactional
+    // Trang chi tiết theo slug đi qua cache, kèm ETag để controller trả 304
+    @Transactional(readOnly = true)
+    public DetailCache.Entry<ResResponseWithProduct> getRestaurantDetailBySlug(String slug) {
+        return detailCache.restaurants().get(slug, () -> getRestaurantBySlug(slug));
+    }
+
+    // Không dùng @Transactional: pipeline chạy sau khi method đã trả về, save chạy trong transaction riêng của
+    // repository và đã commit khi index/upload ảnh chạy
     public Mono<Restaurants> createRestaurant(ResRequest resRequest, MultipartFile imageFile) {
-        return webClientBuilder.build()
-                            .get()
-                            .uri("lb://user-service/api/users/admin/{id}", resRequest.getMerchantId())
-                            .retrieve()
-                            .bodyToMono(UserResponse.class)
+        return requireMerchant(resRequest.getMerchantId())
+                            // Ghi file tạm và lưu DB không chạy trên event loop của WebClient
+                            .publishOn(Schedulers.boundedElastic())
                             .flatMap(user -> {
-                                if (user == null) {
-                                    throw new ResourceNotFoundException("Không tồn tại user");
-                                }
-                                if (!user.getRole().equals("MERCHANT")) {
-                                    throw new InvalidRequestException("User không phải là merchant");
-                                }
                                 Restaurants res = Restaurants.builder()
                                                             .address(resRequest.getAddress())
                                                             .categories(new HashSet<>())
                                                             .closingTime(resRequest.getClosingTime())
                                                             .enabled(false)
-                                                            .id(RandomIdGenerator.generate(254))
+                                                            .id(UlidGenerator.generate())
                                                             .merchantId(resRequest.getMerchantId())
                                                             .openingTime(resRequest.getOpeningTime())
                                                             .phone(resRequest.getPhone())
@@ -178,12 +308,24 @@ public class ResService {
                                                             .slug(SlugGenerator.generate(resRequest.getResName()))
                                                             .build();
 
-                                        if (imageFile != null && !imageFile.isEmpty()) {
-                                            Map<String, String> image = imageService.saveImageFile(imageFile);
-                                            res.setImageURL(image.get("url"));
-                                            res.setPublicID(image.get("public_id"));
+                                        // Ảnh được upload nền sau khi lưu, response trả về với imageStatus = PENDING
+                                        Path image = (imageFile != null && !imageFile.isEmpty()) ? imageService.spool(imageFile) : null;
+                                        if (image != null) {
+                                            res.setImageStatus(ImageStatus.PENDING);
                                         }
-                                        return Mono.fromCallable(() -> resRepository.save(res));
+                                        // Không có transaction bao ngoài nên không có onRollback, tự xóa file tạm khi save lỗi
+                                        return Mono.fromCallable(() -> resRepository.save(res))
+                                                    .doOnError(ex -> {
+                                                        if (image != null) {
+                                                            imageService.deleteSpool(image);
+                                                        }
+                                                    })
+                                                    .doOnNext(searchIndex::indexRestaurant)
+                                                    .doOnNext(saved -> {
+                                                        if (image != null) {
+                                                            imageService.uploadRestaurantImage(saved.getId(), image);
+                                                        }
+                                                    });
                             });
     }
 
@@ -199,22 +341,24 @@ public class ResService {
         res.setOpeningTime(updateRes.getOpeningTime());
         res.setClosingTime(updateRes.getClosingTime());
         res.setPhone(updateRes.getPhone());
-        res.setLongitude(updateRes.getLongitude());
-        res.setLatitude(updateRes.getLatitude());
+        if (res.getLongitude() != updateRes.getLongitude() || res.getLatitude() != updateRes.getLatitude()) {
+            res.setLongitude(updateRes.getLongitude());
+            res.setLatitude(updateRes.getLatitude());
+            distanceService.evictRestaurant(id);
+        }
         if (!res.getResName().equals(updateRes.getResName())) {
             res.setResName(updateRes.getResName());
             res.setSlug(updateRes.getResName());
         }
+        // Ảnh mới được upload nền sau khi commit, ảnh cũ bị xóa khi ảnh mới đã sẵn sàng
         if (imageFile != null && !imageFile.isEmpty()) {
-            String oldPublicId = res.getPublicID();
-            Map<String, String> image = imageService.saveImageFile(imageFile);
-            res.setImageURL(image.get("url"));
-            res.setPublicID(image.get("public_id"));
-            if (oldPublicId != null && !oldPublicId.isEmpty()) {
-                imageService.deleteImage(oldPublicId);
-            }
+            imageService.uploadRestaurantImage(id, imageService.spool(imageFile));
+            resRepository.markImagePending(id);
+            res.setImageStatus(ImageStatus.PENDING);
         }
         resRepository.save(res);
+        searchIndex.indexRestaurant(res);
+        detailCache.evictRestaurant(id);
         return ResUtil.mapResToResResponseWithProduct(res);
     }
 
@@ -235,6 +379,9 @@ public class ResService {
         }
         reviewRepository.deleteAll(rv);
         resRepository.delete(res);
+        distanceService.evictRestaurant(id);
+        searchIndex.removeRestaurant(id);
+        detailCache.evictRestaurant(id);
     }
 
     @Transactional
@@ -243,6 +390,8 @@ public class ResService {
                             .orElseThrow(() -> new ResourceNotFoundException("Restaurant not found"));
         res.setEnabled(!res.isEnabled());
         resRepository.save(res);
+        searchIndex.indexRestaurant(res);
+        detailCache.evictRestaurant(id);
     }
 
     public void deleteImage(String resId, String userId) {
@@ -252,29 +401,27 @@ public class ResService {
         if (userId == null || !userId.equals(res.getMerchantId())) {
             throw new ForbiddenException("You do not have permission to update this restaurant.");
         }
+        imageService.cancelRestaurantUpload(resId);
+        resRepository.clearImage(resId);
         imageService.deleteImage(res.getPublicID());
-        res.setImageURL(null);
-        res.setPublicID(null);
+        detailCache.evictRestaurant(resId);
     }
 
-    public List<ResResponseWithProduct> getRestaurantsByMerchantId(String id) {
-        UserResponse user = webClientBuilder.build()
-                                .get()
-                                .uri("lb://user-service/api/users/admin/{id}", id)
-                                .retrieve()
-                                .bodyToMono(UserResponse.class)
-                                .block();
-        
-        if (user == null) {
-            throw new ResourceNotFoundException("Không tồn tại user");
-        }
-        if (!user.getRole().equals("MERCHANT")) {
-            throw new InvalidRequestException("User không phải là merchant");
-        }
-        Optional<List<Restaurants>> resList = resRepository.findRestaurantsByMerchantId(id);
-        if (!resList.isPresent()) {
-            return new ArrayList<>();
-        }
-        return resList.get().stream().map(ResUtil::mapResToResResponseWithProduct).toList();
+    public Mono<List<ResResponseWithProduct>> getRestaurantsByMerchantId(String id) {
+        return requireMerchant(id)
+                    .publishOn(Schedulers.boundedElastic())
+                    .map(user -> readOnlyTx.execute(status -> resRepository.findRestaurantsByMerchantId(id)
+                                    .map(resList -> resList.stream().map(ResUtil::mapResToResResponseWithProduct).toList())
+                                    .orElseGet(List::of)));
+    }
+
+    private Mono<DirectoryUser> requireMerchant(String merchantId) {
+        return userDirectory.getUser(merchantId)
+                    .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("Không tồn tại user")))
+                    .doOnNext(user -> {
+                        if (!user.isMerchant()) {
+                            throw new InvalidRequestException("User không phải là merchant");
+                        }
+                    });
     }
 }
@@ -1,50 +1,120 @@
 package com.CNTTK18.restaurant_service.service;
 
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.CNTTK18.Common.Exception.ResourceNotFoundException;
-import com.CNTTK18.Common.Util.RandomIdGenerator;
+import com.CNTTK18.Common.Util.UlidGenerator;
+import com.CNTTK18.restaurant_service.cache.DetailResponseCache;
+import com.CNTTK18.restaurant_service.client.UserDirectoryClient;
 import com.CNTTK18.restaurant_service.data.ReviewType;
-import com.CNTTK18.restaurant_service.dto.api.UserResponse;
+import com.CNTTK18.restaurant_service.dto.response.CursorResponse;
+import com.CNTTK18.restaurant_service.dto.review.RatingHistogram;
 import com.CNTTK18.restaurant_service.dto.review.request.ReviewRequest;
+import com.CNTTK18.restaurant_service.dto.review.response.RatingHistogramResponse;
 import com.CNTTK18.restaurant_service.exception.ForbiddenException;
 import com.CNTTK18.restaurant_service.exception.InvalidRequestException;
-import com.CNTTK18.restaurant_service.model.Products;
-import com.CNTTK18.restaurant_service.model.Restaurants;
 import com.CNTTK18.restaurant_service.model.Reviews;
 import com.CNTTK18.restaurant_service.repository.ProductRepository;
 import com.CNTTK18.restaurant_service.repository.ResRepository;
 import com.CNTTK18.restaurant_service.repository.ReviewRepository;
+import com.CNTTK18.restaurant_service.util.CursorUtil;
 
 import jakarta.transaction.Transactional;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 @Service
 public class ReviewService {
+    private static final Logger log = LoggerFactory.getLogger(ReviewService.class);
+    // lastCreatedAt của trang đầu tiên, lớn hơn mọi created_at thật
+    private static final Timestamp FIRST_PAGE = Timestamp.valueOf("9999-12-31 00:00:00");
+
     private ReviewRepository reviewRepo;
-    private WebClient.Builder webClientBuilder;
+    private UserDirectoryClient userDirectory;
     private ProductRepository productRepository;
     private ResRepository resRepository;
+    private DetailResponseCache detailCache;
+    private TransactionTemplate transactionTemplate;
 
-    public ReviewService(ReviewRepository reviewRepo, WebClient.Builder webClientBuilder, 
-                    ProductRepository productRepository, ResRepository resRepository) {
+    public ReviewService(ReviewRepository reviewRepo, UserDirectoryClient userDirectory, 
+                    ProductRepository productRepository, ResRepository resRepository, DetailResponseCache detailCache,
+                    PlatformTransactionManager transactionManager) {
         this.reviewRepo = reviewRepo;
-        this.webClientBuilder = webClientBuilder;
+        this.userDirectory = userDirectory;
         this.productRepository = productRepository;
         this.resRepository = resRepository;
+        this.detailCache = detailCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
-    public List<Reviews> getAllReviews(String resId, String productId) {
-        List<Reviews> rv = reviewRepo.findAll();
+    // Lọc theo (review_type, review_id) và phân trang keyset ngay trong SQL thay vì findAll rồi filter,
+    // review mới nhất trước
+    public CursorResponse<Reviews> getReviews(String resId, String productId, String cursor, int size) {
+        size = (size <= 0 || size > 100) ? 20 : size;
+        CursorUtil.TimeCursor after = CursorUtil.decodeTime(cursor);
+        Timestamp lastCreatedAt = after != null ? Timestamp.from(after.createdAt()) : FIRST_PAGE;
+        String lastId = after != null ? after.id() : "";
+
+        // Lấy dư 1 dòng để biết còn trang sau hay không
+        List<Reviews> rows;
         if (resId != null && !resId.isEmpty()) {
-            rv = rv.stream().filter(r -> r.getReviewId().equals(resId)).toList();
+            rows = reviewRepo.findByTargetAfter(ReviewType.RESTAURANT.toString(), resId, lastCreatedAt, lastId, size + 1);
         }
         else if (productId != null && !productId.isEmpty()) {
-            rv = rv.stream().filter(r -> r.getReviewId().equals(productId)).toList();
+            rows = reviewRepo.findByTargetAfter(ReviewType.PRODUCT.toString(), productId, lastCreatedAt, lastId, size + 1);
         }
-        return rv;
+        else {
+            rows = reviewRepo.findAllAfter(lastCreatedAt, lastId, size + 1);
+        }
+
+        boolean hasNext = rows.size() > size;
+        List<Reviews> pageRows = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = null;
+        if (hasNext) {
+            Reviews last = pageRows.get(pageRows.size() - 1);
+            nextCursor = CursorUtil.encode(new CursorUtil.TimeCursor(last.getCreatedAt().toInstant(), last.getId()));
+        }
+        return new CursorResponse<>(pageRows, size, hasNext, nextCursor);
+    }
+
+    // Phân bố số sao được cộng dồn cùng lúc với rating (addRating) nên chỉ đọc 1 dòng, không quét bảng reviews
+    public RatingHistogramResponse getRatingHistogram(String resId, String productId) {
+        RatingHistogram histogram;
+        RatingHistogramResponse.RatingHistogramResponseBuilder builder = RatingHistogramResponse.builder();
+        if (resId != null && !resId.isEmpty()) {
+            histogram = resRepository.findRatingHistogram(resId)
+                                    .orElseThrow(() -> new ResourceNotFoundException("Restaurant not found"));
+            builder.targetId(resId).reviewType(ReviewType.RESTAURANT.toString());
+        }
+        else if (productId != null && !productId.isEmpty()) {
+            histogram = productRepository.findRatingHistogram(productId)
+                                    .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
+            builder.targetId(productId).reviewType(ReviewType.PRODUCT.toString());
+        }
+        else {
+            throw new InvalidRequestException("resId hoặc productId là bắt buộc");
+        }
+
+        Map<Integer, Integer> stars = new LinkedHashMap<>();
+        stars.put(1, orZero(histogram.getStar1()));
+        stars.put(2, orZero(histogram.getStar2()));
+        stars.put(3, orZero(histogram.getStar3()));
+        stars.put(4, orZero(histogram.getStar4()));
+        stars.put(5, orZero(histogram.getStar5()));
+        return builder.totalReview(orZero(histogram.getTotalReview()))
+                    .rating(histogram.getRating() != null ? histogram.getRating() : 0f)
+                    .stars(stars)
+                    .build();
     }
 
     public Reviews getReviewById(String id) {
@@ -52,46 +122,29 @@ public class ReviewService {
         return rv;
     }
 
-    @Transactional
-    public Reviews createReview(ReviewRequest reviewRequest) {
-        UserResponse user = webClientBuilder.build()
-                                .get()
-                                .uri("lb://user-service/api/users/admin/{id}", reviewRequest.getUserId())
-                                .retrieve()
-                                .bodyToMono(UserResponse.class)
-                                .block();
-        
-        if (user == null) {
-            throw new ResourceNotFoundException("Không tồn tại user");
-        }
+    // User được kiểm tra qua UserDirectoryClient (có cache) trước, transaction chỉ bao phần ghi DB
+    // nên không giữ connection trong lúc chờ user-service
+    public Mono<Reviews> createReview(ReviewRequest reviewRequest) {
         String rvType = reviewRequest.getReviewType();
-        String rvId = reviewRequest.getReviewId();
-        //handle check xem product or restaurant đó có tồn tại hay không
-        if (rvType.equals(ReviewType.PRODUCT.toString())) {
-            Products product = productRepository.findProductById(rvId)
-                                    .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
-            
-            float newRating = (product.getTotalReview() * product.getRating() + reviewRequest.getRating()) / (product.getTotalReview() + 1);
-            product.setTotalReview(product.getTotalReview() + 1);
-            product.setRating(newRating);
-            productRepository.save(product);
+        if (!rvType.equals(ReviewType.PRODUCT.toString()) && !rvType.equals(ReviewType.RESTAURANT.toString())) {
+            return Mono.error(new InvalidRequestException("Review Type phải là PRODUCT hoặc RESTAURANT"));
         }
-        else if (rvType.equals(ReviewType.RESTAURANT.toString())) {
-            Restaurants res = resRepository.findRestaurantById(rvId)
-                                    .orElseThrow(() -> new ResourceNotFoundException("Restaurant not found"));
-
-            float newRating = (res.getTotalReview() * res.getRating() + reviewRequest.getRating()) / (res.getTotalReview() + 1);
-            res.setTotalReview(res.getTotalReview() + 1);
-            res.setRating(newRating);
-            resRepository.save(res);
-        }
-        else {
-            throw new InvalidRequestException("Review Type phải là PRODUCT hoặc RESTAURANT");
-        }
-        Reviews rv = new Reviews(RandomIdGenerator.generate(200), reviewRequest.getUserId(),
-                         rvId, rvType, reviewRequest.getTitle(), reviewRequest.getContent(), reviewRequest.getRating(), null);
+        return userDirectory.getUser(reviewRequest.getUserId())
+                    .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("Không tồn tại user")))
+                    .publishOn(Schedulers.boundedElastic())
+                    .map(user -> transactionTemplate.execute(status -> saveReview(reviewRequest)));
+    }
 
-        return reviewRepo.save(rv);
+    private Reviews saveReview(ReviewRequest reviewRequest) {
+        String rvType = reviewRequest.getReviewType();
+        String rvId = reviewRequest.getReviewId();
+        Reviews rv = new Reviews(UlidGenerator.generate(), reviewRequest.getUserId(),
+                         rvId, rvType, reviewRequest.getTitle(), reviewRequest.getContent(), reviewRequest.getRating(),
+                         Timestamp.from(Instant.now()));
+        Reviews saved = reviewRepo.save(rv);
+        // Cập nhật rating ở cuối transaction để khóa dòng của UPDATE được giữ ngắn nhất
+        applyRating(rvType, rvId, reviewRequest.getRating(), 1);
+        return saved;
     }
 
     @Transactional
@@ -100,38 +153,43 @@ public class ReviewService {
             throw new ForbiddenException("Bạn không có quyền");
         }
         Reviews rv = reviewRepo.findById(id).orElseThrow(() -> new ResourceNotFoundException("Review not found"));
-        String rvType = rv.getReviewType();
+        reviewRepo.delete(rv);
+        applyRating(rv.getReviewType(), rv.getReviewId(), rv.getRating(), -1);
+    }
+
+    // Không khóa dòng (PESSIMISTIC_WRITE) rồi tính lại trung bình nữa, cộng dồn rating_sum/total_review/rating_histogram
+    // bằng 1 câu UPDATE nên các review đồng thời của cùng nhà hàng/món không phải xếp hàng chờ nhau.
+    // count = 1 khi thêm, -1 khi xóa review. Khi thêm, UPDATE không trúng dòng nào nghĩa là nhà hàng/món không tồn tại.
+    // Khi xóa, total_review đã về 0 (hoặc nhà hàng/món đã bị xóa) thì vẫn xóa review, chỉ không trừ tiếp
+    private void applyRating(String rvType, String targetId, float rating, int count) {
+        double delta = (double) rating * count;
+        int star = starOf(rating);
         if (rvType.equals(ReviewType.PRODUCT.toString())) {
-            Products product = productRepository.findProductById(rv.getReviewId())
-                                    .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
-            int totalReview = product.getTotalReview();
-            if (totalReview == 1) {
-                product.setTotalReview(0);
-                product.setRating(0);
-            }
-            else {
-                float newRating = (product.getTotalReview() * product.getRating() - rv.getRating()) / (product.getTotalReview() - 1);
-                product.setTotalReview(product.getTotalReview() - 1);
-                product.setRating(newRating);
+            if (productRepository.addRating(targetId, delta, count, star) == 0) {
+                if (count > 0) {
+                    throw new ResourceNotFoundException("Product not found");
+                }
+                log.warn("Product {} has no review count left to decrement", targetId);
             }
-            productRepository.save(product);
+            detailCache.evictProduct(targetId);
         }
         else if (rvType.equals(ReviewType.RESTAURANT.toString())) {
-            Restaurants res = resRepository.findRestaurantById(rv.getReviewId())
-                                    .orElseThrow(() -> new ResourceNotFoundException("Restaurant not found"));
-
-            int total_review = res.getTotalReview();
-            if (total_review == 1) {
-                res.setTotalReview(0);
-                res.setRating(0);
-            }
-            else {
-                float newRating = (res.getTotalReview() * res.getRating() - rv.getRating()) / (res.getTotalReview() - 1);
-                res.setTotalReview(res.getTotalReview() - 1);
-                res.setRating(newRating);
+            if (resRepository.addRating(targetId, delta, count, star) == 0) {
+                if (count > 0) {
+                    throw new ResourceNotFoundException("Restaurant not found");
+                }
+                log.warn("Restaurant {} has no review count left to decrement", targetId);
             }
-            resRepository.save(res);
+            detailCache.evictRestaurant(targetId);
         }
-        reviewRepo.delete(rv);
+    }
+
+    // Rating có thể lẻ (4.8), làm tròn về số sao 1-5 để xếp vào histogram
+    private static int starOf(float rating) {
+        return Math.max(1, Math.min(5, Math.round(rating)));
+    }
+
+    private static int orZero(Integer value) {
+        return value != null ? value : 0;
     }
 }
@@ -7,6 +7,9 @@ import org.springframework.stereotype.Service;
 
 import com.CNTTK18.Common.Exception.ResourceNotFoundException;
 import com.CNTTK18.Common.Util.RandomIdGenerator;
+import com.CNTTK18.restaurant_service.cache.DetailResponseCache;
+import com.CNTTK18.restaurant_service.cache.ReferenceCache;
+import com.CNTTK18.restaurant_service.cache.ReferenceDataCache;
 import com.CNTTK18.restaurant_service.dto.size.request.SizeRequest;
 import com.CNTTK18.restaurant_service.model.Size;
 import com.CNTTK18.restaurant_service.repository.SizeRepository;
@@ -16,35 +19,46 @@ import jakarta.transaction.Transactional;
 @Service
 public class SizeService {
     private SizeRepository sizeRepo;
-    public SizeService(SizeRepository sizeRepo) {
+    private ReferenceCache<Size> sizeCache;
+    private DetailResponseCache detailCache;
+    public SizeService(SizeRepository sizeRepo, ReferenceDataCache referenceDataCache, DetailResponseCache detailCache) {
         this.sizeRepo = sizeRepo;
+        this.sizeCache = referenceDataCache.sizes();
+        this.detailCache = detailCache;
     }
 
     public List<Size> getAllSize() {
-        return sizeRepo.findAll();
+        return sizeCache.getAll();
     }
 
     public Size getSizeById(String id) {
-        Size size = sizeRepo.findById(id).orElseThrow(() -> new ResourceNotFoundException("Size not found"));
+        Size size = sizeCache.get(id).orElseThrow(() -> new ResourceNotFoundException("Size not found"));
         return size;
     }
 
     @Transactional
     public Size createSize(SizeRequest sizeRequest) {
         Size size = new Size(RandomIdGenerator.generate(5), sizeRequest.getName(), new HashSet<>());
-        return sizeRepo.save(size);
+        Size saved = sizeRepo.save(size);
+        sizeCache.put(saved);
+        return saved;
     }
 
     @Transactional
     public Size updateSize(String id, SizeRequest sizeRequest) {
         Size size = sizeRepo.findById(id).orElseThrow(() -> new ResourceNotFoundException("Size not found"));
         size.setName(sizeRequest.getName());
-        return sizeRepo.save(size);
+        Size saved = sizeRepo.save(size);
+        sizeCache.put(saved);
+        detailCache.evictAll();
+        return saved;
     }
 
     @Transactional
     public void deleteSize(String id) {
         Size size = sizeRepo.findById(id).orElseThrow(() -> new ResourceNotFoundException("Size not found"));
         sizeRepo.delete(size);
+        sizeCache.remove(id);
+        detailCache.evictAll();
     }
 }
@@ -0,0 +1,5 @@
+// Đo thời gian mọi method của service layer (method.timed), xem TimeLogging
+@TimeLogged
+package com.CNTTK18.restaurant_service.service;
+
+import com.CNTTK18.Common.Aop.TimeLogged;
@@ -0,0 +1,71 @@
+package com.CNTTK18.restaurant_service.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+import com.CNTTK18.restaurant_service.exception.InvalidRequestException;
+
+// Cursor cho keyset pagination, client chỉ thấy chuỗi base64 (opaque)
+// Format trước khi encode: sort|rating|distance|id, riêng danh sách theo thời gian (review) là createdAt|id
+public class CursorUtil {
+    public record Cursor(String sort, Float rating, Double distance, String id) {
+    }
+
+    public record TimeCursor(Instant createdAt, String id) {
+    }
+
+    private static final String SEPARATOR = "|";
+
+    public static String encode(Cursor cursor) {
+        String raw = String.join(SEPARATOR,
+                        cursor.sort(),
+                        cursor.rating() != null ? cursor.rating().toString() : "",
+                        cursor.distance() != null ? cursor.distance().toString() : "",
+                        cursor.id());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // cursor null/blank => trang đầu tiên
+    public static Cursor decode(String cursor, String expectedSort) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 4);
+            if (parts.length != 4 || !parts[0].equals(expectedSort) || parts[3].isEmpty()) {
+                throw new InvalidRequestException("Invalid cursor");
+            }
+            Float rating = parts[1].isEmpty() ? null : Float.valueOf(parts[1]);
+            Double distance = parts[2].isEmpty() ? null : Double.valueOf(parts[2]);
+            return new Cursor(parts[0], rating, distance, parts[3]);
+        }
+        catch (IllegalArgumentException ex) {
+            throw new InvalidRequestException("Invalid cursor");
+        }
+    }
+
+    public static String encode(TimeCursor cursor) {
+        String raw = cursor.createdAt().toString() + SEPARATOR + cursor.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static TimeCursor decodeTime(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 2);
+            if (parts.length != 2 || parts[1].isEmpty()) {
+                throw new InvalidRequestException("Invalid cursor");
+            }
+            return new TimeCursor(Instant.parse(parts[0]), parts[1]);
+        }
+        catch (IllegalArgumentException | DateTimeParseException ex) {
+            throw new InvalidRequestException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.CNTTK18.restaurant_service.util;
+
+// Chọn variant ảnh theo loại trang. Ảnh cũ chưa có variant (hoặc đang upload) thì trả ảnh gốc
+public class ImageUtil {
+    // Trang danh sách/ảnh nhúng: thumbnail nhỏ
+    public static String listImage(String imageURL, String thumbnailURL) {
+        return thumbnailURL != null ? thumbnailURL : imageURL;
+    }
+
+    // Trang chi tiết: ảnh đã giới hạn kích thước
+    public static String detailImage(String imageURL, String detailURL) {
+        return detailURL != null ? detailURL : imageURL;
+    }
+}
@@ -14,7 +14,8 @@ public class ProductUtil {
                             .categoryId(product.getCategory().getId())
                             .categoryName(product.getCategory().getCateName())
                             .description(product.getDescription())
-                            .imageURL(product.getImageURL())
+                            .imageURL(ImageUtil.listImage(product.getImageURL(), product.getThumbnailURL()))
+                            .imageStatus(product.getImageStatus())
                             .productName(product.getProductName())
                             .productSizes(product.getProductSizes().stream()
                                             .map(ps -> new ProductSizeResponse(ps.getId(),ps.getSize().getName(),
@@ -34,7 +35,8 @@ public class ProductUtil {
                             .categoryId(product.getCategory().getId())
                             .categoryName(product.getCategory().getCateName())
                             .description(product.getDescription())
-                            .imageURL(product.getImageURL())
+                            .imageURL(ImageUtil.detailImage(product.getImageURL(), product.getDetailURL()))
+                            .imageStatus(product.getImageStatus())
                             .productName(product.getProductName())
                             .productSizes(product.getProductSizes().stream()
                                             .map(ps -> new ProductSizeResponse(ps.getId(),ps.getSize().getName(),
@@ -54,7 +56,8 @@ public class ProductUtil {
                             .categoryId(product.getCategory().getId())
                             .categoryName(product.getCategory().getCateName())
                             .description(product.getDescription())
-                            .imageURL(product.getImageURL())
+                            .imageURL(ImageUtil.listImage(product.getImageURL(), product.getThumbnailURL()))
+                            .imageStatus(product.getImageStatus())
                             .productName(product.getProductName())
                             .productSizes(product.getProductSizes().stream()
                                             .map(ps -> new ProductSizeResponse(ps.getId(),ps.getSize().getName(),
@@ -1,8 +1,11 @@
 package com.CNTTK18.restaurant_service.util;
 
+import java.util.List;
+
 import com.CNTTK18.restaurant_service.dto.cate.response.CateResponse;
 import com.CNTTK18.restaurant_service.dto.restaurant.response.ResResponse;
 import com.CNTTK18.restaurant_service.dto.restaurant.response.ResResponseWithProduct;
+import com.CNTTK18.restaurant_service.model.Products;
 import com.CNTTK18.restaurant_service.model.Restaurants;
 
 public class ResUtil {
@@ -17,7 +20,8 @@ public class ResUtil {
                         .openingTime(res.getOpeningTime())
                         .closingTime(res.getClosingTime())
                         .phone(res.getPhone())
-                        .imageURL(res.getImageURL())
+                        .imageURL(ImageUtil.listImage(res.getImageURL(), res.getThumbnailURL()))
+                        .imageStatus(res.getImageStatus())
                         .merchantId(res.getMerchantId())
                         .enabled(res.isEnabled())
                         .totalReview(res.getTotalReview())
@@ -39,7 +43,8 @@ public class ResUtil {
                         .openingTime(res.getOpeningTime())
                         .closingTime(res.getClosingTime())
                         .phone(res.getPhone())
-                        .imageURL(res.getImageURL())
+                        .imageURL(ImageUtil.listImage(res.getImageURL(), res.getThumbnailURL()))
+                        .imageStatus(res.getImageStatus())
                         .merchantId(res.getMerchantId())
                         .enabled(res.isEnabled())
                         .totalReview(res.getTotalReview())
@@ -63,7 +68,8 @@ public class ResUtil {
                         .openingTime(res.getOpeningTime())
                         .closingTime(res.getClosingTime())
                         .phone(res.getPhone())
-                        .imageURL(res.getImageURL())
+                        .imageURL(ImageUtil.detailImage(res.getImageURL(), res.getDetailURL()))
+                        .imageStatus(res.getImageStatus())
                         .merchantId(res.getMerchantId())
                         .enabled(res.isEnabled())
                         .totalReview(res.getTotalReview())
@@ -86,7 +92,8 @@ public class ResUtil {
                         .openingTime(res.getOpeningTime())
                         .closingTime(res.getClosingTime())
                         .phone(res.getPhone())
-                        .imageURL(res.getImageURL())
+                        .imageURL(ImageUtil.detailImage(res.getImageURL(), res.getDetailURL()))
+                        .imageStatus(res.getImageStatus())
                         .merchantId(res.getMerchantId())
                         .enabled(res.isEnabled())
                         .totalReview(res.getTotalReview())
@@ -99,4 +106,33 @@ public class ResUtil {
                         .updatedAt(res.getUpdatedAt())
                         .build();
     }
+
+    // Dùng khi products đã được fetch sẵn theo lô, không đụng tới res.getProducts() (lazy)
+    public static ResResponseWithProduct mapResToResResponseWithProductandDistanceAndDuration(Restaurants res, List<Products> products,
+                                                                                               Double distance, Double duration) {
+        return ResResponseWithProduct.builder()
+                        .id(res.getId())
+                        .address(res.getAddress())
+                        .resName(res.getResName())
+                        .longitude(res.getLongitude())
+                        .latitude(res.getLatitude())
+                        .rating(res.getRating())
+                        .openingTime(res.getOpeningTime())
+                        .closingTime(res.getClosingTime())
+                        .phone(res.getPhone())
+                        .imageURL(ImageUtil.listImage(res.getImageURL(), res.getThumbnailURL()))
+                        .imageStatus(res.getImageStatus())
+                        .merchantId(res.getMerchantId())
+                        .enabled(res.isEnabled())
+                        .totalReview(res.getTotalReview())
+                        .distance(distance)
+                        .duration(duration)
+                        .products(products == null ? null
+                                    : products.stream().map(ProductUtil::mapProductToProductResponseWithoutResParam).toList())
+                        .cate(res.getCategories().stream().map(c -> new CateResponse(c.getId(),c.getCateName())).toList())
+                        .slug(res.getSlug())
+                        .createdAt(res.getCreatedAt())
+                        .updatedAt(res.getUpdatedAt())
+                        .build();
+    }
 }
@@ -0,0 +1,33 @@
+package com.CNTTK18.restaurant_service.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class TransactionUtil {
+    // Chạy action sau khi transaction hiện tại commit thành công (hoặc chạy ngay nếu không có transaction),
+    // dùng cho các cache/index trong bộ nhớ để không giữ lại dữ liệu đã bị rollback
+    public static void afterCommit(Runnable action) {
+        afterCommit(action, null);
+    }
+
+    // Giống hàm trên, onRollback dùng để dọn tài nguyên đã chuẩn bị cho action (vd. file tạm)
+    public static void afterCommit(Runnable action, Runnable onRollback) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED && onRollback != null) {
+                        onRollback.run();
+                    }
+                }
+            });
+            return;
+        }
+        action.run();
+    }
+}
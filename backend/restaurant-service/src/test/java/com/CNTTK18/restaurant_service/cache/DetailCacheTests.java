@@ -0,0 +1,88 @@
+package com.CNTTK18.restaurant_service.cache;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+// Invalidate chạy trong lúc loader đang đọc DB không được để lại entry cũ trong cache
+class DetailCacheTests {
+    record Page(String id, String name) {
+    }
+
+    private DetailCache<Page> cache;
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        cache = new DetailCache<>(Caffeine.newBuilder().build(), Page::id, page -> Instant.EPOCH, new ObjectMapper());
+    }
+
+    private Page load(String name) {
+        loads.incrementAndGet();
+        return new Page("1", name);
+    }
+
+    @Test
+    void hitDoesNotCallLoader() {
+        cache.get("pizza", () -> load("Pizza"));
+        DetailCache.Entry<Page> entry = cache.get("pizza", () -> load("Pizza"));
+        Assertions.assertEquals("Pizza", entry.body().name());
+        Assertions.assertEquals(1, loads.get());
+    }
+
+    // Chạy get() ở luồng khác, loader dừng lại cho tới khi invalidate ở luồng test chạy xong
+    private DetailCache.Entry<Page> loadWhile(Runnable invalidation) throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch invalidated = new CountDownLatch(1);
+        CompletableFuture<DetailCache.Entry<Page>> result = CompletableFuture.supplyAsync(() -> cache.get("pizza", () -> {
+            Page page = load("Pizza");
+            loading.countDown();
+            try {
+                invalidated.await();
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return page;
+        }));
+        Assertions.assertTrue(loading.await(5, TimeUnit.SECONDS));
+        invalidation.run();
+        invalidated.countDown();
+        return result.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void invalidateDuringLoadDiscardsLoadedEntry() throws Exception {
+        // Loader đã đọc dữ liệu cũ, bản ghi được cập nhật và invalidate trước khi loader trả về
+        DetailCache.Entry<Page> stale = loadWhile(() -> cache.invalidate("1"));
+        Assertions.assertEquals("Pizza", stale.body().name());
+
+        DetailCache.Entry<Page> fresh = cache.get("pizza", () -> load("Pizza Hải Sản"));
+        Assertions.assertEquals("Pizza Hải Sản", fresh.body().name());
+        Assertions.assertEquals(2, loads.get());
+    }
+
+    @Test
+    void invalidateIfDuringLoadDiscardsLoadedEntry() throws Exception {
+        loadWhile(() -> cache.invalidateIf(p -> p.name().startsWith("Burger")));
+        cache.get("pizza", () -> load("Pizza"));
+        Assertions.assertEquals(2, loads.get());
+    }
+
+    @Test
+    void invalidateRemovesCachedEntry() {
+        cache.get("pizza", () -> load("Pizza"));
+        cache.invalidate("1");
+        cache.get("pizza", () -> load("Pizza"));
+        Assertions.assertEquals(2, loads.get());
+    }
+}
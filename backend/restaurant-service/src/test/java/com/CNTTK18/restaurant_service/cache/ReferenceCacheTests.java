@@ -0,0 +1,87 @@
+package com.CNTTK18.restaurant_service.cache;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+// Bảng giả trong bộ nhớ thay cho repository, đếm số lần findAll/findById
+class ReferenceCacheTests {
+    record Row(String id, String name) {
+    }
+
+    private final Map<String, Row> table = new ConcurrentHashMap<>();
+    private final AtomicInteger findAllCalls = new AtomicInteger();
+    private final AtomicInteger findByIdCalls = new AtomicInteger();
+
+    private ReferenceCache<Row> cache(Duration ttl) {
+        return new ReferenceCache<>(() -> {
+            findAllCalls.incrementAndGet();
+            return List.copyOf(table.values());
+        }, id -> {
+            findByIdCalls.incrementAndGet();
+            return Optional.ofNullable(table.get(id));
+        }, Row::id, ttl);
+    }
+
+    @Test
+    void missLoadsRowFromDatabaseAndCachesIt() {
+        table.put("1", new Row("1", "Pizza"));
+        ReferenceCache<Row> cache = cache(Duration.ofMinutes(5));
+        Assertions.assertEquals("Pizza", cache.get("1").orElseThrow().name());
+
+        // Dòng được thêm bởi instance khác, không đi qua put()
+        table.put("2", new Row("2", "Burger"));
+        Assertions.assertEquals("Burger", cache.get("2").orElseThrow().name());
+        Assertions.assertEquals("Burger", cache.get("2").orElseThrow().name());
+        Assertions.assertEquals(1, findByIdCalls.get());
+        Assertions.assertEquals(1, findAllCalls.get());
+        Assertions.assertEquals(2, cache.getAll().size());
+    }
+
+    @Test
+    void missingRowIsNotCached() {
+        ReferenceCache<Row> cache = cache(Duration.ofMinutes(5));
+        Assertions.assertTrue(cache.get("x").isEmpty());
+        table.put("x", new Row("x", "Drink"));
+        Assertions.assertTrue(cache.get("x").isPresent());
+    }
+
+    @Test
+    void snapshotIsReloadedAfterTtl() throws InterruptedException {
+        table.put("1", new Row("1", "Pizza"));
+        ReferenceCache<Row> cache = cache(Duration.ofMillis(50));
+        Assertions.assertEquals("Pizza", cache.get("1").orElseThrow().name());
+
+        table.put("1", new Row("1", "Pizza Hải Sản"));
+        Assertions.assertEquals("Pizza", cache.get("1").orElseThrow().name());
+        Thread.sleep(80);
+        Assertions.assertEquals("Pizza Hải Sản", cache.get("1").orElseThrow().name());
+        Assertions.assertEquals(2, findAllCalls.get());
+    }
+
+    @Test
+    void putDoesNotExtendSnapshotPastTtl() throws InterruptedException {
+        ReferenceCache<Row> cache = cache(Duration.ofMillis(50));
+        cache.getAll();
+        Thread.sleep(30);
+        cache.put(new Row("1", "Pizza"));
+        Thread.sleep(30);
+        cache.getAll();
+        Assertions.assertEquals(2, findAllCalls.get());
+    }
+
+    @Test
+    void findMissDoesNotReloadFreshSnapshot() {
+        ReferenceCache<Row> cache = cache(Duration.ofMinutes(5));
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertTrue(cache.find(row -> row.name().equals("Pizza")).isEmpty());
+        }
+        Assertions.assertEquals(1, findAllCalls.get());
+    }
+}
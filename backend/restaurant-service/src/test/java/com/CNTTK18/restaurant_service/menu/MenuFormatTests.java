@@ -0,0 +1,164 @@
+package com.CNTTK18.restaurant_service.menu;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.CNTTK18.restaurant_service.dto.product.MenuItem;
+import com.CNTTK18.restaurant_service.dto.product.request.SizePrice;
+import com.CNTTK18.restaurant_service.exception.InvalidRequestException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// File export ra phải import lại được, dòng sai định dạng được báo lỗi và các dòng sau vẫn được đọc
+class MenuFormatTests {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static List<MenuItem> items() {
+        return List.of(
+            new MenuItem("Phở bò", "Nước dùng hầm 12 tiếng", "CAT001", true,
+                         List.of(new SizePrice(new BigDecimal("35000"), "S"), new SizePrice(new BigDecimal("45000.50"), "M"))),
+            new MenuItem("Trà \"đặc biệt\", size lớn", "Dòng 1\nDòng 2", "CAT002", false,
+                         List.of(new SizePrice(new BigDecimal("20000"), "L"))),
+            new MenuItem("Bánh mì", null, "CAT003", null, List.of()));
+    }
+
+    private byte[] export(MenuFormat format, List<MenuItem> items) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MenuWriter writer = MenuWriter.open(format, out, objectMapper);
+        for (MenuItem item : items) {
+            writer.write(item);
+        }
+        writer.finish();
+        return out.toByteArray();
+    }
+
+    private List<MenuRow> read(MenuFormat format, byte[] data) throws IOException {
+        List<MenuRow> rows = new ArrayList<>();
+        try (MenuReader reader = MenuReader.open(format, new ByteArrayInputStream(data), objectMapper)) {
+            MenuRow row;
+            while ((row = reader.next()) != null) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    private List<MenuRow> readCsv(String csv) throws IOException {
+        return read(MenuFormat.CSV, csv.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void assertSameItem(MenuItem expected, MenuItem actual) {
+        Assertions.assertEquals(expected.getProductName(), actual.getProductName());
+        Assertions.assertEquals(expected.getDescription(), actual.getDescription());
+        Assertions.assertEquals(expected.getCategoryId(), actual.getCategoryId());
+        Assertions.assertEquals(expected.getAvailable(), actual.getAvailable());
+        Assertions.assertEquals(expected.getSizes().size(), actual.getSizes().size());
+        for (int i = 0; i < expected.getSizes().size(); i++) {
+            Assertions.assertEquals(expected.getSizes().get(i).getSizeId(), actual.getSizes().get(i).getSizeId());
+            Assertions.assertEquals(0, expected.getSizes().get(i).getPrice().compareTo(actual.getSizes().get(i).getPrice()));
+        }
+    }
+
+    private void assertRoundTrip(MenuFormat format) throws IOException {
+        List<MenuRow> rows = read(format, export(format, items()));
+        Assertions.assertEquals(items().size(), rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            Assertions.assertEquals(i + 1, rows.get(i).number());
+            Assertions.assertNull(rows.get(i).error());
+            assertSameItem(items().get(i), rows.get(i).item());
+        }
+    }
+
+    @Test
+    void csvExportCanBeImported() throws IOException {
+        assertRoundTrip(MenuFormat.CSV);
+    }
+
+    @Test
+    void jsonExportCanBeImported() throws IOException {
+        assertRoundTrip(MenuFormat.JSON);
+    }
+
+    // Header theo thứ tự tùy ý, có BOM của Excel, dòng trống bị bỏ qua
+    @Test
+    void csvHeaderOrderBomAndBlankLines() throws IOException {
+        List<MenuRow> rows = readCsv("\uFEFFsizes,CategoryId,productName,description\r\n"
+                                     + "S:10000,CAT001,Cơm tấm,Sườn bì chả\r\n"
+                                     + "\r\n"
+                                     + "M:20000,CAT002,Bún chả,\r\n");
+        Assertions.assertEquals(2, rows.size());
+        Assertions.assertEquals("Cơm tấm", rows.get(0).item().getProductName());
+        Assertions.assertNull(rows.get(0).item().getAvailable());
+        Assertions.assertNull(rows.get(1).item().getDescription());
+        Assertions.assertEquals(2, rows.get(1).number());
+    }
+
+    @Test
+    void csvInvalidRowDoesNotStopImport() throws IOException {
+        List<MenuRow> rows = readCsv("productName,description,categoryId,available,sizes\n"
+                                     + "A,desc,CAT001,maybe,S:1000\n"
+                                     + "B,desc,CAT001,true,S:abc\n"
+                                     + "C,desc,CAT001,yes,S\n"
+                                     + "D,desc,CAT001,0,S:1000\n");
+        Assertions.assertEquals(4, rows.size());
+        Assertions.assertTrue(rows.get(0).error().contains("available"));
+        Assertions.assertTrue(rows.get(1).error().contains("price"));
+        Assertions.assertTrue(rows.get(2).error().contains("size"));
+        Assertions.assertEquals("D", rows.get(3).item().getProductName());
+        Assertions.assertFalse(rows.get(3).item().getAvailable());
+    }
+
+    @Test
+    void csvWithoutRequiredColumnIsRejected() {
+        Assertions.assertThrows(InvalidRequestException.class,
+                                () -> readCsv("productName,description,sizes\nA,desc,S:1000\n"));
+        Assertions.assertThrows(InvalidRequestException.class, () -> readCsv(""));
+    }
+
+    @Test
+    void csvUnterminatedQuoteIsRejected() {
+        Assertions.assertThrows(InvalidRequestException.class,
+                                () -> readCsv("productName,description,categoryId,sizes\n\"A,desc,CAT001,S:1000\n"));
+    }
+
+    @Test
+    void jsonInvalidElementDoesNotStopImport() throws IOException {
+        List<MenuRow> rows = read(MenuFormat.JSON, """
+            [
+              {"productName": "A", "categoryId": "CAT001", "sizes": [{"sizeId": "S", "price": 1000}]},
+              "not an object",
+              {"productName": "B", "available": "sometimes"},
+              {"productName": "C", "categoryId": "CAT002", "sizes": []}
+            ]
+            """.getBytes(StandardCharsets.UTF_8));
+        Assertions.assertEquals(4, rows.size());
+        Assertions.assertEquals("A", rows.get(0).item().getProductName());
+        Assertions.assertNotNull(rows.get(1).error());
+        Assertions.assertNotNull(rows.get(2).error());
+        Assertions.assertEquals("C", rows.get(3).item().getProductName());
+        Assertions.assertEquals(4, rows.get(3).number());
+    }
+
+    @Test
+    void jsonMustBeArray() {
+        Assertions.assertThrows(InvalidRequestException.class,
+                                () -> read(MenuFormat.JSON, "{\"productName\": \"A\"}".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void formatIsChosenFromContentTypeOrName() {
+        Assertions.assertEquals(MenuFormat.CSV, MenuFormat.fromContentType("text/csv"));
+        Assertions.assertEquals(MenuFormat.JSON, MenuFormat.fromContentType("application/json;charset=UTF-8"));
+        Assertions.assertEquals(MenuFormat.CSV, MenuFormat.fromName("CSV"));
+        Assertions.assertThrows(InvalidRequestException.class, () -> MenuFormat.fromContentType("text/plain"));
+        Assertions.assertThrows(InvalidRequestException.class, () -> MenuFormat.fromContentType("garbage"));
+        Assertions.assertThrows(InvalidRequestException.class, () -> MenuFormat.fromName("xml"));
+    }
+}
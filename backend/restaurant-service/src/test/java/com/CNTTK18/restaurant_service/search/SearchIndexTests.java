@@ -0,0 +1,120 @@
+package com.CNTTK18.restaurant_service.search;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import com.CNTTK18.restaurant_service.dto.search.SearchSource;
+import com.CNTTK18.restaurant_service.dto.search.response.SuggestionResponse;
+import com.CNTTK18.restaurant_service.model.Products;
+import com.CNTTK18.restaurant_service.model.Restaurants;
+import com.CNTTK18.restaurant_service.repository.CateRepository;
+import com.CNTTK18.restaurant_service.repository.ProductRepository;
+import com.CNTTK18.restaurant_service.repository.ResRepository;
+
+// Ghi vào index trong lúc rebuild đang đọc snapshot (ngoài transaction nên áp dụng ngay) không được bị mất
+class SearchIndexTests {
+    private ResRepository resRepository;
+    private ProductRepository productRepository;
+    private SearchIndex searchIndex;
+
+    @BeforeEach
+    void setUp() {
+        resRepository = Mockito.mock(ResRepository.class);
+        productRepository = Mockito.mock(ProductRepository.class);
+        CateRepository cateRepository = Mockito.mock(CateRepository.class);
+        Mockito.when(resRepository.findAllSearchSources()).thenReturn(List.of(source("r1", "Quán Ngon", "r1")));
+        Mockito.when(cateRepository.findAll()).thenReturn(List.of());
+        searchIndex = new SearchIndex(resRepository, productRepository, cateRepository);
+    }
+
+    private static SearchSource source(String id, String name, String restaurantId) {
+        return new SearchSource() {
+            public String getId() {
+                return id;
+            }
+
+            public String getName() {
+                return name;
+            }
+
+            public String getSlug() {
+                return id;
+            }
+
+            public Boolean getVisible() {
+                return true;
+            }
+
+            public String getRestaurantId() {
+                return restaurantId;
+            }
+        };
+    }
+
+    private static Products product(String id, String name) {
+        return Products.builder()
+                    .id(id)
+                    .productName(name)
+                    .slug(id)
+                    .available(true)
+                    .restaurant(Restaurants.builder().id("r1").build())
+                    .build();
+    }
+
+    private List<String> suggestIds(String query) {
+        return searchIndex.suggest(query, 10).stream().map(SuggestionResponse::getId).toList();
+    }
+
+    @Test
+    void updateDuringSnapshotReadIsReplayed() {
+        // Snapshot đọc tên cũ, món được đổi tên sau khi query snapshot đã chạy
+        Mockito.when(productRepository.findAllSearchSources()).thenAnswer(inv -> {
+            List<SearchSource> stale = List.of(source("p1", "Phở Bò", "r1"));
+            searchIndex.indexProduct(product("p1", "Bún Bò Huế"));
+            return stale;
+        });
+        searchIndex.rebuild();
+
+        Assertions.assertEquals(List.of("p1"), suggestIds("bun bo"));
+        Assertions.assertEquals(List.of(), suggestIds("pho"));
+    }
+
+    @Test
+    void removeDuringSnapshotReadIsReplayed() {
+        Mockito.when(productRepository.findAllSearchSources()).thenAnswer(inv -> {
+            List<SearchSource> stale = List.of(source("p1", "Phở Bò", "r1"), source("p2", "Phở Gà", "r1"));
+            searchIndex.removeProduct("p1");
+            return stale;
+        });
+        searchIndex.rebuild();
+
+        Assertions.assertEquals(List.of("p2"), suggestIds("pho"));
+    }
+
+    @Test
+    void writesAfterRebuildAreNotRecordedAgain() {
+        Mockito.when(productRepository.findAllSearchSources()).thenReturn(List.of(source("p1", "Phở Bò", "r1")));
+        searchIndex.rebuild();
+        searchIndex.indexProduct(product("p2", "Phở Gà"));
+
+        // Rebuild tiếp theo chỉ dùng snapshot mới, p2 không có trong DB nên không được chạy lại
+        searchIndex.rebuild();
+        Assertions.assertEquals(List.of("p1"), suggestIds("pho"));
+    }
+
+    @Test
+    void failedSnapshotReadStopsRecording() {
+        Mockito.when(productRepository.findAllSearchSources()).thenThrow(new IllegalStateException("db down"));
+        Assertions.assertThrows(IllegalStateException.class, () -> searchIndex.rebuild());
+        searchIndex.indexProduct(product("p2", "Phở Gà"));
+
+        Mockito.reset(productRepository);
+        Mockito.when(productRepository.findAllSearchSources()).thenReturn(List.of(source("p1", "Phở Bò", "r1")));
+        searchIndex.rebuild();
+        Assertions.assertEquals(List.of("p1"), suggestIds("pho"));
+    }
+}
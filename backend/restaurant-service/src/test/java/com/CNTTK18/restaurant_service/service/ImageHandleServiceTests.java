@@ -0,0 +1,202 @@
+package com.CNTTK18.restaurant_service.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import com.CNTTK18.restaurant_service.cache.DetailResponseCache;
+import com.CNTTK18.restaurant_service.data.ImageStatus;
+import com.CNTTK18.restaurant_service.image.ImageDeleteBatcher;
+import com.CNTTK18.restaurant_service.image.ImageStore;
+import com.CNTTK18.restaurant_service.image.StoredImage;
+import com.CNTTK18.restaurant_service.repository.ProductRepository;
+import com.CNTTK18.restaurant_service.repository.ResRepository;
+
+// Worker pool upload ảnh với store/repository giả. Không có transaction nên submit chạy ngay
+class ImageHandleServiceTests {
+    private static final long TIMEOUT_MS = 5000;
+
+    @TempDir
+    Path spoolDir;
+
+    private ImageStore store;
+    private ImageDeleteBatcher deleteBatcher;
+    private ResRepository resRepository;
+    private DetailResponseCache detailCache;
+    private ImageHandleService service;
+
+    @BeforeEach
+    void setUp() {
+        store = Mockito.mock(ImageStore.class);
+        deleteBatcher = Mockito.mock(ImageDeleteBatcher.class);
+        resRepository = Mockito.mock(ResRepository.class);
+        detailCache = Mockito.mock(DetailResponseCache.class);
+        Mockito.when(resRepository.findPublicIdById(ArgumentMatchers.anyString())).thenReturn(Optional.of("old"));
+        Mockito.when(resRepository.updateImage(ArgumentMatchers.anyString(), ArgumentMatchers.anyString(),
+                                                ArgumentMatchers.anyString(), ArgumentMatchers.anyString(),
+                                                ArgumentMatchers.anyString(), ArgumentMatchers.any()))
+                .thenReturn(1);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    private void start(int threads, int queueCapacity) throws IOException {
+        service = new ImageHandleService(store, deleteBatcher, resRepository, Mockito.mock(ProductRepository.class),
+                            detailCache, threads, queueCapacity, 3, Duration.ofMillis(1), spoolDir.toString());
+    }
+
+    private Path spoolFile(String name) throws IOException {
+        return Files.writeString(spoolDir.resolve(name), "image");
+    }
+
+    private static StoredImage stored(String publicId) {
+        return new StoredImage(publicId, "url/" + publicId, "thumb/" + publicId, "detail/" + publicId);
+    }
+
+    private void verifyReady(String resId, String publicId) {
+        Mockito.verify(resRepository, Mockito.timeout(TIMEOUT_MS)).updateImage(resId, "url/" + publicId,
+                            "thumb/" + publicId, "detail/" + publicId, publicId, ImageStatus.READY);
+    }
+
+    @Test
+    void uploadPatchesRowAndQueuesOldImageForDeletion() throws Exception {
+        start(1, 10);
+        Path file = spoolFile("a.jpg");
+        Mockito.when(store.upload(file)).thenReturn(stored("new"));
+
+        service.uploadRestaurantImage("r1", file);
+
+        verifyReady("r1", "new");
+        Mockito.verify(deleteBatcher, Mockito.timeout(TIMEOUT_MS)).add("old");
+        Mockito.verify(detailCache).evictRestaurant("r1");
+        service.shutdown();
+        Assertions.assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void transientFailuresAreRetried() throws Exception {
+        start(1, 10);
+        Path file = spoolFile("a.jpg");
+        Mockito.when(store.upload(file)).thenThrow(new IOException("timeout"), new IOException("timeout"))
+                .thenReturn(stored("new"));
+
+        service.uploadRestaurantImage("r1", file);
+
+        verifyReady("r1", "new");
+        Mockito.verify(store, Mockito.times(3)).upload(file);
+        Mockito.verify(resRepository, Mockito.never()).updateImageStatus("r1", ImageStatus.FAILED);
+    }
+
+    @Test
+    void lastFailedAttemptMarksImageFailed() throws Exception {
+        start(1, 10);
+        Path file = spoolFile("a.jpg");
+        Mockito.when(store.upload(file)).thenThrow(new IOException("down"));
+
+        service.uploadRestaurantImage("r1", file);
+
+        Mockito.verify(resRepository, Mockito.timeout(TIMEOUT_MS)).updateImageStatus("r1", ImageStatus.FAILED);
+        service.shutdown();
+        Mockito.verify(store, Mockito.times(3)).upload(file);
+        Assertions.assertFalse(Files.exists(file));
+    }
+
+    // Luồng worker bận và hàng đợi đầy: ảnh bị đánh dấu FAILED ngay, không upload trên luồng gọi
+    @Test
+    void fullQueueMarksImageFailedWithoutUploadingOnCaller() throws Exception {
+        start(1, 1);
+        CountDownLatch uploading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Path running = spoolFile("running.jpg");
+        Path queued = spoolFile("queued.jpg");
+        Path rejected = spoolFile("rejected.jpg");
+        Mockito.when(store.upload(running)).thenAnswer(inv -> {
+            uploading.countDown();
+            release.await();
+            return stored("running");
+        });
+        Mockito.when(store.upload(queued)).thenReturn(stored("queued"));
+
+        service.uploadRestaurantImage("r1", running);
+        Assertions.assertTrue(uploading.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        service.uploadRestaurantImage("r2", queued);
+        service.uploadRestaurantImage("r3", rejected);
+
+        Mockito.verify(resRepository).updateImageStatus("r3", ImageStatus.FAILED);
+        Assertions.assertFalse(Files.exists(rejected));
+
+        release.countDown();
+        verifyReady("r1", "running");
+        verifyReady("r2", "queued");
+        Mockito.verify(store, Mockito.never()).upload(rejected);
+    }
+
+    // Upload cũ xong sau upload mới của cùng nhà hàng: ảnh cũ bị bỏ, không ghi đè ảnh mới
+    @Test
+    void olderUploadFinishingLastIsDiscarded() throws Exception {
+        start(2, 10);
+        CountDownLatch uploading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Path first = spoolFile("first.jpg");
+        Path second = spoolFile("second.jpg");
+        Mockito.when(store.upload(first)).thenAnswer(inv -> {
+            uploading.countDown();
+            release.await();
+            return stored("first");
+        });
+        Mockito.when(store.upload(second)).thenReturn(stored("second"));
+
+        service.uploadRestaurantImage("r1", first);
+        Assertions.assertTrue(uploading.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        service.uploadRestaurantImage("r1", second);
+        verifyReady("r1", "second");
+
+        release.countDown();
+        Mockito.verify(deleteBatcher, Mockito.timeout(TIMEOUT_MS)).add("first");
+        Mockito.verify(resRepository, Mockito.never()).updateImage(ArgumentMatchers.eq("r1"), ArgumentMatchers.anyString(),
+                                                                   ArgumentMatchers.anyString(), ArgumentMatchers.anyString(),
+                                                                   ArgumentMatchers.eq("first"), ArgumentMatchers.any());
+    }
+
+    // Ảnh bị xóa trong lúc upload: kết quả upload bị xóa đi, không ghi lại vào DB
+    @Test
+    void cancelledUploadIsDiscarded() throws Exception {
+        start(1, 10);
+        CountDownLatch uploading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Path file = spoolFile("a.jpg");
+        Mockito.when(store.upload(file)).thenAnswer(inv -> {
+            uploading.countDown();
+            release.await();
+            return stored("new");
+        });
+
+        service.uploadRestaurantImage("r1", file);
+        Assertions.assertTrue(uploading.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        service.cancelRestaurantUpload("r1");
+        release.countDown();
+
+        Mockito.verify(deleteBatcher, Mockito.timeout(TIMEOUT_MS)).add("new");
+        Mockito.verify(resRepository, Mockito.never()).updateImage(ArgumentMatchers.anyString(), ArgumentMatchers.anyString(),
+                                                                   ArgumentMatchers.anyString(), ArgumentMatchers.anyString(),
+                                                                   ArgumentMatchers.anyString(), ArgumentMatchers.any());
+        Mockito.verify(resRepository, Mockito.never()).updateImageStatus("r1", ImageStatus.FAILED);
+    }
+}
@@ -0,0 +1,148 @@
+package com.CNTTK18.restaurant_service.service;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import org.testcontainers.utility.MountableFile;
+
+import com.CNTTK18.restaurant_service.cache.DetailResponseCache;
+import com.CNTTK18.restaurant_service.client.UserDirectoryClient;
+import com.CNTTK18.restaurant_service.dto.distance.response.DistanceResponse;
+import com.CNTTK18.restaurant_service.dto.restaurant.ResListView;
+import com.CNTTK18.restaurant_service.dto.restaurant.request.Coordinates;
+import com.CNTTK18.restaurant_service.dto.restaurant.response.ResResponseWithProduct;
+import com.CNTTK18.restaurant_service.search.SearchIndex;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import reactor.core.publisher.Mono;
+
+// Số câu SQL của trang danh sách nhà hàng không được tăng theo kích thước trang (không N+1),
+// đếm bằng Hibernate statistics trên PostGIS thật (schema + seed từ main_postgres.sql giống docker-compose)
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(ResService.class)
+@Testcontainers(disabledWithoutDocker = true)
+class ResListingStatementCountTests {
+    private static final Coordinates LOCATION = new Coordinates(106.70, 10.777);
+    private static final int EXTRA_RESTAURANTS = 60;
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(
+                        DockerImageName.parse("postgis/postgis:16-3.4").asCompatibleSubstituteFor("postgres"))
+                    .withDatabaseName("restaurant-service")
+                    .withCopyFileToContainer(MountableFile.forHostPath("../main_postgres.sql"),
+                                             "/docker-entrypoint-initdb.d/01-init_postgres.sql");
+
+    @Autowired
+    private ResService resService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockitoBean
+    private UserDirectoryClient userDirectory;
+    @MockitoBean
+    private ImageHandleService imageHandleService;
+    @MockitoBean
+    private DistanceService distanceService;
+    @MockitoBean
+    private SearchIndex searchIndex;
+    @MockitoBean
+    private DetailResponseCache detailCache;
+
+    // Seed chỉ có 15 nhà hàng, thêm nhà hàng (mỗi nhà hàng 1 danh mục, 3 món, mỗi món 2 size) để trang 50 đầy đủ.
+    // Dữ liệu bị rollback cùng transaction của test
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("""
+            INSERT INTO restaurants (id, res_name, address, longitude, latitude, rating, opening_time, closing_time,
+                                     merchant_id, slug, enabled)
+            SELECT 'STAT' || g, 'Stat Restaurant ' || g, 'HCM', 106.70 + g * 0.0001, 10.777, 4.0, '00:01', '23:59',
+                   'merchant_stat', 'stat-restaurant-' || g, true
+            FROM generate_series(1, ?) g
+            """, EXTRA_RESTAURANTS);
+        jdbcTemplate.update("""
+            INSERT INTO restaurant_categories (restaurant_id, category_id)
+            SELECT 'STAT' || g, 'CAT00' || (g % 5 + 1) FROM generate_series(1, ?) g
+            """, EXTRA_RESTAURANTS);
+        jdbcTemplate.update("""
+            INSERT INTO products (id, product_name, description, restaurant_id, category_id, rating, slug, available)
+            SELECT 'STATP' || g || '-' || p, 'Stat Product ' || g || '-' || p, 'desc', 'STAT' || g, 'CAT00' || (p + 1),
+                   p, 'stat-product-' || g || '-' || p, true
+            FROM generate_series(1, ?) g, generate_series(1, 3) p
+            """, EXTRA_RESTAURANTS);
+        jdbcTemplate.update("""
+            INSERT INTO product_sizes (id, product_id, size_id, price)
+            SELECT 'STATPS' || g || '-' || p || '-' || s, 'STATP' || g || '-' || p, s, 10000
+            FROM generate_series(1, ?) g, generate_series(1, 3) p, unnest(ARRAY['S', 'M']) s
+            """, EXTRA_RESTAURANTS);
+
+        // Distance matrix không phải là thứ được đo, trả về 1 giá trị cho mỗi nhà hàng
+        Mockito.when(distanceService.getDistanceAndDurationInList(ArgumentMatchers.anyList(), ArgumentMatchers.anyList(),
+                                                                  ArgumentMatchers.anyList()))
+                .thenAnswer(inv -> {
+                    int n = ((List<?>) inv.getArgument(2)).size();
+                    List<Double> values = Collections.nCopies(n, 1.0);
+                    return Mono.just(new DistanceResponse(List.of(values), List.of(values)));
+                });
+    }
+
+    // Số câu SQL để build 1 trang, đếm từ persistence context rỗng để lazy load (nếu có) cũng bị tính
+    private long statementsFor(ResListView view, int pageSize) {
+        entityManager.flush();
+        entityManager.clear();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        Page<ResResponseWithProduct> page = resService.getAllRestaurants(LOCATION, null, 20000, null, null, null, view,
+                                                                         PageRequest.of(0, pageSize)).block();
+        Assertions.assertEquals(pageSize, page.getContent().size());
+        if (view.kind() != ResListView.Kind.SUMMARY) {
+            // Products được load theo lô chứ không bị bỏ qua
+            page.getContent().forEach(res -> Assertions.assertNotNull(res.getProducts()));
+        }
+        return statistics.getPrepareStatementCount();
+    }
+
+    @Test
+    void fullViewStatementCountDoesNotDependOnPageSize() {
+        Assertions.assertEquals(statementsFor(ResListView.FULL, 5), statementsFor(ResListView.FULL, 50));
+    }
+
+    @Test
+    void topProductsViewStatementCountDoesNotDependOnPageSize() {
+        ResListView view = ResListView.of(null, 2);
+        Assertions.assertEquals(statementsFor(view, 5), statementsFor(view, 50));
+    }
+
+    @Test
+    void summaryViewStatementCountDoesNotDependOnPageSize() {
+        ResListView view = ResListView.of("summary", null);
+        Assertions.assertEquals(statementsFor(view, 5), statementsFor(view, 50));
+    }
+}
@@ -0,0 +1,182 @@
+package com.CNTTK18.restaurant_service.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import org.testcontainers.utility.MountableFile;
+
+import com.CNTTK18.restaurant_service.cache.DetailResponseCache;
+import com.CNTTK18.restaurant_service.client.DirectoryUser;
+import com.CNTTK18.restaurant_service.client.UserDirectoryClient;
+import com.CNTTK18.restaurant_service.data.ReviewType;
+import com.CNTTK18.restaurant_service.dto.review.request.ReviewRequest;
+import com.CNTTK18.restaurant_service.dto.review.response.RatingHistogramResponse;
+import com.CNTTK18.restaurant_service.model.Reviews;
+
+import reactor.core.publisher.Mono;
+
+// Review đồng thời trên PostgreSQL thật (schema từ main_postgres.sql giống docker-compose):
+// UPDATE cộng dồn phải cho ra đúng rating_sum/total_review/histogram, không mất lượt nào
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(ReviewService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Testcontainers(disabledWithoutDocker = true)
+class ReviewRatingConcurrencyTests {
+    private static final String RES_ID = "review-concurrency-res";
+    private static final int THREADS = 16;
+    // Chia hết cho 5 để mỗi số sao có cùng số review
+    private static final int REVIEWS = 100;
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(
+                        DockerImageName.parse("postgis/postgis:16-3.4").asCompatibleSubstituteFor("postgres"))
+                    .withDatabaseName("restaurant-service")
+                    .withCopyFileToContainer(MountableFile.forHostPath("../main_postgres.sql"),
+                                             "/docker-entrypoint-initdb.d/01-init_postgres.sql");
+
+    @Autowired
+    private ReviewService reviewService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private UserDirectoryClient userDirectory;
+    @MockitoBean
+    private DetailResponseCache detailCache;
+
+    @BeforeEach
+    void setUp() {
+        Mockito.when(userDirectory.getUser(ArgumentMatchers.anyString()))
+                .thenAnswer(inv -> Mono.just(new DirectoryUser(inv.getArgument(0), "USER", true)));
+        jdbcTemplate.update("""
+            INSERT INTO restaurants (id, res_name, address, longitude, latitude, opening_time, closing_time,
+                                     merchant_id, slug, enabled)
+            VALUES (?, 'Review concurrency', 'HCM', 106.7, 10.8, '08:00', '22:00', 'merchant', ?, true)
+            """, RES_ID, RES_ID);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM reviews WHERE review_id = ?", RES_ID);
+        jdbcTemplate.update("DELETE FROM restaurants WHERE id = ?", RES_ID);
+    }
+
+    private static ReviewRequest request(int i) {
+        return new ReviewRequest("user-" + i, RES_ID, ReviewType.RESTAURANT.toString(), "title " + i, "content", i % 5 + 1);
+    }
+
+    // Chạy các task cùng lúc (chờ latch để các transaction chồng lên nhau), trả về kết quả theo thứ tự
+    private static <T> List<T> runConcurrently(List<Callable<T>> tasks) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<T>> futures = new ArrayList<>();
+            for (Callable<T> task : tasks) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private List<Reviews> createConcurrently() throws Exception {
+        List<Callable<Reviews>> tasks = new ArrayList<>();
+        for (int i = 0; i < REVIEWS; i++) {
+            ReviewRequest request = request(i);
+            tasks.add(() -> reviewService.createReview(request).block());
+        }
+        return runConcurrently(tasks);
+    }
+
+    private double ratingSum() {
+        return jdbcTemplate.queryForObject("SELECT rating_sum FROM restaurants WHERE id = ?", Double.class, RES_ID);
+    }
+
+    @Test
+    void concurrentCreatesAccumulateExactly() throws Exception {
+        createConcurrently();
+
+        RatingHistogramResponse histogram = reviewService.getRatingHistogram(RES_ID, null);
+        Assertions.assertEquals(REVIEWS, histogram.getTotalReview());
+        // 1 + 2 + 3 + 4 + 5 cho mỗi nhóm 5 review
+        Assertions.assertEquals(15.0 * REVIEWS / 5, ratingSum());
+        Assertions.assertEquals(3.0f, histogram.getRating());
+        Assertions.assertEquals(Map.of(1, REVIEWS / 5, 2, REVIEWS / 5, 3, REVIEWS / 5, 4, REVIEWS / 5, 5, REVIEWS / 5),
+                                histogram.getStars());
+        Assertions.assertEquals(REVIEWS, jdbcTemplate.queryForObject(
+                                "SELECT COUNT(*) FROM reviews WHERE review_id = ?", Integer.class, RES_ID));
+    }
+
+    @Test
+    void concurrentDeletesReturnCountersToZero() throws Exception {
+        List<Reviews> created = createConcurrently();
+
+        List<Callable<Boolean>> deletes = new ArrayList<>();
+        for (Reviews review : created) {
+            deletes.add(() -> {
+                reviewService.deleteReview(review.getId(), null);
+                return true;
+            });
+        }
+        runConcurrently(deletes);
+
+        RatingHistogramResponse histogram = reviewService.getRatingHistogram(RES_ID, null);
+        Assertions.assertEquals(0, histogram.getTotalReview());
+        Assertions.assertEquals(0.0, ratingSum());
+        Assertions.assertEquals(0.0f, histogram.getRating());
+        Assertions.assertEquals(Map.of(1, 0, 2, 0, 3, 0, 4, 0, 5, 0), histogram.getStars());
+    }
+
+    @Test
+    void deleteAfterCounterReachedZeroDoesNotGoNegative() throws Exception {
+        Reviews review = reviewService.createReview(request(4)).block();
+        // Bộ đếm bị lệch so với bảng reviews (vd. sửa tay trong DB)
+        jdbcTemplate.update("UPDATE restaurants SET total_review = 0, rating_sum = 0, rating = 0, "
+                            + "rating_histogram = '{0,0,0,0,0}' WHERE id = ?", RES_ID);
+
+        reviewService.deleteReview(review.getId(), null);
+
+        RatingHistogramResponse histogram = reviewService.getRatingHistogram(RES_ID, null);
+        Assertions.assertEquals(0, histogram.getTotalReview());
+        Assertions.assertEquals(0.0, ratingSum());
+        Assertions.assertEquals(0, jdbcTemplate.queryForObject(
+                                "SELECT COUNT(*) FROM reviews WHERE review_id = ?", Integer.class, RES_ID));
+    }
+}
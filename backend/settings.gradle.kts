@@ -8,4 +8,5 @@ include (
     ":notification-service",
     ":restaurant-service",
     ":chat-service",
+    ":benchmarks",
 )
\ No newline at end of file
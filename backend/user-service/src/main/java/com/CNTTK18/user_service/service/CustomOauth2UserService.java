@@ -8,8 +8,8 @@ import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.stereotype.Service;
 
-import com.CNTTK18.Common.Util.RandomIdGenerator;
 import com.CNTTK18.Common.Util.SlugGenerator;
+import com.CNTTK18.Common.Util.UlidGenerator;
 import com.CNTTK18.user_service.data.Provider;
 import com.CNTTK18.user_service.data.Role;
 import com.CNTTK18.user_service.model.Users;
@@ -34,7 +34,7 @@ public class CustomOauth2UserService extends DefaultOAuth2UserService {
         Optional<Users> userFound = userRepository.findByEmail(email);
         if (userFound.isEmpty()) {
             Users user = Users.builder()
-                    .id(RandomIdGenerator.generate(99))
+                    .id(UlidGenerator.generate())
                     .username(name)
                     .email(email)
                     .role(Role.USER.toString())
@@ -12,8 +12,8 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import com.CNTTK18.Common.Exception.ResourceNotFoundException;
-import com.CNTTK18.Common.Util.RandomIdGenerator;
 import com.CNTTK18.Common.Util.SlugGenerator;
+import com.CNTTK18.Common.Util.UlidGenerator;
 import com.CNTTK18.user_service.data.Role;
 import com.CNTTK18.user_service.dto.request.AddressRequest;
 import com.CNTTK18.user_service.dto.request.Login;
@@ -97,7 +97,7 @@ public class UserService {
             throw new IllegalArgumentException("Password and Confirm Password do not match");
         }
         Users newUser = new Users();
-        newUser.setId(RandomIdGenerator.generate(99));
+        newUser.setId(UlidGenerator.generate());
         newUser.setUsername(user.getUsername());
         newUser.setEmail(user.getEmail());
         newUser.setPassword(passwordEncoder.encode(user.getPassword()));
@@ -182,7 +182,7 @@ public class UserService {
         Users user = userRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("User not found"));
         user.setPhone(userUpdate.getPhone());
         Address address = new Address();
-        address.setId(RandomIdGenerator.generate(99));
+        address.setId(UlidGenerator.generate());
         address.setLocation(userUpdate.getDefaultAddress());
         address.setLatitude(userUpdate.getLatitude());
         address.setLongitude(userUpdate.getLongitude());
@@ -209,7 +209,7 @@ public class UserService {
 
     public AddressResponse addNewAddress(String id, AddressRequest addressRequest) {
         Users user = userRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("User not found"));
-        Address address = new Address(RandomIdGenerator.generate(250), addressRequest.getLocation(),
+        Address address = new Address(UlidGenerator.generate(), addressRequest.getLocation(),
                                      addressRequest.getLongitude(),addressRequest.getLatitude());
 
         user.addAddress(address);